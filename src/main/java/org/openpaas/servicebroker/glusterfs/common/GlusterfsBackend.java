@@ -0,0 +1,21 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+/**
+ * 브로커가 호출하는 백엔드 구분. 재시도/서킷브레이커 등은 백엔드별로 관리한다.
+ */
+public enum GlusterfsBackend {
+
+	KEYSTONE("keystone"),
+	SWIFT("swift");
+
+	private final String id;
+
+	private GlusterfsBackend(String id) {
+		this.id = id;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+}
@@ -0,0 +1,168 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsBackendException;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsBulkheadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keystone / Swift 호출에 공통 재시도 정책과 백엔드별 서킷브레이커를 적용하는 클래스.
+ * 연결 실패와 5xx 응답은 최대 maxattempts 회까지 지수 백오프(jitter 포함) 후 재시도한다.
+ * POST 요청은 중복 생성을 막기 위해 요청이 전송되지 않은 경우와 503 응답만 재시도한다.
+ * 각 호출은 백엔드별 격벽(GlusterfsBulkhead) 스레드에서 실행되며, 재시도 대기는 호출한 스레드에서 한다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Component
+public class GlusterfsBackendClient implements PublicMetrics {
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsBackendClient.class);
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private GlusterfsHttpTransport glusterfsHttpTransport;
+
+	private final Map<GlusterfsBackend, GlusterfsCircuitBreaker> breakers = new EnumMap<GlusterfsBackend, GlusterfsCircuitBreaker>(GlusterfsBackend.class);
+
+	private final Map<GlusterfsBackend, GlusterfsBulkhead> bulkheads = new EnumMap<GlusterfsBackend, GlusterfsBulkhead>(GlusterfsBackend.class);
+
+	private final AtomicLong retryCount = new AtomicLong();
+
+	@PostConstruct
+	public void init() {
+		for (GlusterfsBackend backend : GlusterfsBackend.values()) {
+			breakers.put(backend, new GlusterfsCircuitBreaker(backend.getId(),
+					env.getProperty("glusterfs.circuit.failurethreshold", Integer.class, 5),
+					env.getProperty("glusterfs.circuit.opentimeout", Long.class, 30000L)));
+			String prefix = "glusterfs.bulkhead." + backend.getId();
+			bulkheads.put(backend, new GlusterfsBulkhead(backend.getId(),
+					env.getProperty(prefix + ".maxconcurrent", Integer.class, 10),
+					env.getProperty(prefix + ".queuecapacity", Integer.class, 20),
+					env.getProperty(prefix + ".queuetimeout", Long.class, 1000L)));
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		for (GlusterfsBulkhead bulkhead : bulkheads.values()) {
+			bulkhead.shutdown();
+		}
+	}
+
+	/**
+	 * 요청을 전송합니다. 서킷브레이커가 열려 있으면 호출하지 않고 바로 실패합니다.
+	 * @param backend
+	 * @param url
+	 * @param entity
+	 * @param httpMethod
+	 * @return
+	 * @throws GlusterfsBackendException
+	 */
+	public ResponseEntity<String> send(GlusterfsBackend backend, final String url, final HttpEntity<String> entity, final HttpMethod httpMethod) throws GlusterfsBackendException {
+		GlusterfsCircuitBreaker breaker = breakers.get(backend);
+		GlusterfsBulkhead bulkhead = bulkheads.get(backend);
+		Callable<ResponseEntity<String>> call = new Callable<ResponseEntity<String>>() {
+			@Override
+			public ResponseEntity<String> call() throws Exception {
+				return glusterfsHttpTransport.send(url, entity, httpMethod);
+			}
+		};
+		int maxAttempts = Math.max(1, env.getProperty("glusterfs.retry.maxattempts", Integer.class, 3));
+
+		for (int attempt = 1; ; attempt++) {
+			if (!breaker.allowRequest())
+				throw new GlusterfsBackendException(503, "503 Service Unavailable (" + backend.getId() + " circuit open)");
+
+			ResponseEntity<String> response;
+			try {
+				response = bulkhead.execute(call);
+			} catch (GlusterfsBulkheadException e) {
+				// 요청을 전송하지 않았으므로 서킷브레이커 상태를 바꾸지 않고, 포화된 백엔드에 재시도하지 않습니다.
+				breaker.releaseTrial();
+				throw e;
+			} catch (GlusterfsBackendException e) {
+				if (!e.isRetryable()) {
+					// 4xx 응답은 백엔드가 정상 동작중인 것으로 봅니다.
+					breaker.recordSuccess();
+					throw e;
+				}
+				breaker.recordFailure();
+				if (attempt >= maxAttempts || !isRetryable(e, httpMethod)) throw e;
+
+				retryCount.incrementAndGet();
+				long delay = getBackoff(attempt);
+				logger.debug("[ap] " + backend.getId() + " call failed (" + e.getMessage() + "), retry " + attempt + " in " + delay + "ms");
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+				continue;
+			}
+			breaker.recordSuccess();
+			return response;
+		}
+	}
+
+	private boolean isRetryable(GlusterfsBackendException e, HttpMethod httpMethod) {
+		if (httpMethod != HttpMethod.POST) return true;
+		return e.isConnectFailure() || e.getStatusCode() == 503;
+	}
+
+	/**
+	 * attempt 번째 재시도 대기 시간. initial * 2^(attempt-1) 을 max 로 제한한 값의 50~100% 를 무작위로 사용합니다.
+	 * @param attempt
+	 * @return
+	 */
+	private long getBackoff(int attempt) {
+		long initial = env.getProperty("glusterfs.retry.backoff.initial", Long.class, 200L);
+		long max = env.getProperty("glusterfs.retry.backoff.max", Long.class, 2000L);
+		long cap = Math.min(max, initial << Math.min(attempt - 1, 20));
+		return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+	}
+
+	public GlusterfsCircuitBreaker.State getState(GlusterfsBackend backend) {
+		return breakers.get(backend).getState();
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Long>("glusterfs.retry.count", retryCount.get()));
+		for (GlusterfsCircuitBreaker breaker : breakers.values()) {
+			// 0: CLOSED, 1: OPEN, 2: HALF_OPEN
+			metrics.add(new Metric<Integer>("glusterfs.circuit." + breaker.getName() + ".state", breaker.getState().ordinal()));
+			metrics.add(new Metric<Long>("glusterfs.circuit." + breaker.getName() + ".rejected", breaker.getRejectedCount()));
+		}
+		for (GlusterfsBulkhead bulkhead : bulkheads.values()) {
+			metrics.add(new Metric<Integer>("glusterfs.bulkhead." + bulkhead.getName() + ".active", bulkhead.getActiveCount()));
+			metrics.add(new Metric<Integer>("glusterfs.bulkhead." + bulkhead.getName() + ".queued", bulkhead.getQueueDepth()));
+			metrics.add(new Metric<Long>("glusterfs.bulkhead." + bulkhead.getName() + ".rejected", bulkhead.getRejectedCount()));
+			metrics.add(new Metric<Long>("glusterfs.bulkhead." + bulkhead.getName() + ".timeout", bulkhead.getTimeoutCount()));
+		}
+		return metrics;
+	}
+
+}
@@ -0,0 +1,137 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsBackendException;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsBulkheadException;
+
+/**
+ * 백엔드별 호출 격벽(bulkhead).
+ * 백엔드마다 동시 호출 수(maxConcurrent)와 대기열 크기(queueCapacity)가 제한된 스레드 풀에서 호출하여,
+ * 한 백엔드가 느려져도 다른 백엔드 호출과 요청 처리 스레드가 함께 묶이지 않도록 한다.
+ * 대기열이 가득 차거나 queueTimeout 안에 호출이 시작되지 않으면 GlusterfsBulkheadException 으로 바로 실패한다.
+ */
+public class GlusterfsBulkhead {
+
+	private static final int QUEUED = 0;
+	private static final int RUNNING = 1;
+	private static final int ABANDONED = 2;
+
+	private final String name;
+
+	private final long queueTimeout;
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	public GlusterfsBulkhead(final String name, int maxConcurrent, int queueCapacity, long queueTimeout) {
+		this.name = name;
+		this.queueTimeout = queueTimeout;
+		this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity)), new ThreadFactory() {
+					private final AtomicInteger sequence = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "glusterfs-" + name + "-" + sequence.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * 격벽 스레드에서 호출을 실행하고 결과를 기다립니다.
+	 * 호출이 시작된 이후에는 HTTP 타임아웃까지 기다리며, 시작 전 queueTimeout 이 지나면 호출을 취소합니다.
+	 * @param call
+	 * @return
+	 * @throws GlusterfsBackendException
+	 */
+	public <T> T execute(final Callable<T> call) throws GlusterfsBackendException {
+		final AtomicInteger state = new AtomicInteger(QUEUED);
+		FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				if (!state.compareAndSet(QUEUED, RUNNING)) return null;
+				return call.call();
+			}
+		});
+
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			rejectedCount.incrementAndGet();
+			throw new GlusterfsBulkheadException("503 Service Unavailable (" + name + " bulkhead full)");
+		}
+
+		try {
+			try {
+				return task.get(queueTimeout, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				if (cancel(task, state)) {
+					timeoutCount.incrementAndGet();
+					throw new GlusterfsBulkheadException("503 Service Unavailable (" + name + " bulkhead wait timeout)");
+				}
+				return task.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancel(task, state);
+			throw new GlusterfsBackendException("Interrupted while waiting for " + name, false);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof GlusterfsBackendException) throw (GlusterfsBackendException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new GlusterfsBackendException(cause.getLocalizedMessage(), false);
+		}
+	}
+
+	/**
+	 * 아직 시작되지 않은 호출을 대기열에서 제거합니다. 이미 시작된 경우 false 를 반환합니다.
+	 */
+	private boolean cancel(FutureTask<?> task, AtomicInteger state) {
+		if (!state.compareAndSet(QUEUED, ABANDONED)) return false;
+		task.cancel(false);
+		executor.remove(task);
+		return true;
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+}
@@ -0,0 +1,90 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 백엔드별 서킷브레이커.
+ * 연속 실패가 failureThreshold 에 도달하면 OPEN 상태가 되어 openTimeout 동안 호출을 바로 실패시킨다.
+ * openTimeout 이 지나면 HALF_OPEN 상태에서 한 건의 시험 호출을 허용하고, 성공하면 CLOSED 로 돌아간다.
+ */
+public class GlusterfsCircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String name;
+
+	private final int failureThreshold;
+
+	private final long openTimeout;
+
+	private State state = State.CLOSED;
+
+	private int consecutiveFailures;
+
+	private long openedAt;
+
+	private boolean trialInFlight;
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	public GlusterfsCircuitBreaker(String name, int failureThreshold, long openTimeout) {
+		this.name = name;
+		this.failureThreshold = failureThreshold;
+		this.openTimeout = openTimeout;
+	}
+
+	/**
+	 * 호출 가능 여부를 확인합니다. 허용되지 않은 호출은 거부 건수에 포함됩니다.
+	 * @return
+	 */
+	public synchronized boolean allowRequest() {
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openTimeout) {
+			state = State.HALF_OPEN;
+			trialInFlight = false;
+		}
+		if (state == State.CLOSED) return true;
+		if (state == State.HALF_OPEN && !trialInFlight) {
+			trialInFlight = true;
+			return true;
+		}
+		rejectedCount.incrementAndGet();
+		return false;
+	}
+
+	public synchronized void recordSuccess() {
+		consecutiveFailures = 0;
+		trialInFlight = false;
+		state = State.CLOSED;
+	}
+
+	public synchronized void recordFailure() {
+		consecutiveFailures++;
+		trialInFlight = false;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			state = State.OPEN;
+			openedAt = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * 허용된 호출이 전송되지 못한 경우 HALF_OPEN 시험 호출 기회를 반환합니다.
+	 */
+	public synchronized void releaseTrial() {
+		trialInFlight = false;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+}
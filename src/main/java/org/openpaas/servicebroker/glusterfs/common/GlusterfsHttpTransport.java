@@ -0,0 +1,128 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsBackendException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Keystone / Swift 호출에 사용하는 HTTP 클라이언트.
+ * keep-alive 커넥션 풀을 사용하여 호출마다 TCP/TLS 연결을 새로 맺지 않는다.
+ * 오류 응답은 HttpClientUtils 와 같이 "401 Unauthorized" 형식의 메시지를 가진 GlusterfsBackendException 으로 변환한다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Component
+public class GlusterfsHttpTransport implements PublicMetrics {
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsHttpTransport.class);
+
+	@Autowired
+	private Environment env;
+
+	private PoolingHttpClientConnectionManager connectionManager;
+
+	private CloseableHttpClient httpClient;
+
+	private RestTemplate restTemplate;
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong poolTimeoutCount = new AtomicLong();
+
+	@PostConstruct
+	public void init() {
+		connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(env.getProperty("glusterfs.http.pool.maxtotal", Integer.class, 50));
+		connectionManager.setDefaultMaxPerRoute(env.getProperty("glusterfs.http.pool.maxperroute", Integer.class, 20));
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(env.getProperty("glusterfs.http.connecttimeout", Integer.class, 5000))
+				.setSocketTimeout(env.getProperty("glusterfs.http.readtimeout", Integer.class, 30000))
+				.setConnectionRequestTimeout(env.getProperty("glusterfs.http.poolacquiretimeout", Integer.class, 2000))
+				.build();
+
+		httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.evictExpiredConnections()
+				.evictIdleConnections(env.getProperty("glusterfs.http.idletimeout", Long.class, 30000L), TimeUnit.MILLISECONDS)
+				.build();
+
+		restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+	}
+
+	@PreDestroy
+	public void destroy() {
+		try {
+			httpClient.close();
+		} catch (Exception e) {
+			logger.warn(e.getLocalizedMessage(), e);
+		}
+	}
+
+	/**
+	 * 요청을 전송합니다.
+	 * @param url
+	 * @param entity
+	 * @param httpMethod
+	 * @return
+	 * @throws GlusterfsBackendException
+	 */
+	public ResponseEntity<String> send(String url, HttpEntity<String> entity, HttpMethod httpMethod) throws GlusterfsBackendException {
+		requestCount.incrementAndGet();
+		try {
+			return restTemplate.exchange(url, httpMethod, entity, String.class);
+		} catch (HttpStatusCodeException e) {
+			throw new GlusterfsBackendException(e.getStatusCode().value(), e.getStatusCode().value() + " " + e.getStatusCode().getReasonPhrase());
+		} catch (ResourceAccessException e) {
+			if (e.getCause() instanceof ConnectionPoolTimeoutException)
+				poolTimeoutCount.incrementAndGet();
+			boolean connectFailure = e.getCause() instanceof ConnectionPoolTimeoutException
+					|| e.getCause() instanceof ConnectException
+					|| e.getCause() instanceof ConnectTimeoutException;
+			throw new GlusterfsBackendException(e.getLocalizedMessage(), connectFailure);
+		}
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		PoolStats stats = connectionManager.getTotalStats();
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Long>("glusterfs.http.request.count", requestCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.http.pool.timeout", poolTimeoutCount.get()));
+		metrics.add(new Metric<Integer>("glusterfs.http.pool.leased", stats.getLeased()));
+		metrics.add(new Metric<Integer>("glusterfs.http.pool.pending", stats.getPending()));
+		metrics.add(new Metric<Integer>("glusterfs.http.pool.available", stats.getAvailable()));
+		metrics.add(new Metric<Integer>("glusterfs.http.pool.max", stats.getMax()));
+		return metrics;
+	}
+
+}
@@ -0,0 +1,63 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * 브로커 메타데이터 DB 커넥션 풀.
+ * commons-dbcp2 BasicDataSource 에 커넥션 대기시간, 대기 초과 건수 등 풀 상태를 metrics 로 노출한다.
+ * metrics 이름은 glusterfs.datasource.[name].* 형식이다.
+ */
+public class GlusterfsPooledDataSource extends BasicDataSource implements PublicMetrics {
+
+	private final String name;
+
+	private final AtomicLong waitTimeoutCount = new AtomicLong();
+
+	public GlusterfsPooledDataSource(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		try {
+			return super.getConnection();
+		} catch (SQLException e) {
+			if (e.getCause() instanceof NoSuchElementException) waitTimeoutCount.incrementAndGet();
+			throw e;
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		String prefix = "glusterfs.datasource." + name;
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Integer>(prefix + ".active", getNumActive()));
+		metrics.add(new Metric<Integer>(prefix + ".idle", getNumIdle()));
+		metrics.add(new Metric<Integer>(prefix + ".max", getMaxTotal()));
+		metrics.add(new Metric<Long>(prefix + ".wait.timeout", waitTimeoutCount.get()));
+		GenericObjectPool<PoolableConnection> pool = getConnectionPool();
+		if (pool != null) {
+			metrics.add(new Metric<Integer>(prefix + ".wait.waiters", pool.getNumWaiters()));
+			metrics.add(new Metric<Long>(prefix + ".wait.mean", pool.getMeanBorrowWaitTimeMillis()));
+			metrics.add(new Metric<Long>(prefix + ".wait.max", pool.getMaxBorrowWaitTimeMillis()));
+			metrics.add(new Metric<Long>(prefix + ".borrowed", pool.getBorrowedCount()));
+		}
+		return metrics;
+	}
+
+}
@@ -0,0 +1,35 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 여러 스레드의 요청 간격을 1 / rate 초 이상으로 유지하는 속도 제한. rate 가 0 이면 제한하지 않는다.
+ * 다음 요청 가능 시각을 CAS 로 예약하므로 요청 순서대로 대기하며, 쉬는 동안 쌓인 여유분은 사용하지 않는다.
+ */
+public class GlusterfsRateLimiter {
+
+	private final long intervalNanos;
+
+	private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+	/**
+	 * @param rate 초당 요청 수
+	 */
+	public GlusterfsRateLimiter(double rate) {
+		this.intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0L;
+	}
+
+	/**
+	 * 요청 가능 시각까지 대기합니다.
+	 * @throws InterruptedException
+	 */
+	public void acquire() throws InterruptedException {
+		if (intervalNanos == 0L) return;
+		final long now = System.nanoTime();
+		long slot = nextSlot.getAndAccumulate(now, (next, current) -> Math.max(next, current) + intervalNanos);
+		long wait = Math.max(slot, now) - now;
+		if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+	}
+
+}
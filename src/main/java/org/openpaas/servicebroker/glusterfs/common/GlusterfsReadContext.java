@@ -0,0 +1,52 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import java.util.function.Supplier;
+
+/**
+ * 현재 스레드의 조회를 primary DB 로 보내야 하는지를 보관하는 클래스.
+ * 변경 요청(provision/bind/update/delete) 처리 중이거나 같은 요청에서 쓰기를 수행한 이후의 조회는
+ * 복제 지연의 영향을 받지 않도록 primary 를 사용한다. 요청이 끝나면 GlusterfsReadContextFilter 가 초기화한다.
+ */
+public final class GlusterfsReadContext {
+
+	private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<Boolean>();
+
+	private GlusterfsReadContext() {
+	}
+
+	/**
+	 * 현재 스레드의 이후 조회를 primary 로 보냅니다.
+	 */
+	public static void usePrimary() {
+		PRIMARY.set(Boolean.TRUE);
+	}
+
+	public static boolean isPrimary() {
+		return Boolean.TRUE.equals(PRIMARY.get());
+	}
+
+	public static void clear() {
+		PRIMARY.remove();
+	}
+
+	/**
+	 * 현재 스레드의 조회 설정을 다른 스레드에서 실행할 작업에 전달합니다.
+	 * @param supplier
+	 * @return
+	 */
+	public static <T> Supplier<T> propagate(final Supplier<T> supplier) {
+		final boolean primary = isPrimary();
+		return () -> {
+			Boolean previous = PRIMARY.get();
+			if (primary) PRIMARY.set(Boolean.TRUE);
+			else PRIMARY.remove();
+			try {
+				return supplier.get();
+			} finally {
+				if (previous == null) PRIMARY.remove();
+				else PRIMARY.set(previous);
+			}
+		};
+	}
+
+}
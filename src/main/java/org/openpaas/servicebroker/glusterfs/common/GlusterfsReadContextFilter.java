@@ -0,0 +1,31 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * 변경 요청(GET/HEAD 이외)의 조회를 primary DB 로 보내고, 요청이 끝나면 조회 설정을 초기화하는 필터.
+ */
+@Component
+public class GlusterfsReadContextFilter extends OncePerRequestFilter {
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String method = request.getMethod();
+		if (!"GET".equals(method) && !"HEAD".equals(method)) GlusterfsReadContext.usePrimary();
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			GlusterfsReadContext.clear();
+		}
+	}
+
+}
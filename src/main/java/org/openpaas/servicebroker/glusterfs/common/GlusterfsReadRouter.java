@@ -0,0 +1,136 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 브로커 메타데이터 조회를 primary / replica DB 로 나누어 보내는 클래스.
+ * replica 가 설정되지 않았거나 GlusterfsReadContext 가 primary 를 요구하는 경우(변경 요청, 쓰기 이후 조회) primary 를 사용한다.
+ * replica 연결 실패가 이어지면 서킷브레이커가 열려 opentimeout 동안 primary 로 조회하고, 이후 한 건씩 시험 조회하여 복구를 확인한다.
+ */
+public class GlusterfsReadRouter implements PublicMetrics {
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsReadRouter.class);
+
+	private final JdbcTemplate primary;
+
+	private final GlusterfsPooledDataSource replicaDataSource;
+
+	private final JdbcTemplate replica;
+
+	private final GlusterfsCircuitBreaker breaker;
+
+	private final AtomicLong primaryReadCount = new AtomicLong();
+
+	private final AtomicLong replicaReadCount = new AtomicLong();
+
+	private final AtomicLong fallbackCount = new AtomicLong();
+
+	/**
+	 * @param primary
+	 * @param replicaDataSource replica 를 사용하지 않는 경우 null
+	 * @param failureThreshold
+	 * @param openTimeout
+	 */
+	public GlusterfsReadRouter(JdbcTemplate primary, GlusterfsPooledDataSource replicaDataSource, int failureThreshold, long openTimeout) {
+		this.primary = primary;
+		this.replicaDataSource = replicaDataSource;
+		this.replica = replicaDataSource == null ? null : new JdbcTemplate(replicaDataSource);
+		this.breaker = new GlusterfsCircuitBreaker("replica", failureThreshold, openTimeout);
+	}
+
+	/**
+	 * DB 조회 작업
+	 */
+	public interface ReadCallback<T> {
+		T doInJdbc(JdbcTemplate jdbcTemplate);
+	}
+
+	/**
+	 * 단건 조회를 실행합니다. replica 연결 오류인 경우 primary 에서 다시 조회합니다.
+	 * @param callback
+	 * @return
+	 */
+	public <T> T read(ReadCallback<T> callback) {
+		return read(callback, false);
+	}
+
+	/**
+	 * 결과를 한 건씩 전달하는 조회를 실행합니다.
+	 * 이미 전달한 결과가 중복되지 않도록 replica 커넥션을 얻지 못한 경우에만 primary 에서 다시 조회합니다.
+	 * @param callback
+	 * @return
+	 */
+	public <T> T stream(ReadCallback<T> callback) {
+		return read(callback, true);
+	}
+
+	private <T> T read(ReadCallback<T> callback, boolean streaming) {
+		if (replica == null || GlusterfsReadContext.isPrimary() || !breaker.allowRequest()) {
+			primaryReadCount.incrementAndGet();
+			return callback.doInJdbc(primary);
+		}
+
+		try {
+			T result = callback.doInJdbc(replica);
+			breaker.recordSuccess();
+			replicaReadCount.incrementAndGet();
+			return result;
+		} catch (RuntimeException e) {
+			if (!isReplicaFailure(e)) {
+				// replica 는 응답하였으므로 정상으로 판단합니다.
+				breaker.recordSuccess();
+				throw e;
+			}
+			breaker.recordFailure();
+			if (streaming && !(e instanceof CannotGetJdbcConnectionException)) throw e;
+
+			logger.warn("[ap] replica read failed, fall back to primary : " + e.getLocalizedMessage());
+			fallbackCount.incrementAndGet();
+			primaryReadCount.incrementAndGet();
+			return callback.doInJdbc(primary);
+		}
+	}
+
+	private boolean isReplicaFailure(RuntimeException e) {
+		return e instanceof DataAccessResourceFailureException
+				|| e instanceof TransientDataAccessResourceException
+				|| e instanceof QueryTimeoutException
+				|| e instanceof RecoverableDataAccessException;
+	}
+
+	public boolean isReplicaEnabled() {
+		return replica != null;
+	}
+
+	public void close() throws Exception {
+		if (replicaDataSource != null) replicaDataSource.close();
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Long>("glusterfs.datasource.primary.reads", primaryReadCount.get()));
+		if (replicaDataSource == null) return metrics;
+
+		metrics.addAll(replicaDataSource.metrics());
+		metrics.add(new Metric<Long>("glusterfs.datasource.replica.reads", replicaReadCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.datasource.replica.fallback", fallbackCount.get()));
+		metrics.add(new Metric<Integer>("glusterfs.datasource.replica.state", breaker.getState().ordinal()));
+		metrics.add(new Metric<Long>("glusterfs.datasource.replica.rejected", breaker.getRejectedCount()));
+		return metrics;
+	}
+
+}
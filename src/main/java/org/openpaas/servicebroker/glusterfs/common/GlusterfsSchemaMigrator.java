@@ -0,0 +1,209 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import javax.sql.DataSource;
+
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsSchemaVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.util.StreamUtils;
+
+/**
+ * 브로커 기동 시 gfbroker 스키마 마이그레이션을 수행하는 클래스.
+ * location 의 V[버전]__[설명].sql 스크립트 중 schema_version 테이블에 적용되지 않은 버전을 순서대로 실행한다.
+ * 스크립트는 IF NOT EXISTS 로 작성하여 수동으로 적용한 DB 나 여러 브로커가 동시에 기동하는 경우에도 다시 실행할 수 있어야 한다.
+ */
+public class GlusterfsSchemaMigrator {
+
+	public static final String SCHEMA_VERSION_CREATE = "CREATE TABLE IF NOT EXISTS schema_version ("
+			+ "version INT NOT NULL, description VARCHAR(200) NOT NULL, script VARCHAR(200) NOT NULL, checksum BIGINT NULL, "
+			+ "installed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, execution_time BIGINT NULL, success BOOLEAN NOT NULL, "
+			+ "PRIMARY KEY (version))";
+
+	public static final String SCHEMA_VERSION_FILDS = "version, description, script, checksum, installed_at, execution_time, success";
+
+	public static final String SCHEMA_VERSION_FIND_ALL = "select " + SCHEMA_VERSION_FILDS + " from schema_version order by version";
+
+	public static final String SCHEMA_VERSION_ADD = "insert into schema_version(" + SCHEMA_VERSION_FILDS + ") values(?,?,?,?,current_timestamp,?,?)";
+
+	public static final String SCHEMA_VERSION_DELETE_FAILED = "delete from schema_version where version = ? and success = false";
+
+	private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsSchemaMigrator.class);
+
+	private final DataSource dataSource;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final String location;
+
+	private final boolean enabled;
+
+	private final RowMapper<GlusterfsSchemaVersion> mapper = new GlusterfsSchemaVersionRowMapper();
+
+	public GlusterfsSchemaMigrator(DataSource dataSource, String location, boolean enabled) {
+		this.dataSource = dataSource;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.location = location;
+		this.enabled = enabled;
+	}
+
+	/**
+	 * 적용되지 않은 마이그레이션을 실행합니다. 실패하면 브로커 기동을 중단합니다.
+	 */
+	public void migrate() {
+		if (!enabled) {
+			logger.info("[ap] schema migration disabled");
+			return;
+		}
+
+		jdbcTemplate.execute(SCHEMA_VERSION_CREATE);
+		Map<Integer, GlusterfsSchemaVersion> applied = findApplied();
+
+		for (Script script : findScripts()) {
+			GlusterfsSchemaVersion version = applied.get(script.version);
+			if (version != null && GlusterfsSchemaVersion.STATE_APPLIED.equals(version.getState())) {
+				if (version.getChecksum() != null && version.getChecksum() != script.checksum)
+					logger.warn("[ap] schema migration V" + script.version + " has been modified after it was applied : " + script.name);
+				continue;
+			}
+			if (version != null) jdbcTemplate.update(SCHEMA_VERSION_DELETE_FAILED, script.version);
+
+			logger.info("[ap] schema migration V" + script.version + " : " + script.name);
+			long startedAt = System.currentTimeMillis();
+			try {
+				ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+				populator.setSqlScriptEncoding("UTF-8");
+				populator.addScript(script.resource);
+				DatabasePopulatorUtils.execute(populator, dataSource);
+			} catch (RuntimeException e) {
+				record(script, System.currentTimeMillis() - startedAt, false);
+				throw new IllegalStateException("Schema migration V" + script.version + " failed : " + script.name, e);
+			}
+			record(script, System.currentTimeMillis() - startedAt, true);
+		}
+	}
+
+	/**
+	 * 적용된 버전과 적용 대기중인 버전 목록을 조회합니다.
+	 * @return
+	 */
+	public List<GlusterfsSchemaVersion> getStatus() {
+		Map<Integer, GlusterfsSchemaVersion> versions = enabled ? findApplied() : new TreeMap<Integer, GlusterfsSchemaVersion>();
+		for (Script script : findScripts()) {
+			if (versions.containsKey(script.version)) continue;
+			GlusterfsSchemaVersion pending = new GlusterfsSchemaVersion();
+			pending.setVersion(script.version);
+			pending.setDescription(script.description);
+			pending.setScript(script.name);
+			pending.setChecksum(script.checksum);
+			pending.setState(GlusterfsSchemaVersion.STATE_PENDING);
+			versions.put(script.version, pending);
+		}
+		return new ArrayList<GlusterfsSchemaVersion>(versions.values());
+	}
+
+	private Map<Integer, GlusterfsSchemaVersion> findApplied() {
+		Map<Integer, GlusterfsSchemaVersion> applied = new TreeMap<Integer, GlusterfsSchemaVersion>();
+		for (GlusterfsSchemaVersion version : jdbcTemplate.query(SCHEMA_VERSION_FIND_ALL, mapper)) {
+			applied.put(version.getVersion(), version);
+		}
+		return applied;
+	}
+
+	private void record(Script script, long executionTime, boolean success) {
+		try {
+			jdbcTemplate.update(SCHEMA_VERSION_ADD, script.version, script.description, script.name, script.checksum, executionTime, success);
+		} catch (DuplicateKeyException e) {
+			// 다른 브로커가 같은 버전을 먼저 기록한 경우
+			logger.info("[ap] schema migration V" + script.version + " already recorded");
+		}
+	}
+
+	private List<Script> findScripts() {
+		List<Script> scripts = new ArrayList<Script>();
+		try {
+			for (Resource resource : new PathMatchingResourcePatternResolver().getResources(location + "/V*__*.sql")) {
+				Matcher matcher = SCRIPT_NAME.matcher(resource.getFilename());
+				if (!matcher.matches()) continue;
+				scripts.add(new Script(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), resource));
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Schema migration scripts not found : " + location, e);
+		}
+		Collections.sort(scripts, new Comparator<Script>() {
+			@Override
+			public int compare(Script o1, Script o2) {
+				return Integer.compare(o1.version, o2.version);
+			}
+		});
+		return scripts;
+	}
+
+	private static final class Script {
+
+		private final int version;
+
+		private final String description;
+
+		private final String name;
+
+		private final Resource resource;
+
+		private final long checksum;
+
+		private Script(int version, String description, Resource resource) throws IOException {
+			this.version = version;
+			this.description = description;
+			this.name = resource.getFilename();
+			this.resource = resource;
+			CRC32 crc = new CRC32();
+			InputStream in = resource.getInputStream();
+			try {
+				crc.update(StreamUtils.copyToByteArray(in));
+			} finally {
+				in.close();
+			}
+			this.checksum = crc.getValue();
+		}
+	}
+
+	private static final class GlusterfsSchemaVersionRowMapper implements RowMapper<GlusterfsSchemaVersion> {
+		@Override
+		public GlusterfsSchemaVersion mapRow(ResultSet rs, int rowNum) throws SQLException {
+			GlusterfsSchemaVersion version = new GlusterfsSchemaVersion();
+			version.setVersion(rs.getInt(1));
+			version.setDescription(rs.getString(2));
+			version.setScript(rs.getString(3));
+			long checksum = rs.getLong(4);
+			version.setChecksum(rs.wasNull() ? null : checksum);
+			version.setInstalledAt(rs.getTimestamp(5));
+			long executionTime = rs.getLong(6);
+			version.setExecutionTime(rs.wasNull() ? null : executionTime);
+			version.setState(rs.getBoolean(7) ? GlusterfsSchemaVersion.STATE_APPLIED : GlusterfsSchemaVersion.STATE_FAILED);
+			return version;
+		}
+	}
+
+}
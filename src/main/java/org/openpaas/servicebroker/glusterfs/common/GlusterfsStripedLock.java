@@ -0,0 +1,39 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 키(instance_id 등)별 잠금. 키마다 잠금을 만들지 않고 고정된 개수의 잠금 중 하나를 키의 hash 로 선택한다.
+ * 같은 키는 항상 같은 잠금을 사용하므로 직렬화되며, 다른 키는 대부분 다른 잠금을 사용하여 동시에 진행된다.
+ */
+public class GlusterfsStripedLock {
+
+	private final ReentrantLock[] stripes;
+
+	public GlusterfsStripedLock(int stripes) {
+		this.stripes = new ReentrantLock[Math.max(1, stripes)];
+		for (int i = 0; i < this.stripes.length; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+	}
+
+	public ReentrantLock get(String key) {
+		return stripes[indexOf(key)];
+	}
+
+	/**
+	 * 키가 사용하는 잠금의 순번. 여러 키의 잠금을 잡을 때 순번 순서로 잡으면 교착 상태가 생기지 않습니다.
+	 * @param key
+	 * @return
+	 */
+	public int indexOf(String key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return (hash & 0x7fffffff) % stripes.length;
+	}
+
+	public int size() {
+		return stripes.length;
+	}
+
+}
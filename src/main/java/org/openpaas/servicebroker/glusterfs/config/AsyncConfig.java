@@ -0,0 +1,64 @@
+package org.openpaas.servicebroker.glusterfs.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Spring boot 구동시 비동기 작업(accepts_incomplete)을 처리하는 작업 스레드 풀과
+ * 요청 처리 중 서로 의존하지 않는 DB/백엔드 호출을 동시에 실행하는 I/O 스레드 풀,
+ * 운영자용 일괄 삭제가 함께 사용하는 스레드 풀 Bean 을 생성하는 클래스.
+ */
+@Configuration
+@PropertySource("classpath:glusterfs.properties")
+public class AsyncConfig {
+
+	@Autowired
+	private Environment env;
+
+	@Bean(name = "glusterfsOperationExecutor")
+	public ThreadPoolTaskExecutor glusterfsOperationExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		int poolSize = env.getProperty("glusterfs.async.poolsize", Integer.class, 4);
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setQueueCapacity(env.getProperty("glusterfs.async.queuecapacity", Integer.class, 100));
+		executor.setThreadNamePrefix("glusterfs-operation-");
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		executor.setAwaitTerminationSeconds(30);
+		return executor;
+	}
+
+	@Bean(name = "glusterfsIoExecutor")
+	public ThreadPoolTaskExecutor glusterfsIoExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		int poolSize = env.getProperty("glusterfs.io.poolsize", Integer.class, 16);
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setQueueCapacity(env.getProperty("glusterfs.io.queuecapacity", Integer.class, 200));
+		executor.setThreadNamePrefix("glusterfs-io-");
+		// 스레드 풀이 가득 찬 경우 요청 스레드에서 직접 실행합니다.
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		return executor;
+	}
+
+	@Bean(name = "glusterfsBulkExecutor")
+	public ThreadPoolTaskExecutor glusterfsBulkExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		// 동시에 여러 일괄 삭제를 요청해도 전체 삭제 스레드 수는 poolsize 를 넘지 않습니다.
+		int poolSize = env.getProperty("glusterfs.bulk.poolsize", Integer.class, 16);
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setQueueCapacity(env.getProperty("glusterfs.bulk.queuecapacity", Integer.class, 100));
+		executor.setThreadNamePrefix("glusterfs-bulk-");
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		executor.setAwaitTerminationSeconds(30);
+		return executor;
+	}
+
+}
@@ -2,24 +2,31 @@ package org.openpaas.servicebroker.glusterfs.config;
 
 import java.net.UnknownHostException;
 
-import javax.sql.DataSource;
-
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsPooledDataSource;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsReadRouter;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsSchemaMigrator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
 import org.springframework.context.annotation.PropertySource;
 //import org.springframework.context.annotation.PropertySources;
 import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 /**
  * Spring boot 구동시 사용하는 JdbcTemplate Bean 를 생성하는 클래스.
+ * DataSource 는 commons-dbcp2 커넥션 풀을 사용한다.
+ * JdbcTemplate 생성 전에 스키마 마이그레이션(db/migration)을 적용한다.
+ * jdbc.replica.enabled=true 인 경우 조회 전용 replica 커넥션 풀을 만들어 GlusterfsReadRouter 에서 사용한다.
+ * memory 프로파일에서는 DB 를 사용하지 않으므로 생성하지 않는다.
  * 
  * @author 김한종
  *
  */
 @Configuration
+@Profile("!memory")
 @PropertySource("classpath:datasource.properties")
 public class MysqlConfig {
 
@@ -27,20 +34,72 @@ public class MysqlConfig {
 	private Environment env;
 
 	@Bean
+	@DependsOn("glusterfsSchemaMigrator")
 	public JdbcTemplate jdbcTemplate() throws UnknownHostException {
 		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource());
 		return jdbcTemplate;
 	}
 	
+	@Bean(destroyMethod = "close")
+	public GlusterfsReadRouter glusterfsReadRouter() throws UnknownHostException {
+		GlusterfsPooledDataSource replica = null;
+		if (env.getProperty("jdbc.replica.enabled", Boolean.class, false)) {
+			replica = new GlusterfsPooledDataSource("replica");
+			replica.setDriverClassName(env.getRequiredProperty("jdbc.driver"));
+			replica.setUrl(env.getRequiredProperty("jdbc.replica.url"));
+			replica.setUsername(env.getProperty("jdbc.replica.username", env.getRequiredProperty("jdbc.username")));
+			replica.setPassword(env.getProperty("jdbc.replica.pwd", env.getRequiredProperty("jdbc.pwd")));
+			configurePool(replica, "jdbc.replica.pool");
+			// 기동 시 replica 에 연결할 수 없더라도 primary 로 조회할 수 있도록 초기 커넥션을 만들지 않습니다.
+			replica.setInitialSize(0);
+		}
+		return new GlusterfsReadRouter(jdbcTemplate(), replica,
+				env.getProperty("jdbc.replica.failurethreshold", Integer.class, 3),
+				env.getProperty("jdbc.replica.opentimeout", Long.class, 30000L));
+	}
+	
+	@Bean(initMethod = "migrate")
+	public GlusterfsSchemaMigrator glusterfsSchemaMigrator() {
+		return new GlusterfsSchemaMigrator(dataSource(),
+				env.getProperty("jdbc.migration.locations", "classpath:db/migration"),
+				env.getProperty("jdbc.migration.enabled", Boolean.class, true));
+	}
+	
 	//@Override
-	@Bean
-    public DataSource dataSource() {
-		DriverManagerDataSource dataSource = new DriverManagerDataSource();
+	@Bean(destroyMethod = "close")
+    public GlusterfsPooledDataSource dataSource() {
+		GlusterfsPooledDataSource dataSource = new GlusterfsPooledDataSource("primary");
 		dataSource.setDriverClassName(env.getRequiredProperty("jdbc.driver"));
 		dataSource.setUrl(env.getRequiredProperty("jdbc.url"));
 		dataSource.setUsername(env.getRequiredProperty("jdbc.username"));
 		dataSource.setPassword(env.getRequiredProperty("jdbc.pwd"));
+		configurePool(dataSource, "jdbc.pool");
 		return dataSource;
     }
 	
+	/**
+	 * 커넥션 풀 크기, 커넥션 검증, 반환되지 않은 커넥션(leak) 검출을 설정합니다.
+	 * @param dataSource
+	 * @param prefix
+	 */
+	private void configurePool(GlusterfsPooledDataSource dataSource, String prefix) {
+		dataSource.setInitialSize(env.getProperty(prefix + ".initialsize", Integer.class, 2));
+		dataSource.setMinIdle(env.getProperty(prefix + ".minidle", Integer.class, 2));
+		dataSource.setMaxIdle(env.getProperty(prefix + ".maxidle", Integer.class, 10));
+		dataSource.setMaxTotal(env.getProperty(prefix + ".maxtotal", Integer.class, 20));
+		dataSource.setMaxWaitMillis(env.getProperty(prefix + ".maxwait", Long.class, 3000L));
+
+		dataSource.setValidationQuery(env.getProperty(prefix + ".validationquery", "SELECT 1"));
+		dataSource.setValidationQueryTimeout(env.getProperty(prefix + ".validationtimeout", Integer.class, 2));
+		dataSource.setTestOnBorrow(env.getProperty(prefix + ".testonborrow", Boolean.class, true));
+		dataSource.setTestWhileIdle(env.getProperty(prefix + ".testwhileidle", Boolean.class, true));
+		dataSource.setTimeBetweenEvictionRunsMillis(env.getProperty(prefix + ".evictioninterval", Long.class, 60000L));
+
+		boolean removeAbandoned = env.getProperty(prefix + ".leakdetection", Boolean.class, true);
+		dataSource.setRemoveAbandonedOnBorrow(removeAbandoned);
+		dataSource.setRemoveAbandonedOnMaintenance(removeAbandoned);
+		dataSource.setRemoveAbandonedTimeout(env.getProperty(prefix + ".leaktimeout", Integer.class, 300));
+		dataSource.setLogAbandoned(removeAbandoned);
+	}
+	
 }
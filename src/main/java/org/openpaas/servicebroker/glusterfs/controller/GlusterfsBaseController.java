@@ -0,0 +1,58 @@
+package org.openpaas.servicebroker.glusterfs.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openpaas.servicebroker.exception.ServiceBrokerException;
+import org.openpaas.servicebroker.exception.ServiceInstanceExistsException;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsOperationRejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Glusterfs 브로커가 직접 제공하는 API 의 공통 예외 처리 클래스.
+ * 오류 응답은 OSB 형식인 {"description": "..."} 으로 반환한다.
+ * 잠금 대기 시간 초과(GlusterfsConcurrencyException)는 OSB 컨트롤러와 함께 GlusterfsConcurrencyExceptionResolver 가 422 로 처리한다.
+ * 비동기 작업 스레드 풀이 가득 차 작업을 시작하지 못한 경우(GlusterfsOperationRejectedException)는 재시도할 수 있도록 503 으로 응답한다.
+ */
+public abstract class GlusterfsBaseController {
+
+	private static final String RETRY_AFTER_SECONDS = "5";
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsBaseController.class);
+
+	@ExceptionHandler(ServiceInstanceExistsException.class)
+	public ResponseEntity<Map<String,Object>> handleException(ServiceInstanceExistsException e) {
+		return new ResponseEntity<Map<String,Object>>(getDescription(e.getMessage()), HttpStatus.CONFLICT);
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<Map<String,Object>> handleException(IllegalArgumentException e) {
+		return new ResponseEntity<Map<String,Object>>(getDescription(e.getMessage()), HttpStatus.BAD_REQUEST);
+	}
+
+	@ExceptionHandler(GlusterfsOperationRejectedException.class)
+	public ResponseEntity<Map<String,Object>> handleException(GlusterfsOperationRejectedException e) {
+		logger.warn("[ap] " + e.getLocalizedMessage());
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+		return new ResponseEntity<Map<String,Object>>(getDescription(e.getMessage()), headers, HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
+	@ExceptionHandler(ServiceBrokerException.class)
+	public ResponseEntity<Map<String,Object>> handleException(ServiceBrokerException e) {
+		logger.warn(e.getLocalizedMessage(), e);
+		return new ResponseEntity<Map<String,Object>>(getDescription(e.getMessage()), HttpStatus.INTERNAL_SERVER_ERROR);
+	}
+
+	protected Map<String,Object> getDescription(String message) {
+		Map<String,Object> body = new HashMap<String,Object>();
+		body.put("description", message);
+		return body;
+	}
+
+}
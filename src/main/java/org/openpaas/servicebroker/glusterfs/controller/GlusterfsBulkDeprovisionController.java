@@ -0,0 +1,120 @@
+package org.openpaas.servicebroker.glusterfs.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsRecordHandler;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsBulkDeprovisionService;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsBulkDeprovisionService.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * 운영자용 조직 / 공간 단위 일괄 삭제 API 를 제공하는 클래스.
+ * 응답은 NDJSON 으로, 삭제가 끝난 항목부터 한 줄씩 {"type", "id", "instance_id", "status", "description", "elapsed_ms"} 를 기록하고
+ * 마지막 줄에 {"type": "summary", "deleted", "failed", "skipped"} 를 기록한다.
+ */
+@RestController
+public class GlusterfsBulkDeprovisionController extends GlusterfsBaseController {
+
+	public static final String BASE_PATH = "/admin";
+
+	public static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+
+	private static final Logger logger = LoggerFactory.getLogger(GlusterfsBulkDeprovisionController.class);
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	@Autowired
+	private GlusterfsBulkDeprovisionService glusterfsBulkDeprovisionService;
+
+	/**
+	 * 조직 / 공간의 인스턴스와 바인딩 일괄 삭제
+	 */
+	@RequestMapping(value = BASE_PATH + "/service_instances", method = RequestMethod.DELETE)
+	public ResponseEntity<StreamingResponseBody> deleteServiceInstances(
+			@RequestParam(value = "organization_guid", required = false) final String organizationGuid,
+			@RequestParam(value = "space_guid", required = false) final String spaceGuid,
+			@RequestParam(value = "parallelism", required = false) final Integer parallelism,
+			@RequestParam(value = "rate", required = false) final Double rate) {
+		logger.debug("DELETE: " + BASE_PATH + "/service_instances, deleteServiceInstances(), organizationGuid = " + organizationGuid + ", spaceGuid = " + spaceGuid);
+		if (!StringUtils.hasText(organizationGuid) && !StringUtils.hasText(spaceGuid))
+			throw new IllegalArgumentException("organization_guid or space_guid is required");
+		final int checkedParallelism = glusterfsBulkDeprovisionService.getParallelism(parallelism);
+		final double checkedRate = glusterfsBulkDeprovisionService.getRate(rate);
+
+		StreamingResponseBody body = new StreamingResponseBody() {
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				final JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+				// 항목 사이 구분자는 writeLine 의 줄바꿈만 사용합니다.
+				json.setRootValueSeparator(null);
+				final AtomicLong deleted = new AtomicLong();
+				final AtomicLong failed = new AtomicLong();
+				final AtomicLong skipped = new AtomicLong();
+				try {
+					glusterfsBulkDeprovisionService.deprovision(organizationGuid, spaceGuid, checkedParallelism, checkedRate,
+							new GlusterfsRecordHandler<Result>() {
+								@Override
+								public void handle(Result result) {
+									if (GlusterfsBulkDeprovisionService.STATUS_DELETED.equals(result.getStatus())) deleted.incrementAndGet();
+									else if (GlusterfsBulkDeprovisionService.STATUS_FAILED.equals(result.getStatus())) failed.incrementAndGet();
+									else skipped.incrementAndGet();
+									try {
+										json.writeStartObject();
+										json.writeStringField("type", result.getType());
+										json.writeStringField("id", result.getId());
+										json.writeStringField("instance_id", result.getInstanceId());
+										json.writeStringField("status", result.getStatus());
+										json.writeStringField("description", result.getDescription());
+										json.writeNumberField("elapsed_ms", result.getElapsed());
+										json.writeEndObject();
+										writeLine(json);
+									} catch (IOException e) {
+										throw new UncheckedIOException(e);
+									}
+								}
+							});
+					json.writeStartObject();
+					json.writeStringField("type", "summary");
+					json.writeNumberField("deleted", deleted.get());
+					json.writeNumberField("failed", failed.get());
+					json.writeNumberField("skipped", skipped.get());
+					json.writeEndObject();
+					writeLine(json);
+				} catch (UncheckedIOException e) {
+					// 클라이언트 연결이 끊긴 경우 새 삭제를 시작하지 않습니다.
+					throw e.getCause();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				} finally {
+					json.close();
+				}
+			}
+		};
+		return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+	}
+
+	private static void writeLine(JsonGenerator json) throws IOException {
+		json.writeRaw('\n');
+		// 삭제가 끝난 항목을 바로 전달합니다.
+		json.flush();
+	}
+
+}
@@ -0,0 +1,65 @@
+package org.openpaas.servicebroker.glusterfs.controller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsPlanRegistry;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsPlanRegistry.Snapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 운영자용 plan 정의 조회 / 다시 읽기 API 를 제공하는 클래스.
+ * 응답은 {"loaded_at": ..., "plans": [{"plan_id", "quota_bytes"}]} 형식이다.
+ */
+@RestController
+public class GlusterfsCatalogController extends GlusterfsBaseController {
+
+	public static final String BASE_PATH = "/admin";
+
+	private static final Logger logger = LoggerFactory.getLogger(GlusterfsCatalogController.class);
+
+	@Autowired
+	private GlusterfsPlanRegistry glusterfsPlanRegistry;
+
+	/**
+	 * 현재 적용된 plan 별 quota 조회
+	 */
+	@RequestMapping(value = BASE_PATH + "/catalog/plans", method = RequestMethod.GET)
+	public ResponseEntity<Map<String,Object>> getPlans() {
+		logger.debug("GET: " + BASE_PATH + "/catalog/plans, getPlans()");
+		return new ResponseEntity<Map<String,Object>>(toBody(glusterfsPlanRegistry.getSnapshot()), HttpStatus.OK);
+	}
+
+	/**
+	 * plan 정의 파일을 다시 읽어 적용. 잘못된 정의인 경우 400 을 반환하고 이전 정의를 계속 사용한다.
+	 */
+	@RequestMapping(value = BASE_PATH + "/catalog/reload", method = RequestMethod.POST)
+	public ResponseEntity<Map<String,Object>> reload() {
+		logger.debug("POST: " + BASE_PATH + "/catalog/reload, reload()");
+		return new ResponseEntity<Map<String,Object>>(toBody(glusterfsPlanRegistry.reload()), HttpStatus.OK);
+	}
+
+	private Map<String,Object> toBody(Snapshot snapshot) {
+		List<Map<String,Object>> plans = new ArrayList<Map<String,Object>>();
+		for (Map.Entry<String, Long> entry : snapshot.getQuotas().entrySet()) {
+			Map<String,Object> plan = new LinkedHashMap<String,Object>();
+			plan.put("plan_id", entry.getKey());
+			plan.put("quota_bytes", entry.getValue());
+			plans.add(plan);
+		}
+		Map<String,Object> body = new LinkedHashMap<String,Object>();
+		body.put("loaded_at", snapshot.getLoadedAt());
+		body.put("plans", plans);
+		return body;
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.openpaas.servicebroker.glusterfs.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsConcurrencyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
+
+/**
+ * 같은 서비스 인스턴스/바인딩에 대한 다른 요청이 처리중이어서 잠금을 얻지 못한 경우(GlusterfsConcurrencyException)
+ * 모든 컨트롤러에서 422 {"error": "ConcurrencyError", "description": "..."} 로 응답하는 클래스.
+ * OSB 규격의 ConcurrencyError 응답으로, CC 는 이 응답을 받으면 잠시 후 다시 요청한다.
+ * ap-service-broker 의 OSB 컨트롤러는 자체 @ExceptionHandler(Exception) 으로 500 을 반환하며 컨트롤러의 핸들러가
+ * @ControllerAdvice 보다 먼저 적용되므로, 기본 예외 처리보다 먼저 실행되는 HandlerExceptionResolver 로 처리한다.
+ */
+@Component
+public class GlusterfsConcurrencyExceptionResolver implements HandlerExceptionResolver, Ordered {
+
+	static final String CONCURRENCY_ERROR = "ConcurrencyError";
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsConcurrencyExceptionResolver.class);
+
+	@Override
+	public ModelAndView resolveException(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		GlusterfsConcurrencyException e = findCause(ex);
+		if (e == null) return null;
+
+		logger.info("[ap] " + request.getMethod() + " " + request.getRequestURI() + " rejected : " + e.getMessage());
+		response.setStatus(HttpStatus.UNPROCESSABLE_ENTITY.value());
+		Map<String, Object> model = new LinkedHashMap<String, Object>();
+		model.put("error", CONCURRENCY_ERROR);
+		model.put("description", e.getMessage());
+		return new ModelAndView(new MappingJackson2JsonView(), model);
+	}
+
+	/**
+	 * CompletionException 등으로 감싸진 경우를 포함하여 원인 예외를 찾습니다.
+	 */
+	private static GlusterfsConcurrencyException findCause(Throwable ex) {
+		for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+			if (cause instanceof GlusterfsConcurrencyException) return (GlusterfsConcurrencyException) cause;
+			if (cause.getCause() == cause) break;
+		}
+		return null;
+	}
+
+	@Override
+	public int getOrder() {
+		return Ordered.HIGHEST_PRECEDENCE;
+	}
+
+}
@@ -0,0 +1,144 @@
+package org.openpaas.servicebroker.glusterfs.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsRecordHandler;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsListingService;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsRecordCache.BindingRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * 운영자용 인스턴스 / 바인딩 목록 조회 API 를 제공하는 클래스.
+ * 응답은 {"resources": [...], "next": "..."} 형식이며, next 가 null 이 아니면 after 파라미터로 다음 페이지를 조회한다.
+ * 조회 결과는 DB 에서 읽는 대로 응답에 기록한다.
+ */
+@RestController
+public class GlusterfsListingController extends GlusterfsBaseController {
+
+	public static final String BASE_PATH = "/admin";
+
+	private static final Logger logger = LoggerFactory.getLogger(GlusterfsListingController.class);
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	@Autowired
+	private GlusterfsListingService glusterfsListingService;
+
+	/**
+	 * 인스턴스 목록 조회(조직 / 공간 / plan 조건)
+	 */
+	@RequestMapping(value = BASE_PATH + "/service_instances", method = RequestMethod.GET)
+	public ResponseEntity<StreamingResponseBody> listServiceInstances(
+			@RequestParam(value = "organization_guid", required = false) final String organizationGuid,
+			@RequestParam(value = "space_guid", required = false) final String spaceGuid,
+			@RequestParam(value = "plan_id", required = false) final String planId,
+			@RequestParam(value = "after", required = false) final String after,
+			@RequestParam(value = "limit", required = false) final Integer limit) {
+		logger.debug("GET: " + BASE_PATH + "/service_instances, listServiceInstances()");
+		final int pageSize = glusterfsListingService.getPageSize(limit);
+
+		return stream(new Page() {
+			@Override
+			public String write(final JsonGenerator json) {
+				return glusterfsListingService.listInstances(organizationGuid, spaceGuid, planId, after, pageSize, new GlusterfsRecordHandler<GlusterfsServiceInstanceRecord>() {
+					@Override
+					public void handle(GlusterfsServiceInstanceRecord record) {
+						try {
+							json.writeStartObject();
+							json.writeStringField("instance_id", record.getServiceInstanceId());
+							json.writeStringField("service_id", record.getServiceDefinitionId());
+							json.writeStringField("plan_id", record.getPlanId());
+							json.writeStringField("organization_guid", record.getOrganizationGuid());
+							json.writeStringField("space_guid", record.getSpaceGuid());
+							json.writeStringField("tenant_name", record.getTenantName());
+							json.writeStringField("tenant_id", record.getTenantId());
+							json.writeEndObject();
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * 인스턴스의 바인딩 목록 조회
+	 */
+	@RequestMapping(value = BASE_PATH + "/service_instances/{instanceId}/service_bindings", method = RequestMethod.GET)
+	public ResponseEntity<StreamingResponseBody> listServiceBindings(@PathVariable("instanceId") final String serviceInstanceId,
+			@RequestParam(value = "after", required = false) final String after,
+			@RequestParam(value = "limit", required = false) final Integer limit) {
+		logger.debug("GET: " + BASE_PATH + "/service_instances/{instanceId}/service_bindings, listServiceBindings(), serviceInstanceId = " + serviceInstanceId);
+		final int pageSize = glusterfsListingService.getPageSize(limit);
+
+		return stream(new Page() {
+			@Override
+			public String write(final JsonGenerator json) {
+				return glusterfsListingService.listBindings(serviceInstanceId, after, pageSize, new GlusterfsRecordHandler<BindingRecord>() {
+					@Override
+					public void handle(BindingRecord record) {
+						try {
+							json.writeStartObject();
+							json.writeStringField("binding_id", record.getBindingId());
+							json.writeStringField("instance_id", record.getInstanceId());
+							json.writeStringField("app_guid", record.getAppGuid());
+							json.writeStringField("user_id", record.getUserId());
+							json.writeEndObject();
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	private ResponseEntity<StreamingResponseBody> stream(final Page page) {
+		StreamingResponseBody body = new StreamingResponseBody() {
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+				try {
+					json.writeStartObject();
+					json.writeArrayFieldStart("resources");
+					String next = page.write(json);
+					json.writeEndArray();
+					json.writeStringField("next", next);
+					json.writeEndObject();
+				} catch (UncheckedIOException e) {
+					// 클라이언트 연결이 끊긴 경우 조회를 중단합니다.
+					throw e.getCause();
+				} finally {
+					json.close();
+				}
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(body);
+	}
+
+	private interface Page {
+		/**
+		 * 목록을 기록하고 다음 페이지의 after 값을 반환합니다.
+		 */
+		String write(JsonGenerator json);
+	}
+
+}
@@ -0,0 +1,85 @@
+package org.openpaas.servicebroker.glusterfs.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsConcurrencyException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsQuotaJob;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsQuotaJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 운영자용 plan quota 재적용 작업 API 를 제공하는 클래스.
+ * 작업 시작은 202 로 작업 정보를 반환하며, 진행 상황은 작업 조회로 확인한다.
+ */
+@RestController
+public class GlusterfsQuotaJobController extends GlusterfsBaseController {
+
+	public static final String BASE_PATH = "/admin";
+
+	private static final Logger logger = LoggerFactory.getLogger(GlusterfsQuotaJobController.class);
+
+	@Autowired
+	private GlusterfsQuotaJobService glusterfsQuotaJobService;
+
+	/**
+	 * plan 의 현재 quota 로 재적용 작업 시작
+	 */
+	@RequestMapping(value = BASE_PATH + "/plans/{planId}/quota_jobs", method = RequestMethod.POST)
+	public ResponseEntity<Map<String,Object>> startQuotaJob(@PathVariable("planId") String planId) throws GlusterfsConcurrencyException {
+		logger.debug("POST: " + BASE_PATH + "/plans/{planId}/quota_jobs, startQuotaJob(), planId = " + planId);
+		GlusterfsQuotaJob job = glusterfsQuotaJobService.start(planId);
+		return new ResponseEntity<Map<String,Object>>(toBody(job), HttpStatus.ACCEPTED);
+	}
+
+	/**
+	 * 작업 진행 상황 조회
+	 */
+	@RequestMapping(value = BASE_PATH + "/quota_jobs/{jobId}", method = RequestMethod.GET)
+	public ResponseEntity<Map<String,Object>> getQuotaJob(@PathVariable("jobId") String jobId) {
+		logger.debug("GET: " + BASE_PATH + "/quota_jobs/{jobId}, getQuotaJob(), jobId = " + jobId);
+		return respond(jobId, glusterfsQuotaJobService.get(jobId));
+	}
+
+	/**
+	 * 작업 취소
+	 */
+	@RequestMapping(value = BASE_PATH + "/quota_jobs/{jobId}", method = RequestMethod.DELETE)
+	public ResponseEntity<Map<String,Object>> cancelQuotaJob(@PathVariable("jobId") String jobId) {
+		logger.debug("DELETE: " + BASE_PATH + "/quota_jobs/{jobId}, cancelQuotaJob(), jobId = " + jobId);
+		return respond(jobId, glusterfsQuotaJobService.cancel(jobId));
+	}
+
+	private ResponseEntity<Map<String,Object>> respond(String jobId, GlusterfsQuotaJob job) {
+		if (job == null)
+			return new ResponseEntity<Map<String,Object>>(getDescription("Quota job " + jobId + " does not exist"), HttpStatus.NOT_FOUND);
+		return new ResponseEntity<Map<String,Object>>(toBody(job), HttpStatus.OK);
+	}
+
+	private Map<String,Object> toBody(GlusterfsQuotaJob job) {
+		Map<String,Object> body = new LinkedHashMap<String,Object>();
+		body.put("job_id", job.getJobId());
+		body.put("plan_id", job.getPlanId());
+		body.put("quota_bytes", job.getQuotaBytes());
+		body.put("state", job.getState());
+		body.put("total", job.getTotal());
+		body.put("processed", job.getProcessed());
+		body.put("failed", job.getFailed());
+		// 작업 중 인스턴스가 추가될 수 있으므로 100 을 넘지 않도록 합니다.
+		body.put("progress", job.getTotal() == 0 ? 100 : Math.min(100, job.getProcessed() * 100 / job.getTotal()));
+		body.put("checkpoint", job.getCheckpoint());
+		body.put("description", job.getDescription());
+		body.put("created_at", job.getCreatedAt());
+		body.put("updated_at", job.getUpdatedAt());
+		return body;
+	}
+
+}
@@ -0,0 +1,55 @@
+package org.openpaas.servicebroker.glusterfs.controller;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsSchemaMigrator;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsSchemaVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 스키마 마이그레이션 상태 조회 API 를 제공하는 클래스.
+ */
+@Profile("!memory")
+@RestController
+public class GlusterfsSchemaController extends GlusterfsBaseController {
+
+	public static final String BASE_PATH = "/admin/schema";
+
+	private static final Logger logger = LoggerFactory.getLogger(GlusterfsSchemaController.class);
+
+	@Autowired
+	private GlusterfsSchemaMigrator glusterfsSchemaMigrator;
+
+	/**
+	 * 적용된 버전과 적용 대기중인 버전 목록 조회
+	 */
+	@RequestMapping(value = BASE_PATH + "/migrations", method = RequestMethod.GET)
+	public ResponseEntity<Map<String,Object>> getMigrations() {
+		logger.debug("GET: " + BASE_PATH + "/migrations, getMigrations()");
+
+		List<GlusterfsSchemaVersion> versions = glusterfsSchemaMigrator.getStatus();
+		Integer current = null;
+		int pending = 0;
+		for (GlusterfsSchemaVersion version : versions) {
+			if (GlusterfsSchemaVersion.STATE_APPLIED.equals(version.getState())) current = version.getVersion();
+			else if (GlusterfsSchemaVersion.STATE_PENDING.equals(version.getState())) pending++;
+		}
+
+		Map<String,Object> body = new HashMap<String,Object>();
+		body.put("current_version", current);
+		body.put("pending", pending);
+		body.put("migrations", versions);
+		return new ResponseEntity<Map<String,Object>>(body, HttpStatus.OK);
+	}
+
+}
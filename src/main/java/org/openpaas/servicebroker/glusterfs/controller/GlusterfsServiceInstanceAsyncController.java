@@ -0,0 +1,122 @@
+package org.openpaas.servicebroker.glusterfs.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openpaas.servicebroker.exception.ServiceBrokerException;
+import org.openpaas.servicebroker.exception.ServiceInstanceExistsException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceOperation;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsAdminService;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsPlanRegistry;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsServiceInstanceService;
+import org.openpaas.servicebroker.model.CreateServiceInstanceRequest;
+import org.openpaas.servicebroker.model.Plan;
+import org.openpaas.servicebroker.model.ServiceDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 서비스 인스턴스 비동기 처리(accepts_incomplete=true) API 와 last_operation API 를 제공하는 클래스.
+ * accepts_incomplete 파라미터가 없는 요청은 기존 동기 방식의 ServiceInstanceController 가 처리한다.
+ */
+@RestController
+public class GlusterfsServiceInstanceAsyncController extends GlusterfsBaseController {
+
+	public static final String BASE_PATH = "/v2/service_instances";
+
+	private static final Logger logger = LoggerFactory.getLogger(GlusterfsServiceInstanceAsyncController.class);
+
+	@Autowired
+	private GlusterfsServiceInstanceService glusterfsServiceInstanceService;
+
+	@Autowired
+	private GlusterfsAdminService glusterfsAdminService;
+
+	@Autowired
+	private GlusterfsPlanRegistry glusterfsPlanRegistry;
+
+	/**
+	 * Provision(create, accepts_incomplete)
+	 */
+	@RequestMapping(value = BASE_PATH + "/{instanceId}", method = RequestMethod.PUT, params = "accepts_incomplete=true")
+	public ResponseEntity<Map<String,Object>> createServiceInstance(@PathVariable("instanceId") String serviceInstanceId,
+			@RequestBody CreateServiceInstanceRequest request) throws ServiceInstanceExistsException, ServiceBrokerException {
+		logger.debug("PUT: " + BASE_PATH + "/{instanceId}?accepts_incomplete=true, createServiceInstance(), serviceInstanceId = " + serviceInstanceId);
+
+		// 동기 방식의 ServiceInstanceController 와 같이 카탈로그에 없는 service_id/plan_id 는 작업을 시작하지 않고 422 로 응답합니다.
+		ServiceDefinition svc = glusterfsPlanRegistry.getServiceDefinition(request.getServiceDefinitionId());
+		if (svc == null)
+			return new ResponseEntity<Map<String,Object>>(getDescription("Service definition does not exist: id=" + request.getServiceDefinitionId()), HttpStatus.UNPROCESSABLE_ENTITY);
+		if (!hasPlan(svc, request.getPlanId()))
+			return new ResponseEntity<Map<String,Object>>(getDescription("Plan does not exist: id=" + request.getPlanId()), HttpStatus.UNPROCESSABLE_ENTITY);
+
+		request.withServiceInstanceId(serviceInstanceId);
+		GlusterfsServiceOperation operation = glusterfsServiceInstanceService.createServiceInstanceAsync(request);
+
+		Map<String,Object> body = new HashMap<String,Object>();
+		body.put("dashboard_url", glusterfsAdminService.getDashboardUrl(serviceInstanceId));
+		if (!operation.isInProgress())
+			return new ResponseEntity<Map<String,Object>>(body, HttpStatus.OK);
+
+		body.put("operation", operation.getOperationId());
+		return new ResponseEntity<Map<String,Object>>(body, HttpStatus.ACCEPTED);
+	}
+
+	/**
+	 * Provision(delete, accepts_incomplete)
+	 */
+	@RequestMapping(value = BASE_PATH + "/{instanceId}", method = RequestMethod.DELETE, params = "accepts_incomplete=true")
+	public ResponseEntity<Map<String,Object>> deleteServiceInstance(@PathVariable("instanceId") String serviceInstanceId) throws ServiceBrokerException {
+		logger.debug("DELETE: " + BASE_PATH + "/{instanceId}?accepts_incomplete=true, deleteServiceInstance(), serviceInstanceId = " + serviceInstanceId);
+
+		Map<String,Object> body = new HashMap<String,Object>();
+		GlusterfsServiceOperation operation = glusterfsServiceInstanceService.deleteServiceInstanceAsync(serviceInstanceId);
+		if (operation == null)
+			return new ResponseEntity<Map<String,Object>>(body, HttpStatus.GONE);
+
+		body.put("operation", operation.getOperationId());
+		return new ResponseEntity<Map<String,Object>>(body, HttpStatus.ACCEPTED);
+	}
+
+	/**
+	 * 비동기 작업 상태 조회(last_operation)
+	 */
+	@RequestMapping(value = BASE_PATH + "/{instanceId}/last_operation", method = RequestMethod.GET)
+	public ResponseEntity<Map<String,Object>> getLastOperation(@PathVariable("instanceId") String serviceInstanceId,
+			@RequestParam(value = "operation", required = false) String operationId) {
+		logger.debug("GET: " + BASE_PATH + "/{instanceId}/last_operation, getLastOperation(), serviceInstanceId = " + serviceInstanceId);
+
+		Map<String,Object> body = new HashMap<String,Object>();
+		GlusterfsServiceOperation operation = glusterfsServiceInstanceService.getLastOperation(serviceInstanceId, operationId);
+
+		if (operation == null) {
+			// 작업 이력이 없는 경우 동기 방식으로 생성된 인스턴스인지 확인합니다.
+			if (glusterfsServiceInstanceService.getServiceInstance(serviceInstanceId) == null)
+				return new ResponseEntity<Map<String,Object>>(body, HttpStatus.GONE);
+			body.put("state", GlusterfsServiceOperation.STATE_SUCCEEDED);
+			return new ResponseEntity<Map<String,Object>>(body, HttpStatus.OK);
+		}
+
+		body.put("state", operation.getState());
+		body.put("description", operation.getDescription());
+		return new ResponseEntity<Map<String,Object>>(body, HttpStatus.OK);
+	}
+
+	private boolean hasPlan(ServiceDefinition svc, String planId) {
+		if (planId == null || svc.getPlans() == null) return false;
+		for (Plan plan : svc.getPlans()) {
+			if (planId.equals(plan.getId())) return true;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,80 @@
+package org.openpaas.servicebroker.glusterfs.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openpaas.servicebroker.exception.ServiceBrokerException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceOperation;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsAdminService;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsServiceInstanceBindingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 서비스 인스턴스 바인딩 비동기 처리(accepts_incomplete=true) API 와 last_operation API 를 제공하는 클래스.
+ * accepts_incomplete 파라미터가 없는 요청은 기존 동기 방식의 ServiceInstanceBindingController 가 처리한다.
+ */
+@RestController
+public class GlusterfsServiceInstanceBindingAsyncController extends GlusterfsBaseController {
+
+	public static final String BASE_PATH = "/v2/service_instances/{instanceId}/service_bindings";
+
+	private static final Logger logger = LoggerFactory.getLogger(GlusterfsServiceInstanceBindingAsyncController.class);
+
+	@Autowired
+	private GlusterfsServiceInstanceBindingService glusterfsServiceInstanceBindingService;
+
+	@Autowired
+	private GlusterfsAdminService glusterfsAdminService;
+
+	/**
+	 * Binding(delete, accepts_incomplete)
+	 */
+	@RequestMapping(value = BASE_PATH + "/{bindingId}", method = RequestMethod.DELETE, params = "accepts_incomplete=true")
+	public ResponseEntity<Map<String,Object>> deleteServiceInstanceBinding(@PathVariable("instanceId") String instanceId,
+			@PathVariable("bindingId") String bindingId) throws ServiceBrokerException {
+		logger.debug("DELETE: " + BASE_PATH + "/{bindingId}?accepts_incomplete=true, deleteServiceInstanceBinding(), bindingId = " + bindingId);
+
+		Map<String,Object> body = new HashMap<String,Object>();
+		GlusterfsServiceOperation operation = glusterfsServiceInstanceBindingService.deleteServiceInstanceBindingAsync(instanceId, bindingId);
+		if (operation == null)
+			return new ResponseEntity<Map<String,Object>>(body, HttpStatus.GONE);
+
+		body.put("operation", operation.getOperationId());
+		return new ResponseEntity<Map<String,Object>>(body, HttpStatus.ACCEPTED);
+	}
+
+	/**
+	 * 비동기 작업 상태 조회(last_operation)
+	 */
+	@RequestMapping(value = BASE_PATH + "/{bindingId}/last_operation", method = RequestMethod.GET)
+	public ResponseEntity<Map<String,Object>> getLastOperation(@PathVariable("instanceId") String instanceId,
+			@PathVariable("bindingId") String bindingId,
+			@RequestParam(value = "operation", required = false) String operationId) {
+		logger.debug("GET: " + BASE_PATH + "/{bindingId}/last_operation, getLastOperation(), bindingId = " + bindingId);
+
+		Map<String,Object> body = new HashMap<String,Object>();
+		GlusterfsServiceOperation operation = glusterfsServiceInstanceBindingService.getLastOperation(bindingId, operationId);
+
+		if (operation == null) {
+			// 작업 이력이 없는 경우 동기 방식으로 생성된 바인딩인지 확인합니다.
+			if (glusterfsAdminService.findBindById(bindingId) == null)
+				return new ResponseEntity<Map<String,Object>>(body, HttpStatus.GONE);
+			body.put("state", GlusterfsServiceOperation.STATE_SUCCEEDED);
+			return new ResponseEntity<Map<String,Object>>(body, HttpStatus.OK);
+		}
+
+		body.put("state", operation.getState());
+		body.put("description", operation.getDescription());
+		return new ResponseEntity<Map<String,Object>>(body, HttpStatus.OK);
+	}
+
+}
@@ -0,0 +1,52 @@
+package org.openpaas.servicebroker.glusterfs.exception;
+
+
+/**
+ * Keystone / Swift 호출 실패 Exception클래스. GlusterfsServiceException 클래스를 상속함.
+ * 오류 응답인 경우 메시지는 "401 Unauthorized" 형식이며, 연결 실패 등 응답이 없는 경우 statusCode 는 0 이다.
+ */
+public class GlusterfsBackendException extends GlusterfsServiceException {
+
+	private static final long serialVersionUID = -3094211638420385117L;
+
+	private final int statusCode;
+
+	private final boolean connectFailure;
+
+	public GlusterfsBackendException(int statusCode, String message) {
+		super(message);
+		this.statusCode = statusCode;
+		this.connectFailure = false;
+	}
+
+	public GlusterfsBackendException(String message, boolean connectFailure) {
+		super(message);
+		this.statusCode = 0;
+		this.connectFailure = connectFailure;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * 요청이 전송되기 전(연결 실패, 커넥션 풀 대기 초과)에 실패했는지 확인합니다.
+	 * @return
+	 */
+	public boolean isConnectFailure() {
+		return connectFailure;
+	}
+
+	/**
+	 * 재시도하면 성공할 수 있는 오류인지 확인합니다. 연결 실패와 5xx 응답이 해당됩니다.
+	 * @return
+	 */
+	public boolean isRetryable() {
+		return statusCode == 0 || statusCode >= 500;
+	}
+
+	public boolean isUnauthorized() {
+		return statusCode == 401 || statusCode == 403;
+	}
+
+}
@@ -0,0 +1,16 @@
+package org.openpaas.servicebroker.glusterfs.exception;
+
+
+/**
+ * 백엔드 호출 격벽(bulkhead)이 포화되어 호출하지 못한 경우의 Exception클래스. GlusterfsBackendException 클래스를 상속함.
+ * 백엔드로 요청이 전송되지 않았으므로 재시도 및 서킷브레이커 실패 건수에 포함하지 않는다.
+ */
+public class GlusterfsBulkheadException extends GlusterfsBackendException {
+
+	private static final long serialVersionUID = 4518250392771470132L;
+
+	public GlusterfsBulkheadException(String message) {
+		super(503, message);
+	}
+
+}
@@ -0,0 +1,16 @@
+package org.openpaas.servicebroker.glusterfs.exception;
+
+
+/**
+ * 같은 서비스 인스턴스/바인딩에 대한 다른 요청이 처리중이어서 대기 시간 안에 시작하지 못한 경우의 Exception클래스.
+ * GlusterfsServiceException 클래스를 상속함.
+ */
+public class GlusterfsConcurrencyException extends GlusterfsServiceException {
+
+	private static final long serialVersionUID = -6318046329217793050L;
+
+	public GlusterfsConcurrencyException(String message) {
+		super(message);
+	}
+
+}
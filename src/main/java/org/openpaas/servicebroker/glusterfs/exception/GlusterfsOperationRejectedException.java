@@ -0,0 +1,17 @@
+package org.openpaas.servicebroker.glusterfs.exception;
+
+
+/**
+ * 비동기 작업 스레드 풀(glusterfsOperationExecutor)이 가득 차서 작업을 시작하지 못한 경우의 Exception클래스.
+ * GlusterfsServiceException 클래스를 상속함.
+ * 작업이 시작되지 않았으므로 GlusterfsBaseController 가 503 과 Retry-After 로 응답하여 CC 가 다시 요청하게 한다.
+ */
+public class GlusterfsOperationRejectedException extends GlusterfsServiceException {
+
+	private static final long serialVersionUID = 2931764150862735561L;
+
+	public GlusterfsOperationRejectedException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,48 @@
+package org.openpaas.servicebroker.glusterfs.model;
+
+import java.time.ZonedDateTime;
+
+import org.springframework.util.StringUtils;
+
+
+/**
+ * Keystone 관리자 AuthToken 정보. 토큰과 발급/만료 시각을 한번에 교체할 수 있도록 불변 객체로 관리한다.
+ */
+public final class GlusterfsAuthToken {
+
+	private final String token;
+
+	private final ZonedDateTime issuedAt;
+
+	private final ZonedDateTime expiresAt;
+
+	public GlusterfsAuthToken(String token, ZonedDateTime issuedAt, ZonedDateTime expiresAt){
+		this.token = token;
+		this.issuedAt = issuedAt;
+		this.expiresAt = expiresAt;
+	}
+
+	public String getToken() {
+		return token;
+	}
+
+	public ZonedDateTime getIssuedAt() {
+		return issuedAt;
+	}
+
+	public ZonedDateTime getExpiresAt() {
+		return expiresAt;
+	}
+
+	/**
+	 * 기준 시각에 토큰이 유효한지 확인합니다.
+	 * @param now
+	 * @return
+	 */
+	public boolean isValid(ZonedDateTime now) {
+		return !StringUtils.isEmpty(token)
+				&& issuedAt != null && expiresAt != null
+				&& now.isBefore(expiresAt);
+	}
+
+}
@@ -0,0 +1,83 @@
+package org.openpaas.servicebroker.glusterfs.model;
+
+import java.util.Date;
+
+
+/**
+ * provision / bind / plan 변경 흐름에서 완료된 단계 정보. gfbroker.operation_step 테이블에 저장된다.
+ * flowId 는 흐름 대상(instance_id 또는 binding_id)이며, requestKey 는 같은 대상에 대한 다른 요청의 기록을 구분하는 값이다.
+ * data 에는 다음 단계나 보상 작업에 필요한 값(생성한 tenant ID, user ID 등)을 저장한다.
+ */
+public class GlusterfsOperationStep {
+
+	private String flowType;
+
+	private String flowId;
+
+	private String step;
+
+	private String requestKey;
+
+	private String data;
+
+	private Date createdAt;
+
+	public GlusterfsOperationStep(){}
+
+	public GlusterfsOperationStep(String flowType, String flowId, String step, String requestKey, String data){
+		this.flowType = flowType;
+		this.flowId = flowId;
+		this.step = step;
+		this.requestKey = requestKey;
+		this.data = data;
+	}
+
+	public String getFlowType() {
+		return flowType;
+	}
+
+	public void setFlowType(String flowType) {
+		this.flowType = flowType;
+	}
+
+	public String getFlowId() {
+		return flowId;
+	}
+
+	public void setFlowId(String flowId) {
+		this.flowId = flowId;
+	}
+
+	public String getStep() {
+		return step;
+	}
+
+	public void setStep(String step) {
+		this.step = step;
+	}
+
+	public String getRequestKey() {
+		return requestKey;
+	}
+
+	public void setRequestKey(String requestKey) {
+		this.requestKey = requestKey;
+	}
+
+	public String getData() {
+		return data;
+	}
+
+	public void setData(String data) {
+		this.data = data;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+}
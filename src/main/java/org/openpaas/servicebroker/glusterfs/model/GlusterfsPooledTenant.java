@@ -0,0 +1,115 @@
+package org.openpaas.servicebroker.glusterfs.model;
+
+import java.util.Date;
+
+
+/**
+ * provision 전에 미리 생성해 둔 Keystone project 정보. gfbroker.tenant_pool 테이블에 저장된다.
+ * ready 상태의 project 는 plan 의 quota 가 설정되어 있으며, provision 시 claimed 상태로 바뀌고 인스턴스의 tenant 명으로 변경된다.
+ */
+public class GlusterfsPooledTenant {
+
+	public static final String STATUS_READY = "ready";
+	public static final String STATUS_CLAIMED = "claimed";
+
+	private String tenantId;
+
+	private String tenantName;
+
+	private String planId;
+
+	private String status;
+
+	private String instanceId;
+
+	private Date createdAt;
+
+	private Date claimedAt;
+
+	private long quotaBytes;
+
+	public GlusterfsPooledTenant(){}
+
+	public GlusterfsPooledTenant(GlusterfsPooledTenant tenant){
+		this.tenantId = tenant.tenantId;
+		this.tenantName = tenant.tenantName;
+		this.planId = tenant.planId;
+		this.status = tenant.status;
+		this.instanceId = tenant.instanceId;
+		this.createdAt = tenant.createdAt;
+		this.claimedAt = tenant.claimedAt;
+		this.quotaBytes = tenant.quotaBytes;
+	}
+
+	public String getTenantId() {
+		return tenantId;
+	}
+
+	public void setTenantId(String tenantId) {
+		this.tenantId = tenantId;
+	}
+
+	public String getTenantName() {
+		return tenantName;
+	}
+
+	public void setTenantName(String tenantName) {
+		this.tenantName = tenantName;
+	}
+
+	public String getPlanId() {
+		return planId;
+	}
+
+	public void setPlanId(String planId) {
+		this.planId = planId;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public String getInstanceId() {
+		return instanceId;
+	}
+
+	public void setInstanceId(String instanceId) {
+		this.instanceId = instanceId;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public Date getClaimedAt() {
+		return claimedAt;
+	}
+
+	public void setClaimedAt(Date claimedAt) {
+		this.claimedAt = claimedAt;
+	}
+
+	/**
+	 * @return project 생성 시 설정한 quota. 기록되지 않은 경우 0
+	 */
+	public long getQuotaBytes() {
+		return quotaBytes;
+	}
+
+	public void setQuotaBytes(long quotaBytes) {
+		this.quotaBytes = quotaBytes;
+	}
+
+	public boolean isReady() {
+		return STATUS_READY.equals(status);
+	}
+
+}
@@ -0,0 +1,160 @@
+package org.openpaas.servicebroker.glusterfs.model;
+
+import java.util.Date;
+
+
+/**
+ * plan 의 모든 인스턴스에 quota 를 다시 설정하는 작업 정보. gfbroker.quota_job 테이블에 저장된다.
+ * checkpoint 는 처리가 끝난 마지막 instance_id 로, 작업을 이어서 실행할 때 그 다음 인스턴스부터 처리한다.
+ * running 상태의 작업은 owner 브로커가 진행 상황을 기록할 때마다 updated_at 이 갱신된다.
+ */
+public class GlusterfsQuotaJob {
+
+	public static final String STATE_PENDING = "pending";
+	public static final String STATE_RUNNING = "running";
+	public static final String STATE_COMPLETED = "completed";
+	public static final String STATE_FAILED = "failed";
+	public static final String STATE_CANCELLED = "cancelled";
+
+	private String jobId;
+
+	private String planId;
+
+	private long quotaBytes;
+
+	private String state;
+
+	private String owner;
+
+	private String checkpoint;
+
+	private int total;
+
+	private int processed;
+
+	private int failed;
+
+	private String description;
+
+	private Date createdAt;
+
+	private Date updatedAt;
+
+	public GlusterfsQuotaJob(){}
+
+	public GlusterfsQuotaJob(GlusterfsQuotaJob job){
+		this.jobId = job.jobId;
+		this.planId = job.planId;
+		this.quotaBytes = job.quotaBytes;
+		this.state = job.state;
+		this.owner = job.owner;
+		this.checkpoint = job.checkpoint;
+		this.total = job.total;
+		this.processed = job.processed;
+		this.failed = job.failed;
+		this.description = job.description;
+		this.createdAt = job.createdAt;
+		this.updatedAt = job.updatedAt;
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public void setJobId(String jobId) {
+		this.jobId = jobId;
+	}
+
+	public String getPlanId() {
+		return planId;
+	}
+
+	public void setPlanId(String planId) {
+		this.planId = planId;
+	}
+
+	public long getQuotaBytes() {
+		return quotaBytes;
+	}
+
+	public void setQuotaBytes(long quotaBytes) {
+		this.quotaBytes = quotaBytes;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public void setState(String state) {
+		this.state = state;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+
+	public String getCheckpoint() {
+		return checkpoint;
+	}
+
+	public void setCheckpoint(String checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public void setTotal(int total) {
+		this.total = total;
+	}
+
+	public int getProcessed() {
+		return processed;
+	}
+
+	public void setProcessed(int processed) {
+		this.processed = processed;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	public void setFailed(int failed) {
+		this.failed = failed;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public Date getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(Date updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+
+	public boolean isActive() {
+		return STATE_PENDING.equals(state) || STATE_RUNNING.equals(state);
+	}
+
+}
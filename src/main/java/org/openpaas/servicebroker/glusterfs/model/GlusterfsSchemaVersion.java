@@ -0,0 +1,87 @@
+package org.openpaas.servicebroker.glusterfs.model;
+
+import java.util.Date;
+
+
+/**
+ * 스키마 마이그레이션 버전 정보. 적용된 버전은 gfbroker.schema_version 테이블에 저장된다.
+ */
+public class GlusterfsSchemaVersion {
+
+	public static final String STATE_APPLIED = "applied";
+	public static final String STATE_PENDING = "pending";
+	public static final String STATE_FAILED = "failed";
+
+	private int version;
+
+	private String description;
+
+	private String script;
+
+	private Long checksum;
+
+	private Date installedAt;
+
+	private Long executionTime;
+
+	private String state;
+
+	public GlusterfsSchemaVersion(){}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	public String getScript() {
+		return script;
+	}
+
+	public void setScript(String script) {
+		this.script = script;
+	}
+
+	public Long getChecksum() {
+		return checksum;
+	}
+
+	public void setChecksum(Long checksum) {
+		this.checksum = checksum;
+	}
+
+	public Date getInstalledAt() {
+		return installedAt;
+	}
+
+	public void setInstalledAt(Date installedAt) {
+		this.installedAt = installedAt;
+	}
+
+	public Long getExecutionTime() {
+		return executionTime;
+	}
+
+	public void setExecutionTime(Long executionTime) {
+		this.executionTime = executionTime;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public void setState(String state) {
+		this.state = state;
+	}
+
+}
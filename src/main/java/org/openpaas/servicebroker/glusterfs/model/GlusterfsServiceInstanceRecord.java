@@ -0,0 +1,110 @@
+package org.openpaas.servicebroker.glusterfs.model;
+
+import org.openpaas.servicebroker.model.CreateServiceInstanceRequest;
+import org.openpaas.servicebroker.model.ServiceInstance;
+
+
+/**
+ * gfbroker.service_instances 레코드 전체(서비스 인스턴스 + Tenant 정보).
+ * 한번의 조회로 ServiceInstance 정보와 Tenant 정보를 함께 사용하기 위해 GlusterfsServiceInstance 에 plan/org/space 정보를 추가한 클래스.
+ */
+public class GlusterfsServiceInstanceRecord extends GlusterfsServiceInstance {
+
+	/** 비동기 Deprovision 진행중 */
+	public static final String STATUS_DELETING = "deleting";
+
+	private String serviceDefinitionId;
+
+	private String planId;
+
+	private String organizationGuid;
+
+	private String spaceGuid;
+
+	private String status;
+
+	public GlusterfsServiceInstanceRecord(){}
+
+	public GlusterfsServiceInstanceRecord(GlusterfsServiceInstanceRecord record){
+		setServiceInstanceId(record.getServiceInstanceId());
+		setTenantName(record.getTenantName());
+		setTenantId(record.getTenantId());
+		this.serviceDefinitionId = record.serviceDefinitionId;
+		this.planId = record.planId;
+		this.organizationGuid = record.organizationGuid;
+		this.spaceGuid = record.spaceGuid;
+		this.status = record.status;
+	}
+
+	public GlusterfsServiceInstanceRecord(ServiceInstance serviceInstance, GlusterfsServiceInstance gf){
+		setServiceInstanceId(serviceInstance.getServiceInstanceId());
+		setTenantName(gf.getTenantName());
+		setTenantId(gf.getTenantId());
+		this.serviceDefinitionId = serviceInstance.getServiceDefinitionId();
+		this.planId = serviceInstance.getPlanId();
+		this.organizationGuid = serviceInstance.getOrganizationGuid();
+		this.spaceGuid = serviceInstance.getSpaceGuid();
+	}
+
+	public String getServiceDefinitionId() {
+		return serviceDefinitionId;
+	}
+
+	public void setServiceDefinitionId(String serviceDefinitionId) {
+		this.serviceDefinitionId = serviceDefinitionId;
+	}
+
+	public String getPlanId() {
+		return planId;
+	}
+
+	public void setPlanId(String planId) {
+		this.planId = planId;
+	}
+
+	public String getOrganizationGuid() {
+		return organizationGuid;
+	}
+
+	public void setOrganizationGuid(String organizationGuid) {
+		this.organizationGuid = organizationGuid;
+	}
+
+	public String getSpaceGuid() {
+		return spaceGuid;
+	}
+
+	public void setSpaceGuid(String spaceGuid) {
+		this.spaceGuid = spaceGuid;
+	}
+
+	/**
+	 * @return 삭제중인 경우 deleting, 그 외 null
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public boolean isDeleting() {
+		return STATUS_DELETING.equals(status);
+	}
+
+	/**
+	 * 레코드 정보로 ServiceInstance 를 생성합니다.
+	 * @return
+	 */
+	public ServiceInstance toServiceInstance() {
+		CreateServiceInstanceRequest request = new CreateServiceInstanceRequest();
+		request.withServiceInstanceId(getServiceInstanceId());
+		request.setServiceDefinitionId(serviceDefinitionId);
+		request.setPlanId(planId);
+		request.setOrganizationGuid(organizationGuid);
+		request.setSpaceGuid(spaceGuid);
+		return new ServiceInstance(request);
+	}
+
+}
@@ -0,0 +1,119 @@
+package org.openpaas.servicebroker.glusterfs.model;
+
+import java.util.Date;
+
+
+/**
+ * 비동기로 처리되는 서비스 인스턴스/바인딩 작업 정보. gfbroker.service_operation 테이블에 저장된다.
+ * state 는 OSB last_operation 응답의 state 값(in progress, succeeded, failed)을 그대로 사용한다.
+ */
+public class GlusterfsServiceOperation {
+
+	public static final String STATE_IN_PROGRESS = "in progress";
+	public static final String STATE_SUCCEEDED = "succeeded";
+	public static final String STATE_FAILED = "failed";
+
+	public static final String TYPE_PROVISION = "provision";
+	public static final String TYPE_DEPROVISION = "deprovision";
+	public static final String TYPE_UNBIND = "unbind";
+
+	private String operationId;
+
+	private String instanceId;
+
+	private String bindingId;
+
+	private String operationType;
+
+	private String state;
+
+	private String description;
+
+	private String owner;
+
+	private Date createdAt;
+
+	private Date updatedAt;
+
+	public GlusterfsServiceOperation(){}
+
+	public String getOperationId() {
+		return operationId;
+	}
+
+	public void setOperationId(String operationId) {
+		this.operationId = operationId;
+	}
+
+	public String getInstanceId() {
+		return instanceId;
+	}
+
+	public void setInstanceId(String instanceId) {
+		this.instanceId = instanceId;
+	}
+
+	public String getBindingId() {
+		return bindingId;
+	}
+
+	public void setBindingId(String bindingId) {
+		this.bindingId = bindingId;
+	}
+
+	public String getOperationType() {
+		return operationType;
+	}
+
+	public void setOperationType(String operationType) {
+		this.operationType = operationType;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public void setState(String state) {
+		this.state = state;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	/**
+	 * @return 작업을 실행하는 브로커
+	 */
+	public String getOwner() {
+		return owner;
+	}
+
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public Date getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(Date updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+
+	public boolean isInProgress() {
+		return STATE_IN_PROGRESS.equals(state);
+	}
+
+}
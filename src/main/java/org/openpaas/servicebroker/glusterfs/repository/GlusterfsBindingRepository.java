@@ -0,0 +1,49 @@
+package org.openpaas.servicebroker.glusterfs.repository;
+
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsRecordCache.BindingRecord;
+import org.openpaas.servicebroker.model.ServiceInstanceBinding;
+
+/**
+ * 서비스 바인딩(service_binding) 저장소.
+ */
+public interface GlusterfsBindingRepository {
+
+	/**
+	 * @param bindingId
+	 * @return 없을 경우 null
+	 */
+	BindingRecord findBinding(String bindingId);
+
+	/**
+	 * 바인딩 시 생성한 keystone 사용자 ID를 조회합니다.
+	 * @param bindingId
+	 * @return 바인딩이 없거나 사용자 ID가 저장되지 않은 이전 바인딩의 경우 null
+	 */
+	String findBindingUserId(String bindingId);
+
+	/**
+	 * 바인딩 정보를 저장합니다. 이미 있는 경우 덮어씁니다.
+	 * @param binding
+	 * @param userId keystone 사용자 ID
+	 */
+	void saveBinding(ServiceInstanceBinding binding, String userId);
+
+	/**
+	 * 바인딩을 삭제중 상태로 표시합니다.
+	 * @param bindingId
+	 */
+	void markBindingDeleting(String bindingId);
+
+	void deleteBinding(String bindingId);
+
+	/**
+	 * 인스턴스의 바인딩을 binding_id 순으로 조회합니다.
+	 * @param instanceId
+	 * @param after 이전 페이지의 마지막 binding_id (첫 페이지는 null)
+	 * @param pageSize
+	 * @param handler
+	 * @return 다음 페이지 조회에 사용할 after 값. 마지막 페이지인 경우 null
+	 */
+	String listBindings(String instanceId, String after, int pageSize, GlusterfsRecordHandler<BindingRecord> handler);
+
+}
@@ -0,0 +1,53 @@
+package org.openpaas.servicebroker.glusterfs.repository;
+
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+
+/**
+ * 서비스 인스턴스(service_instances) 저장소.
+ * 기본 구현은 MariaDB(GlusterfsJdbcRepository)이며, memory 프로파일에서는 GlusterfsMemoryRepository 를 사용한다.
+ */
+public interface GlusterfsInstanceRepository {
+
+	/**
+	 * @param instanceId
+	 * @return 없을 경우 null
+	 */
+	GlusterfsServiceInstanceRecord findInstance(String instanceId);
+
+	/**
+	 * 인스턴스 정보를 저장합니다. 이미 있는 경우 덮어씁니다.
+	 * @param record
+	 */
+	void saveInstance(GlusterfsServiceInstanceRecord record);
+
+	void updateInstancePlan(String instanceId, String serviceId, String planId, String organizationGuid, String spaceGuid);
+
+	/**
+	 * 인스턴스를 삭제중 상태로 표시합니다.
+	 * @param instanceId
+	 */
+	void markInstanceDeleting(String instanceId);
+
+	void deleteInstance(String instanceId);
+
+	/**
+	 * plan 의 인스턴스 수를 조회합니다.
+	 * @param planId
+	 * @return
+	 */
+	int countInstances(String planId);
+
+	/**
+	 * 조건에 해당하는 인스턴스를 instance_id 순으로 조회합니다. 조건이 null 인 경우 사용하지 않습니다.
+	 * @param organizationGuid
+	 * @param spaceGuid
+	 * @param planId
+	 * @param after 이전 페이지의 마지막 instance_id (첫 페이지는 null)
+	 * @param pageSize
+	 * @param handler
+	 * @return 다음 페이지 조회에 사용할 after 값. 마지막 페이지인 경우 null
+	 */
+	String listInstances(String organizationGuid, String spaceGuid, String planId, String after, int pageSize,
+			GlusterfsRecordHandler<GlusterfsServiceInstanceRecord> handler);
+
+}
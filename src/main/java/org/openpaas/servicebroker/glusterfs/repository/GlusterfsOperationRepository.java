@@ -0,0 +1,53 @@
+package org.openpaas.servicebroker.glusterfs.repository;
+
+import java.util.Collection;
+import java.util.Date;
+
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceOperation;
+
+/**
+ * 비동기 작업(service_operation) 저장소.
+ */
+public interface GlusterfsOperationRepository {
+
+	void saveOperation(GlusterfsServiceOperation operation);
+
+	void updateOperationState(String operationId, String state, String description);
+
+	/**
+	 * @param operationId
+	 * @return 없을 경우 null
+	 */
+	GlusterfsServiceOperation findOperation(String operationId);
+
+	/**
+	 * 가장 최근의 서비스 인스턴스 작업(binding_id 가 없는 작업)을 조회합니다.
+	 * @param instanceId
+	 * @return 없을 경우 null
+	 */
+	GlusterfsServiceOperation findLastOperationByInstanceId(String instanceId);
+
+	/**
+	 * @param bindingId
+	 * @return 없을 경우 null
+	 */
+	GlusterfsServiceOperation findLastOperationByBindingId(String bindingId);
+
+	/**
+	 * 이 브로커에서 실행중인 작업의 진행 시각(updated_at)을 갱신합니다.
+	 * @param operationIds
+	 * @param owner
+	 * @param now
+	 * @return 갱신된 작업 수
+	 */
+	int touchOperations(Collection<String> operationIds, String owner, Date now);
+
+	/**
+	 * staleBefore 이후 진행 시각이 갱신되지 않은(실행하던 브로커가 종료된) 진행중 작업을 실패 처리합니다.
+	 * @param staleBefore
+	 * @param description
+	 * @return 실패 처리된 작업 수
+	 */
+	int failStaleOperations(Date staleBefore, String description);
+
+}
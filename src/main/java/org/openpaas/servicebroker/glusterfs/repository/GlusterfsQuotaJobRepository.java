@@ -0,0 +1,75 @@
+package org.openpaas.servicebroker.glusterfs.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsQuotaJob;
+
+/**
+ * quota 재적용 작업(quota_job) 저장소.
+ * 작업은 acquireQuotaJob 으로 할당받은 브로커(owner)만 진행 상황을 기록할 수 있다.
+ */
+public interface GlusterfsQuotaJobRepository {
+
+	/**
+	 * pending 상태로 추가합니다. 여러 브로커가 동시에 요청해도 plan 별로 진행중(pending/running)인 작업은 하나만 추가됩니다.
+	 * @param job
+	 * @return plan 의 진행중인 작업이 있어 추가하지 않은 경우 false
+	 */
+	boolean addQuotaJob(GlusterfsQuotaJob job);
+
+	/**
+	 * @param jobId
+	 * @return 없을 경우 null
+	 */
+	GlusterfsQuotaJob findQuotaJob(String jobId);
+
+	/**
+	 * plan 의 pending / running 상태 작업을 조회합니다.
+	 * @param planId
+	 * @return 없을 경우 null
+	 */
+	GlusterfsQuotaJob findActiveQuotaJob(String planId);
+
+	/**
+	 * 이어서 실행할 작업(pending 상태이거나, staleBefore 이후 진행 기록이 없는 running 상태)을 조회합니다.
+	 * @param staleBefore
+	 * @return
+	 */
+	List<GlusterfsQuotaJob> findResumableQuotaJobs(Date staleBefore);
+
+	/**
+	 * 작업을 running 상태로 바꾸고 owner 를 기록합니다.
+	 * 여러 브로커가 동시에 요청해도 하나의 브로커만 할당받습니다.
+	 * @param jobId
+	 * @param owner
+	 * @param staleBefore 이 시각 이후 진행 기록이 있는 running 상태 작업은 할당하지 않습니다.
+	 * @return 할당받은 경우 true
+	 */
+	boolean acquireQuotaJob(String jobId, String owner, Date staleBefore);
+
+	/**
+	 * 진행 상황을 기록합니다.
+	 * @param jobId
+	 * @param owner
+	 * @param checkpoint 처리가 끝난 마지막 instance_id
+	 * @param processed
+	 * @param failed
+	 * @return 작업이 취소되었거나 다른 브로커가 할당받은 경우 false
+	 */
+	boolean updateQuotaJobProgress(String jobId, String owner, String checkpoint, int processed, int failed);
+
+	/**
+	 * 작업을 completed / failed 상태로 끝냅니다.
+	 * @return 작업이 취소되었거나 다른 브로커가 할당받은 경우 false
+	 */
+	boolean finishQuotaJob(String jobId, String owner, String state, String description);
+
+	/**
+	 * pending / running 상태의 작업을 취소합니다.
+	 * @param jobId
+	 * @return 취소한 경우 true
+	 */
+	boolean cancelQuotaJob(String jobId);
+
+}
@@ -0,0 +1,11 @@
+package org.openpaas.servicebroker.glusterfs.repository;
+
+/**
+ * 목록 조회 결과를 한 건씩 처리하는 콜백.
+ * 예외를 던지면 조회를 중단합니다.
+ */
+public interface GlusterfsRecordHandler<T> {
+
+	void handle(T record);
+
+}
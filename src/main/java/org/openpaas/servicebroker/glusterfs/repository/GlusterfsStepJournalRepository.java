@@ -0,0 +1,29 @@
+package org.openpaas.servicebroker.glusterfs.repository;
+
+import java.util.List;
+
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsOperationStep;
+
+/**
+ * provision / bind / plan 변경 단계 기록(operation_step) 저장소.
+ */
+public interface GlusterfsStepJournalRepository {
+
+	/**
+	 * @param flowType
+	 * @param flowId
+	 * @return 완료된 단계 목록. 없을 경우 빈 목록
+	 */
+	List<GlusterfsOperationStep> findSteps(String flowType, String flowId);
+
+	/**
+	 * 완료된 단계를 저장합니다. 같은 단계가 이미 있으면 덮어씁니다.
+	 * @param step
+	 */
+	void saveStep(GlusterfsOperationStep step);
+
+	void deleteStep(String flowType, String flowId, String step);
+
+	void deleteSteps(String flowType, String flowId);
+
+}
@@ -0,0 +1,39 @@
+package org.openpaas.servicebroker.glusterfs.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsPooledTenant;
+
+/**
+ * 미리 생성해 둔 Keystone project(tenant_pool) 저장소.
+ */
+public interface GlusterfsTenantPoolRepository {
+
+	/**
+	 * ready 상태로 추가합니다.
+	 * @param tenant
+	 */
+	void addPooledTenant(GlusterfsPooledTenant tenant);
+
+	/**
+	 * plan 의 ready 상태 project 하나를 claimed 상태로 바꾸어 반환합니다.
+	 * 여러 브로커가 동시에 요청해도 하나의 project 는 한 인스턴스에만 할당됩니다.
+	 * @param planId
+	 * @param instanceId
+	 * @return ready 상태 project 가 없는 경우 null
+	 */
+	GlusterfsPooledTenant claimPooledTenant(String planId, String instanceId);
+
+	void deletePooledTenant(String tenantId);
+
+	int countReadyTenants(String planId);
+
+	/**
+	 * claimedBefore 이전에 claimed 상태가 된 project 를 조회합니다.
+	 * @param claimedBefore
+	 * @return
+	 */
+	List<GlusterfsPooledTenant> findClaimedTenants(Date claimedBefore);
+
+}
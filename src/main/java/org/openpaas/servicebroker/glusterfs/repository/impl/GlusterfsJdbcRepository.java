@@ -0,0 +1,662 @@
+package org.openpaas.servicebroker.glusterfs.repository.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsReadContext;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsReadRouter;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsReadRouter.ReadCallback;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsOperationStep;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsPooledTenant;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsQuotaJob;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceOperation;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsBindingRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsInstanceRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsOperationRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsQuotaJobRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsRecordHandler;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsStepJournalRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsTenantPoolRepository;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsRecordCache.BindingRecord;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsWriteCoalescer;
+import org.openpaas.servicebroker.model.ServiceInstanceBinding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.stereotype.Repository;
+
+/**
+ * gfbroker(MariaDB) 저장소 구현.
+ * service_instances / service_binding upsert 는 GlusterfsWriteCoalescer 를 통해 실행한다.
+ * 목록 조회는 PK 기준 keyset 으로 한 페이지씩 조회하며 RowCallbackHandler 로 한 건씩 전달한다.
+ * 조회는 GlusterfsReadRouter 를 통해 replica 로 보낼 수 있으며, 쓰기를 수행한 스레드의 이후 조회는 primary 를 사용한다.
+ * tenant_pool / quota_job 은 여러 브로커가 동시에 할당하므로, operation_step 은 재시도 시 직전 기록을 확인해야 하므로 항상 primary 에서 조회한다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Profile("!memory")
+@Repository
+public class GlusterfsJdbcRepository implements GlusterfsInstanceRepository, GlusterfsBindingRepository, GlusterfsOperationRepository,
+		GlusterfsTenantPoolRepository, GlusterfsStepJournalRepository, GlusterfsQuotaJobRepository {
+
+	// 동시에 할당을 시도한 다른 브로커와 겹치지 않도록 후보를 여러 건 조회합니다.
+	private static final int CLAIM_CANDIDATES = 5;
+
+	private static final int CLAIM_ATTEMPTS = 3;
+
+	public static final String SERVICE_INSTANCES_FILDS = "instance_id, service_id, plan_id, organization_guid, space_guid, tenant_name, tenant_id";
+
+	public static final String SERVICE_INSTANCES_FIND_BY_INSTANCE_ID = "select " + SERVICE_INSTANCES_FILDS + ", status from gfbroker.service_instances where instance_id = ?";
+
+	public static final String SERVICE_INSTANCES_DELETE_BY_INSTANCE_ID = "delete from gfbroker.service_instances where instance_id = ?";
+
+	public static final String SERVICE_INSTANCES_UPSERT_FILDS = "ON DUPLICATE KEY UPDATE instance_id = ?, service_id = ?, plan_id = ?, organization_guid = ?, space_guid = ?, tenant_name = ?, tenant_id = ?, status = NULL";
+
+	public static final String SERVICE_INSTANCES_ADD = "insert into gfbroker.service_instances("+SERVICE_INSTANCES_FILDS+") values(?,?,?,?,?,?,?) "+ SERVICE_INSTANCES_UPSERT_FILDS;
+
+	public static final String SERVICE_INSTANCES_MARK_DELETING = "UPDATE gfbroker.service_instances SET status = 'deleting' where instance_id = ?";
+
+	public static final String SERVICE_INSTANCES_UPDATE_FILDS = "UPDATE gfbroker.service_instances SET service_id = ?, plan_id = ?, organization_guid = ?, space_guid = ? where instance_id = ?";
+
+	public static final String SERVICE_INSTANCES_COUNT_BY_PLAN_ID = "select count(*) from gfbroker.service_instances where plan_id = ?";
+
+	public static final String SERVICE_INSTANCES_LIST = "select " + SERVICE_INSTANCES_FILDS + ", status from gfbroker.service_instances where ";
+
+	public static final String SERVICE_INSTANCES_LIST_ORDER = "instance_id > ? order by instance_id limit ?";
+
+	public static final String SERVICE_BINDING_FILDS ="binding_id, instance_id, app_id, username, password, user_id";
+
+	public static final String SERVICE_BINDING_UPSERT_FILDS = "ON DUPLICATE KEY UPDATE instance_id = ?, app_id = ? ,username = ?, password = ?, user_id = ?, status = NULL";
+
+	public static final String SERVICE_BINDING_ADD = "insert into gfbroker.service_binding("+SERVICE_BINDING_FILDS+") values(?,?,?,?,?,?) "+ SERVICE_BINDING_UPSERT_FILDS;
+
+	public static final String SERVICE_BINDING_FIND_BY_BINDING_ID = "select " + SERVICE_BINDING_FILDS + ", status from gfbroker.service_binding where binding_id = ?";
+
+	public static final String SERVICE_BINDING_DELETE_BY_BINDING_ID = "delete from gfbroker.service_binding where binding_id = ?";
+
+	public static final String SERVICE_BINDING_MARK_DELETING = "UPDATE gfbroker.service_binding SET status = 'deleting' where binding_id = ?";
+
+	public static final String SERVICE_BINDING_FIND_USER_ID_BY_BINDING_ID = "select user_id from gfbroker.service_binding where binding_id = ?";
+
+	public static final String SERVICE_BINDING_LIST_BY_INSTANCE_ID = "select binding_id, instance_id, app_id, user_id from gfbroker.service_binding where instance_id = ? and binding_id > ? order by binding_id limit ?";
+
+	public static final String SERVICE_OPERATION_FILDS = "operation_id, instance_id, binding_id, operation_type, state, description, created_at, updated_at";
+
+	public static final String SERVICE_OPERATION_ADD = "insert into gfbroker.service_operation("+SERVICE_OPERATION_FILDS+", owner) values(?,?,?,?,?,?,current_timestamp,?,?)";
+
+	public static final String SERVICE_OPERATION_UPDATE_STATE = "update gfbroker.service_operation set state = ?, description = ?, updated_at = current_timestamp where operation_id = ?";
+
+	public static final String SERVICE_OPERATION_FIND_BY_OPERATION_ID = "select " + SERVICE_OPERATION_FILDS + " from gfbroker.service_operation where operation_id = ?";
+
+	public static final String SERVICE_OPERATION_FIND_LAST_BY_INSTANCE_ID = "select " + SERVICE_OPERATION_FILDS + " from gfbroker.service_operation where instance_id = ? and binding_id is null order by created_at desc limit 1";
+
+	public static final String SERVICE_OPERATION_FIND_LAST_BY_BINDING_ID = "select " + SERVICE_OPERATION_FILDS + " from gfbroker.service_operation where binding_id = ? order by created_at desc limit 1";
+
+	public static final String SERVICE_OPERATION_TOUCH = "update gfbroker.service_operation set updated_at = ? where operation_id = ? and owner = ? and state = 'in progress'";
+
+	public static final String SERVICE_OPERATION_FAIL_STALE = "update gfbroker.service_operation set state = 'failed', description = ?, updated_at = ? where state = 'in progress' and updated_at < ?";
+
+	public static final String TENANT_POOL_FILDS = "tenant_id, tenant_name, plan_id, status, instance_id, created_at, claimed_at, quota_bytes";
+
+	public static final String TENANT_POOL_ADD = "insert into gfbroker.tenant_pool(tenant_id, tenant_name, plan_id, quota_bytes, status, created_at) values(?,?,?,?,'ready',current_timestamp)";
+
+	public static final String TENANT_POOL_FIND_READY = "select " + TENANT_POOL_FILDS + " from gfbroker.tenant_pool where plan_id = ? and status = 'ready' order by created_at limit ?";
+
+	public static final String TENANT_POOL_CLAIM = "update gfbroker.tenant_pool set status = 'claimed', instance_id = ?, claimed_at = ? where tenant_id = ? and status = 'ready'";
+
+	public static final String TENANT_POOL_DELETE = "delete from gfbroker.tenant_pool where tenant_id = ?";
+
+	public static final String TENANT_POOL_COUNT_READY = "select count(*) from gfbroker.tenant_pool where plan_id = ? and status = 'ready'";
+
+	public static final String TENANT_POOL_FIND_CLAIMED = "select " + TENANT_POOL_FILDS + " from gfbroker.tenant_pool where status = 'claimed' and claimed_at < ?";
+
+	public static final String OPERATION_STEP_FILDS = "flow_type, flow_id, step, request_key, data, created_at";
+
+	public static final String OPERATION_STEP_ADD = "insert into gfbroker.operation_step(flow_type, flow_id, step, request_key, data, created_at) values(?,?,?,?,?,current_timestamp) ON DUPLICATE KEY UPDATE request_key = ?, data = ?, created_at = current_timestamp";
+
+	public static final String OPERATION_STEP_FIND = "select " + OPERATION_STEP_FILDS + " from gfbroker.operation_step where flow_type = ? and flow_id = ? order by created_at";
+
+	public static final String OPERATION_STEP_DELETE = "delete from gfbroker.operation_step where flow_type = ? and flow_id = ? and step = ?";
+
+	public static final String OPERATION_STEP_DELETE_ALL = "delete from gfbroker.operation_step where flow_type = ? and flow_id = ?";
+
+	public static final String QUOTA_JOB_FILDS = "job_id, plan_id, quota_bytes, state, owner, checkpoint, total, processed, failed, description, created_at, updated_at";
+
+	public static final String QUOTA_JOB_ADD = "insert into gfbroker.quota_job(job_id, plan_id, active_plan_id, quota_bytes, state, total, processed, failed, created_at, updated_at) values(?,?,?,?,'pending',?,0,0,?,?)";
+
+	public static final String QUOTA_JOB_FIND_BY_JOB_ID = "select " + QUOTA_JOB_FILDS + " from gfbroker.quota_job where job_id = ?";
+
+	public static final String QUOTA_JOB_FIND_ACTIVE = "select " + QUOTA_JOB_FILDS + " from gfbroker.quota_job where plan_id = ? and state in ('pending', 'running') order by created_at limit 1";
+
+	public static final String QUOTA_JOB_FIND_RESUMABLE = "select " + QUOTA_JOB_FILDS + " from gfbroker.quota_job where state = 'pending' or (state = 'running' and updated_at < ?) order by created_at";
+
+	public static final String QUOTA_JOB_ACQUIRE = "update gfbroker.quota_job set state = 'running', owner = ?, updated_at = ? where job_id = ? and (state = 'pending' or (state = 'running' and updated_at < ?))";
+
+	public static final String QUOTA_JOB_UPDATE_PROGRESS = "update gfbroker.quota_job set checkpoint = ?, processed = ?, failed = ?, updated_at = ? where job_id = ? and owner = ? and state = 'running'";
+
+	public static final String QUOTA_JOB_FINISH = "update gfbroker.quota_job set state = ?, description = ?, active_plan_id = null, updated_at = ? where job_id = ? and owner = ? and state = 'running'";
+
+	public static final String QUOTA_JOB_CANCEL = "update gfbroker.quota_job set state = 'cancelled', active_plan_id = null, updated_at = ? where job_id = ? and state in ('pending', 'running')";
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private GlusterfsReadRouter glusterfsReadRouter;
+
+	@Autowired
+	private GlusterfsWriteCoalescer glusterfsWriteCoalescer;
+
+	private int fetchSize;
+
+	private final RowMapper<GlusterfsServiceInstanceRecord> mapper = new GlusterfsServiceInstanceRecordRowMapper();
+
+	private final RowMapper<BindingRecord> mapper2 = new BindingRecordRowMapper();
+
+	private final RowMapper<GlusterfsServiceOperation> mapper4 = new GlusterfsServiceOperationRowMapper();
+
+	private final RowMapper<GlusterfsPooledTenant> mapper5 = new GlusterfsPooledTenantRowMapper();
+
+	private final RowMapper<GlusterfsOperationStep> mapper6 = new GlusterfsOperationStepRowMapper();
+
+	private final RowMapper<GlusterfsQuotaJob> mapper7 = new GlusterfsQuotaJobRowMapper();
+
+	@PostConstruct
+	public void init() {
+		// 목록 조회 시 fetchsize 단위로 행을 받아 드라이버가 페이지 전체를 메모리에 올리지 않도록 합니다.
+		fetchSize = env.getProperty("glusterfs.listing.fetchsize", Integer.class, 100);
+	}
+
+	@Override
+	public GlusterfsServiceInstanceRecord findInstance(String instanceId) {
+		return queryForObject(SERVICE_INSTANCES_FIND_BY_INSTANCE_ID, mapper, instanceId);
+	}
+
+	@Override
+	public void saveInstance(GlusterfsServiceInstanceRecord record) {
+		glusterfsWriteCoalescer.update(SERVICE_INSTANCES_ADD,
+				record.getServiceInstanceId(),
+				record.getServiceDefinitionId(),
+				record.getPlanId(),
+				record.getOrganizationGuid(),
+				record.getSpaceGuid(),
+				record.getTenantName(),
+				record.getTenantId(),
+				record.getServiceInstanceId(),
+				record.getServiceDefinitionId(),
+				record.getPlanId(),
+				record.getOrganizationGuid(),
+				record.getSpaceGuid(),
+				record.getTenantName(),
+				record.getTenantId());
+		written();
+	}
+
+	@Override
+	public void updateInstancePlan(String instanceId, String serviceId, String planId, String organizationGuid, String spaceGuid) {
+		jdbcTemplate.update(SERVICE_INSTANCES_UPDATE_FILDS, serviceId, planId, organizationGuid, spaceGuid, instanceId);
+		written();
+	}
+
+	@Override
+	public void markInstanceDeleting(String instanceId) {
+		jdbcTemplate.update(SERVICE_INSTANCES_MARK_DELETING, instanceId);
+		written();
+	}
+
+	@Override
+	public void deleteInstance(String instanceId) {
+		jdbcTemplate.update(SERVICE_INSTANCES_DELETE_BY_INSTANCE_ID, instanceId);
+		written();
+	}
+
+	@Override
+	public int countInstances(String planId) {
+		Integer count = queryForObject(SERVICE_INSTANCES_COUNT_BY_PLAN_ID, new SingleColumnRowMapper<Integer>(Integer.class), planId);
+		return count == null ? 0 : count;
+	}
+
+	@Override
+	public String listInstances(String organizationGuid, String spaceGuid, String planId, String after, int pageSize,
+			final GlusterfsRecordHandler<GlusterfsServiceInstanceRecord> handler) {
+		StringBuilder sql = new StringBuilder(SERVICE_INSTANCES_LIST);
+		List<Object> args = new ArrayList<Object>();
+		if (organizationGuid != null) {
+			sql.append("organization_guid = ? and ");
+			args.add(organizationGuid);
+		}
+		if (spaceGuid != null) {
+			sql.append("space_guid = ? and ");
+			args.add(spaceGuid);
+		}
+		if (planId != null) {
+			sql.append("plan_id = ? and ");
+			args.add(planId);
+		}
+		sql.append(SERVICE_INSTANCES_LIST_ORDER);
+		args.add(after == null ? "" : after);
+		args.add(pageSize);
+
+		final Page page = new Page();
+		stream(sql.toString(), args.toArray(), new RowCallbackHandler() {
+			@Override
+			public void processRow(ResultSet rs) throws SQLException {
+				GlusterfsServiceInstanceRecord record = mapper.mapRow(rs, page.count);
+				handler.handle(record);
+				page.add(record.getServiceInstanceId());
+			}
+		});
+		return page.next(pageSize);
+	}
+
+	@Override
+	public BindingRecord findBinding(String bindingId) {
+		return queryForObject(SERVICE_BINDING_FIND_BY_BINDING_ID, mapper2, bindingId);
+	}
+
+	@Override
+	public String findBindingUserId(String bindingId) {
+		return queryForObject(SERVICE_BINDING_FIND_USER_ID_BY_BINDING_ID, new SingleColumnRowMapper<String>(String.class), bindingId);
+	}
+
+	@Override
+	public void saveBinding(ServiceInstanceBinding binding, String userId) {
+		glusterfsWriteCoalescer.update(SERVICE_BINDING_ADD,
+				binding.getId(),
+				binding.getServiceInstanceId(),
+				binding.getAppGuid(),
+				binding.getCredentials().get("username"),
+				binding.getCredentials().get("password"),
+				userId,
+				binding.getServiceInstanceId(),
+				binding.getAppGuid(),
+				binding.getCredentials().get("username"),
+				binding.getCredentials().get("password"),
+				userId);
+		written();
+	}
+
+	@Override
+	public void markBindingDeleting(String bindingId) {
+		jdbcTemplate.update(SERVICE_BINDING_MARK_DELETING, bindingId);
+		written();
+	}
+
+	@Override
+	public void deleteBinding(String bindingId) {
+		jdbcTemplate.update(SERVICE_BINDING_DELETE_BY_BINDING_ID, bindingId);
+		written();
+	}
+
+	@Override
+	public String listBindings(String instanceId, String after, int pageSize, final GlusterfsRecordHandler<BindingRecord> handler) {
+		final Page page = new Page();
+		stream(SERVICE_BINDING_LIST_BY_INSTANCE_ID, new Object[] { instanceId, after == null ? "" : after, pageSize }, new RowCallbackHandler() {
+			@Override
+			public void processRow(ResultSet rs) throws SQLException {
+				BindingRecord record = new BindingRecord(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4));
+				handler.handle(record);
+				page.add(record.getBindingId());
+			}
+		});
+		return page.next(pageSize);
+	}
+
+	@Override
+	public void saveOperation(GlusterfsServiceOperation operation) {
+		jdbcTemplate.update(SERVICE_OPERATION_ADD,
+				operation.getOperationId(),
+				operation.getInstanceId(),
+				operation.getBindingId(),
+				operation.getOperationType(),
+				operation.getState(),
+				operation.getDescription(),
+				new Date(),
+				operation.getOwner());
+		written();
+	}
+
+	@Override
+	public void updateOperationState(String operationId, String state, String description) {
+		jdbcTemplate.update(SERVICE_OPERATION_UPDATE_STATE, state, description, operationId);
+		written();
+	}
+
+	@Override
+	public GlusterfsServiceOperation findOperation(String operationId) {
+		return queryOperation(SERVICE_OPERATION_FIND_BY_OPERATION_ID, operationId);
+	}
+
+	@Override
+	public GlusterfsServiceOperation findLastOperationByInstanceId(String instanceId) {
+		return queryOperation(SERVICE_OPERATION_FIND_LAST_BY_INSTANCE_ID, instanceId);
+	}
+
+	@Override
+	public GlusterfsServiceOperation findLastOperationByBindingId(String bindingId) {
+		return queryOperation(SERVICE_OPERATION_FIND_LAST_BY_BINDING_ID, bindingId);
+	}
+
+	@Override
+	public int touchOperations(Collection<String> operationIds, String owner, Date now) {
+		if (operationIds.isEmpty()) return 0;
+		List<Object[]> args = new ArrayList<Object[]>(operationIds.size());
+		for (String operationId : operationIds) args.add(new Object[] { now, operationId, owner });
+		int count = 0;
+		for (int updated : jdbcTemplate.batchUpdate(SERVICE_OPERATION_TOUCH, args)) count += Math.max(0, updated);
+		return count;
+	}
+
+	@Override
+	public int failStaleOperations(Date staleBefore, String description) {
+		int count = jdbcTemplate.update(SERVICE_OPERATION_FAIL_STALE, description, new Date(), staleBefore);
+		if (count > 0) written();
+		return count;
+	}
+
+	@Override
+	public void addPooledTenant(GlusterfsPooledTenant tenant) {
+		jdbcTemplate.update(TENANT_POOL_ADD, tenant.getTenantId(), tenant.getTenantName(), tenant.getPlanId(), tenant.getQuotaBytes());
+	}
+
+	/**
+	 * ready 상태 후보를 조회한 뒤 status 조건을 건 update 로 할당합니다.
+	 * 다른 브로커가 먼저 할당한 후보는 update 건수가 0 이므로 다음 후보를 시도합니다.
+	 */
+	@Override
+	public GlusterfsPooledTenant claimPooledTenant(String planId, String instanceId) {
+		for (int attempt = 0; attempt < CLAIM_ATTEMPTS; attempt++) {
+			List<GlusterfsPooledTenant> candidates = jdbcTemplate.query(TENANT_POOL_FIND_READY, mapper5, planId, CLAIM_CANDIDATES);
+			if (candidates.isEmpty()) return null;
+			for (GlusterfsPooledTenant candidate : candidates) {
+				Date claimedAt = new Date();
+				if (jdbcTemplate.update(TENANT_POOL_CLAIM, instanceId, claimedAt, candidate.getTenantId()) == 1) {
+					candidate.setStatus(GlusterfsPooledTenant.STATUS_CLAIMED);
+					candidate.setInstanceId(instanceId);
+					candidate.setClaimedAt(claimedAt);
+					return candidate;
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void deletePooledTenant(String tenantId) {
+		jdbcTemplate.update(TENANT_POOL_DELETE, tenantId);
+	}
+
+	@Override
+	public int countReadyTenants(String planId) {
+		return jdbcTemplate.queryForObject(TENANT_POOL_COUNT_READY, Integer.class, planId);
+	}
+
+	@Override
+	public List<GlusterfsPooledTenant> findClaimedTenants(Date claimedBefore) {
+		return jdbcTemplate.query(TENANT_POOL_FIND_CLAIMED, mapper5, claimedBefore);
+	}
+
+	@Override
+	public List<GlusterfsOperationStep> findSteps(String flowType, String flowId) {
+		return jdbcTemplate.query(OPERATION_STEP_FIND, mapper6, flowType, flowId);
+	}
+
+	@Override
+	public void saveStep(GlusterfsOperationStep step) {
+		jdbcTemplate.update(OPERATION_STEP_ADD,
+				step.getFlowType(),
+				step.getFlowId(),
+				step.getStep(),
+				step.getRequestKey(),
+				step.getData(),
+				step.getRequestKey(),
+				step.getData());
+	}
+
+	@Override
+	public void deleteStep(String flowType, String flowId, String step) {
+		jdbcTemplate.update(OPERATION_STEP_DELETE, flowType, flowId, step);
+	}
+
+	@Override
+	public void deleteSteps(String flowType, String flowId) {
+		jdbcTemplate.update(OPERATION_STEP_DELETE_ALL, flowType, flowId);
+	}
+
+	/**
+	 * active_plan_id 의 unique index 로 plan 별 진행중 작업을 하나로 제한합니다. 다른 브로커가 먼저 추가한 경우 중복 키 오류가 발생합니다.
+	 */
+	@Override
+	public boolean addQuotaJob(GlusterfsQuotaJob job) {
+		Date now = new Date();
+		try {
+			jdbcTemplate.update(QUOTA_JOB_ADD, job.getJobId(), job.getPlanId(), job.getPlanId(), job.getQuotaBytes(), job.getTotal(), now, now);
+			return true;
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public GlusterfsQuotaJob findQuotaJob(String jobId) {
+		try {
+			return jdbcTemplate.queryForObject(QUOTA_JOB_FIND_BY_JOB_ID, mapper7, jobId);
+		} catch (EmptyResultDataAccessException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public GlusterfsQuotaJob findActiveQuotaJob(String planId) {
+		List<GlusterfsQuotaJob> jobs = jdbcTemplate.query(QUOTA_JOB_FIND_ACTIVE, mapper7, planId);
+		return jobs.isEmpty() ? null : jobs.get(0);
+	}
+
+	@Override
+	public List<GlusterfsQuotaJob> findResumableQuotaJobs(Date staleBefore) {
+		return jdbcTemplate.query(QUOTA_JOB_FIND_RESUMABLE, mapper7, staleBefore);
+	}
+
+	/**
+	 * 상태 조건을 건 update 로 할당합니다. 다른 브로커가 먼저 할당한 경우 updated_at 이 갱신되어 update 건수가 0 입니다.
+	 */
+	@Override
+	public boolean acquireQuotaJob(String jobId, String owner, Date staleBefore) {
+		return jdbcTemplate.update(QUOTA_JOB_ACQUIRE, owner, new Date(), jobId, staleBefore) == 1;
+	}
+
+	@Override
+	public boolean updateQuotaJobProgress(String jobId, String owner, String checkpoint, int processed, int failed) {
+		return jdbcTemplate.update(QUOTA_JOB_UPDATE_PROGRESS, checkpoint, processed, failed, new Date(), jobId, owner) == 1;
+	}
+
+	@Override
+	public boolean finishQuotaJob(String jobId, String owner, String state, String description) {
+		return jdbcTemplate.update(QUOTA_JOB_FINISH, state, description, new Date(), jobId, owner) == 1;
+	}
+
+	@Override
+	public boolean cancelQuotaJob(String jobId) {
+		return jdbcTemplate.update(QUOTA_JOB_CANCEL, new Date(), jobId) == 1;
+	}
+
+	private GlusterfsServiceOperation queryOperation(String sql, String id) {
+		return queryForObject(sql, mapper4, id);
+	}
+
+	/**
+	 * 단건을 조회합니다.
+	 * @return 없을 경우 null
+	 */
+	private <T> T queryForObject(final String sql, final RowMapper<T> rowMapper, final Object... args) {
+		return glusterfsReadRouter.read(new ReadCallback<T>() {
+			@Override
+			public T doInJdbc(JdbcTemplate jdbcTemplate) {
+				try {
+					return jdbcTemplate.queryForObject(sql, rowMapper, args);
+				} catch (EmptyResultDataAccessException e) {
+					return null;
+				}
+			}
+		});
+	}
+
+	/**
+	 * 목록을 조회하여 한 건씩 전달합니다.
+	 */
+	private void stream(final String sql, final Object[] args, final RowCallbackHandler rch) {
+		glusterfsReadRouter.stream(new ReadCallback<Void>() {
+			@Override
+			public Void doInJdbc(JdbcTemplate jdbcTemplate) {
+				jdbcTemplate.query(new PreparedStatementCreator() {
+					@Override
+					public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+						PreparedStatement ps = con.prepareStatement(sql);
+						ps.setFetchSize(fetchSize);
+						new ArgumentPreparedStatementSetter(args).setValues(ps);
+						return ps;
+					}
+				}, rch);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 쓰기를 수행한 스레드의 이후 조회는 복제 지연과 관계없이 primary 에서 조회합니다.
+	 */
+	private void written() {
+		GlusterfsReadContext.usePrimary();
+	}
+
+	private static final class Page {
+
+		private int count;
+
+		private String lastKey;
+
+		private void add(String key) {
+			count++;
+			lastKey = key;
+		}
+
+		private String next(int pageSize) {
+			return count < pageSize ? null : lastKey;
+		}
+	}
+
+	private static final class GlusterfsServiceInstanceRecordRowMapper implements RowMapper<GlusterfsServiceInstanceRecord> {
+        @Override
+        public GlusterfsServiceInstanceRecord mapRow(ResultSet rs, int rowNum) throws SQLException {
+        	GlusterfsServiceInstanceRecord record = new GlusterfsServiceInstanceRecord();
+        	record.setServiceInstanceId(rs.getString(1));
+        	record.setServiceDefinitionId(rs.getString(2));
+        	record.setPlanId(rs.getString(3));
+        	record.setOrganizationGuid(rs.getString(4));
+        	record.setSpaceGuid(rs.getString(5));
+        	record.setTenantName(rs.getString(6));
+        	record.setTenantId(rs.getString(7));
+        	record.setStatus(rs.getString(8));
+            return record;
+        }
+    }
+
+	private static final class BindingRecordRowMapper implements RowMapper<BindingRecord> {
+        @Override
+        public BindingRecord mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new BindingRecord(rs.getString(1),
+            		rs.getString(2),
+            		rs.getString(3),
+            		rs.getString(6),
+            		rs.getString(4),
+            		rs.getString(5),
+            		rs.getString(7));
+        }
+    }
+
+	private static final class GlusterfsServiceOperationRowMapper implements RowMapper<GlusterfsServiceOperation> {
+        @Override
+        public GlusterfsServiceOperation mapRow(ResultSet rs, int rowNum) throws SQLException {
+        	GlusterfsServiceOperation operation = new GlusterfsServiceOperation();
+        	operation.setOperationId(rs.getString(1));
+        	operation.setInstanceId(rs.getString(2));
+        	operation.setBindingId(rs.getString(3));
+        	operation.setOperationType(rs.getString(4));
+        	operation.setState(rs.getString(5));
+        	operation.setDescription(rs.getString(6));
+        	operation.setCreatedAt(rs.getTimestamp(7));
+        	operation.setUpdatedAt(rs.getTimestamp(8));
+            return operation;
+        }
+    }
+
+	private static final class GlusterfsPooledTenantRowMapper implements RowMapper<GlusterfsPooledTenant> {
+        @Override
+        public GlusterfsPooledTenant mapRow(ResultSet rs, int rowNum) throws SQLException {
+        	GlusterfsPooledTenant tenant = new GlusterfsPooledTenant();
+        	tenant.setTenantId(rs.getString(1));
+        	tenant.setTenantName(rs.getString(2));
+        	tenant.setPlanId(rs.getString(3));
+        	tenant.setStatus(rs.getString(4));
+        	tenant.setInstanceId(rs.getString(5));
+        	tenant.setCreatedAt(rs.getTimestamp(6));
+        	tenant.setClaimedAt(rs.getTimestamp(7));
+        	tenant.setQuotaBytes(rs.getLong(8));
+            return tenant;
+        }
+    }
+
+	private static final class GlusterfsOperationStepRowMapper implements RowMapper<GlusterfsOperationStep> {
+        @Override
+        public GlusterfsOperationStep mapRow(ResultSet rs, int rowNum) throws SQLException {
+        	GlusterfsOperationStep step = new GlusterfsOperationStep(rs.getString(1),
+        			rs.getString(2),
+        			rs.getString(3),
+        			rs.getString(4),
+        			rs.getString(5));
+        	step.setCreatedAt(rs.getTimestamp(6));
+            return step;
+        }
+    }
+
+	private static final class GlusterfsQuotaJobRowMapper implements RowMapper<GlusterfsQuotaJob> {
+        @Override
+        public GlusterfsQuotaJob mapRow(ResultSet rs, int rowNum) throws SQLException {
+        	GlusterfsQuotaJob job = new GlusterfsQuotaJob();
+        	job.setJobId(rs.getString(1));
+        	job.setPlanId(rs.getString(2));
+        	job.setQuotaBytes(rs.getLong(3));
+        	job.setState(rs.getString(4));
+        	job.setOwner(rs.getString(5));
+        	job.setCheckpoint(rs.getString(6));
+        	job.setTotal(rs.getInt(7));
+        	job.setProcessed(rs.getInt(8));
+        	job.setFailed(rs.getInt(9));
+        	job.setDescription(rs.getString(10));
+        	job.setCreatedAt(rs.getTimestamp(11));
+        	job.setUpdatedAt(rs.getTimestamp(12));
+            return job;
+        }
+    }
+
+}
@@ -0,0 +1,455 @@
+package org.openpaas.servicebroker.glusterfs.repository.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsOperationStep;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsPooledTenant;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsQuotaJob;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceOperation;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsBindingRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsInstanceRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsOperationRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsQuotaJobRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsRecordHandler;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsStepJournalRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsTenantPoolRepository;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsRecordCache.BindingRecord;
+import org.openpaas.servicebroker.model.ServiceInstanceBinding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+/**
+ * memory 프로파일에서 사용하는 메모리 저장소 구현. 브로커를 재기동하면 모든 정보가 사라진다.
+ * DB 없이 provision/bind 흐름을 부하 테스트할 때 사용하며, 여러 요청 스레드에서 동시에 사용할 수 있다.
+ * 저장/조회 시 복사본을 사용하여 호출자가 저장된 객체를 변경할 수 없도록 한다.
+ */
+@Profile("memory")
+@Repository
+public class GlusterfsMemoryRepository implements GlusterfsInstanceRepository, GlusterfsBindingRepository, GlusterfsOperationRepository,
+		GlusterfsTenantPoolRepository, GlusterfsStepJournalRepository, GlusterfsQuotaJobRepository {
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsMemoryRepository.class);
+
+	private final ConcurrentNavigableMap<String, GlusterfsServiceInstanceRecord> instances = new ConcurrentSkipListMap<String, GlusterfsServiceInstanceRecord>();
+
+	private final ConcurrentNavigableMap<String, BindingRecord> bindings = new ConcurrentSkipListMap<String, BindingRecord>();
+
+	private final ConcurrentMap<String, GlusterfsServiceOperation> operations = new ConcurrentHashMap<String, GlusterfsServiceOperation>();
+
+	// 인스턴스 / 바인딩별 가장 최근 작업 ID
+	private final ConcurrentMap<String, String> lastInstanceOperations = new ConcurrentHashMap<String, String>();
+
+	private final ConcurrentMap<String, String> lastBindingOperations = new ConcurrentHashMap<String, String>();
+
+	private final Set<String> deleting = ConcurrentHashMap.newKeySet();
+
+	private final ConcurrentMap<String, GlusterfsPooledTenant> tenantPool = new ConcurrentHashMap<String, GlusterfsPooledTenant>();
+
+	// flow_type:flow_id 별 단계 기록. 기록 순서를 유지합니다.
+	private final ConcurrentMap<String, ConcurrentNavigableMap<Long, GlusterfsOperationStep>> steps = new ConcurrentHashMap<String, ConcurrentNavigableMap<Long, GlusterfsOperationStep>>();
+
+	private final AtomicLong stepSequence = new AtomicLong();
+
+	private final ConcurrentMap<String, GlusterfsQuotaJob> quotaJobs = new ConcurrentHashMap<String, GlusterfsQuotaJob>();
+
+	public GlusterfsMemoryRepository() {
+		logger.info("[ap] using in-memory repository, broker metadata is not persisted");
+	}
+
+	@Override
+	public GlusterfsServiceInstanceRecord findInstance(String instanceId) {
+		GlusterfsServiceInstanceRecord record = instances.get(instanceId);
+		if (record == null) return null;
+		GlusterfsServiceInstanceRecord copy = new GlusterfsServiceInstanceRecord(record);
+		if (deleting.contains(instanceId)) copy.setStatus(GlusterfsServiceInstanceRecord.STATUS_DELETING);
+		return copy;
+	}
+
+	@Override
+	public void saveInstance(GlusterfsServiceInstanceRecord record) {
+		instances.put(record.getServiceInstanceId(), new GlusterfsServiceInstanceRecord(record));
+		deleting.remove(record.getServiceInstanceId());
+	}
+
+	@Override
+	public void updateInstancePlan(final String instanceId, final String serviceId, final String planId, final String organizationGuid, final String spaceGuid) {
+		instances.computeIfPresent(instanceId, (id, record) -> {
+			GlusterfsServiceInstanceRecord updated = new GlusterfsServiceInstanceRecord(record);
+			updated.setServiceDefinitionId(serviceId);
+			updated.setPlanId(planId);
+			updated.setOrganizationGuid(organizationGuid);
+			updated.setSpaceGuid(spaceGuid);
+			return updated;
+		});
+	}
+
+	@Override
+	public void markInstanceDeleting(String instanceId) {
+		if (instances.containsKey(instanceId)) deleting.add(instanceId);
+	}
+
+	@Override
+	public void deleteInstance(String instanceId) {
+		instances.remove(instanceId);
+		deleting.remove(instanceId);
+	}
+
+	@Override
+	public int countInstances(String planId) {
+		int count = 0;
+		for (GlusterfsServiceInstanceRecord record : instances.values()) {
+			if (planId.equals(record.getPlanId())) count++;
+		}
+		return count;
+	}
+
+	@Override
+	public String listInstances(String organizationGuid, String spaceGuid, String planId, String after, int pageSize,
+			GlusterfsRecordHandler<GlusterfsServiceInstanceRecord> handler) {
+		Map<String, GlusterfsServiceInstanceRecord> page = after == null ? instances : instances.tailMap(after, false);
+		int count = 0;
+		String lastKey = null;
+		for (GlusterfsServiceInstanceRecord record : page.values()) {
+			if (organizationGuid != null && !organizationGuid.equals(record.getOrganizationGuid())) continue;
+			if (spaceGuid != null && !spaceGuid.equals(record.getSpaceGuid())) continue;
+			if (planId != null && !planId.equals(record.getPlanId())) continue;
+			GlusterfsServiceInstanceRecord copy = new GlusterfsServiceInstanceRecord(record);
+			if (deleting.contains(record.getServiceInstanceId())) copy.setStatus(GlusterfsServiceInstanceRecord.STATUS_DELETING);
+			handler.handle(copy);
+			lastKey = record.getServiceInstanceId();
+			if (++count == pageSize) return lastKey;
+		}
+		return null;
+	}
+
+	@Override
+	public BindingRecord findBinding(String bindingId) {
+		BindingRecord record = bindings.get(bindingId);
+		if (record == null || !deleting.contains(bindingId)) return record;
+		return new BindingRecord(record.getBindingId(), record.getInstanceId(), record.getAppGuid(), record.getUserId(),
+				record.getUsername(), record.getPassword(), BindingRecord.STATUS_DELETING);
+	}
+
+	@Override
+	public String findBindingUserId(String bindingId) {
+		BindingRecord record = bindings.get(bindingId);
+		return record == null ? null : record.getUserId();
+	}
+
+	@Override
+	public void saveBinding(ServiceInstanceBinding binding, String userId) {
+		bindings.put(binding.getId(), new BindingRecord(binding.getId(), binding.getServiceInstanceId(), binding.getAppGuid(), userId,
+				(String) binding.getCredentials().get("username"), (String) binding.getCredentials().get("password")));
+		deleting.remove(binding.getId());
+	}
+
+	@Override
+	public void markBindingDeleting(String bindingId) {
+		if (bindings.containsKey(bindingId)) deleting.add(bindingId);
+	}
+
+	@Override
+	public void deleteBinding(String bindingId) {
+		bindings.remove(bindingId);
+		deleting.remove(bindingId);
+	}
+
+	/**
+	 * 바인딩 전체를 binding_id 순으로 탐색합니다. 부하 테스트용이므로 인스턴스별 색인은 두지 않습니다.
+	 */
+	@Override
+	public String listBindings(String instanceId, String after, int pageSize, GlusterfsRecordHandler<BindingRecord> handler) {
+		Map<String, BindingRecord> page = after == null ? bindings : bindings.tailMap(after, false);
+		int count = 0;
+		String lastKey = null;
+		for (BindingRecord record : page.values()) {
+			if (!record.getInstanceId().equals(instanceId)) continue;
+			handler.handle(record);
+			lastKey = record.getBindingId();
+			if (++count == pageSize) return lastKey;
+		}
+		return null;
+	}
+
+	@Override
+	public void saveOperation(GlusterfsServiceOperation operation) {
+		GlusterfsServiceOperation saved = copy(operation);
+		Date now = new Date();
+		saved.setCreatedAt(now);
+		saved.setUpdatedAt(now);
+		operations.put(saved.getOperationId(), saved);
+		if (saved.getBindingId() == null)
+			lastInstanceOperations.put(saved.getInstanceId(), saved.getOperationId());
+		else
+			lastBindingOperations.put(saved.getBindingId(), saved.getOperationId());
+	}
+
+	@Override
+	public void updateOperationState(String operationId, final String state, final String description) {
+		operations.computeIfPresent(operationId, (id, operation) -> {
+			GlusterfsServiceOperation updated = copy(operation);
+			updated.setState(state);
+			updated.setDescription(description);
+			updated.setUpdatedAt(new Date());
+			return updated;
+		});
+	}
+
+	@Override
+	public GlusterfsServiceOperation findOperation(String operationId) {
+		GlusterfsServiceOperation operation = operations.get(operationId);
+		return operation == null ? null : copy(operation);
+	}
+
+	@Override
+	public GlusterfsServiceOperation findLastOperationByInstanceId(String instanceId) {
+		String operationId = lastInstanceOperations.get(instanceId);
+		return operationId == null ? null : findOperation(operationId);
+	}
+
+	@Override
+	public GlusterfsServiceOperation findLastOperationByBindingId(String bindingId) {
+		String operationId = lastBindingOperations.get(bindingId);
+		return operationId == null ? null : findOperation(operationId);
+	}
+
+	@Override
+	public int touchOperations(Collection<String> operationIds, final String owner, final Date now) {
+		int count = 0;
+		for (String operationId : operationIds) {
+			GlusterfsServiceOperation touched = operations.computeIfPresent(operationId, (id, operation) -> {
+				if (!operation.isInProgress() || !owner.equals(operation.getOwner())) return operation;
+				GlusterfsServiceOperation updated = copy(operation);
+				updated.setUpdatedAt(now);
+				return updated;
+			});
+			if (touched != null && touched.getUpdatedAt() == now) count++;
+		}
+		return count;
+	}
+
+	@Override
+	public int failStaleOperations(Date staleBefore, String description) {
+		int count = 0;
+		for (GlusterfsServiceOperation operation : operations.values()) {
+			if (!operation.isInProgress() || !operation.getUpdatedAt().before(staleBefore)) continue;
+			updateOperationState(operation.getOperationId(), GlusterfsServiceOperation.STATE_FAILED, description);
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void addPooledTenant(GlusterfsPooledTenant tenant) {
+		GlusterfsPooledTenant saved = new GlusterfsPooledTenant(tenant);
+		saved.setStatus(GlusterfsPooledTenant.STATUS_READY);
+		saved.setCreatedAt(new Date());
+		tenantPool.put(saved.getTenantId(), saved);
+	}
+
+	/**
+	 * 저장된 객체는 변경하지 않으므로 replace(key, oldValue, newValue) 로 다른 스레드와 겹치지 않게 할당합니다.
+	 */
+	@Override
+	public GlusterfsPooledTenant claimPooledTenant(String planId, String instanceId) {
+		for (GlusterfsPooledTenant tenant : tenantPool.values()) {
+			if (!tenant.isReady() || !tenant.getPlanId().equals(planId)) continue;
+			GlusterfsPooledTenant claimed = new GlusterfsPooledTenant(tenant);
+			claimed.setStatus(GlusterfsPooledTenant.STATUS_CLAIMED);
+			claimed.setInstanceId(instanceId);
+			claimed.setClaimedAt(new Date());
+			if (tenantPool.replace(tenant.getTenantId(), tenant, claimed)) return new GlusterfsPooledTenant(claimed);
+		}
+		return null;
+	}
+
+	@Override
+	public void deletePooledTenant(String tenantId) {
+		tenantPool.remove(tenantId);
+	}
+
+	@Override
+	public int countReadyTenants(String planId) {
+		int count = 0;
+		for (GlusterfsPooledTenant tenant : tenantPool.values()) {
+			if (tenant.isReady() && tenant.getPlanId().equals(planId)) count++;
+		}
+		return count;
+	}
+
+	@Override
+	public List<GlusterfsPooledTenant> findClaimedTenants(Date claimedBefore) {
+		List<GlusterfsPooledTenant> claimed = new ArrayList<GlusterfsPooledTenant>();
+		for (GlusterfsPooledTenant tenant : tenantPool.values()) {
+			if (!tenant.isReady() && tenant.getClaimedAt().before(claimedBefore)) claimed.add(new GlusterfsPooledTenant(tenant));
+		}
+		return claimed;
+	}
+
+	@Override
+	public List<GlusterfsOperationStep> findSteps(String flowType, String flowId) {
+		List<GlusterfsOperationStep> found = new ArrayList<GlusterfsOperationStep>();
+		Map<Long, GlusterfsOperationStep> flow = steps.get(flowType + ":" + flowId);
+		if (flow == null) return found;
+		for (GlusterfsOperationStep step : flow.values()) found.add(copy(step));
+		return found;
+	}
+
+	@Override
+	public void saveStep(GlusterfsOperationStep step) {
+		GlusterfsOperationStep saved = copy(step);
+		saved.setCreatedAt(new Date());
+		ConcurrentNavigableMap<Long, GlusterfsOperationStep> flow = steps.computeIfAbsent(step.getFlowType() + ":" + step.getFlowId(),
+				key -> new ConcurrentSkipListMap<Long, GlusterfsOperationStep>());
+		removeStep(flow, step.getStep());
+		flow.put(stepSequence.incrementAndGet(), saved);
+	}
+
+	@Override
+	public void deleteStep(String flowType, String flowId, String step) {
+		Map<Long, GlusterfsOperationStep> flow = steps.get(flowType + ":" + flowId);
+		if (flow != null) removeStep(flow, step);
+	}
+
+	@Override
+	public void deleteSteps(String flowType, String flowId) {
+		steps.remove(flowType + ":" + flowId);
+	}
+
+	@Override
+	public synchronized boolean addQuotaJob(GlusterfsQuotaJob job) {
+		if (findActiveQuotaJob(job.getPlanId()) != null) return false;
+		GlusterfsQuotaJob saved = new GlusterfsQuotaJob(job);
+		Date now = new Date();
+		saved.setState(GlusterfsQuotaJob.STATE_PENDING);
+		saved.setCreatedAt(now);
+		saved.setUpdatedAt(now);
+		quotaJobs.put(saved.getJobId(), saved);
+		return true;
+	}
+
+	@Override
+	public GlusterfsQuotaJob findQuotaJob(String jobId) {
+		GlusterfsQuotaJob job = quotaJobs.get(jobId);
+		return job == null ? null : new GlusterfsQuotaJob(job);
+	}
+
+	@Override
+	public GlusterfsQuotaJob findActiveQuotaJob(String planId) {
+		for (GlusterfsQuotaJob job : quotaJobs.values()) {
+			if (job.isActive() && job.getPlanId().equals(planId)) return new GlusterfsQuotaJob(job);
+		}
+		return null;
+	}
+
+	@Override
+	public List<GlusterfsQuotaJob> findResumableQuotaJobs(Date staleBefore) {
+		List<GlusterfsQuotaJob> resumable = new ArrayList<GlusterfsQuotaJob>();
+		for (GlusterfsQuotaJob job : quotaJobs.values()) {
+			if (isResumable(job, staleBefore)) resumable.add(new GlusterfsQuotaJob(job));
+		}
+		return resumable;
+	}
+
+	/**
+	 * 저장된 객체는 변경하지 않으므로 replace(key, oldValue, newValue) 로 다른 스레드와 겹치지 않게 할당합니다.
+	 */
+	@Override
+	public boolean acquireQuotaJob(String jobId, String owner, Date staleBefore) {
+		GlusterfsQuotaJob job = quotaJobs.get(jobId);
+		if (job == null || !isResumable(job, staleBefore)) return false;
+		GlusterfsQuotaJob acquired = new GlusterfsQuotaJob(job);
+		acquired.setState(GlusterfsQuotaJob.STATE_RUNNING);
+		acquired.setOwner(owner);
+		acquired.setUpdatedAt(new Date());
+		return quotaJobs.replace(jobId, job, acquired);
+	}
+
+	@Override
+	public boolean updateQuotaJobProgress(String jobId, final String owner, final String checkpoint, final int processed, final int failed) {
+		return updateOwnedQuotaJob(jobId, owner, job -> {
+			job.setCheckpoint(checkpoint);
+			job.setProcessed(processed);
+			job.setFailed(failed);
+		});
+	}
+
+	@Override
+	public boolean finishQuotaJob(String jobId, String owner, final String state, final String description) {
+		return updateOwnedQuotaJob(jobId, owner, job -> {
+			job.setState(state);
+			job.setDescription(description);
+		});
+	}
+
+	@Override
+	public boolean cancelQuotaJob(String jobId) {
+		final boolean[] cancelled = new boolean[1];
+		quotaJobs.computeIfPresent(jobId, (id, job) -> {
+			if (!job.isActive()) return job;
+			GlusterfsQuotaJob updated = new GlusterfsQuotaJob(job);
+			updated.setState(GlusterfsQuotaJob.STATE_CANCELLED);
+			updated.setUpdatedAt(new Date());
+			cancelled[0] = true;
+			return updated;
+		});
+		return cancelled[0];
+	}
+
+	private boolean updateOwnedQuotaJob(String jobId, final String owner, final Consumer<GlusterfsQuotaJob> update) {
+		final boolean[] updated = new boolean[1];
+		quotaJobs.computeIfPresent(jobId, (id, job) -> {
+			if (!GlusterfsQuotaJob.STATE_RUNNING.equals(job.getState()) || !owner.equals(job.getOwner())) return job;
+			GlusterfsQuotaJob copy = new GlusterfsQuotaJob(job);
+			update.accept(copy);
+			copy.setUpdatedAt(new Date());
+			updated[0] = true;
+			return copy;
+		});
+		return updated[0];
+	}
+
+	private static boolean isResumable(GlusterfsQuotaJob job, Date staleBefore) {
+		if (GlusterfsQuotaJob.STATE_PENDING.equals(job.getState())) return true;
+		return GlusterfsQuotaJob.STATE_RUNNING.equals(job.getState()) && job.getUpdatedAt().before(staleBefore);
+	}
+
+	private static void removeStep(Map<Long, GlusterfsOperationStep> flow, String step) {
+		flow.values().removeIf(saved -> saved.getStep().equals(step));
+	}
+
+	private static GlusterfsOperationStep copy(GlusterfsOperationStep step) {
+		GlusterfsOperationStep copy = new GlusterfsOperationStep(step.getFlowType(), step.getFlowId(), step.getStep(), step.getRequestKey(), step.getData());
+		copy.setCreatedAt(step.getCreatedAt());
+		return copy;
+	}
+
+	private static GlusterfsServiceOperation copy(GlusterfsServiceOperation operation) {
+		GlusterfsServiceOperation copy = new GlusterfsServiceOperation();
+		copy.setOperationId(operation.getOperationId());
+		copy.setInstanceId(operation.getInstanceId());
+		copy.setBindingId(operation.getBindingId());
+		copy.setOperationType(operation.getOperationType());
+		copy.setState(operation.getState());
+		copy.setDescription(operation.getDescription());
+		copy.setOwner(operation.getOwner());
+		copy.setCreatedAt(operation.getCreatedAt());
+		copy.setUpdatedAt(operation.getUpdatedAt());
+		return copy;
+	}
+
+}
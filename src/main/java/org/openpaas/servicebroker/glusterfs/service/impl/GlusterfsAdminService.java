@@ -2,21 +2,25 @@ package org.openpaas.servicebroker.glusterfs.service.impl;
 
 import java.math.BigInteger;
 import java.security.MessageDigest;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.*;
 
-import org.openpaas.servicebroker.common.HttpClientUtils;
 import org.openpaas.servicebroker.common.JsonUtils;
 import org.openpaas.servicebroker.exception.ServiceBrokerException;
 import org.openpaas.servicebroker.exception.ServiceInstanceExistsException;
-import org.openpaas.servicebroker.glusterfs.common.ConstantsAuthToken;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsBackend;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsBackendClient;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsReadContext;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsBackendException;
 import org.openpaas.servicebroker.glusterfs.exception.GlusterfsServiceException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsPooledTenant;
 import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstance;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceOperation;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsBindingRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsInstanceRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsOperationRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsRecordHandler;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsRecordCache.BindingRecord;
 import org.openpaas.servicebroker.model.CreateServiceInstanceBindingRequest;
 import org.openpaas.servicebroker.model.CreateServiceInstanceRequest;
 import org.openpaas.servicebroker.model.ServiceInstance;
@@ -26,21 +30,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.env.Environment;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import org.springframework.util.StringUtils;
 
 /**
  * Glusterfs대용량저장소를 조작하기위한 유틸리티 클래스.
@@ -52,57 +54,39 @@ import org.springframework.util.StringUtils;
 @Service
 public class GlusterfsAdminService {
 
-	public static final String SERVICE_INSTANCES_FILDS = "instance_id, service_id, plan_id, organization_guid, space_guid, tenant_name, tenant_id";
-	
-	public static final String SERVICE_INSTANCES_FIND_BY_INSTANCE_ID = "select " + SERVICE_INSTANCES_FILDS + " from gfbroker.service_instances where instance_id = ?";
-	
-	public static final String SERVICE_GLUSTERFS_INSTANCES_FIND_BY_INSTANCE_ID = "select instance_id, tenant_name, tenant_id from gfbroker.service_instances where instance_id = ?";
-	
-	public static final String SERVICE_INSTANCES_DELETE_BY_INSTANCE_ID = "delete from gfbroker.service_instances where instance_id = ?";
-	
-	public static final String SERVICE_INSTANCES_UPSERT_FILDS = "ON DUPLICATE KEY UPDATE instance_id = ?, service_id = ?, plan_id = ?, organization_guid = ?, space_guid = ?, tenant_name = ?, tenant_id = ?";
-	
-	public static final String SERVICE_INSTANCES_ADD = "insert into gfbroker.service_instances("+SERVICE_INSTANCES_FILDS+") values(?,?,?,?,?,?,?) "+ SERVICE_INSTANCES_UPSERT_FILDS;
-	
-	public static final String SERVICE_INSTANCES_UPDATE_FILDS = "UPDATE gfbroker.service_instances SET service_id = ?, plan_id = ?, organization_guid = ?, space_guid = ? where instance_id = ?";
-	
-	public static final String SERVICE_BINDING_FILDS ="binding_id, instance_id, app_id, username, password";
-	
-	public static final String SERVICE_BINDING_UPSERT_FILDS = "ON DUPLICATE KEY UPDATE instance_id = ?, app_id = ? ,username = ?, password = ?";
-	
-	public static final String SERVICE_BINDING_ADD = "insert into gfbroker.service_binding("+SERVICE_BINDING_FILDS+") values(?,?,?,?,?) "+ SERVICE_BINDING_UPSERT_FILDS;
-	
-	public static final String SERVICE_BINDING_FIND_BY_BINDING_ID = "select " + SERVICE_BINDING_FILDS + " from gfbroker.service_binding where binding_id = ?";
+	static String TENANT_PREFIX = "op_";
 	
-	public static final String SERVICE_BINDING_FIND_BY_INSTANCE_ID = "select " + SERVICE_BINDING_FILDS + " from gfbroker.service_binding where instance_id = ?";
+	// 대기열(tenant_pool) project 명 접두어. 할당 시 인스턴스의 tenant 명으로 변경됩니다.
+	static String POOL_TENANT_PREFIX = "pool_";
 	
-	public static final String SERVICE_BINDING_DELETE_BY_BINDING_ID = "delete from gfbroker.service_binding where binding_id = ?";
+	private Logger logger = LoggerFactory.getLogger(GlusterfsAdminService.class);
 	
-	public static final String SERVICE_BINDING_FIND_USERNAME_BY_BINDING_ID = "select username from gfbroker.service_binding where binding_id = ?";
+	@Autowired
+	private Environment env;
 	
-	// Plan별 MAX_USER_CONNECTIONS 정보
-	public static String planA = "ty8u76yi-b086-4a24-b041-0aeef1a819d1";
-	public static int planAsize = 1024 * 1024 * 5;
-	public static String planB = "sd456f21-9bc5-4a86-937f-e2c14bb9f497";
-	public static int planBsize = 1024 * 1024 * 100;
-	public static String planC = "koi908i7-9bc5-4a86-937f-e2c14bb9f497";
-	public static int planCsize = 1024 * 1024 * 1000;
+	@Autowired
+	private GlusterfsInstanceRepository glusterfsInstanceRepository;
 	
-	static String TENANT_PREFIX = "op_";
+	@Autowired
+	private GlusterfsBindingRepository glusterfsBindingRepository;
 	
-	private Logger logger = LoggerFactory.getLogger(GlusterfsAdminService.class);
+	@Autowired
+	private GlusterfsOperationRepository glusterfsOperationRepository;
 	
 	@Autowired
-	private Environment env;
+	private GlusterfsAuthTokenManager glusterfsAuthTokenManager;
 	
 	@Autowired
-	private JdbcTemplate jdbcTemplate;
+	private GlusterfsBackendClient glusterfsBackendClient;
 	
-	private final RowMapper<ServiceInstance> mapper = new ServiceInstanceRowMapper();
+	@Autowired
+	private GlusterfsRoleIdCache glusterfsRoleIdCache;
 	
-	private final RowMapper<GlusterfsServiceInstance> mapper3 = new GlusterfsServiceInstanceRowMapper();
+	@Autowired
+	private GlusterfsRecordCache glusterfsRecordCache;
 	
-	private final RowMapper<ServiceInstanceBinding> mapper2 = new ServiceInstanceBindingRowMapper();
+	@Autowired
+	private GlusterfsPlanRegistry glusterfsPlanRegistry;
 	
 	
 	/**
@@ -114,18 +98,60 @@ public class GlusterfsAdminService {
 		logger.debug("GlusterfsAdminService.findById");
 		ServiceInstance serviceInstance = null;;
 		try {
-			serviceInstance = jdbcTemplate.queryForObject(SERVICE_INSTANCES_FIND_BY_INSTANCE_ID, mapper, id);
-			if (serviceInstance != null)
-				serviceInstance.withDashboardUrl(getDashboardUrl(serviceInstance.getServiceInstanceId()));
-		} catch (EmptyResultDataAccessException e) {
-			logger.debug("[ap] GlusterfsAdminService.findById throw EmptyResultDataAccessException");
-			return serviceInstance;
+			GlusterfsServiceInstanceRecord record = loadInstanceRecord(id);
+			if (record != null)
+				serviceInstance = toServiceInstance(record);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 		return serviceInstance;
 	}
 	
+	/**
+	 * ServiceInstanceId로 ServiceInstance 정보와 Tenant 정보를 함께 조회합니다.
+	 * @param id
+	 * @return 없을 경우 null
+	 */
+	public GlusterfsServiceInstanceRecord findInstanceRecordById(String id){
+		logger.debug("GlusterfsAdminService.findInstanceRecordById");
+		GlusterfsServiceInstanceRecord record = null;
+		try {
+			record = loadInstanceRecord(id);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return record;
+	}
+	
+	/**
+	 * service_instances 레코드를 캐시에서 조회합니다. 캐시에 없으면 저장소에서 조회합니다.
+	 * primary 조회 중(변경 요청 처리 중)에는 이 브로커가 저장/수정하면서 캐시한 레코드만 사용하고 없으면 primary 에서 조회한 값으로 캐시를 갱신하며,
+	 * 복제 지연이 있을 수 있는 replica 조회 결과는 캐시하지 않습니다. 저장/수정한 레코드는 삭제/삭제중 표시 시 무효화됩니다.
+	 * @param id
+	 * @return 없을 경우 null
+	 */
+	private GlusterfsServiceInstanceRecord loadInstanceRecord(String id){
+		boolean primary = GlusterfsReadContext.isPrimary();
+		GlusterfsServiceInstanceRecord record = glusterfsRecordCache.getInstance(id, primary);
+		if (record == null) {
+			record = glusterfsInstanceRepository.findInstance(id);
+			if (primary) {
+				if (record != null) glusterfsRecordCache.putInstance(record, false);
+				else glusterfsRecordCache.invalidateInstance(id);
+			}
+		}
+		return record;
+	}
+	
+	/**
+	 * 레코드 정보로 대시보드 URL 을 포함한 ServiceInstance 를 생성합니다.
+	 * @param record
+	 * @return
+	 */
+	public ServiceInstance toServiceInstance(GlusterfsServiceInstanceRecord record){
+		return record.toServiceInstance().withDashboardUrl(getDashboardUrl(record.getServiceInstanceId()));
+	}
+	
 	/**
 	 * ServiceInstanceId로 tenantInfo정보를 조회합니다.
 	 * @param id
@@ -135,7 +161,7 @@ public class GlusterfsAdminService {
 		logger.debug("GlusterfsAdminService.tenantInfofindById");
 		GlusterfsServiceInstance serviceInstance = null;;
 		try {
-			serviceInstance = jdbcTemplate.queryForObject(SERVICE_GLUSTERFS_INSTANCES_FIND_BY_INSTANCE_ID, mapper3, id);
+			serviceInstance = loadInstanceRecord(id);
 		} catch (Exception e) {
 		}
 		return serviceInstance;
@@ -158,26 +184,74 @@ public class GlusterfsAdminService {
 	 */
 	public ServiceInstanceBinding findBindById(String id){
 		logger.debug("GlusterfsAdminService.findBindById");
-		ServiceInstanceBinding serviceInstanceBinding = null;;
+		BindingRecord record = findBindRecordById(id);
+		return record == null ? null : record.toServiceInstanceBinding();
+	}
+
+	/**
+	 * ServiceInstanceBindingId로 저장된 바인딩 레코드(username/password 포함)를 조회합니다.
+	 * 동일한 bind 요청을 재시도한 경우 저장된 값으로 응답하기 위해 사용합니다.
+	 * 캐시는 loadInstanceRecord 와 같은 방식으로 primary 조회 중에는 이 브로커가 저장한 레코드만 사용합니다.
+	 * @param id
+	 * @return 바인딩이 없거나 조회에 실패한 경우 null
+	 */
+	public BindingRecord findBindRecordById(String id){
+		logger.debug("GlusterfsAdminService.findBindRecordById");
+		BindingRecord record = null;
 		try {
-			serviceInstanceBinding = jdbcTemplate.queryForObject(SERVICE_BINDING_FIND_BY_BINDING_ID, mapper2, id);
+			boolean primary = GlusterfsReadContext.isPrimary();
+			record = glusterfsRecordCache.getBinding(id, primary);
+			if (record == null) {
+				record = glusterfsBindingRepository.findBinding(id);
+				if (primary) {
+					if (record != null) glusterfsRecordCache.putBinding(record, false);
+					else glusterfsRecordCache.invalidateBinding(id);
+				}
+			}
 		} catch (Exception e) {
 		}
-		return serviceInstanceBinding;
+		return record;
 	}
 	
 	
+	/**
+	 * ServiceInstanceBindingId로 바인딩 시 생성한 keystone 사용자 ID를 조회합니다.
+	 * 사용자 ID가 저장되지 않은 이전 바인딩의 경우 null을 반환합니다.
+	 * @param id
+	 * @return
+	 */
+	public String findBindUserIdById(String id){
+		logger.debug("GlusterfsAdminService.findBindUserIdById");
+		// 변경 요청 처리 중에는 이 브로커가 저장한 레코드만 사용합니다.
+		BindingRecord record = glusterfsRecordCache.getBinding(id, GlusterfsReadContext.isPrimary());
+		if (record != null && record.getUserId() != null) return record.getUserId();
+		String userId = null;
+		try {
+			userId = glusterfsBindingRepository.findBindingUserId(id);
+		} catch (Exception e) {
+		}
+		return userId;
+	}
+	
 	/**
 	 * ServiceInstanceId로 ServiceInstanceBinding 목록 정보를 조회합니다.
 	 * @param id
 	 * @return
 	 */
-	public List<Map<String,Object>> findBindByInstanceId(String id){
+	public List<ServiceInstanceBinding> findBindByInstanceId(String id){
 		logger.debug("GlusterfsAdminService.findBindByInstanceId");
 		
-		List<Map<String,Object>> list = new ArrayList<Map<String,Object>>();
+		final List<ServiceInstanceBinding> list = new ArrayList<ServiceInstanceBinding>();
 		try {
-			list = jdbcTemplate.queryForList(SERVICE_BINDING_FIND_BY_INSTANCE_ID, id);
+			String after = null;
+			do {
+				after = glusterfsBindingRepository.listBindings(id, after, 100, new GlusterfsRecordHandler<BindingRecord>() {
+					@Override
+					public void handle(BindingRecord record) {
+						list.add(record.toServiceInstanceBinding());
+					}
+				});
+			} while (after != null);
 		} catch (Exception e) {
 		}
 		return list;
@@ -220,21 +294,146 @@ public class GlusterfsAdminService {
 		        logger.debug("serviceInstance.getSpaceGuid()="+serviceInstance.getSpaceGuid());
 		        logger.debug("gf.getTenantName()="+gf.getTenantName());
 		        logger.debug("gf.getTenantId()="+gf.getTenantId());
-			jdbcTemplate.update(SERVICE_INSTANCES_ADD, 
-					serviceInstance.getServiceInstanceId(),
-					serviceInstance.getServiceDefinitionId(),
-					serviceInstance.getPlanId(),
-					serviceInstance.getOrganizationGuid(),
-					serviceInstance.getSpaceGuid(),
-					gf.getTenantName(),
-					gf.getTenantId(),
-					serviceInstance.getServiceInstanceId(),
-					serviceInstance.getServiceDefinitionId(),
-					serviceInstance.getPlanId(),
-					serviceInstance.getOrganizationGuid(),
-					serviceInstance.getSpaceGuid(),
-					gf.getTenantName(),
-					gf.getTenantId());
+			GlusterfsServiceInstanceRecord record = new GlusterfsServiceInstanceRecord(serviceInstance, gf);
+			glusterfsInstanceRepository.saveInstance(record);
+			glusterfsRecordCache.putInstance(record, true);
+		} catch (Exception e) {
+			throw handleException(e);
+		}
+	}
+	
+	/**
+	 * 비동기 작업 정보를 저장합니다.
+	 * @param operation
+	 * @throws GlusterfsServiceException
+	 */
+	public void saveOperation(GlusterfsServiceOperation operation) throws GlusterfsServiceException{
+		try{
+			logger.debug("GlusterfsAdminService.saveOperation");
+			glusterfsOperationRepository.saveOperation(operation);
+		} catch (Exception e) {
+			throw handleException(e);
+		}
+	}
+	
+	/**
+	 * 비동기 작업의 상태를 수정합니다.
+	 * @param operationId
+	 * @param state
+	 * @param description
+	 * @throws GlusterfsServiceException
+	 */
+	public void updateOperationState(String operationId, String state, String description) throws GlusterfsServiceException{
+		try{
+			logger.debug("GlusterfsAdminService.updateOperationState");
+			glusterfsOperationRepository.updateOperationState(operationId, state, description);
+		} catch (Exception e) {
+			throw handleException(e);
+		}
+	}
+	
+	/**
+	 * OperationId로 비동기 작업 정보를 조회합니다.
+	 * @param id
+	 * @return
+	 */
+	public GlusterfsServiceOperation findOperationById(String id){
+		logger.debug("GlusterfsAdminService.findOperationById");
+		GlusterfsServiceOperation operation = null;
+		try {
+			operation = glusterfsOperationRepository.findOperation(id);
+		} catch (Exception e) {
+		}
+		return operation;
+	}
+	
+	/**
+	 * ServiceInstanceId로 가장 최근의 서비스 인스턴스 비동기 작업 정보를 조회합니다.
+	 * @param id
+	 * @return
+	 */
+	public GlusterfsServiceOperation findLastOperationByInstanceId(String id){
+		logger.debug("GlusterfsAdminService.findLastOperationByInstanceId");
+		GlusterfsServiceOperation operation = null;
+		try {
+			operation = glusterfsOperationRepository.findLastOperationByInstanceId(id);
+		} catch (Exception e) {
+		}
+		return operation;
+	}
+	
+	/**
+	 * ServiceInstanceBindingId로 가장 최근의 바인딩 비동기 작업 정보를 조회합니다.
+	 * @param id
+	 * @return
+	 */
+	public GlusterfsServiceOperation findLastOperationByBindingId(String id){
+		logger.debug("GlusterfsAdminService.findLastOperationByBindingId");
+		GlusterfsServiceOperation operation = null;
+		try {
+			operation = glusterfsOperationRepository.findLastOperationByBindingId(id);
+		} catch (Exception e) {
+		}
+		return operation;
+	}
+	
+	/**
+	 * 이 브로커에서 실행중인 비동기 작업의 진행 시각을 갱신합니다.
+	 * @param operationIds
+	 * @param owner
+	 * @return 갱신된 작업 수
+	 * @throws GlusterfsServiceException
+	 */
+	public int touchOperations(Collection<String> operationIds, String owner) throws GlusterfsServiceException{
+		try{
+			logger.debug("GlusterfsAdminService.touchOperations");
+			return glusterfsOperationRepository.touchOperations(operationIds, owner, new Date());
+		} catch (Exception e) {
+			throw handleException(e);
+		}
+	}
+
+	/**
+	 * 실행하던 브로커가 종료되어 진행 시각이 갱신되지 않는 비동기 작업을 실패 처리합니다.
+	 * @param staleBefore
+	 * @param description
+	 * @return 실패 처리된 작업 수
+	 * @throws GlusterfsServiceException
+	 */
+	public int failStaleOperations(Date staleBefore, String description) throws GlusterfsServiceException{
+		try{
+			logger.debug("GlusterfsAdminService.failStaleOperations");
+			return glusterfsOperationRepository.failStaleOperations(staleBefore, description);
+		} catch (Exception e) {
+			throw handleException(e);
+		}
+	}
+	
+	/**
+	 * ServiceInstance를 삭제중 상태로 표시합니다.
+	 * @param id
+	 * @throws GlusterfsServiceException
+	 */
+	public void markDeleting(String id) throws GlusterfsServiceException{
+		try{
+			logger.debug("GlusterfsAdminService.markDeleting");
+			glusterfsInstanceRepository.markInstanceDeleting(id);
+			glusterfsRecordCache.invalidateInstance(id);
+		} catch (Exception e) {
+			throw handleException(e);
+		}
+	}
+	
+	/**
+	 * ServiceInstanceBinding을 삭제중 상태로 표시합니다.
+	 * @param id
+	 * @throws GlusterfsServiceException
+	 */
+	public void markBindDeleting(String id) throws GlusterfsServiceException{
+		try{
+			logger.debug("GlusterfsAdminService.markBindDeleting");
+			glusterfsBindingRepository.markBindingDeleting(id);
+			glusterfsRecordCache.invalidateBinding(id);
 		} catch (Exception e) {
 			throw handleException(e);
 		}
@@ -249,7 +448,8 @@ public class GlusterfsAdminService {
 		try{
 			logger.debug("GlusterfsAdminService.delete");
 			
-			jdbcTemplate.update(SERVICE_INSTANCES_DELETE_BY_INSTANCE_ID, id);
+			glusterfsInstanceRepository.deleteInstance(id);
+			glusterfsRecordCache.invalidateInstance(id);
 		} catch (Exception e) {
 			throw handleException(e);
 		}
@@ -267,139 +467,87 @@ public class GlusterfsAdminService {
 		
 		if(null == gfInstance) throw new ServiceBrokerException("");
 		
-		try{
-			logger.debug("GlusterfsAdminService.deleteDatabase");
-			
-			HttpHeaders headers = new HttpHeaders();	
-			if (!isValidToken())
-				setGlusterfsAuthToken();
-			headers.set("X-Auth-Token", ConstantsAuthToken.AUTH_TOKEN);
-			String body = 	"";
-			HttpEntity<String> entity = new HttpEntity<String>(body, headers);
-			ResponseEntity<String> response = null;
-			
-			try{
-					
-				String url = env.getRequiredProperty("glusterfs.endpoint") + env.getRequiredProperty("glusterfs.uri.deletetenant");
-
-				url = url.replace("#TENANT_ID", gfInstance.getTenantId());
-				
-				response = HttpClientUtils.send(url, entity, HttpMethod.DELETE);
-				
-				if (response.getStatusCode() != HttpStatus.NO_CONTENT) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
-
-			} catch (Exception e) {
-				e.printStackTrace();
-				if (e.getMessage().equals("401 Unauthorized")) {
-					setGlusterfsAuthToken();
-					deleteTenant(serviceInstance);
-				}else{// if(e.getMessage().equals("API Platform Error: API Platform Server Not Found")){
-					throw new ServiceBrokerException("Tennant exception occurred during deletion.");
-				}
-			}
-		} catch (Exception e) {
-			throw handleException(e);
-		}
+		deleteTenant(gfInstance);
 	}
-
-    /**
-     * Glusterfs 관리자 AuthToken Valid check
-     * @throws GlusterfsServiceException
-     */
-    public boolean isValidToken(){
-        boolean isValid = false;
-
-        ZonedDateTime  currentDateTime = ZonedDateTime.now(ZoneId.of(ConstantsAuthToken.GLUSTERFS_TIMEZONE));
-        //ZonedDateTime  currentDateTime = ZonedDateTime.now(ZoneId.of("Asia/Seoul"));
-
-        if (!StringUtils.isEmpty(ConstantsAuthToken.AUTH_TOKEN)
-                && ConstantsAuthToken.ISSUED_AT != null && ConstantsAuthToken.EXPIRES_AT != null
-                && currentDateTime.isBefore(ConstantsAuthToken.EXPIRES_AT))
-            isValid = true;
-
-        return isValid;
-    }
-
+	
 	/**
-	 * Glusterfs 관리자 AuthToken 획득
-	 * @throws GlusterfsServiceException
+	 * 조회된 Tenant 정보로 해당하는 Database를 삭제합니다.
+	 * @param gfInstance
+	 * @throws ServiceBrokerException
+	 */
+	public void deleteTenant(GlusterfsServiceInstance gfInstance) throws ServiceBrokerException{
+		deleteTenantById(gfInstance.getTenantId());
+	}
+	
+	/**
+	 * Tenant ID 로 Keystone project 를 삭제합니다.
+	 * @param tenantId
+	 * @throws ServiceBrokerException
 	 */
-	public void setGlusterfsAuthToken() throws GlusterfsServiceException{
+	public void deleteTenantById(String tenantId) throws ServiceBrokerException{
 		
-		logger.debug("GlusterfsAdminService.getGlusterfsAuthToken");
+		logger.debug("GlusterfsAdminService.deleteDatabase");
 		
 		HttpHeaders headers = new HttpHeaders();	
-		headers.setContentType(MediaType.APPLICATION_JSON);
-                String body ="{ " +
-			    "\"auth\": { " +
-			    "\"identity\": { "+
-			            "\"methods\": [ "+
-			                "\"password\" ], "+
-			            "\"password\": { "+
-		        	        "\"user\": { "+
-		                	    "\"name\": \""+ env.getRequiredProperty("glusterfs.username") +"\","+
-			                    "\"domain\": { "+
-        		        	        "\"name\": \""+ env.getRequiredProperty("glusterfs.domainname") +"\" "+
-		        	            "},"+
-                			    "\"password\": \""+ env.getRequiredProperty("glusterfs.password") +"\" "+
-		                	"} "+
-		        	    "} "+
-			        "} "+                     
-			    "} "+
-			"}";
-
-		logger.debug("[ap] body : " + body);
-		HttpEntity<String> entity = new HttpEntity<String>(body, headers);
+		String body = 	"";
 		ResponseEntity<String> response = null;
 		
-		try {
-            String url = env.getRequiredProperty("glusterfs.authurl") + env.getRequiredProperty("glusterfs.uri.auth");
-            logger.debug("[ap] url : " + url);
-
-            response = HttpClientUtils.send(url, entity, HttpMethod.POST);
-
-            if (response.getStatusCode() != HttpStatus.OK && response.getStatusCode() != HttpStatus.CREATED)
-                throw new ServiceBrokerException("Response code is " + response.getStatusCode());
+		try{
+				
+			String url = env.getRequiredProperty("glusterfs.endpoint") + env.getRequiredProperty("glusterfs.uri.deletetenant");
 
-            //JsonNode json = JsonUtils.convertToJson(response);
-            //logger.debug("[ap] json: " + json.toString());
+			url = url.replace("#TENANT_ID", tenantId);
+			
+			response = sendWithToken(GlusterfsBackend.KEYSTONE, url, HttpMethod.DELETE, headers, body);
+			
+			if (response.getStatusCode() != HttpStatus.NO_CONTENT) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
 
-            //setAuthToken(json);
-            if (response.getHeaders().containsKey("X-Subject-Token")){
-                ConstantsAuthToken.AUTH_TOKEN = response.getHeaders().get("X-Subject-Token").get(0);
-                setAuthToken(JsonUtils.convertToJson(response));
-            }
+		} catch (GlusterfsBackendException e) {
+			// 이미 삭제된 경우 삭제된 것으로 처리합니다. 그 외에는 상태 코드(재시도 가능 여부)를 유지하도록 그대로 전달합니다.
+			if (e.getStatusCode() != HttpStatus.NOT_FOUND.value()) {
+				logger.warn("[ap] tenant deletion failed, tenantId=" + tenantId + " : " + e.getMessage());
+				throw e;
+			}
+			logger.info("[ap] tenant already deleted, tenantId=" + tenantId);
+		} catch (ServiceBrokerException e) {
+			logger.warn("[ap] tenant deletion failed, tenantId=" + tenantId + " : " + e.getMessage());
+			throw e;
 		} catch (Exception e) {
-			e.printStackTrace();
 			throw handleException(e);
 		}
 	}
 
 	/**
-	 * Glusterfs 관리자 AuthToken 설정
-	 * @param json
+	 * Glusterfs 관리자 AuthToken Valid check
 	 */
-	private void setAuthToken(JsonNode json) throws ParseException {
-		logger.debug("json : " + json.toString());
-
-		//String authToken = json.get("token").get("id").asText();
-		//logger.debug("authToken : " + authToken);
-		//ConstantsAuthToken.AUTH_TOKEN = authToken;
-
-		String issued = json.get("token").get("issued_at").asText();
-		String expires = json.get("token").get("expires_at").asText();
-
-        ZonedDateTime issued_at = ZonedDateTime.parse(issued); //DateTimeFormatter
-        ZonedDateTime expires_at = ZonedDateTime.parse(expires);
-
-        ConstantsAuthToken.GLUSTERFS_TIMEZONE = env.getRequiredProperty("glusterfs.timezone");
-        ConstantsAuthToken.ISSUED_AT = issued_at;
-        ConstantsAuthToken.EXPIRES_AT = expires_at;
+	public boolean isValidToken(){
+		return glusterfsAuthTokenManager.isValidToken();
+	}
 
-        logger.debug("[ap] setAuthToken ISSUED_AT: " + ConstantsAuthToken.ISSUED_AT );
-        logger.debug("[ap] setAuthToken EXPIRES_AT : " + ConstantsAuthToken.EXPIRES_AT );
+	/**
+	 * 관리자 AuthToken 을 설정하여 요청을 전송합니다.
+	 * 재시도와 서킷브레이커는 GlusterfsBackendClient 가 처리하며, 토큰이 거부된 경우(401/403) 한번만 재인증 후 재전송합니다.
+	 * @param backend
+	 * @param url
+	 * @param httpMethod
+	 * @param headers
+	 * @param body
+	 * @return
+	 * @throws ServiceBrokerException
+	 */
+	private ResponseEntity<String> sendWithToken(GlusterfsBackend backend, String url, HttpMethod httpMethod, HttpHeaders headers, String body) throws ServiceBrokerException{
+		String token = glusterfsAuthTokenManager.getToken();
+		headers.set("X-Auth-Token", token);
+		try {
+			return glusterfsBackendClient.send(backend, url, new HttpEntity<String>(body, headers), httpMethod);
+		} catch (GlusterfsBackendException e) {
+			if (!e.isUnauthorized()) throw e;
+			logger.debug("[ap] AuthToken rejected (" + e.getMessage() + "), re-authenticate");
+			headers.set("X-Auth-Token", glusterfsAuthTokenManager.renewToken(token));
+			return glusterfsBackendClient.send(backend, url, new HttpEntity<String>(body, headers), httpMethod);
+		}
 	}
-	
+
 	/**
 	 * Glusterfs Quota 설정
 	 * @param planId
@@ -409,29 +557,36 @@ public class GlusterfsAdminService {
 	public void setGlusterfsQuota(String planId, String tenantId) throws ServiceBrokerException{
 		
 		logger.debug("GlusterfsAdminService.setGlusterfsQuota");
+		logger.debug("planId="+planId);
+		Long quotaBytes = getQuotaBytes(planId);
+		if(quotaBytes == null) throw new ServiceBrokerException("Unknown plan : " + planId);
+		
+		setGlusterfsQuotaBytes(tenantId, quotaBytes);
+	}
+	
+	/**
+	 * plan 의 quota(byte)
+	 * @param planId
+	 * @return 알 수 없는 plan 인 경우 null
+	 */
+	public Long getQuotaBytes(String planId){
+		return glusterfsPlanRegistry.getQuotaBytes(planId);
+	}
+	
+	/**
+	 * Swift 계정에 quota(byte) 를 설정합니다.
+	 * @param tenantId
+	 * @param quotaBytes
+	 * @throws ServiceBrokerException
+	 */
+	public void setGlusterfsQuotaBytes(String tenantId, long quotaBytes) throws ServiceBrokerException{
+		
+		logger.debug("GlusterfsAdminService.setGlusterfsQuotaBytes");
 		HttpHeaders headers = new HttpHeaders();	
 		headers.setContentType(MediaType.APPLICATION_JSON);
-		SimpleDateFormat formatter= new SimpleDateFormat("yyyy-MM-dd 'at' HH:mm:ss z");
-		Date date = new Date(System.currentTimeMillis());
-		if (!isValidToken())
-			setGlusterfsAuthToken();
-		headers.set("X-Auth-Token", ConstantsAuthToken.AUTH_TOKEN);
-		logger.debug("planId="+planId);
-		if(planId.equals(planA)) {
-			headers.set("X-Container-Meta-Quota-Bytes", planAsize+"");
-		}
-		else if(planId.equals(planB)) {
-			headers.set("X-Container-Meta-Quota-Bytes", planBsize+"");
-		}
-		else if(planId.equals(planC)) {
-			headers.set("X-Container-Meta-Quota-Bytes", planCsize+"");
-		}
-		else{
-			throw new ServiceBrokerException("");
-		}
+		headers.set("X-Container-Meta-Quota-Bytes", quotaBytes+"");
 		String body = 	"";
 		
-		HttpEntity<String> entity = new HttpEntity<String>(body, headers);
 		ResponseEntity<String> response = null;
 
 		try{
@@ -441,38 +596,32 @@ public class GlusterfsAdminService {
 			url = url.replace("#TENANT_ID", tenantId);
                         logger.debug("header[X-Container-Meta-Quota-Bytes] : " + headers.get("X-Container-Meta-Quota-Bytes").get(0));
 
-			response = HttpClientUtils.send(url, entity, HttpMethod.PUT);
+			response = sendWithToken(GlusterfsBackend.SWIFT, url, HttpMethod.PUT, headers, body);
 			logger.debug("[ap] response.getStatusCode() = "+response.getStatusCode()+" = ");
 
 			if (response.getStatusCode() != HttpStatus.ACCEPTED && response.getStatusCode() != HttpStatus.CREATED) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
 
+		} catch (ServiceBrokerException e) {
+			// GlusterfsBackendException 의 상태 코드(재시도 가능 여부)를 유지하도록 그대로 전달합니다.
+			logger.warn("[ap] quota update failed, tenantId=" + tenantId + " : " + e.getMessage());
+			throw e;
 		} catch (Exception e) {
-			e.printStackTrace();
-			if (e.getMessage().equals("403 Forbidden")) {
-				setGlusterfsAuthToken();
-				setGlusterfsQuota(planId, tenantId);
-			}else { 
-				throw new GlusterfsServiceException("Tennant exception occurred during update.");
-			}
+			throw handleException(e);
 		}
 	}
 
 	/**
 	 * 사용자 명으로 아이디 검색
 	 * @param username
-	 * @return
+	 * @return 없을 경우 null
 	 * @throws GlusterfsServiceException
 	 */
 	public String getGlusterfsUserIdByUserName(String username) throws GlusterfsServiceException{
 		
 		logger.debug("GlusterfsAdminService.getGlusterfsAuthToken");
 		HttpHeaders headers = new HttpHeaders();	
-		if (!isValidToken())
-			setGlusterfsAuthToken();
-		headers.set("X-Auth-Token", ConstantsAuthToken.AUTH_TOKEN);
 		String body = 	"";
 		String userId = "";
-		HttpEntity<String> entity = new HttpEntity<String>(body, headers);
 		ResponseEntity<String> response = null;
 		logger.debug("body : " + body);
 		
@@ -482,7 +631,7 @@ public class GlusterfsAdminService {
 
 			url = url.replace("#USER_NAME", username);
 			
-			response = HttpClientUtils.send(url, entity, HttpMethod.GET);
+			response = sendWithToken(GlusterfsBackend.KEYSTONE, url, HttpMethod.GET, headers, body);
 			
 			if (response.getStatusCode() != HttpStatus.OK) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
 
@@ -491,13 +640,7 @@ public class GlusterfsAdminService {
 			userId = getUserId(json);
 			
 		} catch (Exception e) {
-			if (e.getMessage().equals("401 Unauthorized")) {
-				logger.debug("setGlusterfsAuthToken");
-				setGlusterfsAuthToken();
-				userId = getGlusterfsUserIdByUserName(username);
-			}else { 
-				throw new GlusterfsServiceException("UserInfo exception occurred during search.");
-			}
+			throw new GlusterfsServiceException("UserInfo exception occurred during search.");
 		}
 		return userId;
 	}
@@ -510,12 +653,24 @@ public class GlusterfsAdminService {
 	private String getUserId(JsonNode json) {
 		logger.debug("getUserId() json : " + json.toString());
 		
-		String userId = json.get("users").get(0).get("id").asText();
+		JsonNode user = json.path("users").path(0);
+		if (user.isMissingNode()) return null;
 		
-		return userId;
+		return user.get("id").asText();
 		
 	}
 
+	/**
+	 * 생성된 사용자 아이디 추출
+	 * @param json
+	 * @return
+	 */
+	private String getCreatedUserId(JsonNode json) {
+		logger.debug("getCreatedUserId() json : " + json.toString());
+		
+		return json.get("user").get("id").asText();
+	}
+
 	/**
 	 * ROLE 아이디 추출
 	 * @param json
@@ -543,69 +698,157 @@ public class GlusterfsAdminService {
 		
 		logger.debug("GlusterfsAdminService.createTenant");
 		
+		GlusterfsServiceInstance glusterfsServiceInstance = createProject(serviceInstance);
+		setGlusterfsQuota(serviceInstance.getPlanId(), glusterfsServiceInstance.getTenantId());
+		return glusterfsServiceInstance;
+	}
+	
+	/**
+	 * ServiceInstance 의 Keystone project 를 생성합니다. quota 는 설정하지 않습니다.
+	 * 이전 시도에서 같은 이름의 project 를 이미 생성한 경우(409) 해당 project 를 사용합니다.
+	 * @param serviceInstance
+	 * @return
+	 * @throws ServiceBrokerException
+	 */
+	public GlusterfsServiceInstance createProject(ServiceInstance serviceInstance) throws ServiceBrokerException{
+		
+		logger.debug("GlusterfsAdminService.createProject");
+		
+		String tenantName = getTenantName(serviceInstance.getServiceInstanceId());
 		HttpHeaders headers = new HttpHeaders();	
 		headers.setContentType(MediaType.APPLICATION_JSON);
-		logger.debug("[ap] AUTH_TOKEN1 :" + ConstantsAuthToken.AUTH_TOKEN +"=");
-
-        if (!isValidToken())
-			setGlusterfsAuthToken();
-		logger.debug("[ap] AUTH_TOKEN2 : " + ConstantsAuthToken.AUTH_TOKEN);
-		headers.set("X-Auth-Token", ConstantsAuthToken.AUTH_TOKEN);
-		String body = 	"{" +
-				"\"project\": " +
-				    "{" + 
-					"\"name\": \"" + getTenantName(serviceInstance.getServiceInstanceId()) + "\"," + 
-					"\"description\": \"Glusterfs Service\"," + 
-					"\"enabled\": true" + 
-					"}" + 
-			"}";
-		HttpEntity<String> entity = new HttpEntity<String>(body, headers);
-		ResponseEntity<String> response = null;
+		String body = createProjectBody(tenantName);
 		logger.debug("createTenant() body : " + body);
 
-		GlusterfsServiceInstance glusterfsServiceInstance = null;
+		GlusterfsServiceInstance glusterfsServiceInstance = new GlusterfsServiceInstance(serviceInstance);
 		
 		try{
 				
 			String url = env.getRequiredProperty("glusterfs.endpoint") + env.getRequiredProperty("glusterfs.uri.createtenant");
 			logger.debug("createTenant() url : " + url);
-			if (serviceInstance != null)
-				logger.debug("[ap] planId="+serviceInstance.getPlanId()+"=");
-			if (glusterfsServiceInstance != null)
-				logger.debug("[ap] planId="+serviceInstance.getPlanId()+"=tenantId="+ glusterfsServiceInstance.getTenantId()+"=");
+			logger.debug("[ap] planId="+serviceInstance.getPlanId()+"=");
 
-			response = HttpClientUtils.send(url, entity, HttpMethod.POST);
+			ResponseEntity<String> response = sendWithToken(GlusterfsBackend.KEYSTONE, url, HttpMethod.POST, headers, body);
+			
+			if (response.getStatusCode() != HttpStatus.OK && response.getStatusCode() != HttpStatus.CREATED) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
 
 			JsonNode json = JsonUtils.convertToJson(response);
 			logger.debug("[ap] json ="+json +"=");
-
-			glusterfsServiceInstance = new GlusterfsServiceInstance(serviceInstance);
-	            	logger.debug("[ap] getTenantId=" + glusterfsServiceInstance.getTenantId()+"=getServiceInstanceId="+glusterfsServiceInstance.getServiceInstanceId());
 			setTenantInfo(json,glusterfsServiceInstance);
-            		logger.debug("[ap] getTenantId=" + glusterfsServiceInstance.getTenantId()+"=getServiceInstanceId="+glusterfsServiceInstance.getServiceInstanceId());
+			logger.debug("[ap] getTenantId=" + glusterfsServiceInstance.getTenantId()+"=getServiceInstanceId="+glusterfsServiceInstance.getServiceInstanceId());
 
-            		setGlusterfsQuota(serviceInstance.getPlanId(), glusterfsServiceInstance.getTenantId());
+		} catch (GlusterfsBackendException e) {
+			if (e.getStatusCode() != HttpStatus.CONFLICT.value()) throw new ServiceBrokerException("Tennant exception occurred during creation.");
+			logger.info("[ap] tenant already exists, adopt tenantName=" + tenantName);
+			glusterfsServiceInstance.setTenantId(getGlusterfsTenantIdByTenantName(tenantName));
+			glusterfsServiceInstance.setTenantName(tenantName);
 			
-			if (response.getStatusCode() != HttpStatus.OK && response.getStatusCode() != HttpStatus.CREATED) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
-
 		} catch (ServiceBrokerException e) {
-			e.printStackTrace();
-			if (e.getMessage().equals("401 Unauthorized")) {
-				setGlusterfsAuthToken();
-				glusterfsServiceInstance = createTenant(serviceInstance);
-			}else if(e.getMessage().equals("409 Conflict")){
-				throw new ServiceInstanceExistsException(serviceInstance);
-			}else { 
-				throw new ServiceBrokerException("Tennant exception occurred during creation.");
-			}
-			
+			throw e;
 		} catch (Exception e) {
-			e.printStackTrace();
+			throw handleException(e);
 		} 
 		
 		return glusterfsServiceInstance;
 	}
 	
+	/**
+	 * Tenant 명으로 Tenant ID 를 조회합니다.
+	 * @param tenantName
+	 * @return
+	 * @throws GlusterfsServiceException
+	 */
+	public String getGlusterfsTenantIdByTenantName(String tenantName) throws GlusterfsServiceException{
+		
+		logger.debug("GlusterfsAdminService.getGlusterfsTenantIdByTenantName");
+		HttpHeaders headers = new HttpHeaders();	
+		
+		try{
+			String url = env.getRequiredProperty("glusterfs.endpoint") + env.getRequiredProperty("glusterfs.uri.tenantinfo");
+			url = url.replace("#TENANT_NAME", tenantName);
+			
+			ResponseEntity<String> response = sendWithToken(GlusterfsBackend.KEYSTONE, url, HttpMethod.GET, headers, "");
+			
+			if (response.getStatusCode() != HttpStatus.OK) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
+
+			return JsonUtils.convertToJson(response).get("projects").get(0).get("id").asText();
+		} catch (Exception e) {
+			throw new GlusterfsServiceException("TenantInfo exception occurred during search.");
+		}
+	}
+	
+	/**
+	 * 대기열(tenant_pool)에 넣을 Keystone project 를 생성하고 plan 의 quota 를 설정합니다.
+	 * quota 설정에 실패한 경우 생성한 project 를 삭제합니다.
+	 * @param planId
+	 * @return
+	 * @throws ServiceBrokerException
+	 */
+	public GlusterfsPooledTenant createPooledTenant(String planId) throws ServiceBrokerException{
+		
+		logger.debug("GlusterfsAdminService.createPooledTenant");
+		
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		String body = createProjectBody(TENANT_PREFIX + POOL_TENANT_PREFIX + getUsername(UUID.randomUUID().toString()));
+		
+		String url = env.getRequiredProperty("glusterfs.endpoint") + env.getRequiredProperty("glusterfs.uri.createtenant");
+		ResponseEntity<String> response = sendWithToken(GlusterfsBackend.KEYSTONE, url, HttpMethod.POST, headers, body);
+		if (response.getStatusCode() != HttpStatus.OK && response.getStatusCode() != HttpStatus.CREATED) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
+		
+		GlusterfsPooledTenant tenant = new GlusterfsPooledTenant();
+		try {
+			JsonNode json = JsonUtils.convertToJson(response);
+			tenant.setTenantId(json.get("project").get("id").asText());
+			tenant.setTenantName(json.get("project").get("name").asText());
+		} catch (Exception e) {
+			throw new GlusterfsServiceException("Invalid create tenant response : " + e.getLocalizedMessage());
+		}
+		tenant.setPlanId(planId);
+		
+		try {
+			Long quotaBytes = getQuotaBytes(planId);
+			if(quotaBytes == null) throw new ServiceBrokerException("Unknown plan : " + planId);
+			setGlusterfsQuotaBytes(tenant.getTenantId(), quotaBytes);
+			tenant.setQuotaBytes(quotaBytes);
+		} catch (ServiceBrokerException e) {
+			deleteTenantById(tenant.getTenantId());
+			throw e;
+		}
+		return tenant;
+	}
+	
+	/**
+	 * Keystone project 명을 변경합니다.
+	 * @param tenantId
+	 * @param tenantName
+	 * @throws ServiceBrokerException
+	 */
+	public void renameTenant(String tenantId, String tenantName) throws ServiceBrokerException{
+		
+		logger.debug("GlusterfsAdminService.renameTenant");
+		
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		String body = "{\"project\": {\"name\": \"" + tenantName + "\"}}";
+		
+		String url = env.getRequiredProperty("glusterfs.endpoint") + env.getRequiredProperty("glusterfs.uri.updatetenant");
+		url = url.replace("#TENANT_ID", tenantId);
+		ResponseEntity<String> response = sendWithToken(GlusterfsBackend.KEYSTONE, url, HttpMethod.PATCH, headers, body);
+		if (response.getStatusCode() != HttpStatus.OK) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
+	}
+	
+	private String createProjectBody(String tenantName) {
+		return "{" +
+				"\"project\": " +
+				    "{" + 
+					"\"name\": \"" + tenantName + "\"," + 
+					"\"description\": \"Glusterfs Service\"," + 
+					"\"enabled\": true" + 
+					"}" + 
+			"}";
+	}
+	
 	private void setTenantInfo(JsonNode json, GlusterfsServiceInstance glusterfsServiceInstance) {
 		logger.debug("setTenantInfo() json : " + json.toString());
 		glusterfsServiceInstance.setTenantId(json.get("project").get("id").asText());
@@ -623,12 +866,8 @@ public class GlusterfsAdminService {
 		String roleId = "";
 		HttpHeaders headers = new HttpHeaders();
 		headers.setContentType(MediaType.APPLICATION_JSON);
-		if (!isValidToken())
-			setGlusterfsAuthToken();
-		headers.set("X-Auth-Token", ConstantsAuthToken.AUTH_TOKEN);
 		String body = 	"";
 		logger.debug("body : " + body);
-		HttpEntity<String> entity = new HttpEntity<String>(body, headers);
 		ResponseEntity<String> response = null;
 
 		try{
@@ -637,7 +876,7 @@ public class GlusterfsAdminService {
 			url = url.replace("#ROLE_NAME", roleName);
 			logger.debug("url : " + url);
 
-			response = HttpClientUtils.send(url, entity, HttpMethod.GET);
+			response = sendWithToken(GlusterfsBackend.KEYSTONE, url, HttpMethod.GET, headers, body);
 
 			if (response.getStatusCode() != HttpStatus.OK) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
 
@@ -647,9 +886,7 @@ public class GlusterfsAdminService {
 
 		} catch (ServiceBrokerException e) {
 			e.printStackTrace();
-			if (e.getMessage().equals("401 Unauthorized")) {
-				setGlusterfsAuthToken();
-			}else if(e.getMessage().equals("409 Conflict")){
+			if(e.getMessage().equals("409 Conflict")){
 				throw new GlusterfsServiceException("Tennant exception occurred during creation.(duplicated)");
 			}else {
 				throw new GlusterfsServiceException("Tennant exception occurred during creation.");
@@ -662,6 +899,34 @@ public class GlusterfsAdminService {
 		return roleId;
 	}
 
+	/**
+	 * role ID 를 캐시에서 조회합니다. 캐시에 없으면 keystone 에서 조회하여 캐시합니다.
+	 * @param roleName
+	 * @return
+	 * @throws GlusterfsServiceException
+	 */
+	public String getCachedRolesIdByRoleName(String roleName) throws GlusterfsServiceException{
+		String roleId = glusterfsRoleIdCache.get(roleName);
+		if (roleId == null) {
+			roleId = getGlusterfsRolesIdByRoleName(roleName);
+			if (roleId != null && !roleId.isEmpty())
+				glusterfsRoleIdCache.put(roleName, roleId);
+		}
+		return roleId;
+	}
+
+	/**
+	 * 브로커 기동 시 role ID 캐시를 미리 채웁니다.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void warmRoleIdCache() {
+		try {
+			getCachedRolesIdByRoleName(env.getRequiredProperty("glusterfs.rolename"));
+		} catch (Exception e) {
+			logger.warn("[ap] role ID cache warm-up failed : " + e.getLocalizedMessage());
+		}
+	}
+
 	/**
 	 * 해당하는 User에게 role 을 할당합니다.
 	 * @param tenantId
@@ -669,34 +934,47 @@ public class GlusterfsAdminService {
 	 * @throws GlusterfsServiceException
 	 */
 	public void assignRole(String tenantId, String userId) throws GlusterfsServiceException{
+		assignRole(tenantId, userId, getCachedRolesIdByRoleName(env.getRequiredProperty("glusterfs.rolename")), false);
+	}
+
+	/**
+	 * 미리 조회한 role ID 로 해당하는 User에게 role 을 할당합니다.
+	 * @param tenantId
+	 * @param userId
+	 * @param roleId
+	 * @throws GlusterfsServiceException
+	 */
+	public void assignRole(String tenantId, String userId, String roleId) throws GlusterfsServiceException{
+		assignRole(tenantId, userId, roleId, false);
+	}
+
+	private void assignRole(String tenantId, String userId, String roleId, boolean roleReloaded) throws GlusterfsServiceException{
 		logger.debug("GlusterfsAdminService.assignRole");
 		HttpHeaders headers = new HttpHeaders();
 		headers.setContentType(MediaType.APPLICATION_JSON);
-		if (!isValidToken())
-			setGlusterfsAuthToken();
-		headers.set("X-Auth-Token", ConstantsAuthToken.AUTH_TOKEN);
 		String body = 	"";
-		HttpEntity<String> entity = new HttpEntity<String>(body, headers);
 		ResponseEntity<String> response = null;
 		logger.debug("body : " + body);
+		String roleName = env.getRequiredProperty("glusterfs.rolename");
 
 		try{
 			//glusterfs.uri.assignrole=/v3/projects/#TENANT_ID/users/#USER_ID/roles/#ROLE_ID
-			String roleId = getGlusterfsRolesIdByRoleName(env.getRequiredProperty("glusterfs.rolename"));
 			String url = env.getRequiredProperty("glusterfs.endpoint") + env.getRequiredProperty("glusterfs.uri.assignrole");
 			url = url.replace("#TENANT_ID", tenantId);
 			url = url.replace("#USER_ID", userId);
 			url = url.replace("#ROLE_ID", roleId);
 			logger.debug("url : " + url);
 
-			response = HttpClientUtils.send(url, entity, HttpMethod.PUT);
+			response = sendWithToken(GlusterfsBackend.KEYSTONE, url, HttpMethod.PUT, headers, body);
 
 			if (response.getStatusCode() != HttpStatus.NO_CONTENT) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
 
 		} catch (ServiceBrokerException e) {
 			e.printStackTrace();
-			if (e.getMessage().equals("401 Unauthorized")) {
-				setGlusterfsAuthToken();
+			if(e.getMessage().equals("404 Not Found") && !roleReloaded){
+				// role 이 재생성되어 ID 가 바뀐 경우 캐시를 무효화하고 다시 조회하여 할당합니다.
+				glusterfsRoleIdCache.invalidate(roleName);
+				assignRole(tenantId, userId, getCachedRolesIdByRoleName(roleName), true);
 			}else if(e.getMessage().equals("409 Conflict")){
 				throw new GlusterfsServiceException("Tennant exception occurred during creation.(duplicated)");
 			}else {
@@ -718,12 +996,16 @@ public class GlusterfsAdminService {
 	public void updatePlan(ServiceInstance instance, ServiceInstance request) throws GlusterfsServiceException{
 		try{
 			logger.debug("GlusterfsAdminService.updatePlan");
-			jdbcTemplate.update(SERVICE_INSTANCES_UPDATE_FILDS,
+			glusterfsInstanceRepository.updateInstancePlan(instance.getServiceInstanceId(),
+					instance.getServiceDefinitionId(),
+					request.getPlanId(),
+					instance.getOrganizationGuid(),
+					instance.getSpaceGuid());
+			glusterfsRecordCache.updateInstancePlan(instance.getServiceInstanceId(),
 					instance.getServiceDefinitionId(),
 					request.getPlanId(),
 					instance.getOrganizationGuid(),
-					instance.getSpaceGuid(),
-					instance.getServiceInstanceId());
+					instance.getSpaceGuid());
 		} catch (Exception e) {
 			throw handleException(e);
 		}
@@ -732,21 +1014,19 @@ public class GlusterfsAdminService {
 	/**
 	 * ServiceInstanceBinding 정보를 저장합니다.
 	 * @param serviceInstanceBinding
+	 * @param userId keystone 사용자 ID
 	 * @throws GlusterfsServiceException
 	 */
-	public void saveBind(ServiceInstanceBinding serviceInstanceBinding) throws GlusterfsServiceException{
+	public void saveBind(ServiceInstanceBinding serviceInstanceBinding, String userId) throws GlusterfsServiceException{
 		try{
 			logger.debug("GlusterfsAdminService.saveBind");
-			jdbcTemplate.update(SERVICE_BINDING_ADD, 
-					serviceInstanceBinding.getId(),
-					serviceInstanceBinding.getServiceInstanceId(),
-					serviceInstanceBinding.getAppGuid(),
-					serviceInstanceBinding.getCredentials().get("username"),
-					serviceInstanceBinding.getCredentials().get("password"),
+			glusterfsBindingRepository.saveBinding(serviceInstanceBinding, userId);
+			glusterfsRecordCache.putBinding(new BindingRecord(serviceInstanceBinding.getId(),
 					serviceInstanceBinding.getServiceInstanceId(),
 					serviceInstanceBinding.getAppGuid(),
-					serviceInstanceBinding.getCredentials().get("username"),
-					serviceInstanceBinding.getCredentials().get("password"));
+					userId,
+					(String) serviceInstanceBinding.getCredentials().get("username"),
+					(String) serviceInstanceBinding.getCredentials().get("password")), true);
 		} catch (Exception e) {
 			throw handleException(e);
 		}
@@ -760,7 +1040,8 @@ public class GlusterfsAdminService {
 	public void deleteBind(String id) throws GlusterfsServiceException{
 		try{
 			logger.debug("GlusterfsAdminService.deleteBind");
-			jdbcTemplate.update(SERVICE_BINDING_DELETE_BY_BINDING_ID, id);
+			glusterfsBindingRepository.deleteBinding(id);
+			glusterfsRecordCache.invalidateBinding(id);
 		} catch (Exception e) {
 			throw handleException(e);
 		}
@@ -770,15 +1051,13 @@ public class GlusterfsAdminService {
 	 * 해당하는 User를 생성합니다.
 	 * @param userId
 	 * @param password
+	 * @return 생성된 keystone 사용자 ID
 	 * @throws GlusterfsServiceException
 	 */
-	public void createUser(String tenantId, String userId, String password) throws GlusterfsServiceException{
+	public String createUser(String tenantId, String userId, String password) throws GlusterfsServiceException{
 		logger.debug("GlusterfsAdminService.createUser");
 		HttpHeaders headers = new HttpHeaders();	
 		headers.setContentType(MediaType.APPLICATION_JSON);
-		if (!isValidToken())
-			setGlusterfsAuthToken();
-		headers.set("X-Auth-Token", ConstantsAuthToken.AUTH_TOKEN);
 		String body = 	"{" +
 					    	"\"user\": {" +
 					    		"\"name\": \"" + userId + "\"," +
@@ -788,27 +1067,27 @@ public class GlusterfsAdminService {
 						        "\"default_project_id\" : \"" + tenantId + "\"" +
 						     "}" +
 						"}";
-		HttpEntity<String> entity = new HttpEntity<String>(body, headers);
 		ResponseEntity<String> response = null;
 		logger.debug("createUser() body : " + body);
+		String createdUserId = null;
 		
 		try{
 				
 			String url = env.getRequiredProperty("glusterfs.endpoint") + env.getRequiredProperty("glusterfs.uri.createusers");
 			logger.debug("[ap] createUser() url : " + url);
-			logger.debug("[ap] ConstantsAuthToken.AUTH_TOKEN="+ConstantsAuthToken.AUTH_TOKEN+"= headers[X-Auth-Token]="+ entity.getHeaders().get("X-Auth-Token").get(0)+"=");
 			
-			response = HttpClientUtils.send(url, entity, HttpMethod.POST);
+			response = sendWithToken(GlusterfsBackend.KEYSTONE, url, HttpMethod.POST, headers, body);
 			
 			if (response.getStatusCode() != HttpStatus.OK && response.getStatusCode() != HttpStatus.CREATED) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
 
+			createdUserId = getCreatedUserId(JsonUtils.convertToJson(response));
+
 		} catch (ServiceBrokerException e) {
 			e.printStackTrace();
-			if (e.getMessage().equals("401 Unauthorized")) {
-				setGlusterfsAuthToken();
-				createUser(tenantId, userId, password);
-			}else if(e.getMessage().equals("409 Conflict")){
-				throw new GlusterfsServiceException("Tennant exception occurred during creation.(duplicated)");
+			if(e.getMessage().equals("409 Conflict")){
+				// 이전 시도에서 생성한 사용자입니다. 호출자가 사용자 명으로 ID 를 조회합니다.
+				logger.info("[ap] user already exists, adopt username=" + userId);
+				return null;
 			}else { 
 				throw new GlusterfsServiceException("Tennant exception occurred during creation.");
 			}
@@ -817,26 +1096,42 @@ public class GlusterfsAdminService {
 			e.printStackTrace();
 			throw handleException(e);
 		} 
+		return createdUserId;
 	}
 	
 	//public void deleteUser(String database, String userId) throws GlusterfsServiceException{
 	/**
 	 * 해당하는 User를 삭제합니다.
 	 * @param bindingId
-	 * @throws GlusterfsServiceException
+	 * @throws ServiceBrokerException
 	 */
-	public void deleteUser(String instanceId, String bindingId) throws GlusterfsServiceException{
+	public void deleteUser(String instanceId, String bindingId) throws ServiceBrokerException{
 		logger.debug("GlusterfsAdminService.createTenant");
 		
-		String userId = getGlusterfsUserIdByUserName(getUsername(bindingId));
+		// 바인딩 시 저장한 사용자 ID를 사용하고, 저장되지 않은 이전 바인딩은 사용자 명으로 조회합니다.
+		String userId = findBindUserIdById(bindingId);
+		if (userId == null || userId.isEmpty())
+			userId = getGlusterfsUserIdByUserName(getUsername(bindingId));
+		
+		// 이전 시도에서 이미 삭제된 경우 삭제된 것으로 처리합니다.
+		if (userId == null) {
+			logger.info("[ap] user already deleted, bindingId=" + bindingId);
+			return;
+		}
+		deleteUserById(userId);
+	}
+	
+	/**
+	 * 사용자 ID 로 User를 삭제합니다.
+	 * @param userId
+	 * @throws ServiceBrokerException Keystone 오류는 GlusterfsBackendException 으로 전달합니다.
+	 */
+	public void deleteUserById(String userId) throws ServiceBrokerException{
+		logger.debug("GlusterfsAdminService.deleteUserById");
 		
 		HttpHeaders headers = new HttpHeaders();	
 		headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-		if (!isValidToken())
-			setGlusterfsAuthToken();
-		headers.set("X-Auth-Token", ConstantsAuthToken.AUTH_TOKEN);
 		String body = 	"";
-		HttpEntity<String> entity = new HttpEntity<String>(body, headers);
 		ResponseEntity<String> response = null;
 		logger.debug("deleteUser() body : " + body);
 		
@@ -846,19 +1141,20 @@ public class GlusterfsAdminService {
 			logger.debug("deleteuser() url : " + url);
 			logger.debug("deleteUser() userId : " + userId);
 			url = url.replace("#USER_ID", userId);
-			response = HttpClientUtils.send(url, entity, HttpMethod.DELETE);
+			response = sendWithToken(GlusterfsBackend.KEYSTONE, url, HttpMethod.DELETE, headers, body);
 			
 			if (response.getStatusCode() != HttpStatus.NO_CONTENT) throw new ServiceBrokerException("Response code is " + response.getStatusCode());
 
-		} catch (ServiceBrokerException e) {
-			e.printStackTrace();
-			if (e.getMessage().equals("401 Unauthorized")) {
-				setGlusterfsAuthToken();
-				deleteUser(instanceId, bindingId);
-			}else { 
-				throw new GlusterfsServiceException("Tennant exception occurred during creation.");
+		} catch (GlusterfsBackendException e) {
+			// 이미 삭제된 경우 삭제된 것으로 처리합니다.
+			if (e.getStatusCode() != HttpStatus.NOT_FOUND.value()) {
+				logger.warn("[ap] user deletion failed, userId=" + userId + " : " + e.getMessage());
+				throw e;
 			}
-			
+			logger.info("[ap] user already deleted, userId=" + userId);
+		} catch (ServiceBrokerException e) {
+			logger.warn("[ap] user deletion failed, userId=" + userId + " : " + e.getMessage());
+			throw e;
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw handleException(e);
@@ -900,40 +1196,5 @@ public class GlusterfsAdminService {
 						
 	}
 	
-	private static final class ServiceInstanceRowMapper implements RowMapper<ServiceInstance> {
-        @Override
-        public ServiceInstance mapRow(ResultSet rs, int rowNum) throws SQLException {
-            CreateServiceInstanceRequest request = new CreateServiceInstanceRequest();
-            request.withServiceInstanceId(rs.getString(1));
-            request.setServiceDefinitionId(rs.getString(2));
-            request.setPlanId(rs.getString(3));
-            request.setOrganizationGuid(rs.getString(4));
-            request.setSpaceGuid(rs.getString(5));
-            return new ServiceInstance(request);
-        }
-    }
-	
-	private static final class GlusterfsServiceInstanceRowMapper implements RowMapper<GlusterfsServiceInstance> {
-        @Override
-        public GlusterfsServiceInstance mapRow(ResultSet rs, int rowNum) throws SQLException {
-        	GlusterfsServiceInstance instance = new GlusterfsServiceInstance();
-        	instance.setServiceInstanceId(rs.getString(1));
-        	instance.setTenantName(rs.getString(2));
-        	instance.setTenantId(rs.getString(3));
-            return instance;
-        }
-    }
-	
-	private static final class ServiceInstanceBindingRowMapper implements RowMapper<ServiceInstanceBinding> {
-        @Override
-        public ServiceInstanceBinding mapRow(ResultSet rs, int rowNum) throws SQLException {
-            return new ServiceInstanceBinding(rs.getString(1), 
-            		rs.getString(2), 
-            		new HashMap<String, Object>(), 
-            		"", 
-            		rs.getString(3));
-        }
-    }
-	
 	
 }
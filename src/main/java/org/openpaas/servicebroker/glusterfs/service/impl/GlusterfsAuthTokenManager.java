@@ -0,0 +1,247 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openpaas.servicebroker.common.JsonUtils;
+import org.openpaas.servicebroker.exception.ServiceBrokerException;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsBackend;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsBackendClient;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsServiceException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsAuthToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Keystone 관리자 AuthToken 을 관리하는 클래스.
+ * 토큰 갱신은 한번에 하나만 수행하며, 갱신 중에 요청한 다른 스레드는 진행중인 갱신 결과를 기다린다.
+ * 토큰과 만료 시각은 하나의 불변 객체로 교체되어 항상 일관된 값이 조회된다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Service
+public class GlusterfsAuthTokenManager implements PublicMetrics {
+
+	private static final long DEFAULT_WAIT_TIMEOUT = 30000L;
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsAuthTokenManager.class);
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private GlusterfsBackendClient glusterfsBackendClient;
+
+	private final AtomicReference<GlusterfsAuthToken> current = new AtomicReference<GlusterfsAuthToken>();
+
+	private final Object refreshLock = new Object();
+
+	// refreshLock 으로 보호되는 진행중인 갱신 작업
+	private CompletableFuture<GlusterfsAuthToken> inFlight;
+
+	private final AtomicLong refreshCount = new AtomicLong();
+
+	private final AtomicLong refreshFailureCount = new AtomicLong();
+
+	private final AtomicLong waitCount = new AtomicLong();
+
+	/**
+	 * 유효한 관리자 AuthToken 을 반환합니다. 만료된 경우 갱신 후 반환합니다.
+	 * @return
+	 * @throws GlusterfsServiceException
+	 */
+	public String getToken() throws GlusterfsServiceException {
+		GlusterfsAuthToken token = current.get();
+		if (token != null && token.isValid(now()))
+			return token.getToken();
+		return refresh(token).getToken();
+	}
+
+	/**
+	 * Keystone 이 거부한 토큰을 갱신합니다. 다른 스레드가 이미 갱신한 경우 갱신된 토큰을 반환합니다.
+	 * @param rejectedToken
+	 * @return
+	 * @throws GlusterfsServiceException
+	 */
+	public String renewToken(String rejectedToken) throws GlusterfsServiceException {
+		GlusterfsAuthToken token = current.get();
+		if (token != null && !token.getToken().equals(rejectedToken) && token.isValid(now()))
+			return token.getToken();
+		return refresh(token).getToken();
+	}
+
+	/**
+	 * 현재 토큰의 유효 여부와 관계없이 새 토큰을 발급받습니다. 진행중인 갱신이 있으면 그 결과를 사용합니다.
+	 * @return
+	 * @throws GlusterfsServiceException
+	 */
+	public GlusterfsAuthToken refreshAhead() throws GlusterfsServiceException {
+		return refresh(current.get());
+	}
+
+	/**
+	 * 현재 보관중인 토큰이 유효한지 확인합니다.
+	 * @return
+	 */
+	public boolean isValidToken() {
+		GlusterfsAuthToken token = current.get();
+		return token != null && token.isValid(now());
+	}
+
+	/**
+	 * 현재 보관중인 토큰 정보를 반환합니다.
+	 * @return
+	 */
+	public GlusterfsAuthToken getCurrent() {
+		return current.get();
+	}
+
+	/**
+	 * stale 토큰을 대체하는 새 토큰을 발급받습니다. 진행중인 갱신이 있으면 그 결과를 기다립니다.
+	 * @param stale 호출자가 유효하지 않다고 판단한 토큰
+	 * @return
+	 * @throws GlusterfsServiceException
+	 */
+	private GlusterfsAuthToken refresh(GlusterfsAuthToken stale) throws GlusterfsServiceException {
+		CompletableFuture<GlusterfsAuthToken> future;
+		boolean owner = false;
+
+		synchronized (refreshLock) {
+			GlusterfsAuthToken latest = current.get();
+			if (latest != null && latest != stale && latest.isValid(now()))
+				return latest;
+			if (inFlight == null) {
+				inFlight = new CompletableFuture<GlusterfsAuthToken>();
+				owner = true;
+			}
+			future = inFlight;
+		}
+
+		if (owner) {
+			try {
+				GlusterfsAuthToken token = requestToken();
+				current.set(token);
+				refreshCount.incrementAndGet();
+				future.complete(token);
+				return token;
+			} catch (GlusterfsServiceException e) {
+				refreshFailureCount.incrementAndGet();
+				future.completeExceptionally(e);
+				throw e;
+			} catch (RuntimeException e) {
+				refreshFailureCount.incrementAndGet();
+				future.completeExceptionally(e);
+				throw e;
+			} finally {
+				synchronized (refreshLock) {
+					inFlight = null;
+				}
+			}
+		}
+
+		waitCount.incrementAndGet();
+		try {
+			return future.get(env.getProperty("glusterfs.token.waittimeout", Long.class, DEFAULT_WAIT_TIMEOUT), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GlusterfsServiceException("Interrupted while waiting for AuthToken.");
+		} catch (TimeoutException e) {
+			throw new GlusterfsServiceException("Timed out while waiting for AuthToken.");
+		} catch (ExecutionException e) {
+			throw new GlusterfsServiceException(e.getCause().getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Keystone 에서 관리자 AuthToken 을 발급받습니다.
+	 * @return
+	 * @throws GlusterfsServiceException
+	 */
+	private GlusterfsAuthToken requestToken() throws GlusterfsServiceException {
+
+		logger.debug("GlusterfsAuthTokenManager.requestToken");
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		String body ="{ " +
+				"\"auth\": { " +
+				"\"identity\": { "+
+						"\"methods\": [ "+
+							"\"password\" ], "+
+						"\"password\": { "+
+							"\"user\": { "+
+								"\"name\": \""+ env.getRequiredProperty("glusterfs.username") +"\","+
+								"\"domain\": { "+
+									"\"name\": \""+ env.getRequiredProperty("glusterfs.domainname") +"\" "+
+								"},"+
+								"\"password\": \""+ env.getRequiredProperty("glusterfs.password") +"\" "+
+							"} "+
+						"} "+
+					"} "+
+				"} "+
+			"}";
+
+		HttpEntity<String> entity = new HttpEntity<String>(body, headers);
+		ResponseEntity<String> response = null;
+
+		try {
+			String url = env.getRequiredProperty("glusterfs.authurl") + env.getRequiredProperty("glusterfs.uri.auth");
+			logger.debug("[ap] url : " + url);
+
+			response = glusterfsBackendClient.send(GlusterfsBackend.KEYSTONE, url, entity, HttpMethod.POST);
+
+			if (response.getStatusCode() != HttpStatus.OK && response.getStatusCode() != HttpStatus.CREATED)
+				throw new ServiceBrokerException("Response code is " + response.getStatusCode());
+
+			if (!response.getHeaders().containsKey("X-Subject-Token"))
+				throw new ServiceBrokerException("X-Subject-Token header is missing.");
+
+			JsonNode json = JsonUtils.convertToJson(response);
+			ZonedDateTime issuedAt = ZonedDateTime.parse(json.get("token").get("issued_at").asText());
+			ZonedDateTime expiresAt = ZonedDateTime.parse(json.get("token").get("expires_at").asText());
+
+			logger.debug("[ap] requestToken ISSUED_AT: " + issuedAt);
+			logger.debug("[ap] requestToken EXPIRES_AT : " + expiresAt);
+
+			return new GlusterfsAuthToken(response.getHeaders().getFirst("X-Subject-Token"), issuedAt, expiresAt);
+		} catch (Exception e) {
+			logger.warn(e.getLocalizedMessage(), e);
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		}
+	}
+
+	private ZonedDateTime now() {
+		return ZonedDateTime.now(ZoneId.of(env.getProperty("glusterfs.timezone", "UTC")));
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Long>("glusterfs.token.refresh.count", refreshCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.token.refresh.failure", refreshFailureCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.token.wait.count", waitCount.get()));
+		return metrics;
+	}
+
+}
@@ -0,0 +1,118 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsAuthToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keystone 관리자 AuthToken 을 만료 전에 미리 갱신하는 클래스.
+ * 만료 시각(expires_at)보다 margin + jitter 만큼 앞서 갱신하여 브로커 요청이 토큰 발급을 기다리지 않도록 한다.
+ * 갱신에 실패하면 retryinterval 후 다시 시도하며, 그 사이 토큰이 만료되면 GlusterfsAuthTokenManager 가 동기적으로 발급한다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Service
+public class GlusterfsAuthTokenRefresher implements PublicMetrics {
+
+	private static final long MIN_DELAY = 1000L;
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsAuthTokenRefresher.class);
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private GlusterfsAuthTokenManager glusterfsAuthTokenManager;
+
+	private ScheduledExecutorService scheduler;
+
+	private final AtomicLong refreshCount = new AtomicLong();
+
+	private final AtomicLong failureCount = new AtomicLong();
+
+	private final AtomicLong lastLeadTime = new AtomicLong();
+
+	@PostConstruct
+	public void start() {
+		if (!env.getProperty("glusterfs.token.refresh.enabled", Boolean.class, true)) return;
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("glusterfs-token-refresher-"));
+		schedule(0L);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (scheduler != null) scheduler.shutdownNow();
+	}
+
+	private void schedule(long delay) {
+		if (scheduler.isShutdown()) return;
+		logger.debug("GlusterfsAuthTokenRefresher next refresh in " + delay + "ms");
+		scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				refresh();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 토큰을 갱신하고 다음 갱신 시각을 예약합니다.
+	 */
+	void refresh() {
+		GlusterfsAuthToken previous = glusterfsAuthTokenManager.getCurrent();
+		try {
+			GlusterfsAuthToken token = glusterfsAuthTokenManager.refreshAhead();
+			refreshCount.incrementAndGet();
+
+			// 이전 토큰 만료 시각보다 얼마나 앞서 갱신되었는지 기록합니다.
+			if (previous != null && previous.getExpiresAt() != null)
+				lastLeadTime.set(Duration.between(ZonedDateTime.now(), previous.getExpiresAt()).toMillis());
+
+			schedule(nextDelay(token));
+		} catch (Exception e) {
+			failureCount.incrementAndGet();
+			logger.warn("GlusterfsAuthTokenRefresher refresh failed : " + e.getLocalizedMessage());
+			schedule(env.getProperty("glusterfs.token.refresh.retryinterval", Long.class, 30000L));
+		}
+	}
+
+	private long nextDelay(GlusterfsAuthToken token) {
+		long margin = env.getProperty("glusterfs.token.refresh.margin", Long.class, 300000L);
+		long jitter = env.getProperty("glusterfs.token.refresh.jitter", Long.class, 60000L);
+		long untilExpiry = Duration.between(ZonedDateTime.now(), token.getExpiresAt()).toMillis();
+		long delay = untilExpiry - margin - (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0L);
+		// 토큰 유효기간이 margin 보다 짧으면 유효기간의 절반 시점에 갱신합니다.
+		if (delay < MIN_DELAY) delay = untilExpiry / 2;
+		return Math.max(delay, MIN_DELAY);
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Long>("glusterfs.token.background.refresh.count", refreshCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.token.background.refresh.failure", failureCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.token.background.refresh.leadtime", lastLeadTime.get()));
+		return metrics;
+	}
+
+}
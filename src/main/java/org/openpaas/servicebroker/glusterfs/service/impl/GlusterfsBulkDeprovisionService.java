@@ -0,0 +1,375 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsRateLimiter;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsReadContext;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsBindingRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsInstanceRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsRecordHandler;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsRecordCache.BindingRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * 조직 / 공간 삭제 시 해당하는 인스턴스와 바인딩을 한번에 삭제하는 운영자용 클래스.
+ * service_instances 를 instance_id 순으로 한 페이지씩 조회하고, 인스턴스 단위로 최대 parallelism 개를 동시에 삭제한다.
+ * 인스턴스의 바인딩을 먼저 삭제하며, 바인딩 삭제에 실패한 인스턴스는 삭제하지 않는다.
+ * 저장된 사용자 ID / tenant ID 를 사용하므로 이름 조회 없이 Keystone 삭제 요청만 보내며, 전체 삭제 요청은 초당 rate 건으로 제한한다.
+ * 같은 인스턴스 / 바인딩에 대한 CC 요청과는 GlusterfsRequestCoordinator 의 잠금으로 직렬화되며, 잠금을 잡은 뒤 다시 조회하여
+ * 그 사이 CC 요청으로 삭제된 항목은 삭제된 것으로 처리한다.
+ * 삭제는 여러 요청이 함께 사용하는 glusterfsBulkExecutor 에서 실행되며, 스레드 풀이 가득 찬 경우 해당 인스턴스는 건너뛴다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Service
+public class GlusterfsBulkDeprovisionService implements PublicMetrics {
+
+	public static final String TYPE_BINDING = "binding";
+	public static final String TYPE_INSTANCE = "instance";
+
+	public static final String STATUS_DELETED = "deleted";
+	public static final String STATUS_FAILED = "failed";
+	public static final String STATUS_SKIPPED = "skipped";
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsBulkDeprovisionService.class);
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private GlusterfsAdminService glusterfsAdminService;
+
+	@Autowired
+	private GlusterfsInstanceRepository glusterfsInstanceRepository;
+
+	@Autowired
+	private GlusterfsBindingRepository glusterfsBindingRepository;
+
+	@Autowired
+	private GlusterfsRequestCoordinator glusterfsRequestCoordinator;
+
+	@Autowired
+	@Qualifier("glusterfsBulkExecutor")
+	private Executor bulkExecutor;
+
+	private int defaultParallelism;
+
+	private int maxParallelism;
+
+	private double defaultRate;
+
+	private int pageSize;
+
+	private final AtomicLong deletedCount = new AtomicLong();
+
+	private final AtomicLong failedCount = new AtomicLong();
+
+	private final AtomicLong skippedCount = new AtomicLong();
+
+	/**
+	 * 항목별 삭제 결과
+	 */
+	public static final class Result {
+
+		private final String type;
+
+		private final String id;
+
+		private final String instanceId;
+
+		private final String status;
+
+		private final String description;
+
+		private final long elapsed;
+
+		Result(String type, String id, String instanceId, String status, String description, long elapsed) {
+			this.type = type;
+			this.id = id;
+			this.instanceId = instanceId;
+			this.status = status;
+			this.description = description;
+			this.elapsed = elapsed;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getInstanceId() {
+			return instanceId;
+		}
+
+		public String getStatus() {
+			return status;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public long getElapsed() {
+			return elapsed;
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		defaultParallelism = env.getProperty("glusterfs.bulk.parallelism", Integer.class, 4);
+		maxParallelism = env.getProperty("glusterfs.bulk.maxparallelism", Integer.class, 16);
+		defaultRate = env.getProperty("glusterfs.bulk.rate", Double.class, 10.0);
+		pageSize = env.getProperty("glusterfs.bulk.pagesize", Integer.class, 100);
+	}
+
+	/**
+	 * 요청한 동시 삭제 수를 확인합니다.
+	 * @param parallelism null 인 경우 기본값
+	 * @return
+	 * @throws IllegalArgumentException 1 ~ maxparallelism 범위가 아닌 경우
+	 */
+	public int getParallelism(Integer parallelism) {
+		if (parallelism == null) return defaultParallelism;
+		if (parallelism < 1 || parallelism > maxParallelism)
+			throw new IllegalArgumentException("parallelism must be between 1 and " + maxParallelism);
+		return parallelism;
+	}
+
+	/**
+	 * 요청한 초당 삭제 요청 수를 확인합니다.
+	 * @param rate null 인 경우 기본값, 0 인 경우 제한하지 않음
+	 * @return
+	 * @throws IllegalArgumentException 음수인 경우
+	 */
+	public double getRate(Double rate) {
+		if (rate == null) return defaultRate;
+		if (rate < 0 || rate.isNaN())
+			throw new IllegalArgumentException("rate must not be negative");
+		return rate;
+	}
+
+	/**
+	 * 조직 / 공간의 인스턴스와 바인딩을 삭제하고, 항목별 결과를 요청 스레드에서 한 건씩 전달합니다.
+	 * @param organizationGuid
+	 * @param spaceGuid
+	 * @param parallelism getParallelism 으로 확인한 동시 삭제 수
+	 * @param rate getRate 로 확인한 초당 삭제 요청 수
+	 * @param handler 예외를 던지면 새 인스턴스 삭제를 시작하지 않고, 진행중인 삭제가 끝날 때까지 기다린 뒤(이후 결과는 전달하지 않음) 예외를 던집니다.
+	 * @throws InterruptedException 대기 중 인터럽트된 경우. 진행중인 삭제는 기다리지 않습니다.
+	 */
+	public void deprovision(String organizationGuid, String spaceGuid, int parallelism, double rate,
+			GlusterfsRecordHandler<Result> handler) throws InterruptedException {
+		if (!StringUtils.hasText(organizationGuid) && !StringUtils.hasText(spaceGuid))
+			throw new IllegalArgumentException("organization_guid or space_guid is required");
+		logger.info("[ap] bulk deprovision start, organizationGuid=" + organizationGuid + " spaceGuid=" + spaceGuid
+				+ " parallelism=" + parallelism + " rate=" + rate);
+
+		final GlusterfsRateLimiter limiter = new GlusterfsRateLimiter(rate);
+		final BlockingQueue<Object> results = new LinkedBlockingQueue<Object>();
+		int pending = 0;
+		// 다른 브로커가 처리한 결과를 바로 확인할 수 있도록 primary 에서 조회합니다.
+		GlusterfsReadContext.usePrimary();
+		try {
+			String after = null;
+			do {
+				final List<GlusterfsServiceInstanceRecord> page = new ArrayList<GlusterfsServiceInstanceRecord>();
+				after = glusterfsInstanceRepository.listInstances(emptyToNull(organizationGuid), emptyToNull(spaceGuid), null, after, pageSize,
+						new GlusterfsRecordHandler<GlusterfsServiceInstanceRecord>() {
+							@Override
+							public void handle(GlusterfsServiceInstanceRecord record) {
+								page.add(record);
+							}
+						});
+
+				for (final GlusterfsServiceInstanceRecord instance : page) {
+					// 동시 삭제 수만큼 진행중이면 끝난 인스턴스가 나올 때까지 결과를 전달합니다.
+					while (pending >= parallelism) {
+						if (drain(results.take(), handler)) pending--;
+					}
+					try {
+						bulkExecutor.execute(new Runnable() {
+							@Override
+							public void run() {
+								try {
+									deprovision(instance, limiter, results);
+								} finally {
+									results.add(instance);
+								}
+							}
+						});
+						pending++;
+					} catch (RejectedExecutionException e) {
+						skippedCount.incrementAndGet();
+						handler.handle(new Result(TYPE_INSTANCE, instance.getServiceInstanceId(), instance.getServiceInstanceId(),
+								STATUS_SKIPPED, "bulk executor busy", 0L));
+					}
+
+					Object result;
+					while ((result = results.poll()) != null) {
+						if (drain(result, handler)) pending--;
+					}
+				}
+			} while (after != null);
+
+			while (pending > 0) {
+				if (drain(results.take(), handler)) pending--;
+			}
+		} catch (InterruptedException e) {
+			// 인터럽트된 경우에는 진행중인 삭제를 기다리지 않습니다.
+			logger.warn("[ap] bulk deprovision interrupted, " + pending + " instance deletions still in progress");
+			pending = 0;
+			throw e;
+		} finally {
+			// handler 가 예외를 던진 경우에도 진행중인 삭제는 중단하지 않고, 끝날 때까지 기다린 뒤 반환합니다.
+			awaitPending(results, pending);
+			GlusterfsReadContext.clear();
+			logger.info("[ap] bulk deprovision end, organizationGuid=" + organizationGuid + " spaceGuid=" + spaceGuid);
+		}
+	}
+
+	/**
+	 * 진행중인 인스턴스 삭제가 끝날 때까지 결과를 전달하지 않고 기다립니다. 인터럽트되면 기다리지 않습니다.
+	 */
+	private void awaitPending(BlockingQueue<Object> results, int pending) {
+		if (pending > 0) logger.info("[ap] bulk deprovision waiting for " + pending + " instance deletions in progress");
+		try {
+			while (pending > 0) {
+				if (!(results.take() instanceof Result)) pending--;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warn("[ap] bulk deprovision interrupted, " + pending + " instance deletions still in progress");
+		}
+	}
+
+	/**
+	 * @return 인스턴스 삭제가 끝났음을 나타내는 표시인 경우 true
+	 */
+	private boolean drain(Object result, GlusterfsRecordHandler<Result> handler) {
+		if (result instanceof Result) {
+			handler.handle((Result) result);
+			return false;
+		}
+		return true;
+	}
+
+	private void deprovision(final GlusterfsServiceInstanceRecord instance, GlusterfsRateLimiter limiter, BlockingQueue<Object> results) {
+		final String instanceId = instance.getServiceInstanceId();
+		GlusterfsReadContext.usePrimary();
+		try {
+			final List<BindingRecord> bindings = new ArrayList<BindingRecord>();
+			String after = null;
+			do {
+				after = glusterfsBindingRepository.listBindings(instanceId, after, pageSize, new GlusterfsRecordHandler<BindingRecord>() {
+					@Override
+					public void handle(BindingRecord record) {
+						bindings.add(record);
+					}
+				});
+			} while (after != null);
+
+			boolean unbound = true;
+			for (final BindingRecord binding : bindings) {
+				limiter.acquire();
+				long startedAt = System.currentTimeMillis();
+				try {
+					boolean found = glusterfsRequestCoordinator.execute(GlusterfsServiceInstanceBindingService.bindingLockKeys(instanceId, binding.getBindingId()), null, () -> {
+						// 목록 조회 이후 CC 요청으로 삭제되었을 수 있으므로 잠금을 잡은 뒤 다시 조회합니다.
+						BindingRecord current = glusterfsBindingRepository.findBinding(binding.getBindingId());
+						if (current == null) return false;
+						unbind(current);
+						return true;
+					});
+					results.add(deleted(TYPE_BINDING, binding.getBindingId(), instanceId, found ? null : "already deleted", startedAt));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw e;
+				} catch (Exception e) {
+					unbound = false;
+					results.add(failed(TYPE_BINDING, binding.getBindingId(), instanceId, e, startedAt));
+				}
+			}
+
+			if (!unbound) {
+				skippedCount.incrementAndGet();
+				results.add(new Result(TYPE_INSTANCE, instanceId, instanceId, STATUS_SKIPPED, "binding deletion failed", 0L));
+				return;
+			}
+
+			limiter.acquire();
+			long startedAt = System.currentTimeMillis();
+			try {
+				boolean found = glusterfsRequestCoordinator.execute(GlusterfsServiceInstanceService.instanceLockKey(instanceId), null, () -> {
+					GlusterfsServiceInstanceRecord current = glusterfsInstanceRepository.findInstance(instanceId);
+					if (current == null) return false;
+					if (current.getTenantId() != null) glusterfsAdminService.deleteTenantById(current.getTenantId());
+					glusterfsAdminService.delete(instanceId);
+					return true;
+				});
+				results.add(deleted(TYPE_INSTANCE, instanceId, instanceId, found ? null : "already deleted", startedAt));
+			} catch (Exception e) {
+				results.add(failed(TYPE_INSTANCE, instanceId, instanceId, e, startedAt));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			results.add(new Result(TYPE_INSTANCE, instanceId, instanceId, STATUS_SKIPPED, "interrupted", 0L));
+		} catch (Exception e) {
+			results.add(failed(TYPE_INSTANCE, instanceId, instanceId, e, System.currentTimeMillis()));
+		} finally {
+			GlusterfsReadContext.clear();
+		}
+	}
+
+	private void unbind(BindingRecord binding) throws Exception {
+		// 바인딩 시 저장한 사용자 ID 를 사용하고, 저장되지 않은 이전 바인딩만 사용자 명으로 조회합니다.
+		if (StringUtils.hasText(binding.getUserId())) glusterfsAdminService.deleteUserById(binding.getUserId());
+		else glusterfsAdminService.deleteUser(binding.getInstanceId(), binding.getBindingId());
+		glusterfsAdminService.deleteBind(binding.getBindingId());
+	}
+
+	private Result deleted(String type, String id, String instanceId, String description, long startedAt) {
+		deletedCount.incrementAndGet();
+		return new Result(type, id, instanceId, STATUS_DELETED, description, System.currentTimeMillis() - startedAt);
+	}
+
+	private Result failed(String type, String id, String instanceId, Exception e, long startedAt) {
+		failedCount.incrementAndGet();
+		logger.warn("[ap] bulk deprovision " + type + " " + id + " failed : " + e.getLocalizedMessage());
+		return new Result(type, id, instanceId, STATUS_FAILED, e.getLocalizedMessage(), System.currentTimeMillis() - startedAt);
+	}
+
+	private static String emptyToNull(String value) {
+		return StringUtils.hasText(value) ? value : null;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Long>("glusterfs.bulk.deleted", deletedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.bulk.failed", failedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.bulk.skipped", skippedCount.get()));
+		return metrics;
+	}
+
+}
@@ -1,47 +1,37 @@
-package org.openpaas.servicebroker.glusterfs.service.impl;
-
-import java.util.HashMap;
-import java.util.Map;
-
-import org.openpaas.servicebroker.model.Catalog;
-import org.openpaas.servicebroker.model.ServiceDefinition;
-import org.openpaas.servicebroker.service.CatalogService;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Service;
-
-/**
- * Catalog 서비스가 제공해야하는 메소드를 정의한 클래스
- * 
- * @author 김한종
- *
- */
-@Service
-public class GlusterfsCatalogService implements CatalogService {
-
-	private Catalog catalog;
-	private Map<String,ServiceDefinition> serviceDefs = new HashMap<String,ServiceDefinition>();
-	
-	@Autowired
-	public GlusterfsCatalogService(Catalog catalog) {
-		this.catalog = catalog;
-		initializeMap();
-	}
-	
-	private void initializeMap() {
-		for (ServiceDefinition def: catalog.getServiceDefinitions()) {
-			serviceDefs.put(def.getId(), def);
-		}
-	}
-	
-	@Override
-	public Catalog getCatalog() {
-		return catalog;
-	}
-
-	@Override
-	public ServiceDefinition getServiceDefinition(String serviceId) {
-		System.out.println("getServiceDefinition serviceId = " + serviceId);
-		return serviceDefs.get(serviceId);
-	}
-
-}
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import org.openpaas.servicebroker.model.Catalog;
+import org.openpaas.servicebroker.model.ServiceDefinition;
+import org.openpaas.servicebroker.service.CatalogService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Catalog 서비스가 제공해야하는 메소드를 정의한 클래스
+ * 정의는 GlusterfsPlanRegistry 에서 조회하므로 파일을 다시 읽으면 재기동 없이 변경된 catalog 를 제공한다.
+ * 
+ * @author 김한종
+ *
+ */
+@Service
+public class GlusterfsCatalogService implements CatalogService {
+
+	private GlusterfsPlanRegistry glusterfsPlanRegistry;
+	
+	@Autowired
+	public GlusterfsCatalogService(GlusterfsPlanRegistry glusterfsPlanRegistry) {
+		this.glusterfsPlanRegistry = glusterfsPlanRegistry;
+	}
+	
+	@Override
+	public Catalog getCatalog() {
+		return glusterfsPlanRegistry.getCatalog();
+	}
+
+	@Override
+	public ServiceDefinition getServiceDefinition(String serviceId) {
+		System.out.println("getServiceDefinition serviceId = " + serviceId);
+		return glusterfsPlanRegistry.getServiceDefinition(serviceId);
+	}
+
+}
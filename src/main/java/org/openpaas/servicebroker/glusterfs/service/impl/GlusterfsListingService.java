@@ -0,0 +1,89 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import javax.annotation.PostConstruct;
+
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsBindingRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsInstanceRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsRecordHandler;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsRecordCache.BindingRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+/**
+ * 운영자용 service_instances / service_binding 목록 조회 클래스.
+ * 인덱스 컬럼 조건과 PK 기준 keyset(after) 으로 한 페이지씩 조회하며,
+ * 조회 결과를 목록으로 모으지 않고 한 건씩 전달하므로 결과 건수와 관계없이 메모리 사용량이 일정하다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Service
+public class GlusterfsListingService {
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsListingService.class);
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private GlusterfsInstanceRepository glusterfsInstanceRepository;
+
+	@Autowired
+	private GlusterfsBindingRepository glusterfsBindingRepository;
+
+	private int defaultLimit;
+
+	private int maxLimit;
+
+	@PostConstruct
+	public void init() {
+		defaultLimit = env.getProperty("glusterfs.listing.defaultlimit", Integer.class, 100);
+		maxLimit = env.getProperty("glusterfs.listing.maxlimit", Integer.class, 1000);
+	}
+
+	/**
+	 * 조건에 해당하는 인스턴스를 instance_id 순으로 조회합니다. 조건이 null 인 경우 사용하지 않습니다.
+	 * @param organizationGuid
+	 * @param spaceGuid
+	 * @param planId
+	 * @param after 이전 페이지의 마지막 instance_id (첫 페이지는 null)
+	 * @param pageSize getPageSize 로 확인한 페이지 크기
+	 * @param handler
+	 * @return 다음 페이지 조회에 사용할 after 값. 마지막 페이지인 경우 null
+	 */
+	public String listInstances(String organizationGuid, String spaceGuid, String planId, String after, int pageSize,
+			GlusterfsRecordHandler<GlusterfsServiceInstanceRecord> handler) {
+		logger.debug("GlusterfsListingService.listInstances");
+		return glusterfsInstanceRepository.listInstances(organizationGuid, spaceGuid, planId, after, pageSize, handler);
+	}
+
+	/**
+	 * 인스턴스의 바인딩을 binding_id 순으로 조회합니다.
+	 * @param instanceId
+	 * @param after 이전 페이지의 마지막 binding_id (첫 페이지는 null)
+	 * @param pageSize getPageSize 로 확인한 페이지 크기
+	 * @param handler
+	 * @return 다음 페이지 조회에 사용할 after 값. 마지막 페이지인 경우 null
+	 */
+	public String listBindings(String instanceId, String after, int pageSize, GlusterfsRecordHandler<BindingRecord> handler) {
+		logger.debug("GlusterfsListingService.listBindings");
+		return glusterfsBindingRepository.listBindings(instanceId, after, pageSize, handler);
+	}
+
+	/**
+	 * 요청한 페이지 크기를 확인합니다.
+	 * @param limit null 인 경우 기본값
+	 * @return
+	 * @throws IllegalArgumentException 1 ~ maxlimit 범위가 아닌 경우
+	 */
+	public int getPageSize(Integer limit) {
+		if (limit == null) return defaultLimit;
+		if (limit < 1 || limit > maxLimit)
+			throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+		return limit;
+	}
+
+}
@@ -0,0 +1,201 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.net.InetAddress;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.openpaas.servicebroker.exception.ServiceBrokerException;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsReadContext;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsOperationRejectedException;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsServiceException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * 비동기 작업(accepts_incomplete)을 작업 스레드 풀에서 실행하고 진행 상태를 gfbroker.service_operation 에 기록하는 클래스.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Service
+public class GlusterfsOperationService {
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsOperationService.class);
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private GlusterfsAdminService glusterfsAdminService;
+
+	@Autowired
+	@Qualifier("glusterfsOperationExecutor")
+	private TaskExecutor operationExecutor;
+
+	private final String owner = getHostName() + ":" + UUID.randomUUID();
+
+	private long staleTimeout;
+
+	private ScheduledExecutorService scheduler;
+
+	// 이 브로커에서 실행중인 작업
+	private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * 작업 스레드에서 수행할 작업
+	 */
+	public interface OperationTask {
+		void run() throws Exception;
+	}
+
+	/**
+	 * 작업 정보를 저장하고 작업 스레드에서 실행합니다.
+	 * 작업 스레드 풀이 가득 찬 경우 작업을 실패 처리하고 예외를 발생시킵니다.
+	 * @param instanceId
+	 * @param bindingId
+	 * @param operationType
+	 * @param task
+	 * @return
+	 * @throws ServiceBrokerException
+	 */
+	public GlusterfsServiceOperation start(String instanceId, String bindingId, String operationType, final OperationTask task) throws ServiceBrokerException {
+		final GlusterfsServiceOperation operation = new GlusterfsServiceOperation();
+		operation.setOperationId(UUID.randomUUID().toString());
+		operation.setInstanceId(instanceId);
+		operation.setBindingId(bindingId);
+		operation.setOperationType(operationType);
+		operation.setState(GlusterfsServiceOperation.STATE_IN_PROGRESS);
+		operation.setDescription(operationType + " in progress");
+		operation.setOwner(owner);
+
+		glusterfsAdminService.saveOperation(operation);
+		running.add(operation.getOperationId());
+
+		try {
+			operationExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					execute(operation, task);
+				}
+			});
+		} catch (TaskRejectedException e) {
+			logger.warn("[ap] operation rejected : " + operation.getOperationId());
+			running.remove(operation.getOperationId());
+			glusterfsAdminService.updateOperationState(operation.getOperationId(), GlusterfsServiceOperation.STATE_FAILED, "Too many operations in progress.");
+			throw new GlusterfsOperationRejectedException("Too many operations in progress.");
+		}
+		return operation;
+	}
+
+	private void execute(GlusterfsServiceOperation operation, OperationTask task) {
+		String state = GlusterfsServiceOperation.STATE_SUCCEEDED;
+		String description = operation.getOperationType() + " succeeded";
+		// 변경 작업이므로 작업 중 조회는 primary 를 사용합니다.
+		GlusterfsReadContext.usePrimary();
+		try {
+			try {
+				task.run();
+			} catch (Exception e) {
+				logger.warn("[ap] operation failed : " + operation.getOperationId(), e);
+				state = GlusterfsServiceOperation.STATE_FAILED;
+				description = e.getLocalizedMessage();
+			}
+
+			try {
+				glusterfsAdminService.updateOperationState(operation.getOperationId(), state, description);
+			} catch (Exception e) {
+				logger.warn("[ap] operation state update failed : " + operation.getOperationId(), e);
+			}
+		} finally {
+			running.remove(operation.getOperationId());
+			GlusterfsReadContext.clear();
+		}
+	}
+
+	/**
+	 * 서비스 인스턴스의 작업 정보를 조회합니다. operationId 가 없으면 가장 최근 작업을 조회합니다.
+	 * @param instanceId
+	 * @param operationId
+	 * @return
+	 */
+	public GlusterfsServiceOperation getInstanceOperation(String instanceId, String operationId) {
+		GlusterfsServiceOperation operation = operationId == null
+				? glusterfsAdminService.findLastOperationByInstanceId(instanceId)
+				: glusterfsAdminService.findOperationById(operationId);
+		if (operation == null || !instanceId.equals(operation.getInstanceId()) || operation.getBindingId() != null)
+			return null;
+		return operation;
+	}
+
+	/**
+	 * 바인딩의 작업 정보를 조회합니다. operationId 가 없으면 가장 최근 작업을 조회합니다.
+	 * @param bindingId
+	 * @param operationId
+	 * @return
+	 */
+	public GlusterfsServiceOperation getBindingOperation(String bindingId, String operationId) {
+		GlusterfsServiceOperation operation = operationId == null
+				? glusterfsAdminService.findLastOperationByBindingId(bindingId)
+				: glusterfsAdminService.findOperationById(operationId);
+		if (operation == null || !bindingId.equals(operation.getBindingId()))
+			return null;
+		return operation;
+	}
+
+	@PostConstruct
+	public void init() {
+		staleTimeout = env.getProperty("glusterfs.async.staletimeout", Long.class, 300000L);
+		long heartbeat = env.getProperty("glusterfs.async.heartbeat", Long.class, 30000L);
+		scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("glusterfs-operation-heartbeat-"));
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				heartbeat();
+			}
+		}, 0L, heartbeat, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (scheduler != null) scheduler.shutdownNow();
+	}
+
+	/**
+	 * 이 브로커에서 실행중인 작업의 진행 시각을 갱신하고, staletimeout 동안 갱신되지 않은 작업을 실패 처리합니다.
+	 * 여러 브로커가 같은 DB 를 사용하므로 실행하던 브로커가 종료된 작업만 실패 처리됩니다.
+	 * 플랫폼은 실패한 작업을 재요청하며, 삭제중(deleting)으로 표시된 레코드는 재요청 시 다시 삭제됩니다.
+	 */
+	void heartbeat() {
+		try {
+			if (!running.isEmpty()) glusterfsAdminService.touchOperations(running, owner);
+			int count = glusterfsAdminService.failStaleOperations(new Date(System.currentTimeMillis() - staleTimeout), "Interrupted by broker restart.");
+			if (count > 0) logger.info("[ap] interrupted operations marked failed : " + count);
+		} catch (Exception e) {
+			logger.warn("[ap] operation heartbeat failed : " + e.getLocalizedMessage());
+		}
+	}
+
+	private static String getHostName() {
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (Exception e) {
+			return "unknown";
+		}
+	}
+
+}
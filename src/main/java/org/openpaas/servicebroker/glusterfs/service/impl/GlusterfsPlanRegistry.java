@@ -0,0 +1,290 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.openpaas.servicebroker.model.Catalog;
+import org.openpaas.servicebroker.model.Plan;
+import org.openpaas.servicebroker.model.ServiceDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 서비스 / plan 정의와 plan 별 quota 를 한 곳(glusterfs.catalog.location 의 JSON 파일)에서 읽어 제공하는 클래스.
+ * 파일은 OSB catalog 형식에 plan 별 quota_bytes 를 추가한 형식이며, Catalog API 와 quota 설정이 같은 정의를 사용한다.
+ * 읽은 정의는 변경하지 않는 Snapshot 으로 만들어 한번에 교체하므로, 조회하는 쪽은 항상 한 시점의 catalog 와 quota 를 함께 본다.
+ * reloadinterval 주기로 파일 변경 시각을 확인하여 다시 읽으며, 잘못된 파일은 적용하지 않고 이전 정의를 계속 사용한다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Service
+public class GlusterfsPlanRegistry implements PublicMetrics {
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsPlanRegistry.class);
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private ResourceLoader resourceLoader;
+
+	private volatile Snapshot snapshot;
+
+	// 마지막으로 적용에 실패한 파일의 변경 시각
+	private volatile long failedModified = -1L;
+
+	private ScheduledExecutorService scheduler;
+
+	private final AtomicLong reloadCount = new AtomicLong();
+
+	private final AtomicLong reloadFailureCount = new AtomicLong();
+
+	/**
+	 * 한 시점의 catalog 와 plan 별 quota
+	 */
+	public static final class Snapshot {
+
+		private final Catalog catalog;
+
+		private final Map<String, ServiceDefinition> serviceDefs;
+
+		private final Map<String, Long> quotas;
+
+		private final long lastModified;
+
+		private final Date loadedAt = new Date();
+
+		private Snapshot(Catalog catalog, Map<String, ServiceDefinition> serviceDefs, Map<String, Long> quotas, long lastModified) {
+			this.catalog = catalog;
+			this.serviceDefs = Collections.unmodifiableMap(serviceDefs);
+			this.quotas = Collections.unmodifiableMap(quotas);
+			this.lastModified = lastModified;
+		}
+
+		public Catalog getCatalog() {
+			return catalog;
+		}
+
+		public Map<String, ServiceDefinition> getServiceDefs() {
+			return serviceDefs;
+		}
+
+		/**
+		 * @return plan ID 별 quota(byte). 정의 순서를 유지합니다.
+		 */
+		public Map<String, Long> getQuotas() {
+			return quotas;
+		}
+
+		public Date getLoadedAt() {
+			return loadedAt;
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		try {
+			snapshot = load();
+		} catch (Exception e) {
+			throw new IllegalStateException("Plan catalog load failed : " + getLocation(), e);
+		}
+		logger.info("[ap] plan catalog loaded from " + getLocation() + ", plans=" + snapshot.quotas.keySet());
+
+		long interval = env.getProperty("glusterfs.catalog.reloadinterval", Long.class, 30000L);
+		if (interval <= 0) return;
+		scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("glusterfs-plan-registry-"));
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				reloadIfModified();
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (scheduler != null) scheduler.shutdownNow();
+	}
+
+	public Snapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public Catalog getCatalog() {
+		return snapshot.catalog;
+	}
+
+	/**
+	 * @param serviceId
+	 * @return 없을 경우 null
+	 */
+	public ServiceDefinition getServiceDefinition(String serviceId) {
+		return serviceId == null ? null : snapshot.serviceDefs.get(serviceId);
+	}
+
+	/**
+	 * plan 의 quota(byte)
+	 * @param planId
+	 * @return 알 수 없는 plan 인 경우 null
+	 */
+	public Long getQuotaBytes(String planId) {
+		return planId == null ? null : snapshot.quotas.get(planId);
+	}
+
+	public List<String> getPlanIds() {
+		return new ArrayList<String>(snapshot.quotas.keySet());
+	}
+
+	/**
+	 * 파일을 다시 읽어 적용합니다.
+	 * @return 적용한 정의
+	 * @throws IllegalArgumentException 파일을 읽을 수 없거나 잘못된 정의인 경우. 이전 정의를 계속 사용합니다.
+	 */
+	public synchronized Snapshot reload() {
+		Snapshot loaded;
+		try {
+			loaded = load();
+		} catch (Exception e) {
+			reloadFailureCount.incrementAndGet();
+			logger.warn("[ap] plan catalog reload failed, keep previous catalog : " + e.getLocalizedMessage());
+			throw new IllegalArgumentException("Plan catalog reload failed : " + e.getLocalizedMessage(), e);
+		}
+
+		Snapshot previous = snapshot;
+		snapshot = loaded;
+		reloadCount.incrementAndGet();
+		logger.info("[ap] plan catalog reloaded, plans=" + loaded.quotas.keySet());
+		for (Map.Entry<String, Long> entry : loaded.quotas.entrySet()) {
+			Long before = previous.quotas.get(entry.getKey());
+			if (before != null && !before.equals(entry.getValue()))
+				logger.info("[ap] plan " + entry.getKey() + " quota changed " + before + " -> " + entry.getValue()
+						+ ", existing instances keep the previous quota until a quota job is run");
+		}
+		return loaded;
+	}
+
+	private void reloadIfModified() {
+		long lastModified = lastModified(resourceLoader.getResource(getLocation()));
+		// 적용에 실패한 파일은 다시 변경될 때까지 읽지 않습니다.
+		if (lastModified == snapshot.lastModified || lastModified == failedModified) return;
+		try {
+			reload();
+		} catch (IllegalArgumentException e) {
+			failedModified = lastModified;
+		}
+	}
+
+	private String getLocation() {
+		return env.getProperty("glusterfs.catalog.location", "classpath:glusterfs-catalog.json");
+	}
+
+	private Snapshot load() throws Exception {
+		Resource resource = resourceLoader.getResource(getLocation());
+		long lastModified = lastModified(resource);
+		JsonNode root;
+		try (InputStream in = resource.getInputStream()) {
+			root = MAPPER.readTree(in);
+		}
+
+		List<ServiceDefinition> services = new ArrayList<ServiceDefinition>();
+		Map<String, ServiceDefinition> serviceDefs = new HashMap<String, ServiceDefinition>();
+		Map<String, Long> quotas = new LinkedHashMap<String, Long>();
+		for (JsonNode service : required(root, "services")) {
+			List<Plan> plans = new ArrayList<Plan>();
+			for (JsonNode plan : required(service, "plans")) {
+				String planId = text(plan, "id");
+				long quotaBytes = required(plan, "quota_bytes").asLong();
+				if (quotaBytes <= 0) throw new IllegalArgumentException("plan " + planId + " quota_bytes must be positive");
+				if (quotas.put(planId, quotaBytes) != null) throw new IllegalArgumentException("duplicate plan id " + planId);
+				plans.add(new Plan(planId, text(plan, "name"), plan.path("description").asText(""), map(plan.get("metadata")),
+						plan.path("free").asBoolean(true)));
+			}
+			String serviceId = text(service, "id");
+			ServiceDefinition def = new ServiceDefinition(serviceId,
+					text(service, "name"),
+					service.path("description").asText(""),
+					service.path("bindable").asBoolean(true),
+					service.path("plan_updateable").asBoolean(false),
+					plans,
+					list(service.get("tags")),
+					map(service.get("metadata")),
+					list(service.get("requires")),
+					null);
+			if (serviceDefs.put(serviceId, def) != null) throw new IllegalArgumentException("duplicate service id " + serviceId);
+			services.add(def);
+		}
+		if (quotas.isEmpty()) throw new IllegalArgumentException("no plans defined");
+		return new Snapshot(new Catalog(services), serviceDefs, quotas, lastModified);
+	}
+
+	private static long lastModified(Resource resource) {
+		try {
+			return resource.lastModified();
+		} catch (Exception e) {
+			// jar 내부 등 변경 시각을 알 수 없는 경우
+			return 0L;
+		}
+	}
+
+	private static JsonNode required(JsonNode node, String field) {
+		JsonNode value = node.get(field);
+		if (value == null || value.isNull()) throw new IllegalArgumentException(field + " is required");
+		return value;
+	}
+
+	private static String text(JsonNode node, String field) {
+		String value = required(node, field).asText();
+		if (value.isEmpty()) throw new IllegalArgumentException(field + " is required");
+		return value;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> map(JsonNode node) {
+		if (node == null || node.isNull()) return new HashMap<String, Object>();
+		return MAPPER.convertValue(node, Map.class);
+	}
+
+	private static List<String> list(JsonNode node) {
+		List<String> values = new ArrayList<String>();
+		if (node == null) return values;
+		for (JsonNode value : node) values.add(value.asText());
+		return values;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Integer>("glusterfs.catalog.plans", snapshot.quotas.size()));
+		metrics.add(new Metric<Long>("glusterfs.catalog.reload.count", reloadCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.catalog.reload.failure", reloadFailureCount.get()));
+		return metrics;
+	}
+
+}
@@ -0,0 +1,335 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsRateLimiter;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsReadContext;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsConcurrencyException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsQuotaJob;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsInstanceRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsQuotaJobRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsRecordHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * plan 의 quota 가 바뀌었을 때 해당 plan 의 모든 인스턴스 Swift 계정에 quota 를 다시 설정하는 백그라운드 작업 클래스.
+ * service_instances 를 instance_id 순으로 한 페이지씩 조회하여 최대 parallelism 개를 동시에, 초당 rate 건 이하로 설정하고,
+ * 페이지가 끝날 때마다 마지막 instance_id 를 checkpoint 로 기록한다. 브로커가 중단되면 checkpoint 다음 인스턴스부터 이어서 실행한다.
+ * 작업은 한 브로커만 실행하며, staletimeout 동안 진행 기록이 없는 작업은 다른 브로커(또는 재기동한 브로커)가 넘겨받는다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Service
+public class GlusterfsQuotaJobService implements PublicMetrics {
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsQuotaJobService.class);
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private GlusterfsAdminService glusterfsAdminService;
+
+	@Autowired
+	private GlusterfsInstanceRepository glusterfsInstanceRepository;
+
+	@Autowired
+	private GlusterfsQuotaJobRepository glusterfsQuotaJobRepository;
+
+	@Autowired
+	private GlusterfsRequestCoordinator glusterfsRequestCoordinator;
+
+	private final String owner = getHostName() + ":" + UUID.randomUUID();
+
+	private int parallelism;
+
+	private double rate;
+
+	private int pageSize;
+
+	private long staleTimeout;
+
+	private ScheduledExecutorService scheduler;
+
+	private ExecutorService runner;
+
+	// 이 브로커에서 실행중인 작업
+	private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong updatedCount = new AtomicLong();
+
+	private final AtomicLong failedCount = new AtomicLong();
+
+	private final AtomicLong skippedCount = new AtomicLong();
+
+	@PostConstruct
+	public void init() {
+		parallelism = Math.max(1, env.getProperty("glusterfs.quotajob.parallelism", Integer.class, 4));
+		rate = env.getProperty("glusterfs.quotajob.rate", Double.class, 20.0);
+		pageSize = env.getProperty("glusterfs.quotajob.pagesize", Integer.class, 100);
+		staleTimeout = env.getProperty("glusterfs.quotajob.staletimeout", Long.class, 300000L);
+
+		runner = Executors.newCachedThreadPool(new CustomizableThreadFactory("glusterfs-quota-job-"));
+		if (!env.getProperty("glusterfs.quotajob.resume", Boolean.class, true)) return;
+
+		long interval = env.getProperty("glusterfs.quotajob.interval", Long.class, 60000L);
+		scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("glusterfs-quota-job-scan-"));
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				resume();
+			}
+		}, 0L, interval, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (scheduler != null) scheduler.shutdownNow();
+		// 진행중인 페이지는 checkpoint 이후부터 다시 실행됩니다.
+		runner.shutdownNow();
+	}
+
+	/**
+	 * plan 의 현재 quota 로 재적용 작업을 시작합니다.
+	 * @param planId
+	 * @return
+	 * @throws IllegalArgumentException 알 수 없는 plan 인 경우
+	 * @throws GlusterfsConcurrencyException plan 의 작업이 이미 진행중인 경우
+	 */
+	public GlusterfsQuotaJob start(String planId) throws GlusterfsConcurrencyException {
+		Long quotaBytes = glusterfsAdminService.getQuotaBytes(planId);
+		if (quotaBytes == null) throw new IllegalArgumentException("Unknown plan : " + planId);
+
+		GlusterfsReadContext.usePrimary();
+		try {
+			GlusterfsQuotaJob active = glusterfsQuotaJobRepository.findActiveQuotaJob(planId);
+			if (active != null)
+				throw new GlusterfsConcurrencyException("Quota job " + active.getJobId() + " for plan " + planId + " is in progress");
+
+			GlusterfsQuotaJob job = new GlusterfsQuotaJob();
+			job.setJobId(UUID.randomUUID().toString());
+			job.setPlanId(planId);
+			job.setQuotaBytes(quotaBytes);
+			job.setTotal(glusterfsInstanceRepository.countInstances(planId));
+			// 조회 후 다른 요청(다른 브로커 포함)이 먼저 추가한 경우
+			if (!glusterfsQuotaJobRepository.addQuotaJob(job)) {
+				active = glusterfsQuotaJobRepository.findActiveQuotaJob(planId);
+				throw new GlusterfsConcurrencyException("Quota job " + (active == null ? "" : active.getJobId() + " ") + "for plan " + planId + " is in progress");
+			}
+			logger.info("[ap] quota job " + job.getJobId() + " created, planId=" + planId + " quotaBytes=" + quotaBytes + " total=" + job.getTotal());
+
+			submit(job.getJobId());
+			return glusterfsQuotaJobRepository.findQuotaJob(job.getJobId());
+		} finally {
+			GlusterfsReadContext.clear();
+		}
+	}
+
+	/**
+	 * @param jobId
+	 * @return 없을 경우 null
+	 */
+	public GlusterfsQuotaJob get(String jobId) {
+		GlusterfsReadContext.usePrimary();
+		try {
+			return glusterfsQuotaJobRepository.findQuotaJob(jobId);
+		} finally {
+			GlusterfsReadContext.clear();
+		}
+	}
+
+	/**
+	 * 작업을 취소합니다. 실행중인 작업은 진행중인 페이지를 마친 뒤 중단합니다.
+	 * @param jobId
+	 * @return 없을 경우 null
+	 */
+	public GlusterfsQuotaJob cancel(String jobId) {
+		GlusterfsReadContext.usePrimary();
+		try {
+			if (glusterfsQuotaJobRepository.cancelQuotaJob(jobId)) logger.info("[ap] quota job " + jobId + " cancelled");
+			return glusterfsQuotaJobRepository.findQuotaJob(jobId);
+		} finally {
+			GlusterfsReadContext.clear();
+		}
+	}
+
+	/**
+	 * pending 상태이거나 staletimeout 동안 진행 기록이 없는 작업을 이어서 실행합니다.
+	 */
+	void resume() {
+		GlusterfsReadContext.usePrimary();
+		try {
+			for (GlusterfsQuotaJob job : glusterfsQuotaJobRepository.findResumableQuotaJobs(staleBefore())) {
+				submit(job.getJobId());
+			}
+		} catch (Exception e) {
+			logger.warn("[ap] quota job scan failed : " + e.getLocalizedMessage());
+		} finally {
+			GlusterfsReadContext.clear();
+		}
+	}
+
+	private void submit(final String jobId) {
+		if (!running.add(jobId)) return;
+		runner.execute(new Runnable() {
+			@Override
+			public void run() {
+				GlusterfsReadContext.usePrimary();
+				try {
+					if (glusterfsQuotaJobRepository.acquireQuotaJob(jobId, owner, staleBefore())) runJob(jobId);
+				} catch (InterruptedException e) {
+					// running 상태로 남겨 staletimeout 이후 checkpoint 부터 이어서 실행합니다.
+					logger.info("[ap] quota job " + jobId + " interrupted");
+				} catch (Exception e) {
+					logger.warn("[ap] quota job " + jobId + " failed : " + e.getLocalizedMessage());
+					finish(jobId, GlusterfsQuotaJob.STATE_FAILED, e.getLocalizedMessage());
+				} finally {
+					running.remove(jobId);
+					GlusterfsReadContext.clear();
+				}
+			}
+		});
+	}
+
+	private void runJob(String jobId) throws InterruptedException {
+		final GlusterfsQuotaJob job = glusterfsQuotaJobRepository.findQuotaJob(jobId);
+		logger.info("[ap] quota job " + jobId + " running, planId=" + job.getPlanId() + " checkpoint=" + job.getCheckpoint()
+				+ " processed=" + job.getProcessed() + "/" + job.getTotal());
+
+		final GlusterfsRateLimiter limiter = new GlusterfsRateLimiter(rate);
+		final AtomicInteger processed = new AtomicInteger(job.getProcessed());
+		final AtomicInteger failed = new AtomicInteger(job.getFailed());
+		ExecutorService workers = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("glusterfs-quota-job-worker-"));
+		try {
+			String after = job.getCheckpoint();
+			do {
+				final List<GlusterfsServiceInstanceRecord> page = new ArrayList<GlusterfsServiceInstanceRecord>();
+				String next = glusterfsInstanceRepository.listInstances(null, null, job.getPlanId(), after, pageSize,
+						new GlusterfsRecordHandler<GlusterfsServiceInstanceRecord>() {
+							@Override
+							public void handle(GlusterfsServiceInstanceRecord record) {
+								page.add(record);
+							}
+						});
+
+				final CountDownLatch done = new CountDownLatch(page.size());
+				for (final GlusterfsServiceInstanceRecord instance : page) {
+					workers.execute(new Runnable() {
+						@Override
+						public void run() {
+							GlusterfsReadContext.usePrimary();
+							try {
+								limiter.acquire();
+								if (!apply(job, instance)) failed.incrementAndGet();
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							} finally {
+								processed.incrementAndGet();
+								GlusterfsReadContext.clear();
+								done.countDown();
+							}
+						}
+					});
+				}
+				done.await();
+				if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+
+				// 페이지의 모든 인스턴스를 처리한 뒤 checkpoint 를 기록합니다.
+				if (!page.isEmpty()) after = page.get(page.size() - 1).getServiceInstanceId();
+				if (!glusterfsQuotaJobRepository.updateQuotaJobProgress(jobId, owner, after, processed.get(), failed.get())) {
+					logger.info("[ap] quota job " + jobId + " stopped, cancelled or taken over at checkpoint=" + after);
+					return;
+				}
+				if (next == null) break;
+			} while (true);
+		} finally {
+			workers.shutdownNow();
+		}
+
+		String description = failed.get() == 0 ? null : failed.get() + " instance(s) failed";
+		finish(jobId, GlusterfsQuotaJob.STATE_COMPLETED, description);
+		logger.info("[ap] quota job " + jobId + " completed, processed=" + processed.get() + " failed=" + failed.get());
+	}
+
+	/**
+	 * 인스턴스의 plan 변경 요청과 겹치지 않도록 인스턴스 잠금을 잡고, plan 이 그대로인 경우에만 quota 를 설정합니다.
+	 * @return 실패한 경우 false
+	 */
+	private boolean apply(final GlusterfsQuotaJob job, final GlusterfsServiceInstanceRecord instance) throws InterruptedException {
+		final String instanceId = instance.getServiceInstanceId();
+		try {
+			return glusterfsRequestCoordinator.execute(GlusterfsServiceInstanceService.instanceLockKey(instanceId), null, () -> {
+				GlusterfsServiceInstanceRecord current = glusterfsInstanceRepository.findInstance(instanceId);
+				if (current == null || !job.getPlanId().equals(current.getPlanId()) || current.getTenantId() == null) {
+					skippedCount.incrementAndGet();
+					return true;
+				}
+				glusterfsAdminService.setGlusterfsQuotaBytes(current.getTenantId(), job.getQuotaBytes());
+				updatedCount.incrementAndGet();
+				return true;
+			});
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (Exception e) {
+			failedCount.incrementAndGet();
+			logger.warn("[ap] quota job " + job.getJobId() + " instance " + instanceId + " failed : " + e.getLocalizedMessage());
+			return false;
+		}
+	}
+
+	private void finish(String jobId, String state, String description) {
+		try {
+			glusterfsQuotaJobRepository.finishQuotaJob(jobId, owner, state, description);
+		} catch (Exception e) {
+			logger.warn("[ap] quota job " + jobId + " state update failed : " + e.getLocalizedMessage());
+		}
+	}
+
+	private Date staleBefore() {
+		return new Date(System.currentTimeMillis() - staleTimeout);
+	}
+
+	private static String getHostName() {
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (Exception e) {
+			return "unknown";
+		}
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Integer>("glusterfs.quotajob.running", running.size()));
+		metrics.add(new Metric<Long>("glusterfs.quotajob.updated", updatedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.quotajob.failed", failedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.quotajob.skipped", skippedCount.get()));
+		return metrics;
+	}
+
+}
@@ -0,0 +1,293 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.model.ServiceInstanceBinding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+/**
+ * gfbroker.service_instances / service_binding 레코드 캐시(write-through).
+ * 저장/수정 시 캐시를 갱신하고 삭제 시 무효화하며, maxsize 를 넘으면 가장 오래 사용하지 않은 레코드부터 제거한다.
+ * 브로커를 여러 대 구성한 경우 다른 브로커의 변경은 ttl 이 지난 후에 반영된다.
+ * 변경 요청 처리 중(primary 조회)에는 이 브로커가 저장/수정하면서 캐시한 레코드만 사용하고, 조회 결과로 채운 레코드는 사용하지 않는다.
+ * 캐시된 객체는 호출자가 변경할 수 없도록 저장/조회 시 복사본을 사용한다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Service
+public class GlusterfsRecordCache implements PublicMetrics {
+
+	@Autowired
+	private Environment env;
+
+	private Region<GlusterfsServiceInstanceRecord> instances;
+
+	private Region<BindingRecord> bindings;
+
+	@PostConstruct
+	public void init() {
+		int maxSize = env.getProperty("glusterfs.recordcache.maxsize", Integer.class, 10000);
+		long ttl = env.getProperty("glusterfs.recordcache.ttl", Long.class, 300000L);
+		instances = new Region<GlusterfsServiceInstanceRecord>(maxSize, ttl);
+		bindings = new Region<BindingRecord>(maxSize, ttl);
+	}
+
+	/**
+	 * 캐시된 레코드의 복사본을 반환합니다. 없거나 만료된 경우 null 을 반환합니다.
+	 * @param instanceId
+	 * @param primary true 인 경우 이 브로커가 저장/수정하면서 캐시한 레코드만 반환합니다.
+	 * @return
+	 */
+	public GlusterfsServiceInstanceRecord getInstance(String instanceId, boolean primary) {
+		GlusterfsServiceInstanceRecord record = instances.get(instanceId, primary);
+		return record == null ? null : new GlusterfsServiceInstanceRecord(record);
+	}
+
+	/**
+	 * @param record
+	 * @param written 저장/수정한 레코드인 경우 true, 조회한 레코드인 경우 false
+	 */
+	public void putInstance(GlusterfsServiceInstanceRecord record, boolean written) {
+		instances.put(record.getServiceInstanceId(), new GlusterfsServiceInstanceRecord(record), written);
+	}
+
+	/**
+	 * 캐시된 레코드의 plan 정보를 변경합니다. 캐시에 없는 경우 다음 조회 시 DB 에서 읽습니다.
+	 * @param instanceId
+	 * @param serviceId
+	 * @param planId
+	 * @param organizationGuid
+	 * @param spaceGuid
+	 */
+	public void updateInstancePlan(String instanceId, String serviceId, String planId, String organizationGuid, String spaceGuid) {
+		instances.update(instanceId, new Updater<GlusterfsServiceInstanceRecord>() {
+			@Override
+			public GlusterfsServiceInstanceRecord update(GlusterfsServiceInstanceRecord record) {
+				GlusterfsServiceInstanceRecord updated = new GlusterfsServiceInstanceRecord(record);
+				updated.setServiceDefinitionId(serviceId);
+				updated.setPlanId(planId);
+				updated.setOrganizationGuid(organizationGuid);
+				updated.setSpaceGuid(spaceGuid);
+				return updated;
+			}
+		});
+	}
+
+	public void invalidateInstance(String instanceId) {
+		instances.remove(instanceId);
+	}
+
+	/**
+	 * @param bindingId
+	 * @param primary true 인 경우 이 브로커가 저장하면서 캐시한 레코드만 반환합니다.
+	 * @return 없거나 만료된 경우 null
+	 */
+	public BindingRecord getBinding(String bindingId, boolean primary) {
+		return bindings.get(bindingId, primary);
+	}
+
+	/**
+	 * @param record
+	 * @param written 저장한 레코드인 경우 true, 조회한 레코드인 경우 false
+	 */
+	public void putBinding(BindingRecord record, boolean written) {
+		bindings.put(record.bindingId, record, written);
+	}
+
+	public void invalidateBinding(String bindingId) {
+		bindings.remove(bindingId);
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		instances.addMetrics(metrics, "glusterfs.recordcache.instance");
+		bindings.addMetrics(metrics, "glusterfs.recordcache.binding");
+		return metrics;
+	}
+
+	/**
+	 * gfbroker.service_binding 레코드. 목록 조회 시에는 username/password 를 조회하지 않는다.
+	 * status 는 비동기 Unbind 로 삭제중인 경우 deleting 이며, 단건 조회 시에만 조회한다.
+	 */
+	public static final class BindingRecord {
+
+		public static final String STATUS_DELETING = "deleting";
+
+		private final String bindingId;
+
+		private final String instanceId;
+
+		private final String appGuid;
+
+		private final String userId;
+
+		private final String username;
+
+		private final String password;
+
+		private final String status;
+
+		public BindingRecord(String bindingId, String instanceId, String appGuid, String userId) {
+			this(bindingId, instanceId, appGuid, userId, null, null);
+		}
+
+		public BindingRecord(String bindingId, String instanceId, String appGuid, String userId, String username, String password) {
+			this(bindingId, instanceId, appGuid, userId, username, password, null);
+		}
+
+		public BindingRecord(String bindingId, String instanceId, String appGuid, String userId, String username, String password, String status) {
+			this.bindingId = bindingId;
+			this.instanceId = instanceId;
+			this.appGuid = appGuid;
+			this.userId = userId;
+			this.username = username;
+			this.password = password;
+			this.status = status;
+		}
+
+		public String getBindingId() {
+			return bindingId;
+		}
+
+		public String getInstanceId() {
+			return instanceId;
+		}
+
+		public String getAppGuid() {
+			return appGuid;
+		}
+
+		public String getUserId() {
+			return userId;
+		}
+
+		public String getUsername() {
+			return username;
+		}
+
+		public String getPassword() {
+			return password;
+		}
+
+		public String getStatus() {
+			return status;
+		}
+
+		public boolean isDeleting() {
+			return STATUS_DELETING.equals(status);
+		}
+
+		public ServiceInstanceBinding toServiceInstanceBinding() {
+			return new ServiceInstanceBinding(bindingId, instanceId, new HashMap<String, Object>(), "", appGuid);
+		}
+	}
+
+	private interface Updater<V> {
+		V update(V value);
+	}
+
+	/**
+	 * 크기가 제한된 LRU 캐시 영역
+	 */
+	private static final class Region<V> {
+
+		private final int maxSize;
+
+		private final long ttl;
+
+		private final Map<String, Entry<V>> entries;
+
+		private final AtomicLong hitCount = new AtomicLong();
+
+		private final AtomicLong missCount = new AtomicLong();
+
+		private final AtomicLong evictionCount = new AtomicLong();
+
+		private Region(final int maxSize, long ttl) {
+			this.maxSize = maxSize;
+			this.ttl = ttl;
+			this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+					if (size() <= maxSize) return false;
+					evictionCount.incrementAndGet();
+					return true;
+				}
+			};
+		}
+
+		private synchronized V get(String key, boolean writtenOnly) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+				entries.remove(key);
+				entry = null;
+			}
+			if (entry == null || (writtenOnly && !entry.written)) {
+				missCount.incrementAndGet();
+				return null;
+			}
+			hitCount.incrementAndGet();
+			return entry.value;
+		}
+
+		private synchronized void put(String key, V value, boolean written) {
+			if (maxSize <= 0 || key == null) return;
+			entries.put(key, new Entry<V>(value, System.currentTimeMillis() + ttl, written));
+		}
+
+		private synchronized void update(String key, Updater<V> updater) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null) entries.put(key, new Entry<V>(updater.update(entry.value), System.currentTimeMillis() + ttl, entry.written));
+		}
+
+		private synchronized void remove(String key) {
+			entries.remove(key);
+		}
+
+		private void addMetrics(Collection<Metric<?>> metrics, String prefix) {
+			long hit = hitCount.get();
+			long total = hit + missCount.get();
+			int size;
+			synchronized (this) {
+				size = entries.size();
+			}
+			metrics.add(new Metric<Long>(prefix + ".hit", hit));
+			metrics.add(new Metric<Long>(prefix + ".miss", missCount.get()));
+			metrics.add(new Metric<Double>(prefix + ".hitratio", total == 0 ? 0.0 : (double) hit / total));
+			metrics.add(new Metric<Long>(prefix + ".eviction", evictionCount.get()));
+			metrics.add(new Metric<Integer>(prefix + ".size", size));
+		}
+	}
+
+	private static final class Entry<V> {
+
+		private final V value;
+
+		private final long expiresAt;
+
+		// 이 브로커가 저장/수정한 레코드인지 여부
+		private final boolean written;
+
+		private Entry(V value, long expiresAt, boolean written) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+			this.written = written;
+		}
+	}
+
+}
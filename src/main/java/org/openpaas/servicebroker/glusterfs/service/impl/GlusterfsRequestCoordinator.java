@@ -0,0 +1,169 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsStripedLock;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsConcurrencyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+/**
+ * 같은 서비스 인스턴스/바인딩을 변경하는 요청을 직렬화하고, 동시에 들어온 동일한 요청을 한번만 처리하는 클래스.
+ * 변경 요청은 대상 키의 잠금(GlusterfsStripedLock)을 잡고 실행되며, 다른 대상의 요청은 동시에 진행된다.
+ * 요청 키가 같은 요청이 처리중이면 새로 실행하지 않고 처리중인 요청의 결과(또는 예외)를 함께 받는다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Service
+public class GlusterfsRequestCoordinator implements PublicMetrics {
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsRequestCoordinator.class);
+
+	@Autowired
+	private Environment env;
+
+	private GlusterfsStripedLock locks;
+
+	private long waitTimeout;
+
+	private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<String, CompletableFuture<Object>>();
+
+	private final AtomicLong executedCount = new AtomicLong();
+
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	private final AtomicLong contendedCount = new AtomicLong();
+
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	/**
+	 * 잠금을 잡고 실행할 작업
+	 */
+	public interface Action<T> {
+		T call() throws Exception;
+	}
+
+	@PostConstruct
+	public void init() {
+		locks = new GlusterfsStripedLock(env.getProperty("glusterfs.lock.stripes", Integer.class, 64));
+		waitTimeout = env.getProperty("glusterfs.lock.waittimeout", Long.class, 30000L);
+	}
+
+	/**
+	 * lockKey 의 잠금을 잡고 작업을 실행합니다.
+	 * @param lockKey 직렬화할 대상(instance:ID, binding:ID)
+	 * @param requestKey 동일한 요청을 구분하는 키. null 인 경우 합치지 않습니다.
+	 * @param action
+	 * @return
+	 * @throws GlusterfsConcurrencyException waittimeout 안에 잠금을 잡지 못하거나 처리중인 요청이 끝나지 않은 경우
+	 * @throws Exception 작업에서 발생한 예외
+	 */
+	public <T> T execute(String lockKey, String requestKey, Action<T> action) throws Exception {
+		return execute(Collections.singletonList(lockKey), requestKey, action);
+	}
+
+	/**
+	 * 여러 대상의 잠금을 모두 잡고 작업을 실행합니다. 바인딩 변경은 서비스 인스턴스와 바인딩의 잠금을 함께 잡습니다.
+	 * 잠금은 키의 순서와 관계없이 GlusterfsStripedLock 의 순번 순서로 잡으므로, 서로 다른 키가 같은 잠금을 공유하더라도 교착 상태가 생기지 않습니다.
+	 * @param lockKeys 직렬화할 대상. 상위 대상(instance:ID)부터 지정합니다.
+	 * @param requestKey 동일한 요청을 구분하는 키. null 인 경우 합치지 않습니다.
+	 * @param action
+	 * @return
+	 * @throws GlusterfsConcurrencyException waittimeout 안에 모든 잠금을 잡지 못하거나 처리중인 요청이 끝나지 않은 경우
+	 * @throws Exception 작업에서 발생한 예외
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(List<String> lockKeys, String requestKey, Action<T> action) throws Exception {
+		if (requestKey == null) return executeLocked(lockKeys, action);
+
+		CompletableFuture<Object> mine = new CompletableFuture<Object>();
+		CompletableFuture<Object> running = inFlight.putIfAbsent(requestKey, mine);
+		if (running != null) {
+			coalescedCount.incrementAndGet();
+			logger.debug("[ap] join in-flight request " + requestKey);
+			return (T) await(requestKey, running);
+		}
+
+		try {
+			T result = executeLocked(lockKeys, action);
+			mine.complete(result);
+			return result;
+		} catch (Exception e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} catch (Error e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(requestKey, mine);
+		}
+	}
+
+	private <T> T executeLocked(List<String> lockKeys, Action<T> action) throws Exception {
+		List<String> ordered = new ArrayList<String>(lockKeys);
+		ordered.sort(Comparator.comparingInt(locks::indexOf));
+		final long deadline = System.currentTimeMillis() + waitTimeout;
+		List<ReentrantLock> held = new ArrayList<ReentrantLock>(ordered.size());
+		try {
+			for (String lockKey : ordered) {
+				ReentrantLock lock = locks.get(lockKey);
+				if (!lock.tryLock()) {
+					contendedCount.incrementAndGet();
+					if (!lock.tryLock(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+						timeoutCount.incrementAndGet();
+						throw new GlusterfsConcurrencyException("Another operation for " + lockKey + " is in progress");
+					}
+				}
+				held.add(lock);
+			}
+			executedCount.incrementAndGet();
+			return action.call();
+		} finally {
+			for (int i = held.size() - 1; i >= 0; i--) held.get(i).unlock();
+		}
+	}
+
+	private Object await(String requestKey, CompletableFuture<Object> running) throws Exception {
+		try {
+			return running.get(waitTimeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			timeoutCount.incrementAndGet();
+			throw new GlusterfsConcurrencyException("Request " + requestKey + " is still in progress");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) throw (Exception) cause;
+			throw (Error) cause;
+		}
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Long>("glusterfs.coordinator.executed", executedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.coordinator.coalesced", coalescedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.coordinator.contended", contendedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.coordinator.timeout", timeoutCount.get()));
+		metrics.add(new Metric<Integer>("glusterfs.coordinator.inflight", inFlight.size()));
+		return metrics;
+	}
+
+}
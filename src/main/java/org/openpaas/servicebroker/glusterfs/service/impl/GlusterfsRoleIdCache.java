@@ -0,0 +1,77 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+/**
+ * keystone role 명 → role ID 캐시.
+ * role ID 는 거의 변경되지 않으므로 TTL 동안 보관하며, role 할당이 404 를 반환한 경우에만 무효화한다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Service
+public class GlusterfsRoleIdCache implements PublicMetrics {
+
+	@Autowired
+	private Environment env;
+
+	private final ConcurrentMap<String, Entry> roles = new ConcurrentHashMap<String, Entry>();
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * 캐시된 role ID 를 조회합니다. 없거나 만료된 경우 null 을 반환합니다.
+	 * @param roleName
+	 * @return
+	 */
+	public String get(String roleName) {
+		Entry entry = roles.get(roleName);
+		if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+			hitCount.incrementAndGet();
+			return entry.roleId;
+		}
+		missCount.incrementAndGet();
+		return null;
+	}
+
+	public void put(String roleName, String roleId) {
+		long ttl = env.getProperty("glusterfs.rolecache.ttl", Long.class, 3600000L);
+		roles.put(roleName, new Entry(roleId, System.currentTimeMillis() + ttl));
+	}
+
+	public void invalidate(String roleName) {
+		roles.remove(roleName);
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Long>("glusterfs.rolecache.hit", hitCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.rolecache.miss", missCount.get()));
+		return metrics;
+	}
+
+	private static final class Entry {
+
+		private final String roleId;
+
+		private final long expiresAt;
+
+		private Entry(String roleId, long expiresAt) {
+			this.roleId = roleId;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
@@ -1,19 +1,37 @@
 package org.openpaas.servicebroker.glusterfs.service.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import org.openpaas.servicebroker.exception.ServiceBrokerException;
 import org.openpaas.servicebroker.exception.ServiceInstanceBindingExistsException;
-import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstance;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsReadContext;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsConcurrencyException;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsServiceException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceOperation;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsRecordCache.BindingRecord;
 import org.openpaas.servicebroker.model.CreateServiceInstanceBindingRequest;
 import org.openpaas.servicebroker.model.DeleteServiceInstanceBindingRequest;
-import org.openpaas.servicebroker.model.ServiceInstance;
 import org.openpaas.servicebroker.model.ServiceInstanceBinding;
 import org.openpaas.servicebroker.service.ServiceInstanceBindingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
@@ -28,16 +46,49 @@ import org.springframework.stereotype.Service;
  */
 @PropertySource("classpath:glusterfs.properties")
 @Service
-public class GlusterfsServiceInstanceBindingService implements ServiceInstanceBindingService {
+public class GlusterfsServiceInstanceBindingService implements ServiceInstanceBindingService, PublicMetrics {
 
 	private static final Logger logger = LoggerFactory.getLogger(GlusterfsServiceInstanceBindingService.class);
 	
+	// bind 단계 명
+	private static final String STEP_USER = "user";
+	private static final String STEP_ROLE = "role";
+	private static final String STEP_SAVE = "save";
+	
 	@Autowired
 	private Environment env;
 	
 	@Autowired
 	private GlusterfsAdminService glusterfsAdminService; 
 	
+	@Autowired
+	private GlusterfsOperationService glusterfsOperationService;
+	
+	@Autowired
+	private GlusterfsStepJournal glusterfsStepJournal;
+	
+	@Autowired
+	private GlusterfsRequestCoordinator glusterfsRequestCoordinator;
+	
+	@Autowired
+	@Qualifier("glusterfsIoExecutor")
+	private Executor ioExecutor;
+	
+	/** glusterfs.bind.parallel=false 인 경우 요청 스레드에서 순차 실행합니다. */
+	private static final Executor DIRECT_EXECUTOR = Runnable::run;
+	
+	private final AtomicLong bindCount = new AtomicLong();
+	
+	private final AtomicLong bindFailureCount = new AtomicLong();
+	
+	private final AtomicLong bindLatencyTotal = new AtomicLong();
+	
+	private final AtomicLong bindLatencyLast = new AtomicLong();
+	
+	private final AtomicLong bindLatencyMax = new AtomicLong();
+	
+	private final AtomicLong bindReplayCount = new AtomicLong();
+	
 	
 	@Autowired
 	public GlusterfsServiceInstanceBindingService(GlusterfsAdminService glusterfsAdminService) {
@@ -49,93 +100,396 @@ public class GlusterfsServiceInstanceBindingService implements ServiceInstanceBi
 	 */
 	@Override
 	public ServiceInstanceBinding createServiceInstanceBinding(
-			CreateServiceInstanceBindingRequest request)
+			final CreateServiceInstanceBindingRequest request)
 			throws ServiceInstanceBindingExistsException, ServiceBrokerException {
 		
 		logger.debug("GlusterfsServiceInstanceBindingService CLASS createServiceInstanceBinding");
 		
-		/* 최초 ServiceInstanceBinding 생성 요청시에는 해당 ServiceInstanceBinding가 존재하지 않아 해당 메소드를 주석처리 하였습니다.*/
-		ServiceInstanceBinding findBinding = glusterfsAdminService.findBindById(request.getBindingId());
+		long startedAt = System.currentTimeMillis();
+		boolean succeeded = false;
+		try {
+			// 같은 ServiceInstance/Binding 에 대한 변경 요청은 직렬화되며, 처리중인 동일한 요청이 있으면 그 결과를 함께 반환합니다.
+			// ServiceInstance 의 잠금을 함께 잡으므로 같은 ServiceInstance 의 Deprovision/Plan 변경과 동시에 진행되지 않습니다.
+			ServiceInstanceBinding binding = glusterfsRequestCoordinator.execute(bindingLockKeys(request.getServiceInstanceId(), request.getBindingId()),
+					"bind:" + request.getBindingId() + ":" + request.getServiceInstanceId() + ":" + request.getAppGuid(),
+					() -> bind(request));
+			succeeded = true;
+			return binding;
+		} catch (ServiceInstanceBindingExistsException | ServiceBrokerException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		} finally {
+			recordBindLatency(System.currentTimeMillis() - startedAt, succeeded);
+		}
+	}
+	
+	/**
+	 * 바인딩 단계를 의존 관계에 따라 I/O 스레드 풀에서 실행합니다.
+	 * Binding/ServiceInstance 조회를 동시에 시작하고, 동일한 요청의 재시도인 경우 저장된 credentials 로 바로 응답합니다.
+	 * 새 바인딩인 경우 role ID 조회와 사용자 생성을 겹쳐서 진행한 뒤 둘 다 완료되면 role 할당과 Binding 저장을 수행합니다.
+	 * 단계별 진행 상황을 기록하여 재시도 시 완료된 단계는 건너뛰고, 실패한 경우 생성한 사용자를 삭제합니다.
+	 * @param request
+	 * @return
+	 * @throws ServiceInstanceBindingExistsException
+	 * @throws ServiceBrokerException
+	 */
+	private ServiceInstanceBinding bind(final CreateServiceInstanceBindingRequest request)
+			throws ServiceInstanceBindingExistsException, ServiceBrokerException {
+		
+		final Executor executor = getBindExecutor();
+		final String roleName = env.getRequiredProperty("glusterfs.rolename");
 		
-		// 요청 정보로부터 ServiceInstanceBinding 정보를 생성합니다.
-		ServiceInstanceBinding binding = glusterfsAdminService.createServiceInstanceBindingByRequest(request);
+		// 서로 의존하지 않는 조회를 동시에 시작합니다.
+		CompletableFuture<BindingRecord> findBinding = stage(() -> glusterfsAdminService.findBindRecordById(request.getBindingId()), executor);
+		CompletableFuture<GlusterfsServiceInstanceRecord> findInstance = stage(() -> glusterfsAdminService.findInstanceRecordById(request.getServiceInstanceId()), executor);
 		
-		if(findBinding != null){
-			if(findBinding.getServiceInstanceId().equals(binding.getServiceInstanceId()) &&
-					findBinding.getId().equals(binding.getId())  &&
-					findBinding.getAppGuid().equals(binding.getAppGuid())){
-				findBinding = getBindingInfo(request, findBinding);
-				findBinding.setHttpStatusOK();
-				return findBinding;
+		BindingRecord found = join(findBinding);
+		if(found != null){
+			// 삭제중인 바인딩은 곧 삭제될 credentials 로 응답하지 않습니다.
+			if(found.isDeleting())
+				throw new GlusterfsConcurrencyException("Binding " + request.getBindingId() + " is being deleted");
+			// 동일한 요청의 재시도인 경우 keystone 을 호출하지 않고 저장된 정보로 응답합니다.
+			if(Objects.equals(found.getInstanceId(), request.getServiceInstanceId()) &&
+					Objects.equals(found.getAppGuid(), request.getAppGuid())){
+				ServiceInstanceBinding replayed = replayBinding(request, found, join(findInstance));
+				replayed.setHttpStatusOK();
+				bindReplayCount.incrementAndGet();
+				return replayed;
 			}else{
-				throw new ServiceInstanceBindingExistsException(binding);
+				throw new ServiceInstanceBindingExistsException(glusterfsAdminService.createServiceInstanceBindingByRequest(request));
 			}
-			
 		}
 		
-		// 요청 정보로부터 ServiceInstance정보를 조회합니다.
-		ServiceInstance instance = glusterfsAdminService.findById(request.getServiceInstanceId());
-		GlusterfsServiceInstance gf = glusterfsAdminService.tenantInfofindById(instance.getServiceInstanceId());
-					
+		// 재시도가 아닌 경우에만 role ID 와 이전 시도의 단계 기록을 조회합니다.
+		final CompletableFuture<String> findRoleId = stage(() -> glusterfsAdminService.getCachedRolesIdByRoleName(roleName), executor);
+		CompletableFuture<GlusterfsStepJournal.Flow> beginFlow = stage(() -> glusterfsStepJournal.begin(GlusterfsStepJournal.FLOW_BIND,
+				request.getBindingId(), request.getServiceInstanceId(), bindCompensations()), executor);
+		
 		// ServiceInstance정보가 엇을경우 예외처리
-		if(instance == null) throw new ServiceBrokerException("Not Exists ServiceInstance");
+		final GlusterfsServiceInstanceRecord gf = join(findInstance);
+		if(gf == null) throw new ServiceBrokerException("Not Exists ServiceInstance");
+		GlusterfsServiceInstanceService.checkNotDeleting(gf);
+		final GlusterfsStepJournal.Flow flow = join(beginFlow);
 		
 		// 사용자 아이디를 생성합니다.
-		String username = glusterfsAdminService.getUsername(request.getBindingId());
+		final String username = glusterfsAdminService.getUsername(request.getBindingId());
 		
 		// 사용자 비밀번호를 생성합니다.
 		String password = glusterfsAdminService.getUsername(request.getServiceInstanceId());
 		
-		// 새로운 사용자를 생성합니다.
-		glusterfsAdminService.createUser(gf.getTenantId(), username, password);
-
-		// 새로운 사용자에 member role을  할당합니다.
-		glusterfsAdminService.assignRole(gf.getTenantId(), glusterfsAdminService.getGlusterfsUserIdByUserName(username));
-
 		// 반환될 credentials 정보를 생성합니다.
+		Map<String,Object> credentials = createCredentials(gf.getTenantName(), username, password);
+		final ServiceInstanceBinding createdBinding = new ServiceInstanceBinding(request.getBindingId(), gf.getServiceInstanceId(), credentials, null, request.getAppGuid());
+		
+		// 새로운 사용자를 생성합니다. 이전 시도에서 생성한 사용자가 있으면 해당 사용자를 사용합니다.
+		final CompletableFuture<String> createUser = stage(() -> flow.run(STEP_USER, () -> {
+			String userId = glusterfsAdminService.createUser(gf.getTenantId(), username, password);
+			if (userId == null || userId.isEmpty())
+				userId = glusterfsAdminService.getGlusterfsUserIdByUserName(username);
+			if (userId == null) throw new GlusterfsServiceException("User not found after creation : " + username);
+			return userId;
+		}, glusterfsAdminService::deleteUserById), executor);
+		
+		// 사용자 생성과 role ID 조회가 완료되면 member role을 할당하고 Binding 정보를 저장합니다.
+		final Supplier<Void> assignAndSave = GlusterfsReadContext.propagate(() -> call(() -> {
+			final String userId = createUser.join();
+			flow.run(STEP_ROLE, () -> {
+				glusterfsAdminService.assignRole(gf.getTenantId(), userId, findRoleId.join());
+				return null;
+			}, null);
+			flow.run(STEP_SAVE, () -> {
+				glusterfsAdminService.saveBind(createdBinding, userId);
+				return null;
+			}, null);
+			return null;
+		}));
+		CompletableFuture<Void> saveBind = CompletableFuture.allOf(createUser, findRoleId)
+				.thenApplyAsync(done -> assignAndSave.get(), executor);
+		try {
+			join(saveBind);
+		} catch (ServiceBrokerException | RuntimeException e) {
+			// role ID 조회가 먼저 실패한 경우 사용자 생성이 끝난 뒤 보상합니다.
+			createUser.handle((userId, t) -> null).join();
+			flow.compensate();
+			throw e;
+		}
+		flow.complete();
+		
+		return createdBinding;
+	}
+	
+	/**
+	 * 저장된 바인딩으로 응답을 만듭니다. username/password 가 저장되지 않은 이전 바인딩은 getBindingInfo 로 다시 계산합니다.
+	 * @param request
+	 * @param found
+	 * @param gf
+	 * @return
+	 * @throws ServiceBrokerException
+	 */
+	private ServiceInstanceBinding replayBinding(CreateServiceInstanceBindingRequest request, BindingRecord found,
+			GlusterfsServiceInstanceRecord gf) throws ServiceBrokerException {
+		if(gf == null) throw new ServiceBrokerException("Not Exists ServiceInstance");
+		GlusterfsServiceInstanceService.checkNotDeleting(gf);
+		if(found.getUsername() == null || found.getPassword() == null)
+			return getBindingInfo(request, found.toServiceInstanceBinding());
+		
+		Map<String,Object> credentials = createCredentials(gf.getTenantName(), found.getUsername(), found.getPassword());
+		return new ServiceInstanceBinding(found.getBindingId(), found.getInstanceId(), credentials, null, found.getAppGuid());
+	}
+	
+	/**
+	 * 반환될 credentials 정보를 생성합니다.
+	 * @param tenantName
+	 * @param username
+	 * @param password
+	 * @return
+	 */
+	private Map<String,Object> createCredentials(String tenantName, String username, String password) {
 		Map<String,Object> credentials = new HashMap<String,Object>();
-		credentials.put("tenantname", gf.getTenantName());
+		credentials.put("tenantname", tenantName);
 		//credentials.put("provider", "openstack-swift");
 		credentials.put("provider", "swift-keystone");
 		credentials.put("username", username);
 		credentials.put("password", password);
 		credentials.put("auth_url", env.getRequiredProperty("glusterfs.authurl")+"/v3");
-		binding = new ServiceInstanceBinding(request.getBindingId(), instance.getServiceInstanceId(), credentials, null, request.getAppGuid());
-		
-		// Binding 정보를 저장합니다.
-		glusterfsAdminService.saveBind(binding);
-		
-		return binding;
+		return credentials;
+	}
+	
+	/**
+	 * 바인딩 단계
+	 */
+	private interface BindStep<T> {
+		T call() throws Exception;
+	}
+	
+	/**
+	 * 단계를 실행합니다. 요청 스레드의 DB 조회 설정(primary/replica)을 전달합니다.
+	 */
+	private static <T> CompletableFuture<T> stage(final BindStep<T> step, Executor executor) {
+		return CompletableFuture.supplyAsync(GlusterfsReadContext.propagate(() -> call(step)), executor);
+	}
+	
+	private static <T> T call(BindStep<T> step) {
+		try {
+			return step.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new CompletionException(e);
+		}
+	}
+	
+	/**
+	 * 단계의 완료를 기다립니다. 단계에서 발생한 예외는 원래 예외로 다시 발생시킵니다.
+	 * @param future
+	 * @return
+	 * @throws ServiceBrokerException
+	 */
+	private static <T> T join(CompletableFuture<T> future) throws ServiceBrokerException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			if (cause instanceof ServiceBrokerException) throw (ServiceBrokerException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new GlusterfsServiceException(cause.getLocalizedMessage());
+		}
+	}
+	
+	static String bindingLockKey(String bindingId) {
+		return "binding:" + bindingId;
+	}
+	
+	/**
+	 * Binding 변경 시 잡는 잠금. ServiceInstance, Binding 순서로 지정합니다.
+	 * @param instanceId
+	 * @param bindingId
+	 * @return
+	 */
+	static List<String> bindingLockKeys(String instanceId, String bindingId) {
+		return Arrays.asList(GlusterfsServiceInstanceService.instanceLockKey(instanceId), bindingLockKey(bindingId));
+	}
+	
+	/**
+	 * Unbind 요청의 ServiceInstance ID. 요청에 없으면 저장된 Binding 정보에서 조회합니다.
+	 * Binding 의 ServiceInstance 는 변경되지 않으므로 잠금을 잡기 전에 조회해도 됩니다.
+	 * @param request
+	 * @return
+	 */
+	private String getServiceInstanceId(DeleteServiceInstanceBindingRequest request) {
+		if (request.getInstance() != null && request.getInstance().getServiceInstanceId() != null)
+			return request.getInstance().getServiceInstanceId();
+		BindingRecord found = glusterfsAdminService.findBindRecordById(request.getBindingId());
+		return found == null ? null : found.getInstanceId();
+	}
+	
+	private Executor getBindExecutor() {
+		return env.getProperty("glusterfs.bind.parallel", Boolean.class, true) ? ioExecutor : DIRECT_EXECUTOR;
+	}
+	
+	private void recordBindLatency(long elapsed, boolean succeeded) {
+		bindCount.incrementAndGet();
+		if (!succeeded) bindFailureCount.incrementAndGet();
+		bindLatencyTotal.addAndGet(elapsed);
+		bindLatencyLast.set(elapsed);
+		bindLatencyMax.accumulateAndGet(elapsed, Math::max);
+	}
+	
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		long count = bindCount.get();
+		metrics.add(new Metric<Long>("glusterfs.bind.count", count));
+		metrics.add(new Metric<Long>("glusterfs.bind.failure", bindFailureCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.bind.replay", bindReplayCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.bind.latency.last", bindLatencyLast.get()));
+		metrics.add(new Metric<Long>("glusterfs.bind.latency.max", bindLatencyMax.get()));
+		metrics.add(new Metric<Double>("glusterfs.bind.latency.avg", count == 0 ? 0.0 : (double) bindLatencyTotal.get() / count));
+		return metrics;
 	}
 
 	/**
 	 * Binding(delete)
 	 */
 	@Override
-	public ServiceInstanceBinding deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request)
+	public ServiceInstanceBinding deleteServiceInstanceBinding(final DeleteServiceInstanceBindingRequest request)
+			throws ServiceBrokerException {
+		try {
+			return glusterfsRequestCoordinator.execute(bindingLockKeys(getServiceInstanceId(request), request.getBindingId()), "unbind:" + request.getBindingId(),
+					() -> doDeleteServiceInstanceBinding(request));
+		} catch (ServiceBrokerException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		}
+	}
+	
+	private ServiceInstanceBinding doDeleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request)
 			throws ServiceBrokerException {
 		
 		String bindingId = request.getBindingId();
 		
 		// ServiceInstanceBinding 정보를 조회합니다.
 		ServiceInstanceBinding binding = glusterfsAdminService.findBindById(bindingId);
-		if(binding ==  null) return null;
+		if(binding ==  null) {
+			abandonBind(bindingId);
+			return null;
+		}
 		
 		// ServiceInstance 정보를 조회합니다.
-		ServiceInstance instance = glusterfsAdminService.findById(binding.getServiceInstanceId());
+		GlusterfsServiceInstanceRecord instance = glusterfsAdminService.findInstanceRecordById(binding.getServiceInstanceId());
 		if(instance ==  null) return null;
 		
 		// bindingId로 사용자를 삭제합니다.
 		if(!binding.getServiceInstanceId().equals(instance.getServiceInstanceId())) return null;
 		
-		glusterfsAdminService.deleteUser(binding.getServiceInstanceId(), bindingId);
-		
-		// bindingId로 Binding 정보를 삭제합니다.
-		glusterfsAdminService.deleteBind(bindingId);
+		unbind(binding);
 		
 		return binding;
 	}
 	
+	/**
+	 * Binding(delete, accepts_incomplete)
+	 * Binding을 삭제중으로 표시하고 사용자 삭제는 작업 스레드에서 수행합니다.
+	 * Binding 정보는 사용자 삭제가 완료된 후에 삭제됩니다.
+	 * @param instanceId
+	 * @param bindingId
+	 * @return Binding이 없을 경우 null
+	 * @throws ServiceBrokerException
+	 */
+	public GlusterfsServiceOperation deleteServiceInstanceBindingAsync(final String instanceId, final String bindingId) throws ServiceBrokerException {
+		try {
+			return glusterfsRequestCoordinator.execute(bindingLockKeys(instanceId, bindingId), "unbind-async:" + instanceId + ":" + bindingId,
+					() -> doDeleteServiceInstanceBindingAsync(instanceId, bindingId));
+		} catch (ServiceBrokerException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		}
+	}
+	
+	private GlusterfsServiceOperation doDeleteServiceInstanceBindingAsync(String instanceId, String bindingId) throws ServiceBrokerException {
+		logger.debug("GlusterfsServiceInstanceBindingService CLASS deleteServiceInstanceBindingAsync");
+		
+		// ServiceInstanceBinding 정보를 조회합니다.
+		final ServiceInstanceBinding binding = glusterfsAdminService.findBindById(bindingId);
+		if(binding ==  null) {
+			abandonBind(bindingId);
+			return null;
+		}
+		if(!binding.getServiceInstanceId().equals(instanceId)) return null;
+		
+		// ServiceInstance 정보를 조회합니다.
+		GlusterfsServiceInstanceRecord instance = glusterfsAdminService.findInstanceRecordById(instanceId);
+		if(instance ==  null) return null;
+		
+		// 진행중인 Unbind 작업이 있으면 새로 시작하지 않고 해당 작업을 반환합니다.
+		GlusterfsServiceOperation lastOperation = glusterfsOperationService.getBindingOperation(bindingId, null);
+		if(lastOperation != null && lastOperation.isInProgress()
+				&& GlusterfsServiceOperation.TYPE_UNBIND.equals(lastOperation.getOperationType())){
+			return lastOperation;
+		}
+		
+		glusterfsAdminService.markBindDeleting(bindingId);
+		
+		return glusterfsOperationService.start(instanceId, bindingId, GlusterfsServiceOperation.TYPE_UNBIND, 
+				new GlusterfsOperationService.OperationTask() {
+					@Override
+					public void run() throws Exception {
+						glusterfsRequestCoordinator.execute(bindingLockKeys(binding.getServiceInstanceId(), binding.getId()), null, () -> {
+							unbind(binding);
+							return null;
+						});
+					}
+				});
+	}
+	
+	/**
+	 * Binding 비동기 작업 상태 조회(last_operation)
+	 * @param bindingId
+	 * @param operationId
+	 * @return
+	 */
+	public GlusterfsServiceOperation getLastOperation(String bindingId, String operationId) {
+		return glusterfsOperationService.getBindingOperation(bindingId, operationId);
+	}
+	
+	/**
+	 * 사용자를 삭제하고 Binding 정보를 삭제합니다.
+	 * @param binding
+	 * @throws ServiceBrokerException
+	 */
+	private void unbind(ServiceInstanceBinding binding) throws ServiceBrokerException {
+		// bindingId로 사용자를 삭제합니다.
+		glusterfsAdminService.deleteUser(binding.getServiceInstanceId(), binding.getId());
+		
+		// bindingId로 Binding 정보를 삭제합니다.
+		glusterfsAdminService.deleteBind(binding.getId());
+	}
+	
+	/**
+	 * 실패하거나 중단된 Bind 의 단계 기록이 남아 있으면 생성한 사용자를 삭제하고 기록을 삭제합니다.
+	 * @param bindingId
+	 * @throws ServiceBrokerException 사용자 삭제에 실패한 경우. CC 가 다시 요청하면 다시 삭제합니다.
+	 */
+	private void abandonBind(String bindingId) throws ServiceBrokerException {
+		glusterfsStepJournal.abandon(GlusterfsStepJournal.FLOW_BIND, bindingId, bindCompensations());
+	}
+	
+	/**
+	 * Bind 단계별 보상 작업입니다. 생성한 사용자를 삭제합니다.
+	 * 중단된 Bind 를 정리하거나, 같은 Binding ID 로 다른 ServiceInstance 에 대해 요청된 Bind 가 이전 요청의 기록을 버릴 때 사용합니다.
+	 * @return
+	 */
+	private LinkedHashMap<String, GlusterfsStepJournal.Compensation> bindCompensations() {
+		LinkedHashMap<String, GlusterfsStepJournal.Compensation> compensations = new LinkedHashMap<String, GlusterfsStepJournal.Compensation>();
+		compensations.put(STEP_USER, userId -> { if (userId != null) glusterfsAdminService.deleteUserById(userId); });
+		compensations.put(STEP_ROLE, null);
+		compensations.put(STEP_SAVE, null);
+		return compensations;
+	}
+	
 	/**
 	 * Binding Info
 	 */
@@ -151,7 +505,7 @@ public class GlusterfsServiceInstanceBindingService implements ServiceInstanceBi
 	 */
 	public ServiceInstanceBinding getBindingInfo(CreateServiceInstanceBindingRequest request, ServiceInstanceBinding instance){
 		
-		GlusterfsServiceInstance gf = glusterfsAdminService.tenantInfofindById(instance.getServiceInstanceId());
+		GlusterfsServiceInstanceRecord gf = glusterfsAdminService.findInstanceRecordById(instance.getServiceInstanceId());
 		
 		// 사용자 아이디를 생성합니다.
 		String username = glusterfsAdminService.getUsername(request.getBindingId());
@@ -159,12 +513,7 @@ public class GlusterfsServiceInstanceBindingService implements ServiceInstanceBi
 		String password = glusterfsAdminService.getUsername(request.getServiceInstanceId());
 		
 		// 반환될 credentials 정보를 생성합니다.
-		Map<String,Object> credentials = new HashMap<String,Object>();
-		credentials.put("tenantname", gf.getTenantName());
-		credentials.put("provider", "swift-keystone");
-		credentials.put("username", username);
-		credentials.put("password", password);
-		credentials.put("auth_url", env.getRequiredProperty("glusterfs.authurl")+"/v3");
+		Map<String,Object> credentials = createCredentials(gf.getTenantName(), username, password);
 		
 		return new ServiceInstanceBinding(request.getBindingId(), instance.getServiceInstanceId(), credentials, null, request.getAppGuid());
 		
@@ -1,11 +1,18 @@
 package org.openpaas.servicebroker.glusterfs.service.impl;
 
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.openpaas.servicebroker.exception.ServiceBrokerException;
 import org.openpaas.servicebroker.exception.ServiceInstanceDoesNotExistException;
 import org.openpaas.servicebroker.exception.ServiceInstanceExistsException;
 import org.openpaas.servicebroker.exception.ServiceInstanceUpdateNotSupportedException;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsConcurrencyException;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsServiceException;
 import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstance;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceOperation;
 import org.openpaas.servicebroker.model.CreateServiceInstanceRequest;
 import org.openpaas.servicebroker.model.DeleteServiceInstanceRequest;
 import org.openpaas.servicebroker.model.ServiceInstance;
@@ -30,12 +37,29 @@ public class GlusterfsServiceInstanceService implements ServiceInstanceService {
 
 	private static final Logger logger = LoggerFactory.getLogger(GlusterfsServiceInstanceService.class);
 
+	// provision / plan 변경 단계 명
+	private static final String STEP_TENANT = "tenant";
+	private static final String STEP_QUOTA = "quota";
+	private static final String STEP_SAVE = "save";
+
 	@Autowired
 	private GlusterfsAdminService glusterfsAdminService;
 	
 	@Autowired
 	private CatalogService service;
 	
+	@Autowired
+	private GlusterfsOperationService glusterfsOperationService;
+	
+	@Autowired
+	private GlusterfsTenantPool glusterfsTenantPool;
+	
+	@Autowired
+	private GlusterfsStepJournal glusterfsStepJournal;
+	
+	@Autowired
+	private GlusterfsRequestCoordinator glusterfsRequestCoordinator;
+	
 	@Autowired
 	public GlusterfsServiceInstanceService(GlusterfsAdminService glusterfsAdminService) {
 		this.glusterfsAdminService = glusterfsAdminService;
@@ -43,30 +67,36 @@ public class GlusterfsServiceInstanceService implements ServiceInstanceService {
 	
 	/**
 	 * Provision(create)
+	 * 같은 ServiceInstance 에 대한 변경 요청은 직렬화되며, 처리중인 동일한 요청이 있으면 그 결과를 함께 반환합니다.
 	 */
 	@Override
-	public ServiceInstance createServiceInstance(CreateServiceInstanceRequest request) 
+	public ServiceInstance createServiceInstance(final CreateServiceInstanceRequest request) 
+			throws ServiceInstanceExistsException, ServiceBrokerException {
+		try {
+			return glusterfsRequestCoordinator.execute(instanceLockKey(request.getServiceInstanceId()), "provision:" + requestKey(request),
+					() -> doCreateServiceInstance(request));
+		} catch (ServiceInstanceExistsException | ServiceBrokerException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		}
+	}
+	
+	private ServiceInstance doCreateServiceInstance(CreateServiceInstanceRequest request) 
 			throws ServiceInstanceExistsException, ServiceBrokerException {
 		System.out.println("GlusterfsServiceInstanceService CLASS createServiceInstance");
 		logger.debug("loggerGlusterfsServiceInstanceService CLASS createServiceInstance");
 
-		/* 최초 ServiceInstance 생성 요청시에는 해당 ServiceInstance가 존재하지 않아 해당 메소드를 주석처리 하였습니다.*/
-		ServiceInstance findInstance = glusterfsAdminService.findById(request.getServiceInstanceId());
-		logger.debug("[ap] findInstance=", findInstance);
-
 		// 요청 정보로부터 ServiceInstance정보를 생성합니다.
-		ServiceInstance instance = null;
-		if (findInstance == null) {
-			instance = glusterfsAdminService.createServiceInstanceByRequest(request);
-			if (instance == null )
-				logger.debug("[ap] instance=", instance);
-			else
-				logger.debug("[ap] instance=", instance.getServiceInstanceId());
-		}
-		if(findInstance != null){
-			if(findInstance.getServiceInstanceId().equals(instance.getServiceInstanceId()) &&
-					findInstance.getPlanId().equals(instance.getPlanId()) &&
-					findInstance.getServiceDefinitionId().equals(instance.getServiceDefinitionId())){
+		ServiceInstance instance = glusterfsAdminService.createServiceInstanceByRequest(request);
+		logger.debug("[ap] instance=" + instance.getServiceInstanceId());
+
+		// 동일한 요청의 재시도인 경우 keystone 을 호출하지 않고 저장된 정보로 응답합니다.
+		GlusterfsServiceInstanceRecord found = glusterfsAdminService.findInstanceRecordById(request.getServiceInstanceId());
+		if(found != null){
+			checkNotDeleting(found);
+			ServiceInstance findInstance = glusterfsAdminService.toServiceInstance(found);
+			if(isSameRequest(findInstance, instance)){
 				findInstance.setHttpStatusOK();
 				return findInstance;
 			}else{
@@ -74,69 +104,342 @@ public class GlusterfsServiceInstanceService implements ServiceInstanceService {
 			}
 		}
 		
-		// Database를 생성합니다.
-		GlusterfsServiceInstance gf = glusterfsAdminService.createTenant(instance);
-		logger.debug("[ap] gf.ServiceInstanceId="+gf.getServiceInstanceId()+"=gf.TenantId="+gf.getTenantId());
-		
-		// ServiceInstance 정보를 저장합니다.
-		glusterfsAdminService.save(instance, gf);
+		provision(instance);
 		
 		return instance;
 	}
 	
+	/**
+	 * Provision(create, accepts_incomplete)
+	 * 요청을 검증하고 작업 정보를 저장한 뒤 Tenant 생성은 작업 스레드에서 수행합니다.
+	 * 동일한 ServiceInstance가 이미 존재하는 경우 완료된 작업 정보를 반환합니다.
+	 * @param request
+	 * @return
+	 * @throws ServiceInstanceExistsException
+	 * @throws ServiceBrokerException
+	 */
+	public GlusterfsServiceOperation createServiceInstanceAsync(final CreateServiceInstanceRequest request) 
+			throws ServiceInstanceExistsException, ServiceBrokerException {
+		try {
+			return glusterfsRequestCoordinator.execute(instanceLockKey(request.getServiceInstanceId()), "provision-async:" + requestKey(request),
+					() -> doCreateServiceInstanceAsync(request));
+		} catch (ServiceInstanceExistsException | ServiceBrokerException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		}
+	}
+	
+	private GlusterfsServiceOperation doCreateServiceInstanceAsync(CreateServiceInstanceRequest request) 
+			throws ServiceInstanceExistsException, ServiceBrokerException {
+		logger.debug("GlusterfsServiceInstanceService CLASS createServiceInstanceAsync");
+		
+		// 요청 정보로부터 ServiceInstance정보를 생성합니다.
+		final ServiceInstance instance = glusterfsAdminService.createServiceInstanceByRequest(request);
+		
+		GlusterfsServiceInstanceRecord found = glusterfsAdminService.findInstanceRecordById(request.getServiceInstanceId());
+		if(found != null){
+			checkNotDeleting(found);
+			ServiceInstance findInstance = glusterfsAdminService.toServiceInstance(found);
+			if(isSameRequest(findInstance, instance)){
+				GlusterfsServiceOperation completed = new GlusterfsServiceOperation();
+				completed.setInstanceId(findInstance.getServiceInstanceId());
+				completed.setOperationType(GlusterfsServiceOperation.TYPE_PROVISION);
+				completed.setState(GlusterfsServiceOperation.STATE_SUCCEEDED);
+				return completed;
+			}else{
+				throw new ServiceInstanceExistsException(instance);
+			}
+		}
+		
+		// 진행중인 Provision 작업이 있으면 새로 시작하지 않고 해당 작업을 반환합니다.
+		GlusterfsServiceOperation lastOperation = glusterfsOperationService.getInstanceOperation(instance.getServiceInstanceId(), null);
+		if(lastOperation != null && lastOperation.isInProgress() 
+				&& GlusterfsServiceOperation.TYPE_PROVISION.equals(lastOperation.getOperationType())){
+			return lastOperation;
+		}
+		
+		return glusterfsOperationService.start(instance.getServiceInstanceId(), null, GlusterfsServiceOperation.TYPE_PROVISION, 
+				new GlusterfsOperationService.OperationTask() {
+					@Override
+					public void run() throws Exception {
+						glusterfsRequestCoordinator.execute(instanceLockKey(instance.getServiceInstanceId()), null, () -> {
+							provision(instance);
+							return null;
+						});
+					}
+				});
+	}
+	
+	/**
+	 * 저장된 ServiceInstance 가 요청과 같은 서비스/플랜/조직/스페이스로 생성되었는지 확인합니다.
+	 * @param findInstance 저장된 ServiceInstance
+	 * @param instance 요청 정보로 생성한 ServiceInstance
+	 * @return
+	 */
+	private boolean isSameRequest(ServiceInstance findInstance, ServiceInstance instance) {
+		return Objects.equals(findInstance.getServiceDefinitionId(), instance.getServiceDefinitionId()) &&
+				Objects.equals(findInstance.getPlanId(), instance.getPlanId()) &&
+				Objects.equals(findInstance.getOrganizationGuid(), instance.getOrganizationGuid()) &&
+				Objects.equals(findInstance.getSpaceGuid(), instance.getSpaceGuid());
+	}
+	
+	/**
+	 * Tenant를 생성하고 ServiceInstance 정보를 저장합니다.
+	 * 단계별 진행 상황을 기록하여 재시도 시 완료된 단계는 건너뛰고, 실패한 경우 생성한 Tenant 를 삭제합니다.
+	 * @param instance
+	 * @throws ServiceInstanceExistsException
+	 * @throws ServiceBrokerException
+	 */
+	private void provision(final ServiceInstance instance) throws ServiceInstanceExistsException, ServiceBrokerException {
+		GlusterfsStepJournal.Flow flow = glusterfsStepJournal.begin(GlusterfsStepJournal.FLOW_PROVISION, instance.getServiceInstanceId(), instance.getPlanId(),
+				provisionCompensations());
+		try {
+			// 미리 생성해 둔 project(quota 설정 완료)가 없으면 새로 생성합니다.
+			final AtomicBoolean pooled = new AtomicBoolean();
+			final String tenantId = flow.run(STEP_TENANT, () -> {
+				GlusterfsServiceInstance claimed = glusterfsTenantPool.claim(instance);
+				pooled.set(claimed != null);
+				return (claimed != null ? claimed : glusterfsAdminService.createProject(instance)).getTenantId();
+			}, glusterfsAdminService::deleteTenantById);
+			
+			flow.run(STEP_QUOTA, () -> {
+				if (!pooled.get()) glusterfsAdminService.setGlusterfsQuota(instance.getPlanId(), tenantId);
+				return null;
+			}, null);
+			
+			final GlusterfsServiceInstance gf = new GlusterfsServiceInstance(instance);
+			gf.setTenantId(tenantId);
+			gf.setTenantName(glusterfsAdminService.getTenantName(instance.getServiceInstanceId()));
+			logger.debug("[ap] gf.ServiceInstanceId="+gf.getServiceInstanceId()+"=gf.TenantId="+gf.getTenantId());
+			
+			// ServiceInstance 정보를 저장합니다.
+			flow.run(STEP_SAVE, () -> {
+				glusterfsAdminService.save(instance, gf);
+				return null;
+			}, null);
+		} catch (ServiceBrokerException | RuntimeException e) {
+			flow.compensate();
+			throw e;
+		}
+		flow.complete();
+	}
+	
+	/**
+	 * Provision 비동기 작업 상태 조회(last_operation)
+	 * @param instanceId
+	 * @param operationId
+	 * @return
+	 */
+	public GlusterfsServiceOperation getLastOperation(String instanceId, String operationId) {
+		return glusterfsOperationService.getInstanceOperation(instanceId, operationId);
+	}
+	
 	/**
 	 * Provision(delete)
 	 */
 	@Override
-	public ServiceInstance deleteServiceInstance(DeleteServiceInstanceRequest request) throws ServiceBrokerException {
+	public ServiceInstance deleteServiceInstance(final DeleteServiceInstanceRequest request) throws ServiceBrokerException {
+		try {
+			return glusterfsRequestCoordinator.execute(instanceLockKey(request.getServiceInstanceId()), "deprovision:" + request.getServiceInstanceId(),
+					() -> doDeleteServiceInstance(request));
+		} catch (ServiceBrokerException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		}
+	}
+	
+	private ServiceInstance doDeleteServiceInstance(DeleteServiceInstanceRequest request) throws ServiceBrokerException {
 		
 		// ServiceInstanceId로 ServiceInstance 정보를 조회합니다.
-		ServiceInstance instance = glusterfsAdminService.findById(request.getServiceInstanceId());
+		GlusterfsServiceInstanceRecord record = glusterfsAdminService.findInstanceRecordById(request.getServiceInstanceId());
 		
-		// 조회된 ServiceInstance가 없을경우 예외처리
-		if(instance == null) return null;
+		// 조회된 ServiceInstance가 없을경우 중단된 Provision 에서 생성한 Tenant 를 삭제하고 410 으로 응답합니다.
+		if(record == null) {
+			abandonProvision(request.getServiceInstanceId());
+			return null;
+		}
+		
+		deprovision(record);
 		
+		return glusterfsAdminService.toServiceInstance(record);		
+	}
+	
+	/**
+	 * Provision(delete, accepts_incomplete)
+	 * ServiceInstance를 삭제중으로 표시하고 Tenant 삭제는 작업 스레드에서 수행합니다.
+	 * ServiceInstance 정보는 Tenant 삭제가 완료된 후에 삭제됩니다.
+	 * @param instanceId
+	 * @return ServiceInstance가 없을 경우 null
+	 * @throws ServiceBrokerException
+	 */
+	public GlusterfsServiceOperation deleteServiceInstanceAsync(final String instanceId) throws ServiceBrokerException {
+		try {
+			return glusterfsRequestCoordinator.execute(instanceLockKey(instanceId), "deprovision-async:" + instanceId,
+					() -> doDeleteServiceInstanceAsync(instanceId));
+		} catch (ServiceBrokerException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		}
+	}
+	
+	private GlusterfsServiceOperation doDeleteServiceInstanceAsync(String instanceId) throws ServiceBrokerException {
+		logger.debug("GlusterfsServiceInstanceService CLASS deleteServiceInstanceAsync");
+		
+		final GlusterfsServiceInstanceRecord record = glusterfsAdminService.findInstanceRecordById(instanceId);
+		if(record == null) {
+			abandonProvision(instanceId);
+			return null;
+		}
+		
+		// 진행중인 Deprovision 작업이 있으면 새로 시작하지 않고 해당 작업을 반환합니다.
+		GlusterfsServiceOperation lastOperation = glusterfsOperationService.getInstanceOperation(instanceId, null);
+		if(lastOperation != null && lastOperation.isInProgress() 
+				&& GlusterfsServiceOperation.TYPE_DEPROVISION.equals(lastOperation.getOperationType())){
+			return lastOperation;
+		}
+		
+		glusterfsAdminService.markDeleting(instanceId);
+		
+		return glusterfsOperationService.start(instanceId, null, GlusterfsServiceOperation.TYPE_DEPROVISION, 
+				new GlusterfsOperationService.OperationTask() {
+					@Override
+					public void run() throws Exception {
+						glusterfsRequestCoordinator.execute(instanceLockKey(record.getServiceInstanceId()), null, () -> {
+							deprovision(record);
+							return null;
+						});
+					}
+				});
+	}
+	
+	/**
+	 * 실패하거나 중단된 Provision 의 단계 기록이 남아 있으면 생성한 Tenant 를 삭제하고 기록을 삭제합니다.
+	 * CC 는 Provision 이 실패하면 같은 ID 로 Deprovision 을 요청(orphan mitigation)하므로 이 때 정리합니다.
+	 * @param instanceId
+	 * @throws ServiceBrokerException Tenant 삭제에 실패한 경우. CC 가 다시 요청하면 다시 삭제합니다.
+	 */
+	private void abandonProvision(String instanceId) throws ServiceBrokerException {
+		glusterfsStepJournal.abandon(GlusterfsStepJournal.FLOW_PROVISION, instanceId, provisionCompensations());
+	}
+	
+	/**
+	 * Provision 단계별 보상 작업입니다. 생성한 Tenant 를 삭제합니다.
+	 * 중단된 Provision 을 정리하거나, 다른 Plan 으로 다시 요청된 Provision 이 이전 요청의 기록을 버릴 때 사용합니다.
+	 * @return
+	 */
+	private LinkedHashMap<String, GlusterfsStepJournal.Compensation> provisionCompensations() {
+		LinkedHashMap<String, GlusterfsStepJournal.Compensation> compensations = new LinkedHashMap<String, GlusterfsStepJournal.Compensation>();
+		compensations.put(STEP_TENANT, tenantId -> { if (tenantId != null) glusterfsAdminService.deleteTenantById(tenantId); });
+		compensations.put(STEP_QUOTA, null);
+		compensations.put(STEP_SAVE, null);
+		return compensations;
+	}
+	
+	/**
+	 * Tenant를 삭제하고 ServiceInstance 정보를 삭제합니다.
+	 * @param instance
+	 * @throws ServiceBrokerException
+	 */
+	private void deprovision(GlusterfsServiceInstanceRecord instance) throws ServiceBrokerException {
 		// 조회된 ServiceInstance정보로 해당 Database를 삭제합니다
 		glusterfsAdminService.deleteTenant(instance);
 		// 조회된 ServiceInstance정보로 해당 ServiceInstance정보를 삭제합니다
 		glusterfsAdminService.delete(instance.getServiceInstanceId());
-		
-		return instance;		
 	}
 
 	/**
 	 * Provision(update)
 	 */
 	@Override
-	public ServiceInstance updateServiceInstance(UpdateServiceInstanceRequest request)
+	public ServiceInstance updateServiceInstance(final UpdateServiceInstanceRequest request)
+			throws ServiceInstanceUpdateNotSupportedException, ServiceBrokerException, ServiceInstanceDoesNotExistException {
+		try {
+			return glusterfsRequestCoordinator.execute(instanceLockKey(request.getServiceInstanceId()),
+					"update:" + request.getServiceInstanceId() + ":" + request.getPlanId(), () -> doUpdateServiceInstance(request));
+		} catch (ServiceInstanceUpdateNotSupportedException | ServiceBrokerException | ServiceInstanceDoesNotExistException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		}
+	}
+	
+	private ServiceInstance doUpdateServiceInstance(UpdateServiceInstanceRequest request)
 			throws ServiceInstanceUpdateNotSupportedException, ServiceBrokerException, ServiceInstanceDoesNotExistException {
 		
-		// ServiceInstanceId로 ServiceInstance 정보를 조회합니다.
-		ServiceInstance instance = glusterfsAdminService.findById(request.getServiceInstanceId());
+		// ServiceInstanceId로 ServiceInstance 정보와 Tenant 정보를 조회합니다.
+		GlusterfsServiceInstanceRecord record = glusterfsAdminService.findInstanceRecordById(request.getServiceInstanceId());
 		
 		// ServiceInstance가 없을경우 예외처리
-		if(instance == null) throw new ServiceInstanceDoesNotExistException(request.getServiceInstanceId());
+		if(record == null) throw new ServiceInstanceDoesNotExistException(request.getServiceInstanceId());
+		checkNotDeleting(record);
+		ServiceInstance instance = glusterfsAdminService.toServiceInstance(record);
 		
 		// 요청 정보로부터 새로운 ServiceInstance정보를 생성합니다.
 		ServiceInstance updatedInstance = new ServiceInstance(request);
 
 		/* 기존 ServiceInstance의 Plan에 변견될경우 다음 처리를 수행합니다. */
 		if(!instance.getPlanId().equals(updatedInstance.getPlanId())){
-			// Plan 정보에 따라 해당 Database 사용자의 MAX_USER_CONNECTIONS 정보를 조정합니다.
+			final String tenantId = record.getTenantId();
+			final String previousPlanId = instance.getPlanId();
+			final String planId = updatedInstance.getPlanId();
+			// 다른 Plan 으로의 변경이 중단되어 기록이 남아 있으면 Quota 를 현재 저장된 Plan 의 Quota 로 되돌립니다.
+			LinkedHashMap<String, GlusterfsStepJournal.Compensation> compensations = new LinkedHashMap<String, GlusterfsStepJournal.Compensation>();
+			compensations.put(STEP_QUOTA, data -> glusterfsAdminService.setGlusterfsQuota(previousPlanId, tenantId));
+			compensations.put(STEP_SAVE, null);
+			GlusterfsStepJournal.Flow flow = glusterfsStepJournal.begin(GlusterfsStepJournal.FLOW_UPDATE, instance.getServiceInstanceId(), planId, compensations);
+			
+			// Plan 정보에 따라 Quota 를 조정합니다. 이후 단계가 실패하면 이전 Plan 의 Quota 로 되돌립니다.
 			try {
-				GlusterfsServiceInstance gf = glusterfsAdminService.tenantInfofindById(updatedInstance.getServiceInstanceId());
-				glusterfsAdminService.setGlusterfsQuota(updatedInstance.getPlanId(), gf.getTenantId());
+				flow.run(STEP_QUOTA, () -> {
+					glusterfsAdminService.setGlusterfsQuota(planId, tenantId);
+					return null;
+				}, data -> glusterfsAdminService.setGlusterfsQuota(previousPlanId, tenantId));
 				//glusterfsAdminService.setUserConnections(updatedInstance.getPlanId(), instance.getServiceInstanceId());
 			} catch (Exception e) {
+				flow.compensate();
 				throw new ServiceInstanceUpdateNotSupportedException(e.getMessage());
 			}
 			
 			// ServiceInstance의 Plan 정보를 수정합니다.
-			glusterfsAdminService.updatePlan(instance, updatedInstance);
+			try {
+				flow.run(STEP_SAVE, () -> {
+					glusterfsAdminService.updatePlan(instance, updatedInstance);
+					return null;
+				}, null);
+			} catch (ServiceBrokerException | RuntimeException e) {
+				flow.compensate();
+				throw e;
+			}
+			flow.complete();
 		}
 		return updatedInstance;
 	}
 	
+	static String instanceLockKey(String instanceId) {
+		return "instance:" + instanceId;
+	}
+	
+	/**
+	 * 비동기 Deprovision 이 진행중인 ServiceInstance 에 대한 Provision 재시도, Plan 변경, Bind 를 거부합니다(422).
+	 * @param record
+	 * @throws GlusterfsConcurrencyException 삭제중인 경우
+	 */
+	static void checkNotDeleting(GlusterfsServiceInstanceRecord record) throws GlusterfsConcurrencyException {
+		if (record != null && record.isDeleting())
+			throw new GlusterfsConcurrencyException("ServiceInstance " + record.getServiceInstanceId() + " is being deleted");
+	}
+	
+	/**
+	 * 동일한 provision 요청을 구분하는 키
+	 */
+	private static String requestKey(CreateServiceInstanceRequest request) {
+		return request.getServiceInstanceId() + ":" + request.getServiceDefinitionId() + ":" + request.getPlanId()
+				+ ":" + request.getOrganizationGuid() + ":" + request.getSpaceGuid();
+	}
+	
 	/**
 	 * Provision Info
 	 */
@@ -0,0 +1,289 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openpaas.servicebroker.exception.ServiceBrokerException;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsServiceException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsOperationStep;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsStepJournalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Service;
+
+/**
+ * provision / bind / plan 변경 흐름의 완료된 단계를 operation_step 에 기록하는 클래스.
+ * 흐름 도중 브로커가 중단된 뒤 같은 요청이 재시도되면 기록된 단계는 실행하지 않고 기록된 값(tenant ID, user ID 등)을 사용한다.
+ * 단계가 실패하면 완료된 단계의 보상 작업을 역순으로 실행하며, 보상에 실패한 단계는 기록을 남겨 재시도 시 다시 사용한다.
+ * 재시도 없이 중단된 흐름은 대상이 없어 410 으로 응답하는 삭제 요청(CC 의 orphan mitigation)에서 abandon 으로 보상한다.
+ */
+@Service
+public class GlusterfsStepJournal implements PublicMetrics {
+
+	public static final String FLOW_PROVISION = "provision";
+	public static final String FLOW_BIND = "bind";
+	public static final String FLOW_UPDATE = "update";
+
+	// ConcurrentHashMap 은 null 을 저장할 수 없으므로 값이 없는 단계에 사용합니다.
+	private static final String NO_DATA = new String();
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsStepJournal.class);
+
+	@Autowired
+	private GlusterfsStepJournalRepository glusterfsStepJournalRepository;
+
+	private final AtomicLong resumedCount = new AtomicLong();
+
+	private final AtomicLong skippedCount = new AtomicLong();
+
+	private final AtomicLong compensatedCount = new AtomicLong();
+
+	private final AtomicLong compensationFailureCount = new AtomicLong();
+
+	private final AtomicLong abandonedCount = new AtomicLong();
+
+	private final AtomicLong discardedCount = new AtomicLong();
+
+	/**
+	 * 단계 작업
+	 */
+	public interface Step {
+		/**
+		 * @return 기록할 값. 없을 경우 null
+		 */
+		String call() throws Exception;
+	}
+
+	/**
+	 * 보상 작업
+	 */
+	public interface Compensation {
+		/**
+		 * @param data 단계에서 기록한 값
+		 */
+		void run(String data) throws Exception;
+	}
+
+	/**
+	 * 흐름을 시작합니다. 같은 요청(requestKey)으로 기록된 단계가 있으면 이어서 진행합니다.
+	 * 다른 요청(예: 다른 plan 으로 다시 요청한 provision)의 기록은 사용하지 않고, abandon 과 같이 보상한 뒤 삭제합니다.
+	 * 흐름 대상의 잠금을 잡은 상태에서 호출해야 합니다.
+	 * @param flowType
+	 * @param flowId
+	 * @param requestKey
+	 * @param compensations 다른 요청의 기록을 보상할 단계 명별 보상 작업(없을 경우 null). 흐름의 실행 순서대로 지정합니다.
+	 * @return
+	 * @throws GlusterfsServiceException 다른 요청의 기록을 보상하지 못한 경우. 기록을 남겨 다음 요청에서 다시 보상합니다.
+	 */
+	public Flow begin(String flowType, String flowId, String requestKey, LinkedHashMap<String, Compensation> compensations) throws GlusterfsServiceException {
+		Flow flow = new Flow(flowType, flowId, requestKey);
+		Map<String, String> discarded = new HashMap<String, String>();
+		try {
+			for (GlusterfsOperationStep step : glusterfsStepJournalRepository.findSteps(flowType, flowId)) {
+				if (!Objects.equals(step.getRequestKey(), requestKey)) {
+					discarded.put(step.getStep(), step.getData());
+					continue;
+				}
+				flow.completed.put(step.getStep(), step.getData() == null ? NO_DATA : step.getData());
+			}
+		} catch (Exception e) {
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		}
+		if (!discarded.isEmpty()) {
+			logger.warn("[ap] discard " + flowType + " " + flowId + ", steps recorded for another request=" + discarded.keySet());
+			compensateRecorded(flowType, flowId, discarded, compensations);
+			discardedCount.incrementAndGet();
+		}
+		if (!flow.completed.isEmpty()) {
+			resumedCount.incrementAndGet();
+			logger.info("[ap] resume " + flowType + " " + flowId + ", completed steps=" + flow.completed.keySet());
+		}
+		return flow;
+	}
+
+	/**
+	 * 중단된 흐름의 기록된 단계를 보상하고 기록을 삭제합니다. 어떤 요청의 기록인지와 관계없이 보상합니다.
+	 * 흐름 대상의 잠금을 잡은 상태에서 호출해야 합니다.
+	 * @param flowType
+	 * @param flowId
+	 * @param compensations 단계 명별 보상 작업(없을 경우 null). 흐름의 실행 순서대로 지정하며 역순으로 실행합니다.
+	 * @return 기록된 단계가 있었던 경우 true
+	 * @throws GlusterfsServiceException 보상에 실패한 경우. 실패한 단계와 이전 단계의 기록은 남겨 다음 요청에서 다시 보상합니다.
+	 */
+	public boolean abandon(String flowType, String flowId, LinkedHashMap<String, Compensation> compensations) throws GlusterfsServiceException {
+		Map<String, String> recorded = new HashMap<String, String>();
+		try {
+			for (GlusterfsOperationStep step : glusterfsStepJournalRepository.findSteps(flowType, flowId)) {
+				recorded.put(step.getStep(), step.getData());
+			}
+		} catch (Exception e) {
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		}
+		if (recorded.isEmpty()) return false;
+		logger.info("[ap] abandon " + flowType + " " + flowId + ", recorded steps=" + recorded.keySet());
+
+		compensateRecorded(flowType, flowId, recorded, compensations);
+		abandonedCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * 기록된 단계를 흐름의 실행 순서의 역순으로 보상하고 기록을 삭제합니다. 보상 작업이 없는 단계는 기록만 삭제합니다.
+	 * @throws GlusterfsServiceException 보상에 실패한 경우. 실패한 단계와 이전 단계의 기록은 남깁니다.
+	 */
+	private void compensateRecorded(String flowType, String flowId, Map<String, String> recorded,
+			LinkedHashMap<String, Compensation> compensations) throws GlusterfsServiceException {
+		List<String> steps = new ArrayList<String>(compensations == null ? Collections.<String>emptySet() : compensations.keySet());
+		Collections.reverse(steps);
+		for (String step : steps) {
+			if (!recorded.containsKey(step)) continue;
+			Compensation compensation = compensations.get(step);
+			try {
+				if (compensation != null) {
+					compensation.run(recorded.get(step));
+					compensatedCount.incrementAndGet();
+				}
+				glusterfsStepJournalRepository.deleteStep(flowType, flowId, step);
+			} catch (Exception e) {
+				compensationFailureCount.incrementAndGet();
+				logger.warn("[ap] " + flowType + " " + flowId + " compensation of " + step + " failed : " + e.getLocalizedMessage());
+				throw new GlusterfsServiceException(flowType + " " + flowId + " compensation of " + step + " failed : " + e.getLocalizedMessage());
+			}
+		}
+		try {
+			for (String step : recorded.keySet()) {
+				if (!steps.contains(step)) glusterfsStepJournalRepository.deleteStep(flowType, flowId, step);
+			}
+		} catch (Exception e) {
+			throw new GlusterfsServiceException(e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * 진행중인 흐름. 단계는 여러 스레드에서 동시에 실행할 수 있다.
+	 */
+	public final class Flow {
+
+		private final String flowType;
+
+		private final String flowId;
+
+		private final String requestKey;
+
+		private final Map<String, String> completed = new ConcurrentHashMap<String, String>();
+
+		private final Deque<Runnable> compensations = new ConcurrentLinkedDeque<Runnable>();
+
+		private Flow(String flowType, String flowId, String requestKey) {
+			this.flowType = flowType;
+			this.flowId = flowId;
+			this.requestKey = requestKey;
+		}
+
+		/**
+		 * 단계를 실행하고 기록합니다. 이미 완료된 단계는 실행하지 않고 기록된 값을 반환합니다.
+		 * @param step 단계 명
+		 * @param action
+		 * @param compensation 흐름이 실패한 경우 실행할 보상 작업. 없을 경우 null
+		 * @return 단계에서 기록한 값
+		 * @throws ServiceBrokerException
+		 */
+		public String run(String step, Step action, Compensation compensation) throws ServiceBrokerException {
+			String recorded = completed.get(step);
+			if (recorded != null) {
+				skippedCount.incrementAndGet();
+				String data = recorded == NO_DATA ? null : recorded;
+				addCompensation(step, data, compensation);
+				return data;
+			}
+
+			String data;
+			try {
+				data = action.call();
+			} catch (ServiceBrokerException e) {
+				throw e;
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new GlusterfsServiceException(e.getLocalizedMessage());
+			}
+			// 기록에 실패하더라도 보상할 수 있도록 먼저 등록합니다.
+			addCompensation(step, data, compensation);
+			try {
+				glusterfsStepJournalRepository.saveStep(new GlusterfsOperationStep(flowType, flowId, step, requestKey, data));
+			} catch (Exception e) {
+				throw new GlusterfsServiceException(e.getLocalizedMessage());
+			}
+			completed.put(step, data == null ? NO_DATA : data);
+			return data;
+		}
+
+		private void addCompensation(final String step, final String data, final Compensation compensation) {
+			compensations.push(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (compensation != null) {
+							compensation.run(data);
+							compensatedCount.incrementAndGet();
+						}
+						glusterfsStepJournalRepository.deleteStep(flowType, flowId, step);
+					} catch (Exception e) {
+						// 기록을 남겨 재시도 시 생성된 자원을 다시 사용하도록 합니다.
+						compensationFailureCount.incrementAndGet();
+						logger.warn("[ap] " + flowType + " " + flowId + " compensation of " + step + " failed : " + e.getLocalizedMessage());
+					}
+				}
+			});
+		}
+
+		/**
+		 * 흐름이 실패한 경우 완료된 단계의 보상 작업을 역순으로 실행합니다.
+		 */
+		public void compensate() {
+			logger.info("[ap] compensate " + flowType + " " + flowId);
+			Runnable compensation;
+			while ((compensation = compensations.poll()) != null) {
+				compensation.run();
+			}
+		}
+
+		/**
+		 * 흐름이 완료되면 기록을 삭제합니다. 삭제에 실패해도 흐름은 완료된 것으로 처리합니다.
+		 */
+		public void complete() {
+			compensations.clear();
+			try {
+				glusterfsStepJournalRepository.deleteSteps(flowType, flowId);
+			} catch (Exception e) {
+				logger.warn("[ap] " + flowType + " " + flowId + " step journal cleanup failed : " + e.getLocalizedMessage());
+			}
+		}
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Long>("glusterfs.journal.resumed", resumedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.journal.skipped", skippedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.journal.compensated", compensatedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.journal.compensation.failure", compensationFailureCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.journal.abandoned", abandonedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.journal.discarded", discardedCount.get()));
+		return metrics;
+	}
+
+}
@@ -0,0 +1,307 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsReadContext;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsPooledTenant;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstance;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsInstanceRepository;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsTenantPoolRepository;
+import org.openpaas.servicebroker.model.ServiceInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * provision 시 Keystone project 생성과 quota 설정을 기다리지 않도록 plan 별로 project 를 미리 만들어 두는 클래스.
+ * 보충 스레드가 interval 주기로 plan 별 ready 상태 project 를 size 개까지 생성하고, provision 은 그 중 하나를 할당받아 tenant 명만 변경한다.
+ * 할당받은 project 가 없거나 이름 변경에 실패하면 호출자는 기존처럼 project 를 새로 생성한다.
+ * 할당 후 claimtimeout 동안 service_instances 에 저장되지 않은 project 는 provision 이 중단된 것으로 보고 삭제한다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Service
+public class GlusterfsTenantPool implements PublicMetrics {
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsTenantPool.class);
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private GlusterfsAdminService glusterfsAdminService;
+
+	@Autowired
+	private GlusterfsTenantPoolRepository glusterfsTenantPoolRepository;
+
+	@Autowired
+	private GlusterfsInstanceRepository glusterfsInstanceRepository;
+
+	@Autowired
+	private GlusterfsPlanRegistry glusterfsPlanRegistry;
+
+	private ScheduledExecutorService scheduler;
+
+	private int size;
+
+	// 설정된 plan 목록. 설정하지 않은 경우 null 이며 catalog 의 모든 plan 을 사용합니다.
+	private List<String> plans;
+
+	// 할당 직후 보충을 한번만 예약하기 위한 표시
+	private final AtomicBoolean replenishPending = new AtomicBoolean();
+
+	// plan 별 마지막으로 확인한 ready 상태 project 수
+	private final Map<String, Integer> readyCounts = new ConcurrentHashMap<String, Integer>();
+
+	// plan 별 ready 상태 project 가 size 보다 적어진 시각
+	private final Map<String, Long> belowTargetSince = new ConcurrentHashMap<String, Long>();
+
+	private final AtomicLong claimCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong claimLatencyTotal = new AtomicLong();
+
+	private final AtomicLong claimLatencyLast = new AtomicLong();
+
+	private final AtomicLong claimLatencyMax = new AtomicLong();
+
+	private final AtomicLong createdCount = new AtomicLong();
+
+	private final AtomicLong replenishFailureCount = new AtomicLong();
+
+	private final AtomicLong reclaimedCount = new AtomicLong();
+
+	private final AtomicLong requotaCount = new AtomicLong();
+
+	@PostConstruct
+	public void start() {
+		if (!isEnabled()) return;
+
+		size = env.getProperty("glusterfs.tenantpool.size", Integer.class, 2);
+		String configured = env.getProperty("glusterfs.tenantpool.plans", "");
+		plans = StringUtils.hasText(configured)
+				? Arrays.asList(StringUtils.tokenizeToStringArray(configured, ","))
+				: null;
+
+		long interval = env.getProperty("glusterfs.tenantpool.interval", Long.class, 30000L);
+		scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("glusterfs-tenant-pool-"));
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				replenish();
+			}
+		}, 0L, interval, TimeUnit.MILLISECONDS);
+		logger.info("[ap] tenant pool enabled, size=" + size + " plans=" + getPlans());
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (scheduler != null) scheduler.shutdownNow();
+	}
+
+	public boolean isEnabled() {
+		return env.getProperty("glusterfs.tenantpool.enabled", Boolean.class, false);
+	}
+
+	/**
+	 * 미리 생성해 둔 project 를 할당받아 인스턴스의 tenant 명으로 변경합니다.
+	 * @param instance
+	 * @return 할당받지 못한 경우 null
+	 */
+	public GlusterfsServiceInstance claim(ServiceInstance instance) {
+		if (scheduler == null) return null;
+
+		long startedAt = System.currentTimeMillis();
+		GlusterfsPooledTenant tenant;
+		try {
+			tenant = glusterfsTenantPoolRepository.claimPooledTenant(instance.getPlanId(), instance.getServiceInstanceId());
+		} catch (Exception e) {
+			logger.warn("[ap] tenant pool claim failed : " + e.getLocalizedMessage());
+			missCount.incrementAndGet();
+			return null;
+		}
+		if (tenant == null) {
+			missCount.incrementAndGet();
+			requestReplenish();
+			return null;
+		}
+
+		String tenantName = glusterfsAdminService.getTenantName(instance.getServiceInstanceId());
+		try {
+			glusterfsAdminService.renameTenant(tenant.getTenantId(), tenantName);
+		} catch (Exception e) {
+			logger.warn("[ap] tenant pool rename failed, tenantId=" + tenant.getTenantId() + " : " + e.getLocalizedMessage());
+			discard(tenant);
+			missCount.incrementAndGet();
+			requestReplenish();
+			return null;
+		}
+
+		// 대기열에 있는 동안 plan quota 가 바뀐 경우 다시 설정합니다.
+		Long quotaBytes = glusterfsPlanRegistry.getQuotaBytes(instance.getPlanId());
+		if (quotaBytes != null && quotaBytes != tenant.getQuotaBytes()) {
+			try {
+				glusterfsAdminService.setGlusterfsQuotaBytes(tenant.getTenantId(), quotaBytes);
+				requotaCount.incrementAndGet();
+			} catch (Exception e) {
+				logger.warn("[ap] tenant pool quota update failed, tenantId=" + tenant.getTenantId() + " : " + e.getLocalizedMessage());
+				discard(tenant);
+				missCount.incrementAndGet();
+				requestReplenish();
+				return null;
+			}
+		}
+
+		GlusterfsServiceInstance gf = new GlusterfsServiceInstance(instance);
+		gf.setTenantId(tenant.getTenantId());
+		gf.setTenantName(tenantName);
+
+		long elapsed = System.currentTimeMillis() - startedAt;
+		claimCount.incrementAndGet();
+		claimLatencyTotal.addAndGet(elapsed);
+		claimLatencyLast.set(elapsed);
+		claimLatencyMax.accumulateAndGet(elapsed, Math::max);
+		requestReplenish();
+		return gf;
+	}
+
+	private void requestReplenish() {
+		if (!replenishPending.compareAndSet(false, true)) return;
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				replenish();
+			}
+		});
+	}
+
+	/**
+	 * plan 별 ready 상태 project 를 size 개까지 생성하고, 오래된 할당을 정리합니다.
+	 */
+	void replenish() {
+		replenishPending.set(false);
+		// 다른 브로커가 할당한 결과를 바로 확인할 수 있도록 primary 에서 조회합니다.
+		GlusterfsReadContext.usePrimary();
+		try {
+			List<String> current = getPlans();
+			// catalog 에서 삭제된 plan 은 더 이상 보충하지 않습니다.
+			readyCounts.keySet().retainAll(current);
+			belowTargetSince.keySet().retainAll(current);
+			for (String planId : current) {
+				fill(planId);
+			}
+			reclaim();
+		} catch (Exception e) {
+			logger.warn("[ap] tenant pool replenish failed : " + e.getLocalizedMessage());
+		} finally {
+			GlusterfsReadContext.clear();
+		}
+	}
+
+	private List<String> getPlans() {
+		return plans != null ? plans : glusterfsPlanRegistry.getPlanIds();
+	}
+
+	private void fill(String planId) {
+		int ready = glusterfsTenantPoolRepository.countReadyTenants(planId);
+		readyCounts.put(planId, ready);
+		if (ready >= size) {
+			belowTargetSince.remove(planId);
+			return;
+		}
+		belowTargetSince.putIfAbsent(planId, System.currentTimeMillis());
+
+		while (ready < size && !Thread.currentThread().isInterrupted()) {
+			try {
+				glusterfsTenantPoolRepository.addPooledTenant(glusterfsAdminService.createPooledTenant(planId));
+			} catch (Exception e) {
+				replenishFailureCount.incrementAndGet();
+				logger.warn("[ap] tenant pool create failed, planId=" + planId + " : " + e.getLocalizedMessage());
+				return;
+			}
+			createdCount.incrementAndGet();
+			readyCounts.put(planId, ++ready);
+		}
+		if (ready >= size) belowTargetSince.remove(planId);
+	}
+
+	/**
+	 * claimtimeout 이 지난 할당을 정리합니다. 인스턴스가 저장된 경우 대기열에서만 삭제하고,
+	 * 저장되지 않은 경우 provision 이 중단된 것으로 보고 project 도 삭제합니다.
+	 */
+	private void reclaim() {
+		long claimTimeout = env.getProperty("glusterfs.tenantpool.claimtimeout", Long.class, 600000L);
+		for (GlusterfsPooledTenant tenant : glusterfsTenantPoolRepository.findClaimedTenants(new Date(System.currentTimeMillis() - claimTimeout))) {
+			GlusterfsServiceInstanceRecord record = glusterfsInstanceRepository.findInstance(tenant.getInstanceId());
+			if (record != null && tenant.getTenantId().equals(record.getTenantId())) {
+				glusterfsTenantPoolRepository.deletePooledTenant(tenant.getTenantId());
+				continue;
+			}
+			logger.warn("[ap] tenant pool claim not completed, delete tenantId=" + tenant.getTenantId() + " instanceId=" + tenant.getInstanceId());
+			discard(tenant);
+			reclaimedCount.incrementAndGet();
+		}
+	}
+
+	private void discard(GlusterfsPooledTenant tenant) {
+		try {
+			glusterfsAdminService.deleteTenantById(tenant.getTenantId());
+			glusterfsTenantPoolRepository.deletePooledTenant(tenant.getTenantId());
+		} catch (Exception e) {
+			logger.warn("[ap] tenant pool delete failed, tenantId=" + tenant.getTenantId() + " : " + e.getLocalizedMessage());
+		}
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		if (scheduler == null) return metrics;
+
+		int ready = 0;
+		for (Map.Entry<String, Integer> entry : readyCounts.entrySet()) {
+			metrics.add(new Metric<Integer>("glusterfs.tenantpool.ready." + entry.getKey(), entry.getValue()));
+			ready += entry.getValue();
+		}
+		metrics.add(new Metric<Integer>("glusterfs.tenantpool.ready", ready));
+
+		long count = claimCount.get();
+		metrics.add(new Metric<Long>("glusterfs.tenantpool.claim.count", count));
+		metrics.add(new Metric<Long>("glusterfs.tenantpool.claim.miss", missCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.tenantpool.claim.latency.last", claimLatencyLast.get()));
+		metrics.add(new Metric<Long>("glusterfs.tenantpool.claim.latency.max", claimLatencyMax.get()));
+		metrics.add(new Metric<Double>("glusterfs.tenantpool.claim.latency.avg", count == 0 ? 0.0 : (double) claimLatencyTotal.get() / count));
+		metrics.add(new Metric<Long>("glusterfs.tenantpool.replenish.created", createdCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.tenantpool.replenish.failure", replenishFailureCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.tenantpool.reclaimed", reclaimedCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.tenantpool.claim.requota", requotaCount.get()));
+
+		// 가장 오래 채워지지 않은 plan 이 size 보다 적어진 뒤 지난 시간(ms)
+		long oldest = Long.MAX_VALUE;
+		for (Long since : belowTargetSince.values()) oldest = Math.min(oldest, since);
+		metrics.add(new Metric<Long>("glusterfs.tenantpool.replenish.lag", oldest == Long.MAX_VALUE ? 0L : System.currentTimeMillis() - oldest));
+		return metrics;
+	}
+
+}
@@ -0,0 +1,327 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * 브로커 메타데이터 upsert 를 모아서 한번에 커밋하는 클래스(group commit).
+ * glusterfs.groupcommit.enabled=true 인 경우 window(ms) 동안 들어온 쓰기를 최대 maxbatch 건까지 모아
+ * 하나의 트랜잭션에서 JDBC batch 로 실행한다. 사용하지 않는 경우 jdbcTemplate.update 를 바로 호출한다.
+ * batch 가 실패하면 롤백 후 각 쓰기를 개별 실행하여 호출자마다 자신의 성공/실패 결과를 받는다.
+ * waittimeout 안에 실행되지 않은 쓰기는 취소하여 이후에 커밋되지 않으며, 이미 실행중인 쓰기는 결과가 나올 때까지 기다린다.
+ */
+@PropertySource("classpath:glusterfs.properties")
+@Profile("!memory")
+@Service
+public class GlusterfsWriteCoalescer implements PublicMetrics {
+
+	private Logger logger = LoggerFactory.getLogger(GlusterfsWriteCoalescer.class);
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private boolean enabled;
+
+	private long window;
+
+	private int maxBatch;
+
+	private long waitTimeout;
+
+	private BlockingQueue<PendingWrite> queue;
+
+	private Thread flusher;
+
+	private volatile boolean running;
+
+	private final AtomicLong writeCount = new AtomicLong();
+
+	private final AtomicLong commitCount = new AtomicLong();
+
+	private final AtomicLong fallbackCount = new AtomicLong();
+
+	private final AtomicLong maxBatchSize = new AtomicLong();
+
+	private final AtomicLong cancelledCount = new AtomicLong();
+
+	@PostConstruct
+	public void init() {
+		enabled = env.getProperty("glusterfs.groupcommit.enabled", Boolean.class, false);
+		if (!enabled) return;
+
+		window = env.getProperty("glusterfs.groupcommit.window", Long.class, 5L);
+		maxBatch = Math.max(1, env.getProperty("glusterfs.groupcommit.maxbatch", Integer.class, 100));
+		waitTimeout = env.getProperty("glusterfs.groupcommit.waittimeout", Long.class, 5000L);
+		queue = new ArrayBlockingQueue<PendingWrite>(env.getProperty("glusterfs.groupcommit.queuecapacity", Integer.class, 1000));
+
+		running = true;
+		flusher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				flushLoop();
+			}
+		}, "glusterfs-groupcommit");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (!enabled) return;
+		running = false;
+		flusher.interrupt();
+		try {
+			flusher.join(waitTimeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// 종료 중에 대기열에 들어온 쓰기를 처리합니다.
+		List<PendingWrite> remaining = new ArrayList<PendingWrite>();
+		queue.drainTo(remaining);
+		if (!remaining.isEmpty()) flush(remaining);
+	}
+
+	/**
+	 * 쓰기를 실행하고 커밋될 때까지 기다립니다.
+	 * 대기열이 가득 찬 경우 모으지 않고 바로 실행합니다.
+	 * @param sql
+	 * @param args
+	 * @return 반영된 행 수
+	 * @throws DataAccessException QueryTimeoutException 인 경우 쓰기는 취소되어 반영되지 않습니다.
+	 */
+	public int update(String sql, Object... args) throws DataAccessException {
+		if (!enabled || !running) return jdbcTemplate.update(sql, args);
+
+		PendingWrite write = new PendingWrite(sql, args);
+		if (!queue.offer(write)) {
+			fallbackCount.incrementAndGet();
+			return jdbcTemplate.update(sql, args);
+		}
+
+		try {
+			return write.result.get(waitTimeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			// 아직 실행되지 않은 쓰기는 취소하여 실패로 응답한 뒤에 커밋되지 않도록 합니다.
+			if (write.cancel()) {
+				cancelledCount.incrementAndGet();
+				throw new QueryTimeoutException("Group commit wait timeout.", e);
+			}
+			return awaitClaimed(write);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			if (write.cancel()) {
+				cancelledCount.incrementAndGet();
+				throw new DataAccessResourceFailureException("Interrupted while waiting for group commit.", e);
+			}
+			return awaitClaimed(write);
+		} catch (ExecutionException e) {
+			throw toDataAccessException(e.getCause());
+		}
+	}
+
+	/**
+	 * 이미 실행중인 쓰기는 결과가 곧 나오므로, 반영 여부를 정확히 알 수 있도록 끝날 때까지 기다립니다.
+	 */
+	private int awaitClaimed(PendingWrite write) {
+		try {
+			return write.result.join();
+		} catch (CompletionException e) {
+			throw toDataAccessException(e.getCause());
+		}
+	}
+
+	private static DataAccessException toDataAccessException(Throwable cause) {
+		if (cause instanceof DataAccessException) return (DataAccessException) cause;
+		return new DataAccessResourceFailureException(cause.getLocalizedMessage(), cause);
+	}
+
+	private void flushLoop() {
+		List<PendingWrite> batch = new ArrayList<PendingWrite>(maxBatch);
+		while (running || !queue.isEmpty()) {
+			try {
+				PendingWrite first = running ? queue.take() : queue.poll();
+				if (first == null) break;
+				batch.add(first);
+				long deadline = System.currentTimeMillis() + window;
+				while (batch.size() < maxBatch) {
+					long remaining = deadline - System.currentTimeMillis();
+					PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : queue.poll();
+					if (next == null) break;
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				if (batch.isEmpty()) continue;
+			}
+			flush(batch);
+			batch.clear();
+		}
+	}
+
+	private void flush(List<PendingWrite> queued) {
+		// 기다리던 호출자가 취소한 쓰기는 실행하지 않습니다.
+		final List<PendingWrite> batch = new ArrayList<PendingWrite>(queued.size());
+		for (PendingWrite write : queued) {
+			if (write.claim()) batch.add(write);
+		}
+		if (batch.isEmpty()) return;
+
+		writeCount.addAndGet(batch.size());
+		maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+		try {
+			jdbcTemplate.execute(new ConnectionCallback<Void>() {
+				@Override
+				public Void doInConnection(Connection con) throws SQLException {
+					executeBatch(con, batch);
+					return null;
+				}
+			});
+			commitCount.incrementAndGet();
+			for (PendingWrite write : batch) {
+				write.result.complete(write.count);
+			}
+		} catch (Exception e) {
+			// batch 전체가 롤백되었으므로 각 쓰기를 개별 실행하여 실패한 쓰기만 실패 처리합니다.
+			logger.warn("[ap] group commit failed, retry " + batch.size() + " writes individually : " + e.getLocalizedMessage());
+			for (PendingWrite write : batch) {
+				fallbackCount.incrementAndGet();
+				try {
+					write.result.complete(jdbcTemplate.update(write.sql, write.args));
+					commitCount.incrementAndGet();
+				} catch (Exception ex) {
+					write.result.completeExceptionally(ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 같은 SQL 끼리 묶어 하나의 트랜잭션에서 실행합니다. 같은 SQL 안에서는 요청 순서를 유지합니다.
+	 */
+	private void executeBatch(Connection con, List<PendingWrite> batch) throws SQLException {
+		Map<String, List<PendingWrite>> bySql = new LinkedHashMap<String, List<PendingWrite>>();
+		for (PendingWrite write : batch) {
+			List<PendingWrite> writes = bySql.get(write.sql);
+			if (writes == null) {
+				writes = new ArrayList<PendingWrite>();
+				bySql.put(write.sql, writes);
+			}
+			writes.add(write);
+		}
+
+		boolean autoCommit = con.getAutoCommit();
+		con.setAutoCommit(false);
+		try {
+			for (Map.Entry<String, List<PendingWrite>> entry : bySql.entrySet()) {
+				PreparedStatement ps = con.prepareStatement(entry.getKey());
+				try {
+					for (PendingWrite write : entry.getValue()) {
+						new ArgumentPreparedStatementSetter(write.args).setValues(ps);
+						ps.addBatch();
+					}
+					int[] counts = ps.executeBatch();
+					for (int i = 0; i < counts.length && i < entry.getValue().size(); i++) {
+						entry.getValue().get(i).count = counts[i];
+					}
+				} finally {
+					ps.close();
+				}
+			}
+			con.commit();
+		} catch (SQLException e) {
+			con.rollback();
+			throw e;
+		} finally {
+			con.setAutoCommit(autoCommit);
+		}
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		metrics.add(new Metric<Long>("glusterfs.groupcommit.writes", writeCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.groupcommit.commits", commitCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.groupcommit.fallback", fallbackCount.get()));
+		metrics.add(new Metric<Long>("glusterfs.groupcommit.batch.max", maxBatchSize.get()));
+		metrics.add(new Metric<Long>("glusterfs.groupcommit.cancelled", cancelledCount.get()));
+		metrics.add(new Metric<Integer>("glusterfs.groupcommit.queued", queue == null ? 0 : queue.size()));
+		return metrics;
+	}
+
+	private static final class PendingWrite {
+
+		private static final int QUEUED = 0;
+
+		private static final int CLAIMED = 1;
+
+		private static final int CANCELLED = 2;
+
+		private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+		private final String sql;
+
+		private final Object[] args;
+
+		private final CompletableFuture<Integer> result = new CompletableFuture<Integer>();
+
+		private int count;
+
+		private PendingWrite(String sql, Object[] args) {
+			this.sql = sql;
+			this.args = args;
+		}
+
+		/**
+		 * flush 가 실행할 쓰기로 가져옵니다.
+		 * @return 취소된 경우 false
+		 */
+		private boolean claim() {
+			return state.compareAndSet(QUEUED, CLAIMED);
+		}
+
+		/**
+		 * 기다리던 호출자가 쓰기를 취소합니다.
+		 * @return flush 가 이미 가져간 경우 false
+		 */
+		private boolean cancel() {
+			return state.compareAndSet(QUEUED, CANCELLED);
+		}
+	}
+
+}
@@ -0,0 +1,2 @@
+-- 대기열 project 생성 시 설정한 quota. plan quota 가 바뀐 뒤 할당되면 다시 설정한다
+ALTER TABLE tenant_pool ADD COLUMN IF NOT EXISTS quota_bytes BIGINT NULL;
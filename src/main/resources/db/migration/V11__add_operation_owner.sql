@@ -0,0 +1,4 @@
+-- 비동기 작업을 실행하는 브로커. 실행중인 브로커는 updated_at 을 주기적으로 갱신한다
+ALTER TABLE service_operation ADD COLUMN IF NOT EXISTS owner VARCHAR(128) NULL;
+
+CREATE INDEX IF NOT EXISTS idx_service_operation_stale ON service_operation (state, updated_at);
@@ -0,0 +1,6 @@
+-- plan 별로 진행중(pending/running)인 작업은 하나만 허용. 종료된 작업의 active_plan_id 는 NULL 이다
+ALTER TABLE quota_job ADD COLUMN IF NOT EXISTS active_plan_id VARCHAR(64) NULL;
+
+UPDATE quota_job SET active_plan_id = plan_id WHERE state IN ('pending', 'running') AND active_plan_id IS NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_quota_job_active_plan ON quota_job (active_plan_id);
@@ -0,0 +1,20 @@
+-- 서비스 인스턴스 / 바인딩 기본 테이블
+CREATE TABLE IF NOT EXISTS service_instances (
+	instance_id VARCHAR(64) NOT NULL,
+	service_id VARCHAR(64) NOT NULL,
+	plan_id VARCHAR(64) NOT NULL,
+	organization_guid VARCHAR(64) NOT NULL,
+	space_guid VARCHAR(64) NOT NULL,
+	tenant_name VARCHAR(64) NULL,
+	tenant_id VARCHAR(64) NULL,
+	PRIMARY KEY (instance_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE IF NOT EXISTS service_binding (
+	binding_id VARCHAR(64) NOT NULL,
+	instance_id VARCHAR(64) NOT NULL,
+	app_id VARCHAR(64) NULL,
+	username VARCHAR(64) NULL,
+	password VARCHAR(64) NULL,
+	PRIMARY KEY (binding_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,2 @@
+-- 바인딩 시 생성한 keystone 사용자 ID
+ALTER TABLE service_binding ADD COLUMN IF NOT EXISTS user_id VARCHAR(64) NULL;
@@ -0,0 +1,16 @@
+-- 비동기 작업(accepts_incomplete) 상태
+CREATE TABLE IF NOT EXISTS service_operation (
+	operation_id VARCHAR(64) NOT NULL,
+	instance_id VARCHAR(64) NOT NULL,
+	binding_id VARCHAR(64) NULL,
+	operation_type VARCHAR(32) NOT NULL,
+	state VARCHAR(32) NOT NULL,
+	description VARCHAR(255) NULL,
+	created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	PRIMARY KEY (operation_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE INDEX IF NOT EXISTS idx_service_operation_instance ON service_operation (instance_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_service_operation_binding ON service_operation (binding_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_service_operation_state ON service_operation (state);
@@ -0,0 +1,3 @@
+-- 삭제중(deleting) 표시
+ALTER TABLE service_instances ADD COLUMN IF NOT EXISTS status VARCHAR(16) NULL;
+ALTER TABLE service_binding ADD COLUMN IF NOT EXISTS status VARCHAR(16) NULL;
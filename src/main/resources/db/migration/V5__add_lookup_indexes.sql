@@ -0,0 +1,4 @@
+-- 인스턴스별 바인딩 조회, 조직/공간별 인스턴스 조회용 인덱스
+CREATE INDEX IF NOT EXISTS idx_service_binding_instance ON service_binding (instance_id);
+CREATE INDEX IF NOT EXISTS idx_service_instances_org ON service_instances (organization_guid);
+CREATE INDEX IF NOT EXISTS idx_service_instances_space ON service_instances (space_guid);
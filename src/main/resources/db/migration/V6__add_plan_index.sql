@@ -0,0 +1,2 @@
+-- plan 별 인스턴스 조회용 인덱스 (InnoDB 보조 인덱스는 PK(instance_id)를 포함하므로 instance_id 기준 keyset 조회에 사용)
+CREATE INDEX IF NOT EXISTS idx_service_instances_plan ON service_instances (plan_id);
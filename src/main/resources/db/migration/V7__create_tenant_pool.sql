@@ -0,0 +1,13 @@
+-- 미리 생성해 둔 Keystone project(quota 설정 완료) 대기열
+CREATE TABLE IF NOT EXISTS tenant_pool (
+	tenant_id VARCHAR(64) NOT NULL,
+	tenant_name VARCHAR(64) NOT NULL,
+	plan_id VARCHAR(64) NOT NULL,
+	status VARCHAR(16) NOT NULL,
+	instance_id VARCHAR(64) NULL,
+	created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	claimed_at TIMESTAMP NULL,
+	PRIMARY KEY (tenant_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE INDEX IF NOT EXISTS idx_tenant_pool_plan ON tenant_pool (plan_id, status, created_at);
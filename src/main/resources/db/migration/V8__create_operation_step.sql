@@ -0,0 +1,10 @@
+-- provision / bind / plan 변경 단계별 진행 기록
+CREATE TABLE IF NOT EXISTS operation_step (
+	flow_type VARCHAR(16) NOT NULL,
+	flow_id VARCHAR(64) NOT NULL,
+	step VARCHAR(32) NOT NULL,
+	request_key VARCHAR(64) NULL,
+	data VARCHAR(255) NULL,
+	created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	PRIMARY KEY (flow_type, flow_id, step)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
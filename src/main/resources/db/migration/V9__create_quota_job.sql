@@ -0,0 +1,18 @@
+-- plan quota 일괄 재적용 작업. checkpoint 는 처리가 끝난 마지막 instance_id
+CREATE TABLE IF NOT EXISTS quota_job (
+	job_id VARCHAR(64) NOT NULL,
+	plan_id VARCHAR(64) NOT NULL,
+	quota_bytes BIGINT NOT NULL,
+	state VARCHAR(16) NOT NULL,
+	owner VARCHAR(128) NULL,
+	checkpoint VARCHAR(64) NULL,
+	total INT NOT NULL DEFAULT 0,
+	processed INT NOT NULL DEFAULT 0,
+	failed INT NOT NULL DEFAULT 0,
+	description VARCHAR(255) NULL,
+	created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	updated_at TIMESTAMP NULL,
+	PRIMARY KEY (job_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE INDEX IF NOT EXISTS idx_quota_job_state ON quota_job (state, updated_at);
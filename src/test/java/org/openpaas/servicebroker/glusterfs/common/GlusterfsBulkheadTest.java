@@ -0,0 +1,164 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsBackendException;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsBulkheadException;
+
+public class GlusterfsBulkheadTest {
+
+	private ExecutorService callers;
+
+	private CountDownLatch release;
+
+	@Before
+	public void setup() {
+		callers = Executors.newCachedThreadPool();
+		release = new CountDownLatch(1);
+	}
+
+	@After
+	public void teardown() {
+		release.countDown();
+		callers.shutdownNow();
+	}
+
+	@Test
+	public void rejectsWhenQueueIsFull() throws Exception {
+		final GlusterfsBulkhead bulkhead = new GlusterfsBulkhead("keystone", 1, 1, 5000L);
+		Future<String> running = submit(bulkhead, blocking("running"));
+		awaitActive(bulkhead, 1);
+		Future<String> queued = submit(bulkhead, blocking("queued"));
+		awaitQueued(bulkhead, 1);
+
+		long startedAt = System.currentTimeMillis();
+		try {
+			bulkhead.execute(blocking("rejected"));
+			fail("expected GlusterfsBulkheadException");
+		} catch (GlusterfsBulkheadException e) {
+			assertEquals(503, e.getStatusCode());
+		}
+		// 대기하지 않고 바로 실패합니다.
+		assertTrueWithin(System.currentTimeMillis() - startedAt, 1000L);
+		assertEquals(1, bulkhead.getRejectedCount());
+
+		release.countDown();
+		assertEquals("running", running.get(5, TimeUnit.SECONDS));
+		assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+		bulkhead.shutdown();
+	}
+
+	@Test
+	public void abandonsCallThatDoesNotStartWithinQueueTimeout() throws Exception {
+		final GlusterfsBulkhead bulkhead = new GlusterfsBulkhead("swift", 1, 5, 50L);
+		submit(bulkhead, blocking("running"));
+		awaitActive(bulkhead, 1);
+
+		final AtomicBoolean called = new AtomicBoolean();
+		try {
+			bulkhead.execute(new Callable<String>() {
+				@Override
+				public String call() {
+					called.set(true);
+					return "late";
+				}
+			});
+			fail("expected GlusterfsBulkheadException");
+		} catch (GlusterfsBulkheadException e) {
+			assertEquals(503, e.getStatusCode());
+		}
+		assertEquals(1, bulkhead.getTimeoutCount());
+		assertEquals(0, bulkhead.getQueueDepth());
+
+		// 자리가 나도 포기한 호출은 실행하지 않습니다.
+		release.countDown();
+		Thread.sleep(100L);
+		assertFalse(called.get());
+		bulkhead.shutdown();
+	}
+
+	@Test
+	public void waitsForCallThatAlreadyStarted() throws Exception {
+		GlusterfsBulkhead bulkhead = new GlusterfsBulkhead("swift", 1, 1, 20L);
+		String result = bulkhead.execute(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				Thread.sleep(150L);
+				return "done";
+			}
+		});
+		assertEquals("done", result);
+		assertEquals(0, bulkhead.getTimeoutCount());
+		bulkhead.shutdown();
+	}
+
+	@Test
+	public void propagatesBackendException() throws Exception {
+		GlusterfsBulkhead bulkhead = new GlusterfsBulkhead("keystone", 1, 1, 1000L);
+		try {
+			bulkhead.execute(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					throw new GlusterfsBackendException(404, "404 Not Found");
+				}
+			});
+			fail("expected GlusterfsBackendException");
+		} catch (GlusterfsBackendException e) {
+			assertEquals(404, e.getStatusCode());
+		}
+		bulkhead.shutdown();
+	}
+
+	private Callable<String> blocking(final String result) {
+		return new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				release.await();
+				return result;
+			}
+		};
+	}
+
+	private Future<String> submit(final GlusterfsBulkhead bulkhead, final Callable<String> call) {
+		return callers.submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return bulkhead.execute(call);
+			}
+		});
+	}
+
+	private static void awaitActive(GlusterfsBulkhead bulkhead, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000L;
+		while (bulkhead.getActiveCount() < count) {
+			if (System.currentTimeMillis() > deadline) fail("call did not start");
+			Thread.sleep(5L);
+		}
+	}
+
+	private static void awaitQueued(GlusterfsBulkhead bulkhead, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000L;
+		while (bulkhead.getQueueDepth() < count) {
+			if (System.currentTimeMillis() > deadline) fail("call was not queued");
+			Thread.sleep(5L);
+		}
+	}
+
+	private static void assertTrueWithin(long elapsed, long limit) {
+		if (elapsed > limit) fail("took " + elapsed + " ms, expected at most " + limit + " ms");
+	}
+
+}
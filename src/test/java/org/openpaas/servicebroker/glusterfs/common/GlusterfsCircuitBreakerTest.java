@@ -0,0 +1,85 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsCircuitBreaker.State;
+
+public class GlusterfsCircuitBreakerTest {
+
+	@Test
+	public void opensAfterConsecutiveFailures() {
+		GlusterfsCircuitBreaker breaker = new GlusterfsCircuitBreaker("keystone", 3, 60000L);
+
+		breaker.recordFailure();
+		breaker.recordFailure();
+		assertEquals(State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+
+		breaker.recordFailure();
+		assertEquals(State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+		assertFalse(breaker.allowRequest());
+		assertEquals(2, breaker.getRejectedCount());
+	}
+
+	@Test
+	public void successResetsConsecutiveFailures() {
+		GlusterfsCircuitBreaker breaker = new GlusterfsCircuitBreaker("keystone", 3, 60000L);
+
+		breaker.recordFailure();
+		breaker.recordFailure();
+		breaker.recordSuccess();
+		breaker.recordFailure();
+		breaker.recordFailure();
+
+		assertEquals(State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void allowsSingleTrialAfterOpenTimeout() throws Exception {
+		GlusterfsCircuitBreaker breaker = new GlusterfsCircuitBreaker("swift", 1, 50L);
+		breaker.recordFailure();
+		assertFalse(breaker.allowRequest());
+
+		Thread.sleep(80L);
+
+		assertTrue(breaker.allowRequest());
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+
+		breaker.recordSuccess();
+		assertEquals(State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void failedTrialReopens() throws Exception {
+		GlusterfsCircuitBreaker breaker = new GlusterfsCircuitBreaker("swift", 5, 50L);
+		for (int i = 0; i < 5; i++) breaker.recordFailure();
+		Thread.sleep(80L);
+		assertTrue(breaker.allowRequest());
+
+		// HALF_OPEN 에서는 threshold 와 관계없이 한번의 실패로 다시 OPEN 됩니다.
+		breaker.recordFailure();
+		assertEquals(State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+	}
+
+	@Test
+	public void releasedTrialCanBeRetried() throws Exception {
+		GlusterfsCircuitBreaker breaker = new GlusterfsCircuitBreaker("swift", 1, 50L);
+		breaker.recordFailure();
+		Thread.sleep(80L);
+		assertTrue(breaker.allowRequest());
+		assertFalse(breaker.allowRequest());
+
+		breaker.releaseTrial();
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		assertTrue(breaker.allowRequest());
+	}
+
+}
@@ -0,0 +1,86 @@
+package org.openpaas.servicebroker.glusterfs.common;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class GlusterfsRateLimiterTest {
+
+	@Test
+	public void spacesSequentialRequests() throws Exception {
+		GlusterfsRateLimiter limiter = new GlusterfsRateLimiter(20);
+		long[] times = new long[6];
+		for (int i = 0; i < times.length; i++) {
+			limiter.acquire();
+			times[i] = System.nanoTime();
+		}
+
+		// 첫 요청은 바로 통과하고 이후 50 ms 간격
+		for (int i = 1; i < times.length; i++) assertAtLeast(times[i] - times[i - 1], 45L);
+	}
+
+	@Test
+	public void spacesRequestsFromConcurrentThreads() throws Exception {
+		final GlusterfsRateLimiter limiter = new GlusterfsRateLimiter(20);
+		ExecutorService callers = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(callers.submit(new Callable<Long>() {
+					@Override
+					public Long call() throws Exception {
+						limiter.acquire();
+						return System.nanoTime();
+					}
+				}));
+			}
+			List<Long> times = new ArrayList<Long>();
+			for (Future<Long> future : futures) times.add(future.get(5, TimeUnit.SECONDS));
+			Collections.sort(times);
+
+			// 스레드가 동시에 요청해도 같은 시각을 두번 예약하지 않습니다.
+			// 깨어나는 시각의 오차를 고려하여 전체 간격과 최소 간격을 확인합니다.
+			assertAtLeast(times.get(times.size() - 1) - times.get(0), 45L * (times.size() - 1));
+			for (int i = 1; i < times.size(); i++) assertAtLeast(times.get(i) - times.get(i - 1), 25L);
+		} finally {
+			callers.shutdownNow();
+		}
+	}
+
+	@Test
+	public void doesNotAccumulateIdleTime() throws Exception {
+		GlusterfsRateLimiter limiter = new GlusterfsRateLimiter(20);
+		limiter.acquire();
+		Thread.sleep(300L);
+
+		long first = System.nanoTime();
+		limiter.acquire();
+		limiter.acquire();
+		limiter.acquire();
+		// 쉬는 동안의 여유분으로 연달아 통과하지 않습니다.
+		assertAtLeast(System.nanoTime() - first, 90L);
+	}
+
+	@Test
+	public void zeroRateDoesNotWait() throws Exception {
+		GlusterfsRateLimiter limiter = new GlusterfsRateLimiter(0);
+		long startedAt = System.nanoTime();
+		for (int i = 0; i < 1000; i++) limiter.acquire();
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) < 1000L);
+	}
+
+	private static void assertAtLeast(long elapsedNanos, long millis) {
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+		assertTrue("took " + elapsed + " ms, expected at least " + millis + " ms", elapsed >= millis);
+	}
+
+}
@@ -0,0 +1,46 @@
+package org.openpaas.servicebroker.glusterfs.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import org.junit.Test;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsConcurrencyException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.ModelAndView;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 잠금을 얻지 못한 요청이 OSB 규격의 422 ConcurrencyError 응답으로 변환되는지 확인합니다.
+ */
+public class GlusterfsConcurrencyExceptionResolverTest {
+
+	private final GlusterfsConcurrencyExceptionResolver resolver = new GlusterfsConcurrencyExceptionResolver();
+
+	@Test
+	public void concurrencyExceptionIsConcurrencyError() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/v2/service_instances/instance-1/service_bindings/binding-1");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		// 비동기 단계에서 발생하여 CompletionException 으로 감싸진 경우입니다.
+		ModelAndView mav = resolver.resolveException(request, response, null,
+				new CompletionException(new GlusterfsConcurrencyException("ServiceInstance instance-1 is being deleted")));
+		mav.getView().render(mav.getModel(), request, response);
+
+		assertEquals(422, response.getStatus());
+		Map<?, ?> body = new ObjectMapper().readValue(response.getContentAsString(), Map.class);
+		assertEquals("ConcurrencyError", body.get("error"));
+		assertEquals("ServiceInstance instance-1 is being deleted", body.get("description"));
+	}
+
+	@Test
+	public void otherExceptionsAreNotResolved() {
+		assertNull(resolver.resolveException(new MockHttpServletRequest(), new MockHttpServletResponse(), null,
+				new IllegalStateException("other")));
+	}
+
+}
@@ -0,0 +1,111 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openpaas.servicebroker.exception.ServiceBrokerException;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsBackend;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsBackendClient;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsBackendException;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Keystone/Swift 호출 실패 시 GlusterfsBackendException(상태 코드, 재시도 가능 여부)이 그대로 전달되는지 확인합니다.
+ */
+public class GlusterfsAdminServiceTest {
+
+	private GlusterfsAdminService admin;
+
+	private GlusterfsBackendClient client;
+
+	@Before
+	public void setup() throws Exception {
+		GlusterfsAuthTokenManager tokenManager = mock(GlusterfsAuthTokenManager.class);
+		when(tokenManager.getToken()).thenReturn("token");
+		client = mock(GlusterfsBackendClient.class);
+
+		admin = new GlusterfsAdminService();
+		ReflectionTestUtils.setField(admin, "env", new MockEnvironment()
+				.withProperty("glusterfs.endpoint", "http://keystone")
+				.withProperty("glusterfs.swiftproxy", "http://swift")
+				.withProperty("glusterfs.uri.account", "/v1/KEY_#TENANT_ID")
+				.withProperty("glusterfs.uri.deletetenant", "/v3/projects/#TENANT_ID")
+				.withProperty("glusterfs.uri.deleteusers", "/v3/users/#USER_ID"));
+		ReflectionTestUtils.setField(admin, "glusterfsAuthTokenManager", tokenManager);
+		ReflectionTestUtils.setField(admin, "glusterfsBackendClient", client);
+	}
+
+	@Test
+	public void quotaUpdateKeepsBackendException() throws Exception {
+		GlusterfsBackendException unavailable = new GlusterfsBackendException(503, "503 Service Unavailable");
+		respond(GlusterfsBackend.SWIFT, HttpMethod.PUT, unavailable);
+		try {
+			admin.setGlusterfsQuotaBytes("tenant-id", 5242880L);
+			fail("expected GlusterfsBackendException");
+		} catch (GlusterfsBackendException e) {
+			assertSame(unavailable, e);
+		}
+	}
+
+	@Test
+	public void quotaUpdateKeepsUnexpectedResponse() throws Exception {
+		when(client.send(eq(GlusterfsBackend.SWIFT), anyString(), any(HttpEntity.class), eq(HttpMethod.PUT)))
+				.thenReturn(new ResponseEntity<String>(HttpStatus.OK));
+		try {
+			admin.setGlusterfsQuotaBytes("tenant-id", 5242880L);
+			fail("expected ServiceBrokerException");
+		} catch (ServiceBrokerException e) {
+			assertEquals("Response code is 200", e.getMessage());
+		}
+	}
+
+	@Test
+	public void tenantDeletionKeepsBackendException() throws Exception {
+		GlusterfsBackendException unavailable = new GlusterfsBackendException(503, "503 Service Unavailable");
+		respond(GlusterfsBackend.KEYSTONE, HttpMethod.DELETE, unavailable);
+		try {
+			admin.deleteTenantById("tenant-id");
+			fail("expected GlusterfsBackendException");
+		} catch (GlusterfsBackendException e) {
+			assertSame(unavailable, e);
+		}
+	}
+
+	@Test
+	public void userDeletionKeepsBackendException() throws Exception {
+		GlusterfsBackendException connectFailure = new GlusterfsBackendException("Connection refused", true);
+		respond(GlusterfsBackend.KEYSTONE, HttpMethod.DELETE, connectFailure);
+		try {
+			admin.deleteUserById("user-id");
+			fail("expected GlusterfsBackendException");
+		} catch (GlusterfsBackendException e) {
+			assertSame(connectFailure, e);
+		}
+	}
+
+	@Test
+	public void deletionOfMissingTenantAndUserSucceeds() throws Exception {
+		respond(GlusterfsBackend.KEYSTONE, HttpMethod.DELETE, new GlusterfsBackendException(404, "404 Not Found"));
+
+		admin.deleteTenantById("tenant-id");
+		admin.deleteUserById("user-id");
+	}
+
+	private void respond(GlusterfsBackend backend, HttpMethod method, GlusterfsBackendException e) throws Exception {
+		when(client.send(eq(backend), anyString(), any(HttpEntity.class), eq(method))).thenThrow(e);
+	}
+
+}
@@ -0,0 +1,158 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.repository.impl.GlusterfsMemoryRepository;
+import org.openpaas.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.openpaas.servicebroker.model.ServiceInstanceBinding;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * glusterfs.bind.parallel 사용 여부에 따른 바인딩 지연시간 비교.
+ * Keystone/DB 호출은 고정 지연을 갖는 mock 으로 대체하므로 실제 Keystone 지연시간을 측정하지는 않는다.
+ * 시간이 걸리므로 -Dglusterfs.loadtest=true 로 실행한 경우에만 수행한다.
+ */
+public class GlusterfsBindLatencyTest {
+
+	private static final int BINDS = Integer.getInteger("glusterfs.loadtest.binds", 30);
+
+	// 단계별 지연(ms)
+	private static final long DB_DELAY = 5L;
+	private static final long ROLE_LOOKUP_DELAY = 40L;
+	private static final long CREATE_USER_DELAY = 60L;
+	private static final long ASSIGN_ROLE_DELAY = 40L;
+
+	private ThreadPoolTaskExecutor ioExecutor;
+
+	private AtomicInteger sequence;
+
+	@Before
+	public void setup() {
+		assumeTrue(Boolean.getBoolean("glusterfs.loadtest"));
+		ioExecutor = new ThreadPoolTaskExecutor();
+		ioExecutor.setCorePoolSize(16);
+		ioExecutor.setMaxPoolSize(16);
+		ioExecutor.setQueueCapacity(200);
+		ioExecutor.setThreadNamePrefix("glusterfs-io-");
+		ioExecutor.initialize();
+		sequence = new AtomicInteger();
+	}
+
+	@After
+	public void teardown() {
+		if (ioExecutor != null) ioExecutor.shutdown();
+	}
+
+	@Test
+	public void compareParallelAndSequentialBind() throws Exception {
+		// 첫 바인딩처럼 role ID 를 Keystone 에서 조회하는 경우
+		double sequentialCold = measure(false, ROLE_LOOKUP_DELAY);
+		double parallelCold = measure(true, ROLE_LOOKUP_DELAY);
+		// role ID 가 캐시된 경우
+		double sequentialWarm = measure(false, 0L);
+		double parallelWarm = measure(true, 0L);
+
+		System.out.println("[ap] bind latency (" + BINDS + " binds, db " + DB_DELAY + " ms, role lookup " + ROLE_LOOKUP_DELAY
+				+ " ms, create user " + CREATE_USER_DELAY + " ms, assign role " + ASSIGN_ROLE_DELAY + " ms)");
+		System.out.println("[ap]   role lookup : sequential " + format(sequentialCold) + " ms, parallel " + format(parallelCold) + " ms");
+		System.out.println("[ap]   role cached : sequential " + format(sequentialWarm) + " ms, parallel " + format(parallelWarm) + " ms");
+
+		assertTrue(parallelCold < sequentialCold);
+	}
+
+	/**
+	 * @return 평균 바인딩 지연시간(ms)
+	 */
+	private double measure(boolean parallel, long roleLookupDelay) throws Exception {
+		GlusterfsAdminService admin = mock(GlusterfsAdminService.class);
+		GlusterfsServiceInstanceRecord record = new GlusterfsServiceInstanceRecord();
+		record.setServiceInstanceId("instance-1");
+		record.setTenantId("tenant-id");
+		record.setTenantName("tenant");
+		when(admin.findBindRecordById(anyString())).thenAnswer(delayed(DB_DELAY, null));
+		when(admin.findInstanceRecordById(anyString())).thenAnswer(delayed(DB_DELAY, record));
+		when(admin.getCachedRolesIdByRoleName(anyString())).thenAnswer(delayed(roleLookupDelay, "role-id"));
+		when(admin.createUser(anyString(), anyString(), anyString())).thenAnswer(delayed(CREATE_USER_DELAY, "user-id"));
+		when(admin.getUsername(anyString())).thenReturn("generated");
+		doAnswer(delayed(ASSIGN_ROLE_DELAY, null)).when(admin).assignRole(anyString(), anyString(), anyString());
+		doAnswer(delayed(DB_DELAY, null)).when(admin).saveBind(any(ServiceInstanceBinding.class), anyString());
+
+		MockEnvironment env = new MockEnvironment()
+				.withProperty("glusterfs.rolename", "_member_")
+				.withProperty("glusterfs.authurl", "http://localhost:5000")
+				.withProperty("glusterfs.bind.parallel", String.valueOf(parallel))
+				.withProperty("glusterfs.lock.stripes", "64")
+				.withProperty("glusterfs.lock.waittimeout", "5000");
+
+		GlusterfsRequestCoordinator coordinator = new GlusterfsRequestCoordinator();
+		ReflectionTestUtils.setField(coordinator, "env", env);
+		coordinator.init();
+		GlusterfsStepJournal journal = new GlusterfsStepJournal();
+		ReflectionTestUtils.setField(journal, "glusterfsStepJournalRepository", new GlusterfsMemoryRepository());
+
+		GlusterfsServiceInstanceBindingService service = new GlusterfsServiceInstanceBindingService(admin);
+		ReflectionTestUtils.setField(service, "env", env);
+		ReflectionTestUtils.setField(service, "glusterfsStepJournal", journal);
+		ReflectionTestUtils.setField(service, "glusterfsRequestCoordinator", coordinator);
+		ReflectionTestUtils.setField(service, "ioExecutor", ioExecutor);
+
+		// JIT 준비
+		for (int i = 0; i < 5; i++) service.createServiceInstanceBinding(request());
+		double warmup = metric(service, "glusterfs.bind.latency.avg") * 5;
+
+		for (int i = 0; i < BINDS; i++) service.createServiceInstanceBinding(request());
+		assertEquals(BINDS + 5L, (long) metric(service, "glusterfs.bind.count"));
+		assertEquals(0L, (long) metric(service, "glusterfs.bind.failure"));
+		return (metric(service, "glusterfs.bind.latency.avg") * (BINDS + 5) - warmup) / BINDS;
+	}
+
+	private CreateServiceInstanceBindingRequest request() {
+		int n = sequence.incrementAndGet();
+		CreateServiceInstanceBindingRequest request = mock(CreateServiceInstanceBindingRequest.class);
+		when(request.getBindingId()).thenReturn("binding-" + n);
+		when(request.getServiceInstanceId()).thenReturn("instance-1");
+		when(request.getAppGuid()).thenReturn("app-" + n);
+		return request;
+	}
+
+	private static Answer<Object> delayed(final long millis, final Object result) {
+		return new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				if (millis > 0) TimeUnit.MILLISECONDS.sleep(millis);
+				return result;
+			}
+		};
+	}
+
+	private static double metric(GlusterfsServiceInstanceBindingService service, String name) {
+		for (Metric<?> metric : service.metrics()) {
+			if (metric.getName().equals(name)) return metric.getValue().doubleValue();
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	private static String format(double millis) {
+		return String.format("%.1f", millis);
+	}
+
+}
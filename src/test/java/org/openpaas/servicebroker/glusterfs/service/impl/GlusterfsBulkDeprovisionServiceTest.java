@@ -0,0 +1,132 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsRecordHandler;
+import org.openpaas.servicebroker.glusterfs.repository.impl.GlusterfsMemoryRepository;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsBulkDeprovisionService.Result;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 결과 전달(handler)이 실패해도 진행중인 인스턴스 삭제가 끝난 뒤 반환하는지 확인합니다.
+ */
+public class GlusterfsBulkDeprovisionServiceTest {
+
+	private static final String ORGANIZATION_GUID = "org-1";
+
+	private GlusterfsBulkDeprovisionService service;
+
+	private ExecutorService bulkExecutor;
+
+	private ExecutorService caller;
+
+	private CountDownLatch release;
+
+	private AtomicBoolean slowDeleted;
+
+	@Before
+	public void setup() throws Exception {
+		GlusterfsMemoryRepository repository = new GlusterfsMemoryRepository();
+		repository.saveInstance(instance("instance-1", "tenant-fast"));
+		repository.saveInstance(instance("instance-2", "tenant-slow"));
+
+		release = new CountDownLatch(1);
+		slowDeleted = new AtomicBoolean();
+		GlusterfsAdminService admin = mock(GlusterfsAdminService.class);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				if ("tenant-slow".equals(invocation.getArguments()[0])) {
+					release.await(5, TimeUnit.SECONDS);
+					slowDeleted.set(true);
+				}
+				return null;
+			}
+		}).when(admin).deleteTenantById(anyString());
+
+		MockEnvironment env = new MockEnvironment().withProperty("glusterfs.lock.waittimeout", "1000");
+		GlusterfsRequestCoordinator coordinator = new GlusterfsRequestCoordinator();
+		ReflectionTestUtils.setField(coordinator, "env", env);
+		coordinator.init();
+
+		bulkExecutor = Executors.newFixedThreadPool(2);
+		caller = Executors.newSingleThreadExecutor();
+		service = new GlusterfsBulkDeprovisionService();
+		ReflectionTestUtils.setField(service, "env", env);
+		ReflectionTestUtils.setField(service, "glusterfsAdminService", admin);
+		ReflectionTestUtils.setField(service, "glusterfsInstanceRepository", repository);
+		ReflectionTestUtils.setField(service, "glusterfsBindingRepository", repository);
+		ReflectionTestUtils.setField(service, "glusterfsRequestCoordinator", coordinator);
+		ReflectionTestUtils.setField(service, "bulkExecutor", bulkExecutor);
+		service.init();
+	}
+
+	@After
+	public void teardown() {
+		release.countDown();
+		caller.shutdownNow();
+		bulkExecutor.shutdownNow();
+	}
+
+	@Test
+	public void handlerFailureWaitsForDeletionsInProgress() throws Exception {
+		Future<Void> future = caller.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				service.deprovision(ORGANIZATION_GUID, null, 2, 0, new GlusterfsRecordHandler<Result>() {
+					@Override
+					public void handle(Result result) {
+						// 응답 연결이 끊겨 결과를 쓰지 못한 경우입니다.
+						throw new IllegalStateException("client disconnected");
+					}
+				});
+				return null;
+			}
+		});
+
+		Thread.sleep(200L);
+		assertFalse(future.isDone());
+
+		release.countDown();
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("expected IllegalStateException");
+		} catch (ExecutionException e) {
+			assertEquals("client disconnected", e.getCause().getMessage());
+		}
+		assertTrue(slowDeleted.get());
+	}
+
+	private static GlusterfsServiceInstanceRecord instance(String instanceId, String tenantId) {
+		GlusterfsServiceInstanceRecord record = new GlusterfsServiceInstanceRecord();
+		record.setServiceInstanceId(instanceId);
+		record.setPlanId("plan-a");
+		record.setOrganizationGuid(ORGANIZATION_GUID);
+		record.setTenantId(tenantId);
+		record.setTenantName(tenantId);
+		return record;
+	}
+
+}
@@ -0,0 +1,118 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsConcurrencyException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.repository.impl.GlusterfsMemoryRepository;
+import org.openpaas.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.openpaas.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 비동기 Deprovision 중인 ServiceInstance 의 상태 조회와 변경 요청 거부를 확인합니다.
+ */
+public class GlusterfsDeletingInstanceTest {
+
+	private static final String INSTANCE_ID = "instance-1";
+
+	private GlusterfsServiceInstanceRecord record;
+
+	private GlusterfsAdminService admin;
+
+	private GlusterfsRequestCoordinator coordinator;
+
+	private GlusterfsStepJournal journal;
+
+	private MockEnvironment env;
+
+	@Before
+	public void setup() {
+		record = new GlusterfsServiceInstanceRecord();
+		record.setServiceInstanceId(INSTANCE_ID);
+		record.setPlanId("plan-a");
+		record.setTenantId("tenant-id");
+		record.setTenantName("tenant");
+
+		env = new MockEnvironment()
+				.withProperty("glusterfs.rolename", "_member_")
+				.withProperty("glusterfs.authurl", "http://localhost:5000")
+				.withProperty("glusterfs.bind.parallel", "false")
+				.withProperty("glusterfs.lock.waittimeout", "1000");
+		coordinator = new GlusterfsRequestCoordinator();
+		ReflectionTestUtils.setField(coordinator, "env", env);
+		coordinator.init();
+		journal = new GlusterfsStepJournal();
+		ReflectionTestUtils.setField(journal, "glusterfsStepJournalRepository", new GlusterfsMemoryRepository());
+		admin = mock(GlusterfsAdminService.class);
+	}
+
+	@Test
+	public void memoryRepositoryReportsDeletingUntilSaved() {
+		GlusterfsMemoryRepository repository = new GlusterfsMemoryRepository();
+		repository.saveInstance(record);
+		assertFalse(repository.findInstance(INSTANCE_ID).isDeleting());
+
+		repository.markInstanceDeleting(INSTANCE_ID);
+		assertTrue(repository.findInstance(INSTANCE_ID).isDeleting());
+		assertEquals(GlusterfsServiceInstanceRecord.STATUS_DELETING, repository.findInstance(INSTANCE_ID).getStatus());
+
+		// JDBC 저장소의 upsert 와 같이 다시 저장하면 삭제중 표시를 해제합니다.
+		repository.saveInstance(record);
+		assertNull(repository.findInstance(INSTANCE_ID).getStatus());
+	}
+
+	@Test
+	public void bindIsRejectedWhileInstanceIsDeleting() throws Exception {
+		record.setStatus(GlusterfsServiceInstanceRecord.STATUS_DELETING);
+		when(admin.findInstanceRecordById(INSTANCE_ID)).thenReturn(record);
+		when(admin.getCachedRolesIdByRoleName(anyString())).thenReturn("role-id");
+		GlusterfsServiceInstanceBindingService service = new GlusterfsServiceInstanceBindingService(admin);
+		ReflectionTestUtils.setField(service, "env", env);
+		ReflectionTestUtils.setField(service, "glusterfsStepJournal", journal);
+		ReflectionTestUtils.setField(service, "glusterfsRequestCoordinator", coordinator);
+
+		CreateServiceInstanceBindingRequest request = mock(CreateServiceInstanceBindingRequest.class);
+		when(request.getBindingId()).thenReturn("binding-1");
+		when(request.getServiceInstanceId()).thenReturn(INSTANCE_ID);
+		when(request.getAppGuid()).thenReturn("app-1");
+		try {
+			service.createServiceInstanceBinding(request);
+			fail("expected GlusterfsConcurrencyException");
+		} catch (GlusterfsConcurrencyException e) {
+			verify(admin, never()).createUser(anyString(), anyString(), anyString());
+		}
+	}
+
+	@Test
+	public void planUpdateIsRejectedWhileInstanceIsDeleting() throws Exception {
+		record.setStatus(GlusterfsServiceInstanceRecord.STATUS_DELETING);
+		when(admin.findInstanceRecordById(INSTANCE_ID)).thenReturn(record);
+		GlusterfsServiceInstanceService service = new GlusterfsServiceInstanceService(admin);
+		ReflectionTestUtils.setField(service, "glusterfsStepJournal", journal);
+		ReflectionTestUtils.setField(service, "glusterfsRequestCoordinator", coordinator);
+
+		UpdateServiceInstanceRequest request = mock(UpdateServiceInstanceRequest.class);
+		when(request.getServiceInstanceId()).thenReturn(INSTANCE_ID);
+		when(request.getPlanId()).thenReturn("plan-b");
+		try {
+			service.updateServiceInstance(request);
+			fail("expected GlusterfsConcurrencyException");
+		} catch (GlusterfsConcurrencyException e) {
+			verify(admin, never()).setGlusterfsQuota(anyString(), anyString());
+		}
+	}
+
+}
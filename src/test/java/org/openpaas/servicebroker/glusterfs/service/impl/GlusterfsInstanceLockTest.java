@@ -0,0 +1,195 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.repository.impl.GlusterfsMemoryRepository;
+import org.openpaas.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.openpaas.servicebroker.model.DeleteServiceInstanceRequest;
+import org.openpaas.servicebroker.model.ServiceInstanceBinding;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 같은 ServiceInstance 에 대한 Bind 와 Deprovision 이 직렬화되는지 확인합니다.
+ */
+public class GlusterfsInstanceLockTest {
+
+	private static final String INSTANCE_ID = "instance-1";
+
+	private GlusterfsAdminService admin;
+
+	private GlusterfsServiceInstanceRecord record;
+
+	private GlusterfsServiceInstanceBindingService bindingService;
+
+	private GlusterfsServiceInstanceService instanceService;
+
+	private ExecutorService callers;
+
+	private CountDownLatch userCreating;
+
+	private CountDownLatch release;
+
+	@Before
+	public void setup() throws Exception {
+		MockEnvironment env = new MockEnvironment()
+				.withProperty("glusterfs.rolename", "_member_")
+				.withProperty("glusterfs.authurl", "http://localhost:5000")
+				.withProperty("glusterfs.bind.parallel", "false")
+				.withProperty("glusterfs.lock.stripes", "64")
+				.withProperty("glusterfs.lock.waittimeout", "5000");
+		GlusterfsRequestCoordinator coordinator = new GlusterfsRequestCoordinator();
+		ReflectionTestUtils.setField(coordinator, "env", env);
+		coordinator.init();
+		GlusterfsStepJournal journal = new GlusterfsStepJournal();
+		ReflectionTestUtils.setField(journal, "glusterfsStepJournalRepository", new GlusterfsMemoryRepository());
+
+		userCreating = new CountDownLatch(1);
+		release = new CountDownLatch(1);
+		record = new GlusterfsServiceInstanceRecord();
+		record.setServiceInstanceId(INSTANCE_ID);
+		record.setTenantId("tenant-id");
+		record.setTenantName("tenant");
+		admin = mock(GlusterfsAdminService.class);
+		when(admin.findInstanceRecordById(INSTANCE_ID)).thenReturn(record);
+		when(admin.getCachedRolesIdByRoleName(anyString())).thenReturn("role-id");
+		when(admin.getUsername(anyString())).thenReturn("generated");
+		when(admin.createUser(anyString(), anyString(), anyString())).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				userCreating.countDown();
+				release.await();
+				return "user-id";
+			}
+		});
+
+		bindingService = new GlusterfsServiceInstanceBindingService(admin);
+		ReflectionTestUtils.setField(bindingService, "env", env);
+		ReflectionTestUtils.setField(bindingService, "glusterfsStepJournal", journal);
+		ReflectionTestUtils.setField(bindingService, "glusterfsRequestCoordinator", coordinator);
+
+		instanceService = new GlusterfsServiceInstanceService(admin);
+		ReflectionTestUtils.setField(instanceService, "glusterfsStepJournal", journal);
+		ReflectionTestUtils.setField(instanceService, "glusterfsRequestCoordinator", coordinator);
+
+		callers = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void teardown() {
+		release.countDown();
+		callers.shutdownNow();
+	}
+
+	@Test
+	public void deprovisionWaitsForBindOnSameInstance() throws Exception {
+		final CreateServiceInstanceBindingRequest bindRequest = mock(CreateServiceInstanceBindingRequest.class);
+		when(bindRequest.getBindingId()).thenReturn("binding-1");
+		when(bindRequest.getServiceInstanceId()).thenReturn(INSTANCE_ID);
+		when(bindRequest.getAppGuid()).thenReturn("app-1");
+		final DeleteServiceInstanceRequest deleteRequest = mock(DeleteServiceInstanceRequest.class);
+		when(deleteRequest.getServiceInstanceId()).thenReturn(INSTANCE_ID);
+
+		Future<Object> bind = callers.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return bindingService.createServiceInstanceBinding(bindRequest);
+			}
+		});
+		assertTrue(userCreating.await(5, TimeUnit.SECONDS));
+
+		Future<Object> deprovision = callers.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return instanceService.deleteServiceInstance(deleteRequest);
+			}
+		});
+		// Bind 가 끝나기 전에는 Tenant 를 삭제하지 않습니다.
+		Thread.sleep(200L);
+		if (deprovision.isDone()) fail("deprovision did not wait for bind");
+		verify(admin, never()).deleteTenant(any(GlusterfsServiceInstanceRecord.class));
+
+		release.countDown();
+		bind.get(5, TimeUnit.SECONDS);
+		deprovision.get(5, TimeUnit.SECONDS);
+
+		InOrder order = inOrder(admin);
+		order.verify(admin).saveBind(any(ServiceInstanceBinding.class), eq("user-id"));
+		order.verify(admin).deleteTenant(any(GlusterfsServiceInstanceRecord.class));
+	}
+
+	@Test
+	public void bindWaitsForDeprovisionOnSameInstance() throws Exception {
+		final CountDownLatch tenantDeleting = new CountDownLatch(1);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				tenantDeleting.countDown();
+				release.await();
+				return null;
+			}
+		}).when(admin).deleteTenant(record);
+		final DeleteServiceInstanceRequest deleteRequest = mock(DeleteServiceInstanceRequest.class);
+		when(deleteRequest.getServiceInstanceId()).thenReturn(INSTANCE_ID);
+		final CreateServiceInstanceBindingRequest bindRequest = mock(CreateServiceInstanceBindingRequest.class);
+		when(bindRequest.getBindingId()).thenReturn("binding-2");
+		when(bindRequest.getServiceInstanceId()).thenReturn(INSTANCE_ID);
+		when(bindRequest.getAppGuid()).thenReturn("app-2");
+
+		Future<Object> deprovision = callers.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return instanceService.deleteServiceInstance(deleteRequest);
+			}
+		});
+		assertTrue(tenantDeleting.await(5, TimeUnit.SECONDS));
+
+		Future<Object> bind = callers.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return bindingService.createServiceInstanceBinding(bindRequest);
+			}
+		});
+		// Tenant 삭제중에는 사용자를 생성하지 않습니다.
+		Thread.sleep(200L);
+		if (bind.isDone()) fail("bind did not wait for deprovision");
+		verify(admin, never()).createUser(anyString(), anyString(), anyString());
+
+		// Deprovision 이 끝나면 ServiceInstance 가 없으므로 Bind 는 실패합니다.
+		when(admin.findInstanceRecordById(INSTANCE_ID)).thenReturn(null);
+		release.countDown();
+		deprovision.get(5, TimeUnit.SECONDS);
+		try {
+			bind.get(5, TimeUnit.SECONDS);
+			fail("expected bind to fail");
+		} catch (ExecutionException e) {
+			verify(admin, never()).createUser(anyString(), anyString(), anyString());
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsOperationRejectedException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceOperation;
+import org.openpaas.servicebroker.glusterfs.repository.impl.GlusterfsMemoryRepository;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 같은 DB 를 사용하는 여러 브로커 중 실행하던 브로커가 종료된 비동기 작업만 실패 처리되는지,
+ * 작업 스레드 풀이 가득 찬 경우 재시도할 수 있는 예외로 거부되는지 확인합니다.
+ */
+public class GlusterfsOperationServiceTest {
+
+	private static final long STALE_TIMEOUT = 200L;
+
+	private GlusterfsMemoryRepository repository;
+
+	private GlusterfsOperationService brokerA;
+
+	private GlusterfsOperationService brokerB;
+
+	private CountDownLatch release;
+
+	@Before
+	public void setup() {
+		repository = new GlusterfsMemoryRepository();
+		brokerA = operationService();
+		brokerB = operationService();
+		release = new CountDownLatch(1);
+	}
+
+	@After
+	public void teardown() {
+		release.countDown();
+	}
+
+	@Test
+	public void runningOperationOfAnotherBrokerIsNotFailed() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		GlusterfsServiceOperation operation = brokerA.start("instance-1", null, "provision", new GlusterfsOperationService.OperationTask() {
+			@Override
+			public void run() throws Exception {
+				started.countDown();
+				release.await();
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		// staletimeout 이 지나도 실행중인 브로커가 진행 시각을 갱신하면 다른 브로커는 작업을 실패 처리하지 않습니다.
+		for (int i = 0; i < 3; i++) {
+			Thread.sleep(STALE_TIMEOUT / 2);
+			brokerA.heartbeat();
+			brokerB.heartbeat();
+		}
+		assertEquals(GlusterfsServiceOperation.STATE_IN_PROGRESS, state(operation));
+
+		release.countDown();
+		awaitState(operation, GlusterfsServiceOperation.STATE_SUCCEEDED);
+	}
+
+	@Test
+	public void operationWhoseOwnerStoppedIsFailed() throws Exception {
+		GlusterfsServiceOperation operation = new GlusterfsServiceOperation();
+		operation.setOperationId("operation-1");
+		operation.setInstanceId("instance-1");
+		operation.setOperationType("provision");
+		operation.setState(GlusterfsServiceOperation.STATE_IN_PROGRESS);
+		operation.setOwner("stopped-broker");
+		repository.saveOperation(operation);
+
+		brokerB.heartbeat();
+		assertEquals(GlusterfsServiceOperation.STATE_IN_PROGRESS, state(operation));
+
+		Thread.sleep(STALE_TIMEOUT + 50L);
+		brokerB.heartbeat();
+		assertEquals(GlusterfsServiceOperation.STATE_FAILED, state(operation));
+	}
+
+	@Test
+	public void rejectedOperationIsRetryable() throws Exception {
+		ReflectionTestUtils.setField(brokerA, "operationExecutor", new TaskExecutor() {
+			@Override
+			public void execute(Runnable task) {
+				throw new TaskRejectedException("pool full");
+			}
+		});
+		try {
+			brokerA.start("instance-1", null, "provision", new GlusterfsOperationService.OperationTask() {
+				@Override
+				public void run() throws Exception {
+					fail("rejected operation must not run");
+				}
+			});
+			fail("expected GlusterfsOperationRejectedException");
+		} catch (GlusterfsOperationRejectedException e) {
+			assertEquals(GlusterfsServiceOperation.STATE_FAILED, repository.findLastOperationByInstanceId("instance-1").getState());
+		}
+	}
+
+	private GlusterfsOperationService operationService() {
+		GlusterfsAdminService admin = new GlusterfsAdminService();
+		ReflectionTestUtils.setField(admin, "glusterfsOperationRepository", repository);
+		GlusterfsOperationService service = new GlusterfsOperationService();
+		ReflectionTestUtils.setField(service, "glusterfsAdminService", admin);
+		ReflectionTestUtils.setField(service, "operationExecutor", new SimpleAsyncTaskExecutor("glusterfs-operation-"));
+		ReflectionTestUtils.setField(service, "staleTimeout", STALE_TIMEOUT);
+		return service;
+	}
+
+	private String state(GlusterfsServiceOperation operation) {
+		return repository.findOperation(operation.getOperationId()).getState();
+	}
+
+	private void awaitState(GlusterfsServiceOperation operation, String state) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000L;
+		while (!state.equals(state(operation)) && System.currentTimeMillis() < deadline) Thread.sleep(10L);
+		assertEquals(state, state(operation));
+	}
+
+}
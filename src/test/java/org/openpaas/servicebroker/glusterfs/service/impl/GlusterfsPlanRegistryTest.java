@@ -0,0 +1,156 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class GlusterfsPlanRegistryTest {
+
+	private static final String SERVICE_ID = "e5rt43e6-0e2b-47e3-a21a-fd01a8eb0452";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File catalog;
+
+	private GlusterfsPlanRegistry registry;
+
+	@Before
+	public void setup() throws Exception {
+		catalog = folder.newFile("glusterfs-catalog.json");
+		write(catalog("plan-5mb", 5242880L, "plan-100mb", 104857600L));
+
+		registry = new GlusterfsPlanRegistry();
+		ReflectionTestUtils.setField(registry, "env", new MockEnvironment()
+				.withProperty("glusterfs.catalog.location", "file:" + catalog.getAbsolutePath())
+				.withProperty("glusterfs.catalog.reloadinterval", "0"));
+		ReflectionTestUtils.setField(registry, "resourceLoader", new DefaultResourceLoader());
+		registry.init();
+	}
+
+	@After
+	public void teardown() {
+		registry.stop();
+	}
+
+	@Test
+	public void loadsPlansAndQuotas() {
+		assertEquals(Arrays.asList("plan-5mb", "plan-100mb"), registry.getPlanIds());
+		assertEquals(Long.valueOf(5242880L), registry.getQuotaBytes("plan-5mb"));
+		assertNull(registry.getQuotaBytes("unknown"));
+		assertNotNull(registry.getServiceDefinition(SERVICE_ID));
+	}
+
+	@Test
+	public void reloadAppliesValidFile() throws Exception {
+		write(catalog("plan-5mb", 10485760L, "plan-1gb", 1073741824L));
+
+		registry.reload();
+
+		assertEquals(Arrays.asList("plan-5mb", "plan-1gb"), registry.getPlanIds());
+		assertEquals(Long.valueOf(10485760L), registry.getQuotaBytes("plan-5mb"));
+		assertEquals(1L, metric("glusterfs.catalog.reload.count"));
+	}
+
+	@Test
+	public void rejectsMalformedFileAndKeepsPreviousSnapshot() throws Exception {
+		GlusterfsPlanRegistry.Snapshot previous = registry.getSnapshot();
+		write("{\"services\": [");
+
+		assertReloadRejected();
+		assertSame(previous, registry.getSnapshot());
+		assertEquals(Long.valueOf(5242880L), registry.getQuotaBytes("plan-5mb"));
+	}
+
+	@Test
+	public void rejectsInvalidQuotaAndKeepsPreviousSnapshot() throws Exception {
+		GlusterfsPlanRegistry.Snapshot previous = registry.getSnapshot();
+		write(catalog("plan-5mb", 0L, "plan-100mb", 104857600L));
+
+		assertReloadRejected();
+		assertSame(previous, registry.getSnapshot());
+	}
+
+	@Test
+	public void rejectsDuplicatePlanIdAndKeepsPreviousSnapshot() throws Exception {
+		GlusterfsPlanRegistry.Snapshot previous = registry.getSnapshot();
+		write(catalog("plan-5mb", 5242880L, "plan-5mb", 104857600L));
+
+		assertReloadRejected();
+		assertSame(previous, registry.getSnapshot());
+	}
+
+	@Test
+	public void rejectsFileWithoutPlansAndKeepsPreviousSnapshot() throws Exception {
+		GlusterfsPlanRegistry.Snapshot previous = registry.getSnapshot();
+		write("{\"services\": [{\"id\": \"" + SERVICE_ID + "\", \"name\": \"glusterfs\", \"plans\": []}]}");
+
+		assertReloadRejected();
+		assertSame(previous, registry.getSnapshot());
+		assertEquals(Arrays.asList("plan-5mb", "plan-100mb"), registry.getPlanIds());
+	}
+
+	@Test
+	public void failsStartupWithInvalidFile() throws Exception {
+		write("{\"services\": []}");
+		GlusterfsPlanRegistry invalid = new GlusterfsPlanRegistry();
+		ReflectionTestUtils.setField(invalid, "env", new MockEnvironment()
+				.withProperty("glusterfs.catalog.location", "file:" + catalog.getAbsolutePath())
+				.withProperty("glusterfs.catalog.reloadinterval", "0"));
+		ReflectionTestUtils.setField(invalid, "resourceLoader", new DefaultResourceLoader());
+		try {
+			invalid.init();
+			fail("expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// 잘못된 정의로는 기동하지 않습니다.
+		}
+	}
+
+	private void assertReloadRejected() {
+		try {
+			registry.reload();
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertEquals(1L, metric("glusterfs.catalog.reload.failure"));
+			assertEquals(0L, metric("glusterfs.catalog.reload.count"));
+		}
+	}
+
+	private void write(String content) throws Exception {
+		Files.write(catalog.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String catalog(String planId1, long quota1, String planId2, long quota2) {
+		return "{\"services\": [{\"id\": \"" + SERVICE_ID + "\", \"name\": \"glusterfs\", \"plans\": ["
+				+ plan(planId1, quota1) + ", " + plan(planId2, quota2) + "]}]}";
+	}
+
+	private static String plan(String id, long quotaBytes) {
+		return "{\"id\": \"" + id + "\", \"name\": \"" + id + "\", \"quota_bytes\": " + quotaBytes + "}";
+	}
+
+	private long metric(String name) {
+		for (Metric<?> metric : registry.metrics()) {
+			if (metric.getName().equals(name)) return metric.getValue().longValue();
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+}
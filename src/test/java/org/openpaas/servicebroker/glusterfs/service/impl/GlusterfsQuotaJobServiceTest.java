@@ -0,0 +1,160 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsConcurrencyException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsQuotaJob;
+import org.openpaas.servicebroker.glusterfs.repository.GlusterfsInstanceRepository;
+import org.openpaas.servicebroker.glusterfs.repository.impl.GlusterfsJdbcRepository;
+import org.openpaas.servicebroker.glusterfs.repository.impl.GlusterfsMemoryRepository;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * plan 별로 진행중인 quota 재적용 작업이 하나만 생성되는지 확인합니다.
+ */
+public class GlusterfsQuotaJobServiceTest {
+
+	private static final String PLAN_ID = "plan-5mb";
+
+	private static final int CALLERS = 16;
+
+	private GlusterfsQuotaJobService service;
+
+	private ExecutorService callers;
+
+	@Before
+	public void setup() {
+		GlusterfsMemoryRepository repository = new GlusterfsMemoryRepository();
+		GlusterfsAdminService admin = mock(GlusterfsAdminService.class);
+		when(admin.getQuotaBytes(PLAN_ID)).thenReturn(5242880L);
+		// 모든 요청이 진행중 작업 조회를 마친 뒤 작업을 추가하도록 조회와 추가 사이에서 대기합니다.
+		final CyclicBarrier checked = new CyclicBarrier(CALLERS);
+		GlusterfsInstanceRepository instances = mock(GlusterfsInstanceRepository.class);
+		when(instances.countInstances(PLAN_ID)).thenAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				checked.await(5, TimeUnit.SECONDS);
+				return 0;
+			}
+		});
+
+		service = new GlusterfsQuotaJobService();
+		ReflectionTestUtils.setField(service, "env", new MockEnvironment().withProperty("glusterfs.quotajob.resume", "false"));
+		ReflectionTestUtils.setField(service, "glusterfsAdminService", admin);
+		ReflectionTestUtils.setField(service, "glusterfsInstanceRepository", instances);
+		ReflectionTestUtils.setField(service, "glusterfsQuotaJobRepository", repository);
+		service.init();
+		// 생성된 작업이 끝나 다음 작업을 생성할 수 있게 되지 않도록 실행하지 않습니다.
+		service.stop();
+		ReflectionTestUtils.setField(service, "runner", mock(ExecutorService.class));
+
+		callers = Executors.newFixedThreadPool(CALLERS);
+	}
+
+	@After
+	public void teardown() {
+		callers.shutdownNow();
+	}
+
+	@Test
+	public void concurrentStartCreatesOneJob() throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<GlusterfsQuotaJob>> futures = new ArrayList<Future<GlusterfsQuotaJob>>();
+		for (int i = 0; i < CALLERS; i++) {
+			futures.add(callers.submit(new Callable<GlusterfsQuotaJob>() {
+				@Override
+				public GlusterfsQuotaJob call() throws Exception {
+					start.await();
+					return service.start(PLAN_ID);
+				}
+			}));
+		}
+		start.countDown();
+
+		int started = 0;
+		int rejected = 0;
+		for (Future<GlusterfsQuotaJob> future : futures) {
+			try {
+				future.get(5, TimeUnit.SECONDS);
+				started++;
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof GlusterfsConcurrencyException);
+				rejected++;
+			}
+		}
+		assertEquals(1, started);
+		assertEquals(CALLERS - 1, rejected);
+	}
+
+	@Test
+	public void jdbcRepositoryAllowsOneActiveJobPerPlan() throws Exception {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:quotajob;MODE=MySQL;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS gfbroker\\;SET SCHEMA gfbroker", "sa", "");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		try {
+			migrate(jdbcTemplate, "V9__create_quota_job.sql");
+			migrate(jdbcTemplate, "V12__add_quota_job_active_plan.sql");
+			GlusterfsJdbcRepository repository = new GlusterfsJdbcRepository();
+			ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+
+			GlusterfsQuotaJob first = job();
+			assertTrue(repository.addQuotaJob(first));
+			assertFalse(repository.addQuotaJob(job()));
+
+			// 종료(취소)된 작업은 다음 작업 생성을 막지 않습니다.
+			assertTrue(repository.cancelQuotaJob(first.getJobId()));
+			GlusterfsQuotaJob second = job();
+			assertTrue(repository.addQuotaJob(second));
+
+			assertTrue(repository.acquireQuotaJob(second.getJobId(), "owner", new Date()));
+			assertTrue(repository.finishQuotaJob(second.getJobId(), "owner", GlusterfsQuotaJob.STATE_COMPLETED, null));
+			assertTrue(repository.addQuotaJob(job()));
+		} finally {
+			jdbcTemplate.execute("shutdown");
+		}
+	}
+
+	private static GlusterfsQuotaJob job() {
+		GlusterfsQuotaJob job = new GlusterfsQuotaJob();
+		job.setJobId(UUID.randomUUID().toString());
+		job.setPlanId(PLAN_ID);
+		job.setQuotaBytes(5242880L);
+		return job;
+	}
+
+	private static void migrate(JdbcTemplate jdbcTemplate, String name) throws Exception {
+		String sql = StreamUtils.copyToString(new ClassPathResource("db/migration/" + name).getInputStream(), StandardCharsets.UTF_8);
+		for (String statement : sql.replaceAll("(?m)^--.*$", "").split(";")) {
+			if (!statement.trim().isEmpty()) jdbcTemplate.execute(statement);
+		}
+	}
+
+}
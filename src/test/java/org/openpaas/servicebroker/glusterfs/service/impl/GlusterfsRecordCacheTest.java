@@ -0,0 +1,70 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsServiceInstanceRecord;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsRecordCache.BindingRecord;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * primary 조회에서는 이 브로커가 저장/수정하면서 캐시한 레코드만 사용하는지 확인합니다.
+ */
+public class GlusterfsRecordCacheTest {
+
+	private GlusterfsRecordCache cache;
+
+	@Before
+	public void setup() {
+		cache = new GlusterfsRecordCache();
+		ReflectionTestUtils.setField(cache, "env", new MockEnvironment()
+				.withProperty("glusterfs.recordcache.maxsize", "100")
+				.withProperty("glusterfs.recordcache.ttl", "60000"));
+		cache.init();
+	}
+
+	@Test
+	public void primaryReadUsesWrittenInstance() {
+		cache.putInstance(instance("instance-1", "plan-a"), true);
+		cache.updateInstancePlan("instance-1", "service", "plan-b", "org", "space");
+
+		GlusterfsServiceInstanceRecord record = cache.getInstance("instance-1", true);
+		assertNotNull(record);
+		assertEquals("plan-b", record.getPlanId());
+
+		cache.invalidateInstance("instance-1");
+		assertNull(cache.getInstance("instance-1", true));
+	}
+
+	@Test
+	public void primaryReadIgnoresLoadedInstance() {
+		cache.putInstance(instance("instance-1", "plan-a"), false);
+
+		assertNull(cache.getInstance("instance-1", true));
+		assertNotNull(cache.getInstance("instance-1", false));
+	}
+
+	@Test
+	public void primaryReadUsesWrittenBindingOnly() {
+		cache.putBinding(new BindingRecord("binding-1", "instance-1", "app", "user-id", "user", "password"), true);
+		cache.putBinding(new BindingRecord("binding-2", "instance-1", "app", "user-id"), false);
+
+		assertEquals("password", cache.getBinding("binding-1", true).getPassword());
+		assertNull(cache.getBinding("binding-2", true));
+		assertNotNull(cache.getBinding("binding-2", false));
+	}
+
+	private static GlusterfsServiceInstanceRecord instance(String instanceId, String planId) {
+		GlusterfsServiceInstanceRecord record = new GlusterfsServiceInstanceRecord();
+		record.setServiceInstanceId(instanceId);
+		record.setPlanId(planId);
+		record.setTenantId("tenant-id");
+		record.setTenantName("tenant");
+		return record;
+	}
+
+}
@@ -0,0 +1,256 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openpaas.servicebroker.glusterfs.common.GlusterfsStripedLock;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsConcurrencyException;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsServiceException;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class GlusterfsRequestCoordinatorTest {
+
+	private GlusterfsRequestCoordinator coordinator;
+
+	private ExecutorService callers;
+
+	private CountDownLatch started;
+
+	private CountDownLatch release;
+
+	private AtomicInteger executions;
+
+	@Before
+	public void setup() {
+		coordinator = new GlusterfsRequestCoordinator();
+		ReflectionTestUtils.setField(coordinator, "env", new MockEnvironment()
+				.withProperty("glusterfs.lock.stripes", "64")
+				.withProperty("glusterfs.lock.waittimeout", "200"));
+		coordinator.init();
+		callers = Executors.newCachedThreadPool();
+		started = new CountDownLatch(1);
+		release = new CountDownLatch(1);
+		executions = new AtomicInteger();
+	}
+
+	@After
+	public void teardown() {
+		release.countDown();
+		callers.shutdownNow();
+	}
+
+	@Test
+	public void coalescesIdenticalInFlightRequests() throws Exception {
+		final Object result = new Object();
+		Future<Object> first = submit("instance:1", "provision:1", blocking(result));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		Future<Object> second = submit("instance:1", "provision:1", blocking(new Object()));
+		awaitMetric("glusterfs.coordinator.coalesced", 1L);
+
+		release.countDown();
+		assertSame(result, first.get(5, TimeUnit.SECONDS));
+		assertSame(result, second.get(5, TimeUnit.SECONDS));
+		assertEquals(1, executions.get());
+	}
+
+	@Test
+	public void coalescedRequestReceivesSameException() throws Exception {
+		final GlusterfsServiceException failure = new GlusterfsServiceException("keystone unavailable");
+		Future<Object> first = submit("binding:1", "bind:1", new GlusterfsRequestCoordinator.Action<Object>() {
+			@Override
+			public Object call() throws Exception {
+				executions.incrementAndGet();
+				started.countDown();
+				release.await();
+				throw failure;
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		Future<Object> second = submit("binding:1", "bind:1", blocking(null));
+		awaitMetric("glusterfs.coordinator.coalesced", 1L);
+
+		release.countDown();
+		assertSame(failure, causeOf(first));
+		assertSame(failure, causeOf(second));
+		assertEquals(1, executions.get());
+	}
+
+	@Test
+	public void serializesDifferentRequestsForSameKey() throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		GlusterfsRequestCoordinator.Action<Object> action = new GlusterfsRequestCoordinator.Action<Object>() {
+			@Override
+			public Object call() throws Exception {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				Thread.sleep(20L);
+				running.decrementAndGet();
+				return null;
+			}
+		};
+		Future<?>[] futures = new Future<?>[5];
+		for (int i = 0; i < futures.length; i++) futures[i] = submit("instance:1", "update:" + i, action);
+		for (Future<?> future : futures) future.get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, maxRunning.get());
+	}
+
+	@Test
+	public void failsWhenLockIsNotAcquiredWithinWaitTimeout() throws Exception {
+		submit("instance:1", "provision:1", blocking(null));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		long startedAt = System.currentTimeMillis();
+		try {
+			coordinator.execute("instance:1", "deprovision:1", blocking(null));
+			fail("expected GlusterfsConcurrencyException");
+		} catch (GlusterfsConcurrencyException e) {
+			assertTrue(System.currentTimeMillis() - startedAt >= 150L);
+		}
+		assertEquals(1, executions.get());
+		assertEquals(1L, metric("glusterfs.coordinator.timeout"));
+	}
+
+	@Test
+	public void coalescedRequestTimesOutWhileFirstIsRunning() throws Exception {
+		submit("instance:1", "provision:1", blocking(null));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		try {
+			coordinator.execute("instance:1", "provision:1", blocking(null));
+			fail("expected GlusterfsConcurrencyException");
+		} catch (GlusterfsConcurrencyException e) {
+			assertEquals(1, executions.get());
+		}
+	}
+
+	@Test
+	public void multipleLockKeysDoNotDeadlockInEitherOrder() throws Exception {
+		final GlusterfsRequestCoordinator.Action<Object> action = new GlusterfsRequestCoordinator.Action<Object>() {
+			@Override
+			public Object call() throws Exception {
+				executions.incrementAndGet();
+				Thread.sleep(2L);
+				return null;
+			}
+		};
+		Future<?>[] futures = new Future<?>[20];
+		for (int i = 0; i < futures.length; i++) {
+			final boolean reversed = i % 2 == 1;
+			futures[i] = callers.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return coordinator.execute(reversed ? Arrays.asList("binding:1", "instance:1") : Arrays.asList("instance:1", "binding:1"),
+							null, action);
+				}
+			});
+		}
+		for (Future<?> future : futures) future.get(5, TimeUnit.SECONDS);
+		assertEquals(20, executions.get());
+		assertEquals(0L, metric("glusterfs.coordinator.timeout"));
+	}
+
+	@Test
+	public void multipleLockKeysBlockEachKey() throws Exception {
+		Future<Object> binding = submit(Arrays.asList("instance:1", "binding:1"), blocking(null));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		try {
+			coordinator.execute("instance:1", "deprovision:1", blocking(null));
+			fail("expected GlusterfsConcurrencyException");
+		} catch (GlusterfsConcurrencyException e) {
+			assertEquals(1, executions.get());
+		}
+		// 다른 인스턴스는 기다리지 않습니다.
+		assertEquals("done", coordinator.execute("instance:2", null, new GlusterfsRequestCoordinator.Action<Object>() {
+			@Override
+			public Object call() {
+				return "done";
+			}
+		}));
+		release.countDown();
+		binding.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void stripedLockReturnsSameLockForSameKey() {
+		GlusterfsStripedLock locks = new GlusterfsStripedLock(16);
+		assertSame(locks.get("instance:abc"), locks.get(new String("instance:abc")));
+		assertEquals(16, locks.size());
+		assertEquals(1, new GlusterfsStripedLock(0).size());
+	}
+
+	private GlusterfsRequestCoordinator.Action<Object> blocking(final Object result) {
+		return new GlusterfsRequestCoordinator.Action<Object>() {
+			@Override
+			public Object call() throws Exception {
+				executions.incrementAndGet();
+				started.countDown();
+				release.await();
+				return result;
+			}
+		};
+	}
+
+	private Future<Object> submit(final List<String> lockKeys, final GlusterfsRequestCoordinator.Action<Object> action) {
+		return callers.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return coordinator.execute(lockKeys, null, action);
+			}
+		});
+	}
+
+	private Future<Object> submit(final String lockKey, final String requestKey, final GlusterfsRequestCoordinator.Action<Object> action) {
+		return callers.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return coordinator.execute(lockKey, requestKey, action);
+			}
+		});
+	}
+
+	private static Throwable causeOf(Future<?> future) throws Exception {
+		try {
+			future.get(5, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+		fail("expected failure");
+		return null;
+	}
+
+	private long metric(String name) {
+		for (Metric<?> metric : coordinator.metrics()) {
+			if (metric.getName().equals(name)) return metric.getValue().longValue();
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	private void awaitMetric(String name, long value) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000L;
+		while (metric(name) < value) {
+			if (System.currentTimeMillis() > deadline) fail(name + " did not reach " + value);
+			Thread.sleep(5L);
+		}
+	}
+
+}
@@ -0,0 +1,227 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openpaas.servicebroker.glusterfs.exception.GlusterfsServiceException;
+import org.openpaas.servicebroker.glusterfs.model.GlusterfsOperationStep;
+import org.openpaas.servicebroker.glusterfs.repository.impl.GlusterfsMemoryRepository;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsStepJournal.Compensation;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsStepJournal.Flow;
+import org.openpaas.servicebroker.glusterfs.service.impl.GlusterfsStepJournal.Step;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 단계 기록에 따른 재개(완료된 단계 건너뛰기)와 보상 순서를 확인합니다.
+ */
+public class GlusterfsStepJournalTest {
+
+	private static final String INSTANCE_ID = "instance-1";
+
+	private GlusterfsMemoryRepository repository;
+
+	private GlusterfsStepJournal journal;
+
+	private List<String> compensated;
+
+	@Before
+	public void setup() {
+		repository = new GlusterfsMemoryRepository();
+		journal = new GlusterfsStepJournal();
+		ReflectionTestUtils.setField(journal, "glusterfsStepJournalRepository", repository);
+		compensated = new ArrayList<String>();
+	}
+
+	@Test
+	public void resumeSkipsRecordedSteps() throws Exception {
+		Flow first = journal.begin(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, "plan-a", provisionCompensations());
+		assertEquals("tenant-1", first.run("tenant", value("tenant-1"), null));
+		first.run("quota", value(null), null);
+		// 저장 단계 전에 중단된 것으로 가정합니다.
+
+		Flow resumed = journal.begin(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, "plan-a", provisionCompensations());
+		assertEquals("tenant-1", resumed.run("tenant", notCalled(), null));
+		assertEquals(null, resumed.run("quota", notCalled(), null));
+		resumed.run("save", value(null), null);
+		resumed.complete();
+
+		assertTrue(steps().isEmpty());
+	}
+
+	@Test
+	public void discardsStepsRecordedForAnotherRequest() throws Exception {
+		Flow first = journal.begin(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, "plan-a", provisionCompensations());
+		first.run("tenant", value("tenant-1"), null);
+
+		// 이전 요청이 생성한 Tenant 를 삭제한 뒤 새로 시작합니다.
+		Flow other = journal.begin(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, "plan-b", provisionCompensations());
+		assertEquals(Arrays.asList("tenant:tenant-1"), compensated);
+		assertEquals("tenant-2", other.run("tenant", value("tenant-2"), null));
+		assertEquals(Arrays.asList("tenant-2"), data(steps()));
+	}
+
+	@Test
+	public void keepsStepsRecordedForAnotherRequestWhenCompensationFails() throws Exception {
+		Flow first = journal.begin(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, "plan-a", provisionCompensations());
+		first.run("tenant", value("tenant-1"), null);
+
+		LinkedHashMap<String, Compensation> compensations = new LinkedHashMap<String, Compensation>();
+		compensations.put("tenant", new Compensation() {
+			@Override
+			public void run(String data) throws Exception {
+				throw new GlusterfsServiceException("keystone unavailable");
+			}
+		});
+		try {
+			journal.begin(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, "plan-b", compensations);
+			fail("expected GlusterfsServiceException");
+		} catch (GlusterfsServiceException e) {
+			assertEquals(Arrays.asList("tenant-1"), data(steps()));
+		}
+	}
+
+	@Test
+	public void compensatesCompletedStepsInReverseOrder() throws Exception {
+		Flow flow = journal.begin(GlusterfsStepJournal.FLOW_BIND, "binding-1", "bind", null);
+		flow.run("user", value("user-1"), record("user"));
+		flow.run("role", value(null), record("role"));
+		flow.run("save", value(null), record("save"));
+
+		flow.compensate();
+
+		assertEquals(Arrays.asList("save", "role", "user:user-1"), compensated);
+		assertTrue(steps("binding-1").isEmpty());
+	}
+
+	@Test
+	public void resumedStepsAreCompensatedWithRecordedData() throws Exception {
+		Flow first = journal.begin(GlusterfsStepJournal.FLOW_BIND, "binding-1", "bind", null);
+		first.run("user", value("user-1"), record("user"));
+
+		Flow resumed = journal.begin(GlusterfsStepJournal.FLOW_BIND, "binding-1", "bind", null);
+		resumed.run("user", notCalled(), record("user"));
+		resumed.compensate();
+
+		assertEquals(Arrays.asList("user:user-1"), compensated);
+	}
+
+	@Test
+	public void failedCompensationKeepsRecordForRetry() throws Exception {
+		Flow flow = journal.begin(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, "plan-a", provisionCompensations());
+		flow.run("tenant", value("tenant-1"), new Compensation() {
+			@Override
+			public void run(String data) throws Exception {
+				throw new GlusterfsServiceException("keystone unavailable");
+			}
+		});
+		flow.run("quota", value(null), record("quota"));
+
+		flow.compensate();
+
+		assertEquals(Arrays.asList("quota"), compensated);
+		assertEquals(Arrays.asList("tenant"), names(steps()));
+	}
+
+	@Test
+	public void abandonCompensatesRecordedStepsInFlowOrderReversed() throws Exception {
+		Flow flow = journal.begin(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, "plan-a", provisionCompensations());
+		flow.run("tenant", value("tenant-1"), null);
+		flow.run("quota", value(null), null);
+
+		assertTrue(journal.abandon(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, provisionCompensations()));
+
+		assertEquals(Arrays.asList("quota", "tenant:tenant-1"), compensated);
+		assertTrue(steps().isEmpty());
+		assertFalse(journal.abandon(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, provisionCompensations()));
+	}
+
+	@Test
+	public void abandonKeepsRecordWhenCompensationFails() throws Exception {
+		Flow flow = journal.begin(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, "plan-a", provisionCompensations());
+		flow.run("tenant", value("tenant-1"), null);
+
+		LinkedHashMap<String, Compensation> compensations = new LinkedHashMap<String, Compensation>();
+		compensations.put("tenant", new Compensation() {
+			@Override
+			public void run(String data) throws Exception {
+				throw new GlusterfsServiceException("keystone unavailable");
+			}
+		});
+		try {
+			journal.abandon(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, compensations);
+			fail("expected GlusterfsServiceException");
+		} catch (GlusterfsServiceException e) {
+			assertEquals(Arrays.asList("tenant"), names(steps()));
+		}
+
+		// 다음 삭제 요청에서 다시 보상합니다.
+		assertTrue(journal.abandon(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID, provisionCompensations()));
+		assertEquals(Arrays.asList("tenant:tenant-1"), compensated);
+	}
+
+	private LinkedHashMap<String, Compensation> provisionCompensations() {
+		LinkedHashMap<String, Compensation> compensations = new LinkedHashMap<String, Compensation>();
+		compensations.put("tenant", record("tenant"));
+		compensations.put("quota", record("quota"));
+		compensations.put("save", record("save"));
+		return compensations;
+	}
+
+	private static Step value(final String data) {
+		return new Step() {
+			@Override
+			public String call() {
+				return data;
+			}
+		};
+	}
+
+	private static Step notCalled() {
+		return new Step() {
+			@Override
+			public String call() {
+				fail("recorded step must not run again");
+				return null;
+			}
+		};
+	}
+
+	private Compensation record(final String step) {
+		return new Compensation() {
+			@Override
+			public void run(String data) {
+				compensated.add(data == null ? step : step + ":" + data);
+			}
+		};
+	}
+
+	private List<GlusterfsOperationStep> steps() {
+		return repository.findSteps(GlusterfsStepJournal.FLOW_PROVISION, INSTANCE_ID);
+	}
+
+	private List<GlusterfsOperationStep> steps(String bindingId) {
+		return repository.findSteps(GlusterfsStepJournal.FLOW_BIND, bindingId);
+	}
+
+	private static List<String> names(List<GlusterfsOperationStep> steps) {
+		List<String> names = new ArrayList<String>();
+		for (GlusterfsOperationStep step : steps) names.add(step.getStep());
+		return names;
+	}
+
+	private static List<String> data(List<GlusterfsOperationStep> steps) {
+		List<String> data = new ArrayList<String>();
+		for (GlusterfsOperationStep step : steps) data.add(step.getData());
+		return data;
+	}
+
+}
@@ -0,0 +1,144 @@
+package org.openpaas.servicebroker.glusterfs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.openpaas.servicebroker.glusterfs.repository.impl.GlusterfsJdbcRepository;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * group commit 사용 여부에 따른 binding upsert 처리 시간 비교.
+ * 시간이 오래 걸리므로 -Dglusterfs.loadtest=true 로 실행한 경우에만 수행한다.
+ * 메모리 H2(MySQL 모드)를 사용하므로 디스크 fsync 비용은 포함되지 않는다.
+ */
+public class GlusterfsWriteCoalescerLoadTest {
+
+	private static final int THREADS = Integer.getInteger("glusterfs.loadtest.threads", 200);
+
+	private static final int WRITES_PER_THREAD = Integer.getInteger("glusterfs.loadtest.writes", 50);
+
+	private static int databases;
+
+	@Before
+	public void setup() {
+		assumeTrue(Boolean.getBoolean("glusterfs.loadtest"));
+	}
+
+	@Test
+	public void compareGroupCommit() throws Exception {
+		// JIT 준비
+		run(false, 20, 20);
+		run(true, 20, 20);
+
+		Result disabled = run(false, THREADS, WRITES_PER_THREAD);
+		Result enabled = run(true, THREADS, WRITES_PER_THREAD);
+		System.out.println("[ap] group commit load test : " + THREADS + " threads x " + WRITES_PER_THREAD + " binding upserts");
+		System.out.println("[ap]   disabled: " + disabled);
+		System.out.println("[ap]   enabled : " + enabled);
+	}
+
+	private Result run(boolean enabled, int threads, final int writesPerThread) throws Exception {
+		BasicDataSource dataSource = new BasicDataSource();
+		dataSource.setDriverClassName("org.h2.Driver");
+		dataSource.setUrl("jdbc:h2:mem:groupcommit" + (databases++) + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+		dataSource.setUsername("sa");
+		dataSource.setPassword("");
+		dataSource.setInitialSize(2);
+		dataSource.setMaxTotal(20);
+		dataSource.setMaxWaitMillis(30000L);
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create schema gfbroker");
+		jdbcTemplate.execute("create table gfbroker.service_binding (binding_id varchar(100) primary key, instance_id varchar(100),"
+				+ " app_id varchar(100), username varchar(100), password varchar(100), user_id varchar(100), status varchar(20))");
+
+		final GlusterfsWriteCoalescer coalescer = new GlusterfsWriteCoalescer();
+		ReflectionTestUtils.setField(coalescer, "env", new MockEnvironment()
+				.withProperty("glusterfs.groupcommit.enabled", String.valueOf(enabled))
+				.withProperty("glusterfs.groupcommit.window", "5")
+				.withProperty("glusterfs.groupcommit.maxbatch", "100")
+				.withProperty("glusterfs.groupcommit.queuecapacity", "1000")
+				.withProperty("glusterfs.groupcommit.waittimeout", "30000"));
+		ReflectionTestUtils.setField(coalescer, "jdbcTemplate", jdbcTemplate);
+		coalescer.init();
+
+		ExecutorService callers = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int t = 0; t < threads; t++) {
+				final int thread = t;
+				futures.add(callers.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						start.await();
+						for (int i = 0; i < writesPerThread; i++) {
+							String bindingId = "binding-" + thread + "-" + i;
+							coalescer.update(GlusterfsJdbcRepository.SERVICE_BINDING_ADD,
+									bindingId, "instance-" + thread, "app", "user", "password", "user-id",
+									"instance-" + thread, "app", "user", "password", "user-id");
+						}
+						return null;
+					}
+				}));
+			}
+			long startedAt = System.nanoTime();
+			start.countDown();
+			for (Future<Void> future : futures) future.get(10, TimeUnit.MINUTES);
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+			int rows = jdbcTemplate.queryForObject("select count(*) from gfbroker.service_binding", Integer.class);
+			assertEquals(threads * writesPerThread, rows);
+			long writes = enabled ? metric(coalescer, "glusterfs.groupcommit.writes") : rows;
+			long commits = enabled ? metric(coalescer, "glusterfs.groupcommit.commits") : rows;
+			return new Result(writes, commits, elapsed);
+		} finally {
+			callers.shutdownNow();
+			coalescer.destroy();
+			jdbcTemplate.execute("shutdown");
+			dataSource.close();
+		}
+	}
+
+	private static long metric(GlusterfsWriteCoalescer coalescer, String name) {
+		for (Metric<?> metric : coalescer.metrics()) {
+			if (metric.getName().equals(name)) return metric.getValue().longValue();
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	private static final class Result {
+
+		private final long writes;
+
+		private final long commits;
+
+		private final long elapsed;
+
+		private Result(long writes, long commits, long elapsed) {
+			this.writes = writes;
+			this.commits = commits;
+			this.elapsed = elapsed;
+		}
+
+		@Override
+		public String toString() {
+			return writes + " writes, " + commits + " commits, " + elapsed + " ms";
+		}
+	}
+
+}